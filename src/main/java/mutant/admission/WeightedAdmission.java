@@ -0,0 +1,146 @@
+package mutant.admission;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class admits the requests while the sum of their weights stays
+ * within a budget, so a few huge DNAs can not take all the memory and the
+ * threads while the small ones wait behind them.
+ *
+ * The weight of a request is the number of bases it declares, N² for a DNA
+ * of N rows, which bounds the memory it needs to be read and verified. A
+ * request whose size is only known while it is read is charged again with
+ * its real weight, see {@link #recharge(long, long)}. A
+ * request is refused at once when its weight does not fit in what is left
+ * of the budget, and its weight is given back when it is answered. A weight
+ * bigger than the whole budget is taken as the whole budget, so such a
+ * request is still admitted when nothing else runs. The admission is safe
+ * for concurrent use and never blocks.
+ */
+public class WeightedAdmission {
+
+	private final long budget;
+
+	private final AtomicLong available;
+
+	private final AtomicLong admitted = new AtomicLong();
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	/**
+	 * Creates an admission.
+	 *
+	 * @param budget the biggest sum of the weights of the requests admitted
+	 *     at the same time.
+	 */
+	public WeightedAdmission(long budget) {
+		if(budget <= 0) {
+			throw new IllegalArgumentException("The budget must be positive.");
+		}
+		this.budget = budget;
+		this.available = new AtomicLong(budget);
+	}
+
+	/**
+	 * This method gets the weight taken from the budget by a request, which
+	 * is at least 1 and at most the whole budget.
+	 *
+	 * @param declared the number of bases declared by the request.
+	 * @return the weight to acquire and release.
+	 */
+	public long weigh(long declared) {
+		return Math.max(1, Math.min(declared, budget));
+	}
+
+	/**
+	 * This method admits a request when its weight fits in what is left of
+	 * the budget.
+	 *
+	 * @param weight the weight given by <code>weigh</code>.
+	 * @return <code>true</code> when the request is admitted, and must
+	 *     release its weight once answered.
+	 */
+	public boolean tryAcquire(long weight) {
+		for(long left = available.get(); left >= weight; left = available.get()) {
+			if(available.compareAndSet(left, left - weight)) {
+				admitted.incrementAndGet();
+				return true;
+			}
+		}
+		rejected.incrementAndGet();
+		return false;
+	}
+
+	/**
+	 * This method charges a request admitted with the weight it turns out
+	 * to need once its real size is known. When that is less than it took
+	 * the surplus is given back. When it is more and the difference does
+	 * not fit in what is left of the budget, nothing changes and the
+	 * request is counted as refused.
+	 *
+	 * @param weight the weight the request took.
+	 * @param declared the number of bases the request turns out to have.
+	 * @return the weight the request takes now and must release, or -1 when
+	 *     the difference does not fit.
+	 */
+	public long recharge(long weight, long declared) {
+		long needed = weigh(declared);
+		if(needed <= weight) {
+			release(weight - needed);
+			return needed;
+		}
+		long more = needed - weight;
+		for(long left = available.get(); left >= more; left = available.get()) {
+			if(available.compareAndSet(left, left - more)) {
+				return needed;
+			}
+		}
+		rejected.incrementAndGet();
+		return -1;
+	}
+
+	/**
+	 * This method gives back the weight of a request admitted.
+	 *
+	 * @param weight the weight acquired.
+	 */
+	public void release(long weight) {
+		available.addAndGet(weight);
+	}
+
+	/**
+	 * This method gets the budget.
+	 *
+	 * @return the biggest sum of the weights admitted together.
+	 */
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * This method gets what is left of the budget.
+	 *
+	 * @return the weight available.
+	 */
+	public long getAvailable() {
+		return available.get();
+	}
+
+	/**
+	 * This method gets the number of requests admitted.
+	 *
+	 * @return the number of requests.
+	 */
+	public long getAdmitted() {
+		return admitted.get();
+	}
+
+	/**
+	 * This method gets the number of requests refused.
+	 *
+	 * @return the number of requests.
+	 */
+	public long getRejected() {
+		return rejected.get();
+	}
+}
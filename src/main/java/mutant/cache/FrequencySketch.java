@@ -0,0 +1,102 @@
+package mutant.cache;
+
+/**
+ * This class estimates how often each key was seen recently, with a
+ * count-min sketch of 4-bit counters.
+ *
+ * Each key increments one counter in four rows and its frequency is the
+ * smallest of them, so collisions can only overestimate it. Once the number
+ * of increments reaches ten times the capacity, every counter is halved, so
+ * keys that were popular a long time ago fade away. The counters of a
+ * <code>long</code> are packed 16 at a time.
+ *
+ * An instance is not thread safe; each cache segment guards its own sketch.
+ */
+final class FrequencySketch {
+
+	/**
+	 * The highest value of a counter.
+	 */
+	static final int MAX_FREQUENCY = 15;
+
+	private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+	private static final long RESET_MASK = 0x7777777777777777L;
+
+	private final long[] table;
+
+	private final int sampleSize;
+
+	private int additions;
+
+	/**
+	 * Creates a sketch for the given number of keys.
+	 *
+	 * @param capacity the number of keys held by the cache.
+	 */
+	FrequencySketch(int capacity) {
+		int length = Integer.highestOneBit(Math.max(8, capacity - 1) << 1);
+		this.table = new long[Math.min(length, 1 << 30)];
+		this.sampleSize = (int) Math.min(10L * Math.max(capacity, 1), Integer.MAX_VALUE);
+	}
+
+	/**
+	 * This method gets the estimated frequency of a key.
+	 *
+	 * @param hash the hash of the key.
+	 * @return the frequency, between 0 and {@link #MAX_FREQUENCY}.
+	 */
+	int frequency(long hash) {
+		int frequency = MAX_FREQUENCY;
+		for(int i = 0; i < SEEDS.length; i++) {
+			long h = spread(hash, i);
+			int shift = counter(h);
+			frequency = Math.min(frequency, (int) (table[index(h)] >>> shift) & MAX_FREQUENCY);
+		}
+		return frequency;
+	}
+
+	/**
+	 * This method counts one more occurrence of a key.
+	 *
+	 * @param hash the hash of the key.
+	 */
+	void increment(long hash) {
+		boolean added = false;
+		for(int i = 0; i < SEEDS.length; i++) {
+			long h = spread(hash, i);
+			int index = index(h);
+			int shift = counter(h);
+			if(((table[index] >>> shift) & MAX_FREQUENCY) < MAX_FREQUENCY) {
+				table[index] += 1L << shift;
+				added = true;
+			}
+		}
+		if(added && ++additions >= sampleSize) {
+			reset();
+		}
+	}
+
+	/**
+	 * Halves every counter.
+	 */
+	private void reset() {
+		for(int i = 0; i < table.length; i++) {
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		}
+		additions /= 2;
+	}
+
+	private static long spread(long hash, int row) {
+		long h = (hash + SEEDS[row]) * SEEDS[row];
+		return h ^ (h >>> 29);
+	}
+
+	private int index(long h) {
+		return (int) h & (table.length - 1);
+	}
+
+	private static int counter(long h) {
+		return (int) (h >>> 60) << 2;
+	}
+}
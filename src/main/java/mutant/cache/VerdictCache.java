@@ -0,0 +1,292 @@
+package mutant.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import mutant.codec.DnaDigest;
+
+/**
+ * This class keeps the verdicts of the DNAs verified recently, keyed by
+ * their 16 bytes digest, so a DNA sent again is answered without being
+ * verified or saved again.
+ *
+ * The cache is split in segments by the digest, each one guarded by its own
+ * lock. A segment follows the W-TinyLFU policy: new verdicts enter a small
+ * LRU window, and the verdict leaving the window only takes the place of the
+ * least recently used verdict of the main area when it was looked up more
+ * often, as estimated by a <code>FrequencySketch</code>. A burst of DNAs
+ * sent once does not push out the DNAs sent over and over, as it would with
+ * plain LRU.
+ *
+ * The hits, misses, evictions and rejected verdicts are counted with
+ * <code>LongAdder</code>s. A capacity of 0 disables the cache.
+ */
+public class VerdictCache {
+
+	/**
+	 * The biggest number of segments.
+	 */
+	static final int MAX_SEGMENTS = 16;
+
+	/**
+	 * The smallest number of verdicts per segment before the cache is split
+	 * in one more segment.
+	 */
+	static final int SEGMENT_CAPACITY = 64;
+
+	private final int capacity;
+
+	private final Segment[] segments;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	private final LongAdder rejections = new LongAdder();
+
+	/**
+	 * Creates a cache.
+	 *
+	 * @param capacity the biggest number of verdicts kept, 0 to disable the
+	 *     cache.
+	 */
+	public VerdictCache(int capacity) {
+		if(capacity < 0) {
+			throw new IllegalArgumentException("The cache capacity must not be negative.");
+		}
+		int count = 1;
+		while(count < MAX_SEGMENTS && (long) count * SEGMENT_CAPACITY < capacity) {
+			count <<= 1;
+		}
+		this.capacity = capacity;
+		this.segments = new Segment[count];
+		int segmentCapacity = (capacity + count - 1) / count;
+		for(int i = 0; i < count; i++) {
+			segments[i] = new Segment(segmentCapacity);
+		}
+	}
+
+	/**
+	 * This method gets the verdict of a DNA, counting the lookup in its
+	 * frequency.
+	 *
+	 * @param digest the DNA digest.
+	 * @return the verdict, or <code>null</code> when it is not cached.
+	 */
+	public Boolean get(byte[] digest) {
+		if(capacity == 0 || digest == null) {
+			return null;
+		}
+		Key key = new Key(digest);
+		Boolean verdict = segment(key).get(key);
+		if(verdict == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+		}
+		return verdict;
+	}
+
+	/**
+	 * This method keeps the verdict of a DNA.
+	 *
+	 * @param digest the DNA digest.
+	 * @param mutant the verdict of the DNA.
+	 */
+	public void put(byte[] digest, boolean mutant) {
+		if(capacity == 0 || digest == null) {
+			return;
+		}
+		Key key = new Key(digest);
+		segment(key).put(key, mutant);
+	}
+
+	/**
+	 * This method changes the verdict of a DNA if it is kept, without
+	 * counting an access.
+	 *
+	 * @param digest the DNA digest.
+	 * @param mutant the new verdict of the DNA.
+	 */
+	public void replace(byte[] digest, boolean mutant) {
+		if(capacity == 0 || digest == null) {
+			return;
+		}
+		Key key = new Key(digest);
+		segment(key).replace(key, mutant);
+	}
+
+	private Segment segment(Key key) {
+		return segments[(int) (key.lo >>> 32) & (segments.length - 1)];
+	}
+
+	/**
+	 * This method gets the number of verdicts kept.
+	 *
+	 * @return the number of verdicts.
+	 */
+	public int size() {
+		int size = 0;
+		for(Segment segment : segments) {
+			synchronized(segment) {
+				size += segment.window.size() + segment.main.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * This method gets the biggest number of verdicts kept.
+	 *
+	 * @return the capacity.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * This method gets the number of lookups that found the verdict.
+	 *
+	 * @return the number of hits.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * This method gets the number of lookups that did not find the verdict.
+	 *
+	 * @return the number of misses.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * This method gets the number of verdicts removed to make room for more
+	 * frequent ones.
+	 *
+	 * @return the number of evictions.
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * This method gets the number of verdicts that left the window without
+	 * being admitted in the main area, since they were not more frequent
+	 * than the verdict they would replace.
+	 *
+	 * @return the number of rejected verdicts.
+	 */
+	public long getRejections() {
+		return rejections.sum();
+	}
+
+	/**
+	 * The digest of a DNA, as two <code>long</code>s.
+	 */
+	private static final class Key {
+
+		private final long hi;
+
+		private final long lo;
+
+		Key(byte[] digest) {
+			this.hi = DnaDigest.high(digest);
+			this.lo = DnaDigest.low(digest);
+		}
+
+		long hash() {
+			return hi ^ Long.rotateLeft(lo, 17);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if(!(other instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) other;
+			return hi == key.hi && lo == key.lo;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (hi ^ (hi >>> 32));
+		}
+	}
+
+	/**
+	 * A part of the cache with its own window, main area and sketch, used
+	 * under its own lock.
+	 */
+	private final class Segment {
+
+		private final int windowCapacity;
+
+		private final int mainCapacity;
+
+		private final LinkedHashMap<Key, Boolean> window = new LinkedHashMap<>(16, 0.75f, true);
+
+		private final LinkedHashMap<Key, Boolean> main = new LinkedHashMap<>(16, 0.75f, true);
+
+		private final FrequencySketch sketch;
+
+		Segment(int capacity) {
+			this.windowCapacity = Math.max(1, capacity / 100);
+			this.mainCapacity = capacity - windowCapacity;
+			this.sketch = new FrequencySketch(capacity);
+		}
+
+		synchronized Boolean get(Key key) {
+			sketch.increment(key.hash());
+			Boolean verdict = window.get(key);
+			return verdict != null ? verdict : main.get(key);
+		}
+
+		synchronized void replace(Key key, boolean mutant) {
+			if(window.containsKey(key)) {
+				window.put(key, mutant);
+			} else if(main.containsKey(key)) {
+				main.put(key, mutant);
+			}
+		}
+
+		synchronized void put(Key key, boolean mutant) {
+			if(main.containsKey(key)) {
+				main.put(key, mutant);
+				return;
+			}
+			window.put(key, mutant);
+			if(window.size() <= windowCapacity) {
+				return;
+			}
+
+			Iterator<Map.Entry<Key, Boolean>> eldest = window.entrySet().iterator();
+			Map.Entry<Key, Boolean> candidate = eldest.next();
+			eldest.remove();
+			if(main.size() < mainCapacity) {
+				main.put(candidate.getKey(), candidate.getValue());
+				return;
+			}
+			if(mainCapacity == 0) {
+				evictions.increment();
+				return;
+			}
+
+			Iterator<Key> victims = main.keySet().iterator();
+			Key victim = victims.next();
+			if(sketch.frequency(candidate.getKey().hash()) > sketch.frequency(victim.hash())) {
+				victims.remove();
+				main.put(candidate.getKey(), candidate.getValue());
+				evictions.increment();
+			} else {
+				rejections.increment();
+			}
+		}
+	}
+}
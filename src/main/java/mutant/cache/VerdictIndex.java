@@ -0,0 +1,249 @@
+package mutant.cache;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.StampedLock;
+
+import mutant.codec.DnaDigest;
+
+/**
+ * This class knows the verdict of every DNA recorded in the database, so a
+ * DNA sent again is answered without reading or writing the database.
+ *
+ * It is an open addressing hash table with linear probing, kept outside of
+ * the heap in direct <code>ByteBuffer</code>s of up to 2^24 slots, so tens
+ * of millions of entries cost no garbage collection. Each slot takes 16
+ * bytes: the digest of the DNA, whose two lowest bits are replaced by an
+ * occupied flag and the verdict. An empty slot is all zeros. Digests are
+ * uniform, so their high half is used as the hash, and 126 bits are still
+ * more than enough to tell the DNAs apart.
+ *
+ * The table doubles once it is three quarters full. Lookups are optimistic
+ * reads of a <code>StampedLock</code>, retried under the read lock when a
+ * write happened meanwhile; inserts take the write lock.
+ */
+public class VerdictIndex {
+
+	/**
+	 * The number of bytes of a slot.
+	 */
+	static final int SLOT_BYTES = 16;
+
+	/**
+	 * The log2 of the default number of slots per buffer.
+	 */
+	static final int CHUNK_BITS = 24;
+
+	private static final long OCCUPIED = 2;
+
+	private static final long MUTANT = 1;
+
+	private static final long FLAGS = OCCUPIED | MUTANT;
+
+	private final StampedLock lock = new StampedLock();
+
+	private final int chunkBits;
+
+	private Table table;
+
+	private long size;
+
+	/**
+	 * Creates an index.
+	 *
+	 * @param expected the number of verdicts expected, so the table is not
+	 *     resized while they are loaded.
+	 */
+	public VerdictIndex(long expected) {
+		this(expected, CHUNK_BITS);
+	}
+
+	/**
+	 * Creates an index with the given buffer size.
+	 *
+	 * @param expected the number of verdicts expected.
+	 * @param chunkBits the log2 of the number of slots per buffer.
+	 */
+	VerdictIndex(long expected, int chunkBits) {
+		this.chunkBits = chunkBits;
+		long slots = 16;
+		while(slots * 3 / 4 < expected) {
+			slots <<= 1;
+		}
+		this.table = new Table(slots, chunkBits);
+	}
+
+	/**
+	 * This method gets the verdict of a recorded DNA.
+	 *
+	 * @param digest the DNA digest.
+	 * @return the verdict, or <code>null</code> when the DNA is not in the
+	 *     index.
+	 */
+	public Boolean get(byte[] digest) {
+		long hi = DnaDigest.high(digest);
+		long lo = DnaDigest.low(digest) & ~FLAGS;
+
+		long stamp = lock.tryOptimisticRead();
+		long found = find(table, hi, lo);
+		if(!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				found = find(table, hi, lo);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return found == 0 ? null : (found & MUTANT) != 0;
+	}
+
+	/**
+	 * This method records the verdict of a DNA.
+	 *
+	 * @param digest the DNA digest.
+	 * @param mutant the verdict of the DNA.
+	 * @return <code>true</code> if the DNA was not in the index yet.
+	 */
+	public boolean put(byte[] digest, boolean mutant) {
+		long hi = DnaDigest.high(digest);
+		long lo = DnaDigest.low(digest) & ~FLAGS | OCCUPIED | (mutant ? MUTANT : 0);
+
+		long stamp = lock.writeLock();
+		try {
+			if((size + 1) * 4 > table.slots * 3) {
+				table = resize(table);
+			}
+			boolean added = insert(table, hi, lo);
+			if(added) {
+				size++;
+			}
+			return added;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * This method gets the number of verdicts recorded.
+	 *
+	 * @return the number of verdicts.
+	 */
+	public long size() {
+		long stamp = lock.readLock();
+		try {
+			return size;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * This method gets the off-heap memory used by the table.
+	 *
+	 * @return the number of bytes of the buffers.
+	 */
+	public long getMemory() {
+		long stamp = lock.readLock();
+		try {
+			return table.slots * SLOT_BYTES;
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Finds the slot of a digest, returning the low half with its flags or
+	 * 0 when it is not there. Under an optimistic read the slots may be
+	 * changing, so the probing stops after a full turn.
+	 */
+	private static long find(Table table, long hi, long lo) {
+		long index = hi & table.mask;
+		for(long probes = 0; probes < table.slots; probes++) {
+			long slotLo = table.getLow(index);
+			if((slotLo & OCCUPIED) == 0) {
+				return 0;
+			}
+			if((slotLo & ~FLAGS) == lo && table.getHigh(index) == hi) {
+				return slotLo;
+			}
+			index = (index + 1) & table.mask;
+		}
+		return 0;
+	}
+
+	/**
+	 * Puts a digest with its flags in its slot, updating the verdict when it
+	 * is already there.
+	 */
+	private static boolean insert(Table table, long hi, long lo) {
+		long index = hi & table.mask;
+		while(true) {
+			long slotLo = table.getLow(index);
+			if((slotLo & OCCUPIED) == 0) {
+				table.set(index, hi, lo);
+				return true;
+			}
+			if(((slotLo ^ lo) & ~FLAGS) == 0 && table.getHigh(index) == hi) {
+				table.set(index, hi, lo);
+				return false;
+			}
+			index = (index + 1) & table.mask;
+		}
+	}
+
+	/**
+	 * Moves every slot to a table twice as big.
+	 */
+	private Table resize(Table old) {
+		Table resized = new Table(old.slots << 1, chunkBits);
+		for(long index = 0; index < old.slots; index++) {
+			long lo = old.getLow(index);
+			if((lo & OCCUPIED) != 0) {
+				insert(resized, old.getHigh(index), lo);
+			}
+		}
+		return resized;
+	}
+
+	/**
+	 * The slots of the index, split in direct buffers.
+	 */
+	private static final class Table {
+
+		private final long slots;
+
+		private final long mask;
+
+		private final int chunkBits;
+
+		private final int chunkMask;
+
+		private final ByteBuffer[] chunks;
+
+		Table(long slots, int chunkBits) {
+			this.slots = slots;
+			this.mask = slots - 1;
+			this.chunkBits = Math.min(chunkBits, Long.numberOfTrailingZeros(slots));
+			this.chunkMask = (1 << this.chunkBits) - 1;
+			this.chunks = new ByteBuffer[(int) (slots >>> this.chunkBits)];
+			for(int i = 0; i < chunks.length; i++) {
+				chunks[i] = ByteBuffer.allocateDirect(SLOT_BYTES << this.chunkBits).order(ByteOrder.nativeOrder());
+			}
+		}
+
+		long getHigh(long index) {
+			return chunks[(int) (index >>> chunkBits)].getLong(((int) index & chunkMask) * SLOT_BYTES);
+		}
+
+		long getLow(long index) {
+			return chunks[(int) (index >>> chunkBits)].getLong(((int) index & chunkMask) * SLOT_BYTES + Long.BYTES);
+		}
+
+		void set(long index, long hi, long lo) {
+			ByteBuffer chunk = chunks[(int) (index >>> chunkBits)];
+			int offset = ((int) index & chunkMask) * SLOT_BYTES;
+			chunk.putLong(offset, hi);
+			chunk.putLong(offset + Long.BYTES, lo);
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package mutant.codec;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+import mutant.domain.PackedDna;
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+
+/**
+ * This class reads a DNA sent as <code>application/octet-stream</code>,
+ * which costs a quarter or half of its JSON form and needs no parsing.
+ *
+ * The body starts with a magic number and the number of bases of each
+ * row, as big endian integers, followed by the rows in one of two formats:
+ * <ul>
+ * <li>{@link DnaCodec#PACKED_MAGIC}, "DNA2": the packed words of every row
+ * as big endian longs, as written by <code>DnaCodec.writePacked</code>.
+ * The words are read straight into the <code>PackedDna</code>, and the
+ * bits after the last base of a row must be zero;</li>
+ * <li>{@link #BYTES_MAGIC}, "DNA1": the A, T, C and G bases of every row
+ * as ASCII bytes, in any case, without separators. Each row is validated
+ * and packed as it is read.</li>
+ * </ul>
+ *
+ * A body that is shorter or longer than its header says, or that does not
+ * start with a known magic number, is refused with the return codes of
+ * <code>NitrogenousBases</code>. All the methods are stateless.
+ */
+public final class DnaBinaryReader {
+
+	/**
+	 * The first bytes of a DNA sent with one byte per base, "DNA1".
+	 */
+	public static final int BYTES_MAGIC = 0x444E4131;
+
+	/**
+	 * Return code used when the body does not start with a known magic
+	 * number.
+	 */
+	public static final String RC_BINARY_MAGIC = "Binary DNA must start with DNA1 or DNA2.";
+
+	private DnaBinaryReader() {
+	}
+
+	/**
+	 * This method reads a DNA from a binary body.
+	 *
+	 * @param input the binary body.
+	 * @param maxSize the biggest number of bases of a row.
+	 * @return the packed DNA.
+	 *
+	 * @throws IOException when the body can not be read.
+	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when the
+	 *     header is not valid, the DNA is empty or too big, or the body does
+	 *     not have the bases the header says.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when the
+	 *     bases are composed of characters different from A, T, C or G.
+	 */
+	public static PackedDna read(InputStream input, int maxSize) throws IOException, InvalidDnaException, InvalidNitrogenousBasesException {
+		DataInputStream data = new DataInputStream(input);
+		int magic;
+		int size;
+		try {
+			magic = data.readInt();
+			size = data.readInt();
+		} catch (EOFException e) {
+			throw new InvalidDnaException(RC_BINARY_MAGIC);
+		}
+		if(magic != DnaCodec.PACKED_MAGIC && magic != BYTES_MAGIC) {
+			throw new InvalidDnaException(RC_BINARY_MAGIC);
+		}
+		if(size <= 0) {
+			throw new InvalidDnaException(NitrogenousBases.RC_DNA_EMPTY);
+		}
+		if(size > maxSize) {
+			throw new InvalidDnaException(NitrogenousBases.RC_DNA_SIZE);
+		}
+
+		int rowWords = PackedDna.rowWords(size);
+		long[] words = new long[size * rowWords];
+		try {
+			if(magic == DnaCodec.PACKED_MAGIC) {
+				readWords(data, size, words);
+			} else {
+				byte[] row = new byte[size];
+				for(int i = 0; i < size; i++) {
+					data.readFully(row);
+					DnaCodec.encodeRow(row, 0, size, words, i * rowWords);
+				}
+			}
+		} catch (EOFException e) {
+			throw new InvalidDnaException(NitrogenousBases.RC_DNA_FORMAT);
+		}
+		if(data.read() >= 0) {
+			throw new InvalidDnaException(NitrogenousBases.RC_DNA_FORMAT);
+		}
+		return new PackedDna(size, words);
+	}
+
+	/**
+	 * This method reads the number of bases of each row declared by the
+	 * header of a binary body, without consuming it: the bytes read are
+	 * pushed back, so the body can still be given to <code>read</code>.
+	 *
+	 * @param input the binary body, able to push back
+	 *     {@link DnaCodec#PACKED_HEADER} bytes.
+	 * @return the declared size, or 0 when the body does not start with a
+	 *     valid header.
+	 * @throws IOException when the body can not be read.
+	 */
+	public static int peekSize(PushbackInputStream input) throws IOException {
+		byte[] header = new byte[DnaCodec.PACKED_HEADER];
+		int length = 0;
+		for(int read; length < header.length && (read = input.read(header, length, header.length - length)) >= 0; ) {
+			length += read;
+		}
+		input.unread(header, 0, length);
+		if(length < header.length) {
+			return 0;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(header);
+		int magic = buffer.getInt();
+		int size = buffer.getInt();
+		return (magic == DnaCodec.PACKED_MAGIC || magic == BYTES_MAGIC) && size > 0 ? size : 0;
+	}
+
+	/**
+	 * This method reads a DNA from a buffer holding exactly one binary DNA,
+	 * from its position to its limit. The packed words are read straight
+	 * from the buffer, which may be direct, and the position is left at the
+	 * limit.
+	 *
+	 * @param buffer the binary DNA.
+	 * @param maxSize the biggest number of bases of a row.
+	 * @return the packed DNA.
+	 *
+	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when the
+	 *     header is not valid, the DNA is empty or too big, or the buffer
+	 *     does not have the bases the header says.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when the
+	 *     bases are composed of characters different from A, T, C or G.
+	 */
+	public static PackedDna read(ByteBuffer buffer, int maxSize) throws InvalidDnaException, InvalidNitrogenousBasesException {
+		ByteBuffer data = buffer.slice();
+		buffer.position(buffer.limit());
+		if(data.remaining() < DnaCodec.PACKED_HEADER) {
+			throw new InvalidDnaException(RC_BINARY_MAGIC);
+		}
+		int magic = data.getInt();
+		int size = data.getInt();
+		if(magic != DnaCodec.PACKED_MAGIC && magic != BYTES_MAGIC) {
+			throw new InvalidDnaException(RC_BINARY_MAGIC);
+		}
+		if(size <= 0) {
+			throw new InvalidDnaException(NitrogenousBases.RC_DNA_EMPTY);
+		}
+		if(size > maxSize) {
+			throw new InvalidDnaException(NitrogenousBases.RC_DNA_SIZE);
+		}
+
+		int rowWords = PackedDna.rowWords(size);
+		long length = magic == DnaCodec.PACKED_MAGIC ? (long) size * rowWords * Long.BYTES : (long) size * size;
+		if(data.remaining() != length) {
+			throw new InvalidDnaException(NitrogenousBases.RC_DNA_FORMAT);
+		}
+		long[] words = new long[size * rowWords];
+		if(magic == DnaCodec.PACKED_MAGIC) {
+			data.asLongBuffer().get(words);
+			checkPadding(size, words);
+		} else {
+			byte[] row = new byte[size];
+			for(int i = 0; i < size; i++) {
+				data.get(row);
+				DnaCodec.encodeRow(row, 0, size, words, i * rowWords);
+			}
+		}
+		return new PackedDna(size, words);
+	}
+
+	/**
+	 * Refuses a DNA with bits set after the last base of a row, which would
+	 * give the same DNA another id.
+	 */
+	private static void checkPadding(int size, long[] words) throws InvalidDnaException {
+		int rowWords = PackedDna.rowWords(size);
+		long padding = padding(size);
+		for(int k = rowWords - 1; k < words.length; k += rowWords) {
+			if((words[k] & padding) != 0) {
+				throw new InvalidDnaException(NitrogenousBases.RC_DNA_FORMAT);
+			}
+		}
+	}
+
+	/**
+	 * Gets the bits of the last word of a row after its last base.
+	 */
+	private static long padding(int size) {
+		int used = size % PackedDna.BASES_PER_WORD;
+		return used == 0 ? 0 : -1L << (used << 1);
+	}
+
+	/**
+	 * Reads the packed words, refusing a row with bits set after its last
+	 * base, which would give the same DNA another id.
+	 */
+	private static void readWords(DataInputStream data, int size, long[] words) throws IOException, InvalidDnaException {
+		int rowWords = PackedDna.rowWords(size);
+		long padding = padding(size);
+		byte[] row = new byte[rowWords * Long.BYTES];
+		LongBuffer rowBuffer = ByteBuffer.wrap(row).asLongBuffer();
+		for(int i = 0; i < size; i++) {
+			data.readFully(row);
+			rowBuffer.rewind();
+			rowBuffer.get(words, i * rowWords, rowWords);
+			if((words[(i + 1) * rowWords - 1] & padding) != 0) {
+				throw new InvalidDnaException(NitrogenousBases.RC_DNA_FORMAT);
+			}
+		}
+	}
+}
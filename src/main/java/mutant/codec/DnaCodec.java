@@ -0,0 +1,236 @@
+package mutant.codec;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import mutant.domain.PackedDna;
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+
+/**
+ * This class converts DNAs between their text forms and the 2 bits per base
+ * <code>PackedDna</code>.
+ *
+ * Encoding is also the validation of the DNA: the same rules and return codes
+ * of <code>NitrogenousBases</code> are applied while the bases are packed, so
+ * a <code>PackedDna</code> is always valid. All the methods are stateless.
+ */
+public final class DnaCodec {
+
+	/**
+	 * The first bytes of a packed DNA file, "DNA2".
+	 */
+	public static final int PACKED_MAGIC = 0x444E4132;
+
+	/**
+	 * The size of the header of a packed DNA file: the magic number followed
+	 * by the number of bases of each row.
+	 */
+	public static final int PACKED_HEADER = 8;
+
+	private DnaCodec() {
+	}
+
+	/**
+	 * This method validates and packs a DNA received as strings, one per row.
+	 *
+	 * @param dnaSequence the DNA sequence.
+	 * @return the packed DNA.
+	 *
+	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when the
+	 *     DNA sequence is null, empty or in a wrong format.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when the
+	 *     nitrogenous bases does not have the same length or when they are
+	 *     composed of characters different from A, T, C or G.
+	 */
+	public static PackedDna encode(String[] dnaSequence) throws InvalidDnaException, InvalidNitrogenousBasesException {
+		NitrogenousBases.validateDna(dnaSequence);
+		NitrogenousBases.validateLength(dnaSequence);
+
+		int size = dnaSequence.length;
+		int rowWords = PackedDna.rowWords(size);
+		long[] words = new long[size * rowWords];
+		for(int i = 0; i < size; i++) {
+			String row = dnaSequence[i];
+			int offset = i * rowWords;
+			for(int j = 0; j < size; j++) {
+				words[offset + j / PackedDna.BASES_PER_WORD] |= (long) encodeBase(row.charAt(j)) << ((j % PackedDna.BASES_PER_WORD) << 1);
+			}
+		}
+		return new PackedDna(size, words);
+	}
+
+	/**
+	 * This method validates and packs a DNA received as raw ASCII bytes, row
+	 * after row, without separators.
+	 *
+	 * @param bases the nitrogenous bases.
+	 * @param offset the position of the first base.
+	 * @param size the number of bases of each row.
+	 * @return the packed DNA.
+	 *
+	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when the
+	 *     DNA is empty.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when there
+	 *     are not enough bases for a square matrix or when they are composed
+	 *     of characters different from A, T, C or G.
+	 */
+	public static PackedDna encode(byte[] bases, int offset, int size) throws InvalidDnaException, InvalidNitrogenousBasesException {
+		if(size <= 0) {
+			throw new InvalidDnaException(NitrogenousBases.RC_DNA_EMPTY);
+		}
+		if(bases.length - offset < (long) size * size) {
+			throw new InvalidNitrogenousBasesException(NitrogenousBases.RC_NB_LENGTH);
+		}
+
+		int rowWords = PackedDna.rowWords(size);
+		long[] words = new long[size * rowWords];
+		for(int i = 0; i < size; i++) {
+			encodeRow(bases, offset + i * size, size, words, i * rowWords);
+		}
+		return new PackedDna(size, words);
+	}
+
+	/**
+	 * This method validates and packs a single row of ASCII bases.
+	 *
+	 * @param bases the nitrogenous bases.
+	 * @param offset the position of the first base of the row.
+	 * @param size the number of bases of the row.
+	 * @param words the destination words.
+	 * @param wordOffset the position of the first word of the row.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when the
+	 *     bases are composed of characters different from A, T, C or G.
+	 */
+	public static void encodeRow(byte[] bases, int offset, int size, long[] words, int wordOffset) throws InvalidNitrogenousBasesException {
+		for(int j = 0; j < size; j++) {
+			words[wordOffset + j / PackedDna.BASES_PER_WORD] |= (long) encodeBase(bases[offset + j]) << ((j % PackedDna.BASES_PER_WORD) << 1);
+		}
+	}
+
+	/**
+	 * This method validates and packs a single row of bases read as
+	 * characters, as given by a JSON parser.
+	 *
+	 * @param bases the nitrogenous bases.
+	 * @param offset the position of the first base of the row.
+	 * @param size the number of bases of the row.
+	 * @param words the destination words.
+	 * @param wordOffset the position of the first word of the row.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when the
+	 *     bases are composed of characters different from A, T, C or G.
+	 */
+	public static void encodeRow(char[] bases, int offset, int size, long[] words, int wordOffset) throws InvalidNitrogenousBasesException {
+		for(int j = 0; j < size; j++) {
+			words[wordOffset + j / PackedDna.BASES_PER_WORD] |= (long) encodeBase(bases[offset + j]) << ((j % PackedDna.BASES_PER_WORD) << 1);
+		}
+	}
+
+	/**
+	 * This method converts a single base into its code.
+	 *
+	 * @param base the base character.
+	 * @return the base code, between 0 and 3.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when the
+	 *     character is not A, T, C or G.
+	 */
+	public static int encodeBase(int base) throws InvalidNitrogenousBasesException {
+		byte code = NitrogenousBases.code(base);
+		if(code == NitrogenousBases.INVALID) {
+			throw new InvalidNitrogenousBasesException(NitrogenousBases.RC_NB_INVALID);
+		}
+		return code;
+	}
+
+	/**
+	 * This method writes a DNA in the packed file format: the
+	 * {@link #PACKED_MAGIC} and the number of bases of each row as big endian
+	 * integers, followed by the packed words of every row as big endian
+	 * longs.
+	 *
+	 * @param dna the packed DNA.
+	 * @param output the stream where the DNA is written.
+	 * @throws IOException when the DNA can not be written.
+	 */
+	public static void writePacked(PackedDna dna, OutputStream output) throws IOException {
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));
+		data.writeInt(PACKED_MAGIC);
+		data.writeInt(dna.getSize());
+		for(long word : dna.getWords()) {
+			data.writeLong(word);
+		}
+		data.flush();
+	}
+
+	/**
+	 * This method packs the bases of a DNA tightly, 4 per byte, the way it is
+	 * stored: the base of row i and column j is the base k = i * size + j,
+	 * kept in the bits 2 (k % 4) and 2 (k % 4) + 1 of the byte k / 4. Unlike
+	 * the words of a <code>PackedDna</code>, the rows are not padded.
+	 *
+	 * @param dna the packed DNA.
+	 * @return the (size * size + 3) / 4 bytes of the bases.
+	 */
+	public static byte[] packBases(PackedDna dna) {
+		int size = dna.getSize();
+		byte[] bases = new byte[(int) (((long) size * size + 3) / 4)];
+		int k = 0;
+		for(int i = 0; i < size; i++) {
+			for(int j = 0; j < size; j++, k++) {
+				bases[k >>> 2] |= dna.getBase(i, j) << ((k & 3) << 1);
+			}
+		}
+		return bases;
+	}
+
+	/**
+	 * This method rebuilds a DNA from the bytes written by
+	 * {@link #packBases(PackedDna)}.
+	 *
+	 * @param size the number of bases of each row.
+	 * @param bases the packed bases.
+	 * @return the packed DNA.
+	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when the
+	 *     number of bytes does not match the size.
+	 */
+	public static PackedDna unpackBases(int size, byte[] bases) throws InvalidDnaException {
+		if(size <= 0 || bases.length != ((long) size * size + 3) / 4) {
+			throw new InvalidDnaException(NitrogenousBases.RC_DNA_FORMAT);
+		}
+		int rowWords = PackedDna.rowWords(size);
+		long[] words = new long[size * rowWords];
+		int k = 0;
+		for(int i = 0; i < size; i++) {
+			for(int j = 0; j < size; j++, k++) {
+				long base = (bases[k >>> 2] >>> ((k & 3) << 1)) & 3;
+				words[i * rowWords + j / PackedDna.BASES_PER_WORD] |= base << ((j % PackedDna.BASES_PER_WORD) << 1);
+			}
+		}
+		return new PackedDna(size, words);
+	}
+
+	/**
+	 * This method unpacks a DNA into upper case strings, one per row.
+	 *
+	 * @param dna the packed DNA.
+	 * @return the DNA sequence.
+	 */
+	public static String[] decode(PackedDna dna) {
+		String[] dnaSequence = new String[dna.getSize()];
+		char[] row = new char[dna.getSize()];
+		for(int i = 0; i < dna.getSize(); i++) {
+			for(int j = 0; j < dna.getSize(); j++) {
+				row[j] = PackedDna.BASES[dna.getBase(i, j)];
+			}
+			dnaSequence[i] = new String(row);
+		}
+		return dnaSequence;
+	}
+}
@@ -0,0 +1,136 @@
+package mutant.codec;
+
+import mutant.domain.PackedDna;
+
+/**
+ * This class computes the identity of a DNA: a 128-bit digest of its packed
+ * bases and its size, used as the key of the <code>human</code> table.
+ *
+ * The digest is MurmurHash3 x64 128 over the packed words, two words at a
+ * time, seeded with the size of the DNA. The 2-bit codes are already the
+ * content, so upper and lower case bases get the same digest, and the
+ * padding bits of the last word of each row are always zero. With 128 bits
+ * the chance of two different DNAs sharing a key stays negligible well
+ * beyond billions of rows, while the key is only 16 bytes wide. All the
+ * methods are stateless.
+ */
+public final class DnaDigest {
+
+	/**
+	 * The number of bytes of a digest.
+	 */
+	public static final int LENGTH = 16;
+
+	private static final long C1 = 0x87c37b91114253d5L;
+
+	private static final long C2 = 0x4cf5ad432745937fL;
+
+	private DnaDigest() {
+	}
+
+	/**
+	 * This method computes the digest of a DNA.
+	 *
+	 * @param dna the packed DNA.
+	 * @return the 16 bytes of the digest.
+	 */
+	public static byte[] digest(PackedDna dna) {
+		long[] words = dna.getWords();
+		long h1 = dna.getSize();
+		long h2 = dna.getSize();
+
+		int blocks = words.length & ~1;
+		for(int i = 0; i < blocks; i += 2) {
+			h1 ^= mixK1(words[i]);
+			h1 = Long.rotateLeft(h1, 27);
+			h1 += h2;
+			h1 = h1 * 5 + 0x52dce729;
+
+			h2 ^= mixK2(words[i + 1]);
+			h2 = Long.rotateLeft(h2, 31);
+			h2 += h1;
+			h2 = h2 * 5 + 0x38495ab5;
+		}
+		if(blocks < words.length) {
+			h1 ^= mixK1(words[blocks]);
+		}
+
+		long length = (long) words.length * Long.BYTES;
+		h1 ^= length;
+		h2 ^= length;
+		h1 += h2;
+		h2 += h1;
+		h1 = fmix(h1);
+		h2 = fmix(h2);
+		h1 += h2;
+		h2 += h1;
+		return toBytes(h1, h2);
+	}
+
+	/**
+	 * This method gets the first 8 bytes of a digest as a big endian
+	 * <code>long</code>.
+	 *
+	 * @param digest the 16 bytes of the digest.
+	 * @return the high half of the digest.
+	 */
+	public static long high(byte[] digest) {
+		return toLong(digest, 0);
+	}
+
+	/**
+	 * This method gets the last 8 bytes of a digest as a big endian
+	 * <code>long</code>.
+	 *
+	 * @param digest the 16 bytes of the digest.
+	 * @return the low half of the digest.
+	 */
+	public static long low(byte[] digest) {
+		return toLong(digest, Long.BYTES);
+	}
+
+	/**
+	 * This method builds a digest from its halves.
+	 *
+	 * @param high the high half of the digest.
+	 * @param low the low half of the digest.
+	 * @return the 16 bytes of the digest.
+	 */
+	public static byte[] toBytes(long high, long low) {
+		byte[] digest = new byte[LENGTH];
+		for(int i = 0; i < Long.BYTES; i++) {
+			digest[i] = (byte) (high >>> (56 - 8 * i));
+			digest[Long.BYTES + i] = (byte) (low >>> (56 - 8 * i));
+		}
+		return digest;
+	}
+
+	private static long toLong(byte[] digest, int offset) {
+		long value = 0;
+		for(int i = offset; i < offset + Long.BYTES; i++) {
+			value = value << 8 | (digest[i] & 0xFF);
+		}
+		return value;
+	}
+
+	private static long mixK1(long k1) {
+		k1 *= C1;
+		k1 = Long.rotateLeft(k1, 31);
+		return k1 * C2;
+	}
+
+	private static long mixK2(long k2) {
+		k2 *= C2;
+		k2 = Long.rotateLeft(k2, 33);
+		return k2 * C1;
+	}
+
+	private static long fmix(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+}
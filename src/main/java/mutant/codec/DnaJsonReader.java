@@ -0,0 +1,309 @@
+package mutant.codec;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import mutant.domain.PackedDna;
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+
+/**
+ * This class reads a DNA from its JSON form, <code>{"dna": [...]}</code>,
+ * straight into a <code>PackedDna</code>.
+ *
+ * The body is read token by token with a Jackson <code>JsonParser</code>:
+ * the <code>dna</code> field is matched ignoring its case, and the bases of
+ * each row are validated and packed from the parser buffer, in any case,
+ * without creating a <code>String</code> per row.
+ *
+ * The return codes are the same of <code>NitrogenousBases</code>, with the
+ * same precedence: a wrong number of rows is reported before a row of wrong
+ * length, which is reported before an invalid base. Input that can not be
+ * valid is refused as soon as it is seen: a syntax error, a first row bigger
+ * than the maximum size or more rows than bases in the first row. The packed
+ * rows grow as they are read, so a body with a long first row and nothing
+ * else does not take the memory of a whole square DNA. All the methods are
+ * stateless.
+ *
+ * Since the parser holds a whole string before its length is known, the
+ * body read from a stream is limited: to a row of the maximum size until
+ * the first row is read, then to N rows of N bases. A longer body is
+ * refused as too big once the limit is passed, without being read further.
+ */
+public final class DnaJsonReader {
+
+	/**
+	 * The default biggest number of bases of a row.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 16384;
+
+	/**
+	 * DNA field used to get information from the JSON object.
+	 */
+	private static final String DNA = "DNA";
+
+	private static final JsonFactory FACTORY = new JsonFactory();
+
+	/**
+	 * The number of rows packed before the packed rows first grow.
+	 */
+	private static final int INITIAL_ROWS = 16;
+
+	/**
+	 * The bytes a row may take besides its bases: quotes, comma and spaces.
+	 */
+	private static final int ROW_OVERHEAD = 16;
+
+	/**
+	 * The bytes a body may take besides its rows: the other fields and what
+	 * the parser reads ahead.
+	 */
+	private static final int BODY_OVERHEAD = 1 << 16;
+
+	private DnaJsonReader() {
+	}
+
+	/**
+	 * This method reads a DNA from a JSON body.
+	 *
+	 * @param input the JSON body.
+	 * @param maxSize the biggest number of bases of a row.
+	 * @return the packed DNA.
+	 *
+	 * @throws IOException when the body can not be read or is not a JSON
+	 *     object with a <code>dna</code> array.
+	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when the
+	 *     DNA sequence is null, empty, too big or in a wrong format.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when the
+	 *     nitrogenous bases does not have the same length or when they are
+	 *     composed of characters different from A, T, C or G.
+	 */
+	public static PackedDna read(InputStream input, int maxSize) throws IOException, InvalidDnaException, InvalidNitrogenousBasesException {
+		return read(input, maxSize, size -> { });
+	}
+
+	/**
+	 * This method reads a DNA from a JSON body, telling the size of the
+	 * first row, which is the number of rows of a valid DNA, before any row
+	 * is packed. The listener may refuse the DNA by throwing an unchecked
+	 * exception, which is thrown by this method.
+	 *
+	 * @param input the JSON body.
+	 * @param maxSize the biggest number of bases of a row.
+	 * @param sizeListener called once with the size of the first row, when
+	 *     it is not bigger than <code>maxSize</code>.
+	 * @return the packed DNA.
+	 *
+	 * @throws IOException when the body can not be read or is not a JSON
+	 *     object with a <code>dna</code> array.
+	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when the
+	 *     DNA sequence is null, empty, too big or in a wrong format.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when the
+	 *     nitrogenous bases does not have the same length or when they are
+	 *     composed of characters different from A, T, C or G.
+	 */
+	public static PackedDna read(InputStream input, int maxSize, IntConsumer sizeListener) throws IOException, InvalidDnaException, InvalidNitrogenousBasesException {
+		LimitedInputStream limited = new LimitedInputStream(input, (long) maxSize + ROW_OVERHEAD + BODY_OVERHEAD);
+		try(JsonParser parser = FACTORY.createParser(limited)) {
+			if(parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new JsonParseException(parser, "DNA must be a JSON object.");
+			}
+			PackedDna dna = readObject(parser, maxSize, size -> {
+				limited.extend((long) size * (size + ROW_OVERHEAD) + BODY_OVERHEAD);
+				sizeListener.accept(size);
+			});
+			if(dna == null) {
+				throw new JsonParseException(parser, "DNA array not found.");
+			}
+			return dna;
+		} catch (LimitExceededException e) {
+			throw new InvalidDnaException(NitrogenousBases.RC_DNA_SIZE);
+		}
+	}
+
+	/**
+	 * This method reads a DNA from a JSON object. The parser must be at the
+	 * start of the object and is left at its end, unless the DNA is refused
+	 * before the object is fully read.
+	 *
+	 * @param parser the JSON parser.
+	 * @param maxSize the biggest number of bases of a row.
+	 * @return the packed DNA, or <code>null</code> when the object has no
+	 *     <code>dna</code> array.
+	 *
+	 * @throws IOException when the object can not be read.
+	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when the
+	 *     DNA sequence is null, empty, too big or in a wrong format.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when the
+	 *     nitrogenous bases does not have the same length or when they are
+	 *     composed of characters different from A, T, C or G.
+	 */
+	public static PackedDna readObject(JsonParser parser, int maxSize) throws IOException, InvalidDnaException, InvalidNitrogenousBasesException {
+		return readObject(parser, maxSize, size -> { });
+	}
+
+	private static PackedDna readObject(JsonParser parser, int maxSize, IntConsumer sizeListener) throws IOException, InvalidDnaException, InvalidNitrogenousBasesException {
+		PackedDna dna = null;
+		JsonToken token;
+		while((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+			JsonToken value = parser.nextToken();
+			if(dna == null && DNA.equalsIgnoreCase(parser.getCurrentName())) {
+				if(value == JsonToken.VALUE_NULL) {
+					throw new InvalidDnaException(NitrogenousBases.RC_DNA_NULL);
+				}
+				if(value == JsonToken.START_ARRAY) {
+					dna = readRows(parser, maxSize, sizeListener);
+					continue;
+				}
+			}
+			parser.skipChildren();
+		}
+		if(token != JsonToken.END_OBJECT) {
+			throw new JsonParseException(parser, "DNA object not closed.");
+		}
+		return dna;
+	}
+
+	/**
+	 * This method reads the rows of the DNA array, packing them while no
+	 * error is found and only measuring them afterwards, so the error with
+	 * the highest precedence is reported. The packed rows are doubled when
+	 * full, up to the size of the first row.
+	 */
+	private static PackedDna readRows(JsonParser parser, int maxSize, IntConsumer sizeListener) throws IOException, InvalidDnaException, InvalidNitrogenousBasesException {
+		int size = -1;
+		int rows = 0;
+		long[] words = null;
+		int rowWords = 0;
+		boolean wrongLength = false;
+		boolean invalidBases = false;
+
+		JsonToken token;
+		while((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+			if(token == null) {
+				throw new JsonParseException(parser, "DNA array not closed.");
+			}
+			boolean text = token == JsonToken.VALUE_STRING;
+			if(!text) {
+				parser.skipChildren();
+			}
+
+			if(size < 0) {
+				if(!text) {
+					throw new InvalidDnaException(NitrogenousBases.RC_DNA_FORMAT);
+				}
+				size = parser.getTextLength();
+				if(size > maxSize) {
+					throw new InvalidDnaException(NitrogenousBases.RC_DNA_SIZE);
+				}
+				sizeListener.accept(size);
+				rowWords = PackedDna.rowWords(size);
+				words = new long[Math.min(size, INITIAL_ROWS) * rowWords];
+			}
+			if(rows == size) {
+				throw new InvalidDnaException(NitrogenousBases.RC_DNA_FORMAT);
+			}
+
+			if(!text || parser.getTextLength() != size) {
+				wrongLength = true;
+			} else if(!wrongLength && !invalidBases) {
+				if((rows + 1) * rowWords > words.length) {
+					words = Arrays.copyOf(words, Math.min(size, rows * 2) * rowWords);
+				}
+				try {
+					DnaCodec.encodeRow(parser.getTextCharacters(), parser.getTextOffset(), size, words, rows * rowWords);
+				} catch (InvalidNitrogenousBasesException e) {
+					invalidBases = true;
+				}
+			}
+			rows++;
+		}
+
+		if(rows == 0) {
+			throw new InvalidDnaException(NitrogenousBases.RC_DNA_EMPTY);
+		}
+		if(rows != size) {
+			throw new InvalidDnaException(NitrogenousBases.RC_DNA_FORMAT);
+		}
+		if(wrongLength) {
+			throw new InvalidNitrogenousBasesException(NitrogenousBases.RC_NB_LENGTH);
+		}
+		if(invalidBases) {
+			throw new InvalidNitrogenousBasesException(NitrogenousBases.RC_NB_INVALID);
+		}
+		return new PackedDna(size, words);
+	}
+
+	/**
+	 * A stream that fails once more bytes than its limit are read.
+	 */
+	private static final class LimitedInputStream extends FilterInputStream {
+
+		private long limit;
+
+		private long count;
+
+		LimitedInputStream(InputStream input, long limit) {
+			super(input);
+			this.limit = limit;
+		}
+
+		/**
+		 * Sets the limit to the given number of bytes after the ones read.
+		 */
+		void extend(long bytes) {
+			limit = count + bytes;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int read = super.read();
+			if(read >= 0) {
+				count(1);
+			}
+			return read;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int read = super.read(buffer, offset, length);
+			if(read > 0) {
+				count(read);
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long bytes) throws IOException {
+			long skipped = super.skip(bytes);
+			count(skipped);
+			return skipped;
+		}
+
+		private void count(long bytes) throws LimitExceededException {
+			count += bytes;
+			if(count > limit) {
+				throw new LimitExceededException();
+			}
+		}
+	}
+
+	/**
+	 * Thrown when a body is longer than a DNA of its size may be.
+	 */
+	private static final class LimitExceededException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+	}
+}
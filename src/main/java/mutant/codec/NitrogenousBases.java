@@ -0,0 +1,142 @@
+package mutant.codec;
+
+import java.util.Arrays;
+
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+
+/**
+ * This class holds the rules used to validate a DNA sequence and its
+ * nitrogenous bases.
+ *
+ * All the methods are stateless, so they can be shared by every request
+ * without any synchronization.
+ */
+public final class NitrogenousBases {
+
+	/**
+	 * Return code used when DNA sequence is null.
+	 */
+	public static final String RC_DNA_NULL = "DNA sequence can not be null";
+
+	/**
+	 * Return code used when DNA sequence is empty.
+	 */
+	public static final String RC_DNA_EMPTY = "DNA sequence can not be empty";
+
+	/**
+	 * Return code used when DNA sequence does not have the same length as
+	 * the nitrogenous bases.
+	 */
+	public static final String RC_DNA_FORMAT = "DNA chain must have the same lenght of nitrogenous bases.";
+
+	/**
+	 * Return code used when DNA sequence is bigger than the accepted size.
+	 */
+	public static final String RC_DNA_SIZE = "DNA sequence is bigger than the accepted size.";
+
+	/**
+	 * Return code used when the nitrogenous bases are not in the same length.
+	 */
+	public static final String RC_NB_LENGTH = "DNA must contain nitrogenous bases with same length.";
+
+	/**
+	 * Return code used when the nitrogenous bases contains invalid characters.
+	 */
+	public static final String RC_NB_INVALID =  "Nitrogenous bases should be composed by A, T, C, G bases only.";
+
+	/**
+	 * Code returned by {@link #code(int)} when the character is not a valid
+	 * nitrogenous base.
+	 */
+	public static final byte INVALID = -1;
+
+	/**
+	 * Lookup table from ASCII character to the base code: A = 0, C = 1,
+	 * G = 2 and T = 3. Lower case bases are accepted as well.
+	 */
+	private static final byte[] CODES = new byte[128];
+
+	static {
+		Arrays.fill(CODES, INVALID);
+		CODES['A'] = CODES['a'] = 0;
+		CODES['C'] = CODES['c'] = 1;
+		CODES['G'] = CODES['g'] = 2;
+		CODES['T'] = CODES['t'] = 3;
+	}
+
+	private NitrogenousBases() {
+	}
+
+	/**
+	 * This method converts a character into its nitrogenous base code.
+	 *
+	 * @param base the character to be converted.
+	 * @return the base code between 0 and 3, or {@link #INVALID} when the
+	 *     character is not A, T, C or G.
+	 */
+	public static byte code(int base) {
+		return base >= 0 && base < CODES.length ? CODES[base] : INVALID;
+	}
+
+	/**
+	 * This method verifies if the DNA sequence is not null, not empty and
+	 * has as many sequences as nitrogenous bases in the first sequence.
+	 *
+	 * @param dnaSequence the DNA sequence to be validated.
+	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when the
+	 *     DNA sequence is null, empty or in a wrong format.
+	 */
+	public static void validateDna(String[] dnaSequence) throws InvalidDnaException {
+		if(null == dnaSequence) {
+			throw new InvalidDnaException(RC_DNA_NULL);
+		}
+
+		if(dnaSequence.length == 0) {
+			throw new InvalidDnaException(RC_DNA_EMPTY);
+		}
+
+		if(null == dnaSequence[0] || dnaSequence.length != dnaSequence[0].length()) {
+			throw new InvalidDnaException(RC_DNA_FORMAT);
+		}
+	}
+
+	/**
+	 * This method verifies if all the sequences have the same length, without
+	 * looking at their content.
+	 *
+	 * @param dnaSequence the DNA sequence to be validated.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when the
+	 *     nitrogenous bases does not have the same length.
+	 */
+	public static void validateLength(String[] dnaSequence) throws InvalidNitrogenousBasesException {
+		int size = dnaSequence[0].length();
+		for(String sequence : dnaSequence) {
+			if(null == sequence || sequence.length() != size) {
+				throw new InvalidNitrogenousBasesException(RC_NB_LENGTH);
+			}
+		}
+	}
+
+	/**
+	 * This method verifies if the given nitrogenous bases have the same
+	 * length and are composed of A, T, C or G only.
+	 *
+	 * @param dnaSequence the DNA sequence to be validated.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when the
+	 *     nitrogenous bases does not have the same length or when they are
+	 *     composed of characters different from A, T, C or G.
+	 */
+	public static void validateNitrogenousBases(String[] dnaSequence) throws InvalidNitrogenousBasesException {
+		validateLength(dnaSequence);
+		for(String sequence : dnaSequence) {
+			for(int i = 0; i < sequence.length(); i++) {
+				if(code(sequence.charAt(i)) == INVALID) {
+					throw new InvalidNitrogenousBasesException(RC_NB_INVALID);
+				}
+			}
+		}
+	}
+}
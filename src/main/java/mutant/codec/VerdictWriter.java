@@ -0,0 +1,163 @@
+package mutant.codec;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Locale;
+
+import mutant.storage.VerdictVisitor;
+
+/**
+ * This class writes the verdicts visited from a <code>HumanStore</code> as
+ * they arrive, one line per human, in NDJSON:
+ *
+ * <pre>
+ * {"id":"0f3a...","mutant":true,"created_at":"2018-10-14T00:00:00Z"}
+ * </pre>
+ *
+ * or in CSV, after a header line:
+ *
+ * <pre>
+ * id,mutant,created_at
+ * 0f3a...,true,2018-10-14T00:00:00Z
+ * </pre>
+ *
+ * The id is the DNA digest in hexadecimal, and the registration moment is
+ * <code>null</code> in NDJSON and empty in CSV for the humans registered
+ * before it was recorded. Every line is built in the same buffer, so the
+ * memory used does not depend on the number of verdicts written.
+ *
+ * An error of the output is thrown as an <code>UncheckedIOException</code>,
+ * since the visitor can not throw it.
+ */
+public class VerdictWriter implements VerdictVisitor, Flushable {
+
+	/**
+	 * The formats of the lines.
+	 */
+	public enum Format {
+		NDJSON("application/x-ndjson"), CSV("text/csv");
+
+		private final String contentType;
+
+		private Format(String contentType) {
+			this.contentType = contentType;
+		}
+
+		/**
+		 * This method gets the content type of a response in this format.
+		 *
+		 * @return the media type.
+		 */
+		public String getContentType() {
+			return contentType;
+		}
+
+		/**
+		 * This method gets the extension of a file in this format.
+		 *
+		 * @return the extension, without the dot.
+		 */
+		public String getExtension() {
+			return name().toLowerCase(Locale.ROOT);
+		}
+	}
+
+	/**
+	 * The header line of the CSV format.
+	 */
+	public static final String CSV_HEADER = "id,mutant,created_at\n";
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final Writer output;
+
+	private final Format format;
+
+	/**
+	 * The line being written, big enough for any of them.
+	 */
+	private final StringBuilder line = new StringBuilder(128);
+
+	private final char[] chars = new char[128];
+
+	private long count;
+
+	/**
+	 * Creates a writer and writes the header of the format, if any.
+	 *
+	 * @param output the stream the lines are written to, as UTF-8.
+	 * @param format the format of the lines.
+	 * @throws IOException when the header can not be written.
+	 */
+	public VerdictWriter(OutputStream output, Format format) throws IOException {
+		this.output = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+		this.format = format;
+		if(format == Format.CSV) {
+			this.output.write(CSV_HEADER);
+		}
+	}
+
+	/**
+	 * This method writes the line of a verdict.
+	 */
+	@Override
+	public void visit(byte[] id, boolean mutant, Instant createdAt) {
+		line.setLength(0);
+		if(format == Format.NDJSON) {
+			line.append("{\"id\":\"");
+			appendHex(id);
+			line.append("\",\"mutant\":").append(mutant).append(",\"created_at\":");
+			if(createdAt == null) {
+				line.append("null");
+			} else {
+				line.append('"').append(createdAt).append('"');
+			}
+			line.append("}\n");
+		} else {
+			appendHex(id);
+			line.append(',').append(mutant).append(',');
+			if(createdAt != null) {
+				line.append(createdAt);
+			}
+			line.append('\n');
+		}
+		try {
+			line.getChars(0, line.length(), chars, 0);
+			output.write(chars, 0, line.length());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		count++;
+	}
+
+	private void appendHex(byte[] id) {
+		for(byte value : id) {
+			line.append(HEX[value >> 4 & 0xF]).append(HEX[value & 0xF]);
+		}
+	}
+
+	/**
+	 * This method writes the lines still buffered to the stream.
+	 *
+	 * @throws IOException when the lines can not be written.
+	 */
+	@Override
+	public void flush() throws IOException {
+		output.flush();
+	}
+
+	/**
+	 * This method gets the number of verdicts written.
+	 *
+	 * @return the number of lines, the header excluded.
+	 */
+	public long getCount() {
+		return count;
+	}
+}
@@ -0,0 +1,414 @@
+package mutant.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import mutant.codec.DnaJsonReader;
+import mutant.codec.NitrogenousBases;
+import mutant.domain.Human;
+import mutant.domain.PackedDna;
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+import mutant.importer.ImportPipeline;
+import mutant.service.HumanService;
+import mutant.stats.Verdict;
+
+/**
+ * Batch controller responsible to handle /mutant/batch requests.
+ *
+ * The body is either a JSON array or a stream of newline delimited JSON
+ * objects, each one with the same <code>dna</code> field of /mutant, read
+ * with the <code>DnaJsonReader</code>. The DNAs are read in chunks that are
+ * verified and saved concurrently, each chunk with a single grouped write,
+ * and one NDJSON line is sent back for every DNA as soon as its chunk is
+ * done:
+ *
+ * <pre>
+ * {"index":0,"mutant":true}
+ * {"index":1,"error":"Nitrogenous bases should be composed by A, T, C, G bases only."}
+ * </pre>
+ *
+ * The lines follow the order the chunks finish, so the <code>index</code>
+ * of the DNA in the request is always sent. Only a limited number of chunks
+ * is kept in flight, so the body is read as fast as it is verified.
+ */
+@RestController
+public class MutantBatchController {
+
+	/**
+	 * The content type of the response, newline delimited JSON.
+	 */
+	public static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+	/**
+	 * The error sent when the body is not valid JSON, after which the
+	 * request is no longer read.
+	 */
+	public static final String RC_JSON_INVALID = "Batch body must be a JSON array or newline delimited JSON objects.";
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private static final JsonFactory FACTORY = MAPPER.getFactory();
+
+	@Autowired
+	private HumanService humanService;
+
+	/**
+	 * The biggest number of nitrogenous bases of a row accepted by /mutant.
+	 */
+	@Value("${mutant.detection.max-size:" + DnaJsonReader.DEFAULT_MAX_SIZE + "}")
+	private int maxSize = DnaJsonReader.DEFAULT_MAX_SIZE;
+
+	/**
+	 * The number of DNAs verified and saved together.
+	 */
+	@Value("${mutant.batch.chunk-size:64}")
+	private int chunkSize = 64;
+
+	/**
+	 * The number of threads verifying the chunks of all the batches.
+	 */
+	@Value("${mutant.batch.threads:0}")
+	private int threads;
+
+	private ExecutorService executor;
+
+	/**
+	 * The number of threads of the validate and of the detect stages of an
+	 * import, 0 for the number of processors.
+	 */
+	@Value("${mutant.import.threads:0}")
+	private int importThreads;
+
+	/**
+	 * The number of records passed at a time between the stages of an
+	 * import.
+	 */
+	@Value("${mutant.import.chunk-size:" + ImportPipeline.DEFAULT_CHUNK_SIZE + "}")
+	private int importChunkSize = ImportPipeline.DEFAULT_CHUNK_SIZE;
+
+	/**
+	 * The number of chunks waiting between two stages of an import.
+	 */
+	@Value("${mutant.import.queue-capacity:" + ImportPipeline.DEFAULT_QUEUE_CAPACITY + "}")
+	private int importQueueCapacity = ImportPipeline.DEFAULT_QUEUE_CAPACITY;
+
+	/**
+	 * The biggest number of bytes of a record of an import.
+	 */
+	@Value("${mutant.import.max-record-bytes:" + ImportPipeline.DEFAULT_MAX_RECORD_BYTES + "}")
+	private int importMaxRecordBytes = ImportPipeline.DEFAULT_MAX_RECORD_BYTES;
+
+	/**
+	 * The biggest number of bytes of the records read and not saved yet by
+	 * an import.
+	 */
+	@Value("${mutant.import.max-bytes:" + ImportPipeline.DEFAULT_MAX_BYTES + "}")
+	private int importMaxBytes = ImportPipeline.DEFAULT_MAX_BYTES;
+
+	/**
+	 * The seconds a client refused while another import runs is told to
+	 * wait.
+	 */
+	@Value("${mutant.admission.retry-after:1}")
+	private int retryAfter = 1;
+
+	/**
+	 * Whether an import is running, since each one takes its own threads and
+	 * up to <code>mutant.import.max-bytes</code> of memory.
+	 */
+	private final AtomicBoolean importing = new AtomicBoolean();
+
+	@PostConstruct
+	public void start() {
+		int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		executor = Executors.newFixedThreadPool(poolSize);
+		threads = poolSize;
+	}
+
+	@PreDestroy
+	public void stop() {
+		executor.shutdown();
+	}
+
+	@RequestMapping(value = "/mutant/batch", method = RequestMethod.POST)
+	public void batch(InputStream body, HttpServletResponse response) throws IOException, InterruptedException {
+		response.setContentType(APPLICATION_NDJSON);
+		OutputStream output = response.getOutputStream();
+
+		CompletionService<List<ObjectNode>> completion = new ExecutorCompletionService<>(executor);
+		int inFlight = 0;
+
+		try(JsonParser parser = FACTORY.createParser(body)) {
+			BatchReader reader = new BatchReader(parser);
+			while(!reader.isFinished()) {
+				Chunk chunk = reader.readChunk();
+				if(!chunk.lines.isEmpty()) {
+					completion.submit(() -> verify(chunk));
+					inFlight++;
+				}
+
+				// keeps at most two chunks per thread waiting
+				while(inFlight >= 2 * threads) {
+					write(completion.take(), output);
+					inFlight--;
+				}
+			}
+
+			for(; inFlight > 0; inFlight--) {
+				write(completion.take(), output);
+			}
+			if(reader.isInvalid()) {
+				List<ObjectNode> error = new ArrayList<>();
+				error.add(line(reader.index).put("error", RC_JSON_INVALID));
+				write(error, output);
+			}
+		}
+	}
+
+	/**
+	 * This method imports a file of DNAs with an <code>ImportPipeline</code>:
+	 * one JSON object per line or packed DNAs, compressed with gzip or not.
+	 * Nothing is sent for each DNA; once they are all saved the counts and
+	 * the rate of every stage are sent:
+	 *
+	 * <pre>
+	 * {"format":"NDJSON","records":1000000,"invalid":12,"mutants":400000,"failed":0,"elapsed_ms":9100,
+	 *     "stages":[{"name":"read","records":1000000,"busy_ms":2100,"rate":110000.0},...]}
+	 * </pre>
+	 *
+	 * Only one import runs at a time; another one is answered at once with
+	 * 503 and <code>Retry-After</code>.
+	 *
+	 * @param body the DNAs.
+	 * @return the report of the import, or 503 when another one is running.
+	 * @throws InterruptedException when interrupted while importing.
+	 */
+	@RequestMapping(value = "/mutant/import", method = RequestMethod.POST)
+	public ResponseEntity<?> importDnas(InputStream body) throws InterruptedException {
+		if(!importing.compareAndSet(false, true)) {
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+					.header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+					.build();
+		}
+		int poolSize = importThreads > 0 ? importThreads : Runtime.getRuntime().availableProcessors();
+		ImportPipeline pipeline = new ImportPipeline(humanService, poolSize, importChunkSize, importQueueCapacity, maxSize, importMaxRecordBytes, importMaxBytes);
+		try {
+			pipeline.run(body);
+		} finally {
+			importing.set(false);
+		}
+
+		ObjectNode report = MAPPER.createObjectNode();
+		report.put("format", pipeline.getFormat() == null ? null : pipeline.getFormat().name());
+		report.put("records", pipeline.getStages().get(0).getRecords());
+		report.put("invalid", pipeline.getInvalid());
+		report.put("mutants", pipeline.getMutants());
+		report.put("failed", pipeline.getFailed());
+		report.put("elapsed_ms", pipeline.getElapsed());
+		if(pipeline.getError() != null) {
+			report.put("error", pipeline.getError());
+		}
+		ArrayNode stages = report.putArray("stages");
+		for(ImportPipeline.Stage stage : pipeline.getStages()) {
+			stages.addObject()
+					.put("name", stage.getName())
+					.put("records", stage.getRecords())
+					.put("busy_ms", stage.getBusyMillis())
+					.put("rate", Math.round(stage.getRate() * 10) / 10.0);
+		}
+		return ResponseEntity.status(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON).body(report);
+	}
+
+	/**
+	 * This method verifies and saves a chunk of DNAs.
+	 *
+	 * @param chunk the DNAs read, with their lines.
+	 * @return the lines to be sent, one per DNA.
+	 */
+	private List<ObjectNode> verify(Chunk chunk) {
+		PackedDna[] dnas = chunk.dnas.toArray(new PackedDna[chunk.dnas.size()]);
+		boolean[] verdicts = humanService.isMutantBatch(dnas);
+
+		List<Human> humans = new ArrayList<>(dnas.length);
+		for(int k = 0; k < dnas.length; k++) {
+			if(dnas[k] != null) {
+				Human human = new Human();
+				human.setId(humanService.createDnaId(dnas[k]));
+				human.setMutant(verdicts[k]);
+				human.setDna(dnas[k]);
+				humans.add(human);
+				chunk.lines.get(k).put("mutant", verdicts[k]);
+				humanService.recordVerdict(verdicts[k] ? Verdict.MUTANT : Verdict.HUMAN, -1);
+			} else {
+				humanService.recordVerdict(Verdict.INVALID, -1);
+			}
+		}
+		if(!humans.isEmpty()) {
+			humanService.saveAll(humans);
+		}
+		return chunk.lines;
+	}
+
+	private static ObjectNode line(int index) {
+		return MAPPER.createObjectNode().put("index", index);
+	}
+
+	private static void write(List<ObjectNode> lines, OutputStream output) throws IOException {
+		for(ObjectNode line : lines) {
+			output.write(MAPPER.writeValueAsBytes(line));
+			output.write('\n');
+		}
+		output.flush();
+	}
+
+	private static void write(Future<List<ObjectNode>> chunk, OutputStream output) throws IOException, InterruptedException {
+		try {
+			write(chunk.get(), output);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * The DNAs of a chunk, with the line of each one. The DNAs that could not
+	 * be read are <code>null</code> and already have an error in their line.
+	 */
+	private static final class Chunk {
+
+		private final List<PackedDna> dnas = new ArrayList<>();
+
+		private final List<ObjectNode> lines = new ArrayList<>();
+	}
+
+	/**
+	 * The reading of a batch body, either a JSON array or a sequence of JSON
+	 * objects, one chunk at a time.
+	 */
+	private final class BatchReader {
+
+		private final JsonParser parser;
+
+		private final boolean array;
+
+		private JsonToken token;
+
+		private int index;
+
+		private boolean invalid;
+
+		BatchReader(JsonParser parser) throws IOException {
+			this.parser = parser;
+			try {
+				token = parser.nextToken();
+			} catch (JsonProcessingException e) {
+				invalid = true;
+			}
+			array = token == JsonToken.START_ARRAY;
+			if(array) {
+				next();
+			}
+		}
+
+		boolean isFinished() {
+			return invalid || token == null || (array && token == JsonToken.END_ARRAY);
+		}
+
+		boolean isInvalid() {
+			return invalid;
+		}
+
+		/**
+		 * Reads the DNAs until the chunk is full, the body ends or a syntax
+		 * error is found.
+		 */
+		Chunk readChunk() throws IOException {
+			Chunk chunk = new Chunk();
+			while(chunk.lines.size() < chunkSize && !isFinished()) {
+				ObjectNode line = line(index);
+				PackedDna dna = readDna(line);
+				if(invalid) {
+					break;
+				}
+				chunk.lines.add(line);
+				chunk.dnas.add(dna);
+				index++;
+				next();
+			}
+			return chunk;
+		}
+
+		/**
+		 * Reads the current DNA, leaving the parser at its last token. An
+		 * invalid DNA is skipped and its error is put in the line.
+		 */
+		private PackedDna readDna(ObjectNode line) throws IOException {
+			try {
+				if(token != JsonToken.START_OBJECT) {
+					parser.skipChildren();
+					line.put("error", NitrogenousBases.RC_DNA_NULL);
+					return null;
+				}
+
+				JsonStreamContext parent = parser.getParsingContext().getParent();
+				try {
+					PackedDna dna = DnaJsonReader.readObject(parser, maxSize);
+					if(dna == null) {
+						line.put("error", NitrogenousBases.RC_DNA_NULL);
+					}
+					return dna;
+				} catch (InvalidDnaException | InvalidNitrogenousBasesException e) {
+					line.put("error", e.getMessage());
+					while(parser.getParsingContext() != parent && parser.nextToken() != null) {
+						// skips the rest of the refused DNA
+					}
+					return null;
+				}
+			} catch (JsonProcessingException e) {
+				invalid = true;
+				return null;
+			}
+		}
+
+		private void next() throws IOException {
+			try {
+				token = parser.nextToken();
+			} catch (JsonProcessingException e) {
+				invalid = true;
+			}
+		}
+	}
+}
@@ -1,40 +1,82 @@
 package mutant.controller;
 
-import java.util.List;
-import java.util.Map;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.json.JacksonJsonParser;
-import org.springframework.boot.json.JsonParseException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import mutant.admission.WeightedAdmission;
+import mutant.codec.DnaBinaryReader;
+import mutant.codec.DnaCodec;
+import mutant.codec.DnaJsonReader;
+import mutant.codec.VerdictWriter;
 import mutant.domain.Human;
+import mutant.domain.PackedDna;
+import mutant.domain.StatsSnapshot;
 import mutant.exception.InvalidDnaException;
 import mutant.exception.InvalidNitrogenousBasesException;
+import mutant.reprocess.ReprocessingJob;
 import mutant.service.HumanService;
+import mutant.stats.Verdict;
+import mutant.stats.VerdictTimeSeries;
 
 /**
  * Mutant controller responsible to handle /mutant requests.
  * 
+ * A DNA whose verdict is cached by the <code>HumanService</code> is
+ * answered right after being read, without being verified or saved again.
+ * 
+ * Besides JSON, /mutant accepts the binary formats of
+ * <code>DnaBinaryReader</code> as <code>application/octet-stream</code>.
+ * 
+ * A DNA is read and verified by a bounded pool of threads, not by the
+ * thread of the request. Before that it is admitted by a
+ * <code>WeightedAdmission</code> according to the number of bases it
+ * declares, the size of its header for a binary DNA or the length of the
+ * body for a JSON one, which is at least N², or a row for a chunked JSON
+ * one. A JSON DNA is charged again with exactly N² as soon as its first row
+ * is read, since a short body may declare a big DNA and a long one may hold
+ * a small DNA. When the budget is taken the request is answered with 503 and
+ * <code>Retry-After</code>.
+ * 
  * @author Hélio De Rosa Junior
  */
 @RestController
 public class MutantController {
 
-	/**
-	 * DNA constant used to get information from post data.
-	 */
-	private static final String DNA = "DNA";
-	
 	/**
 	 * Mutant service class autowired to the controller, responsible to
 	 * validate is user is a mutant or not.
@@ -42,68 +84,366 @@ public class MutantController {
 	@Autowired
 	private HumanService humanService;
 	
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	
+	/**
+	 * The biggest number of nitrogenous bases of a row accepted by /mutant.
+	 */
+	@Value("${mutant.detection.max-size:" + DnaJsonReader.DEFAULT_MAX_SIZE + "}")
+	private int maxSize = DnaJsonReader.DEFAULT_MAX_SIZE;
+	
+	/**
+	 * The default biggest number of bases verified at the same time.
+	 */
+	public static final long DEFAULT_ADMISSION_BUDGET = 1L << 26;
+	
+	/**
+	 * The biggest number of bases of the DNAs read and verified at the same
+	 * time by /mutant.
+	 */
+	@Value("${mutant.admission.max-bases:" + DEFAULT_ADMISSION_BUDGET + "}")
+	private long admissionBudget = DEFAULT_ADMISSION_BUDGET;
+	
+	/**
+	 * The seconds a client refused by the admission is told to wait.
+	 */
+	@Value("${mutant.admission.retry-after:1}")
+	private int retryAfter = 1;
+	
+	/**
+	 * The number of threads verifying the DNAs of /mutant, 0 for the number
+	 * of processors.
+	 */
+	@Value("${mutant.async.threads:0}")
+	private int threads;
+	
+	/**
+	 * The number of DNAs admitted waiting for a thread; one more is refused
+	 * like one over the budget.
+	 */
+	@Value("${mutant.async.queue-capacity:1024}")
+	private int queueCapacity = 1024;
+	
+	private WeightedAdmission admission;
+	
+	private ExecutorService executor;
+	
+	@PostConstruct
+	public void start() {
+		admission = new WeightedAdmission(admissionBudget);
+		int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), task -> {
+			Thread thread = new Thread(task, "mutant-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	@PreDestroy
+	public void stop() {
+		executor.shutdown();
+	}
+	
+	/**
+	 * This method gets the admission of /mutant.
+	 * 
+	 * @return the weighted admission.
+	 */
+	public WeightedAdmission getAdmission() {
+		return admission;
+	}
+	
     @RequestMapping(value = "/mutant", method = RequestMethod.POST)
-    public ResponseEntity<?> mutant(@RequestBody String bodyContent) {
+    public DeferredResult<ResponseEntity<?>> mutant(InputStream body, HttpServletRequest request) {
+		// a JSON DNA of N rows takes at least N² bytes, and a chunked one is
+		// charged with a row until its first row is read
+		long declared = request.getContentLengthLong();
+		return submit(body, declared >= 0 ? declared : maxSize, false);
+    }
+    
+    /**
+     * This method verifies a DNA sent in a binary format, with a header and
+     * the rows packed in 2 bits or in 1 byte per base, see
+     * <code>DnaBinaryReader</code>. The answers are the same of the JSON
+     * form.
+     * 
+     * @param body the binary DNA.
+     * @return 200 for a mutant, 403 for a human or an invalid DNA, 503 when
+     *     the admission refuses it.
+     * @throws IOException when the header can not be read.
+     */
+    @RequestMapping(value = "/mutant", method = RequestMethod.POST, consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public DeferredResult<ResponseEntity<?>> mutantBinary(InputStream body) throws IOException {
+		PushbackInputStream input = new PushbackInputStream(body, DnaCodec.PACKED_HEADER);
+		long size = DnaBinaryReader.peekSize(input);
+		return submit(input, size * size, true);
+    }
+    
+    /**
+     * This method admits a DNA by the number of bases it declares and
+     * verifies it on the pool, or answers 503 at once when the budget or the
+     * queue of the pool is full.
+     */
+    private DeferredResult<ResponseEntity<?>> submit(InputStream body, long declared, boolean binary) {
+		DeferredResult<ResponseEntity<?>> result = new DeferredResult<>();
+		long weight = admission.weigh(declared);
+		if(!admission.tryAcquire(weight)) {
+			result.setResult(overloaded());
+			return result;
+		}
+		try {
+			executor.execute(() -> {
+				// the weight taken, set to N² once a JSON DNA shows its first row
+				long[] charged = {weight};
+				ResponseEntity<?> response = null;
+				Exception error = null;
+				try {
+					response = mutant(body, binary, charged);
+				} catch (IOException | RuntimeException e) {
+					error = e;
+				} finally {
+					admission.release(charged[0]);
+				}
+				// published once the weight is back, so the next request finds it
+				if(error != null) {
+					result.setErrorResult(error);
+				} else {
+					result.setResult(response);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			admission.release(weight);
+			result.setResult(overloaded());
+		}
+		return result;
+    }
+    
+    private ResponseEntity<?> overloaded() {
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+				.header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+				.build();
+    }
+    
+    private ResponseEntity<?> mutant(InputStream body, boolean binary, long[] charged) throws IOException {
+		long start = System.nanoTime();
+		Verdict verdict = Verdict.INVALID;
 		try {
-			String[] dna = paseDnaFromJson(bodyContent);
-			if(humanService.isMutant(dna)) {
+			PackedDna dna = binary ? DnaBinaryReader.read(body, maxSize) : DnaJsonReader.read(body, maxSize, size -> {
+				long weight = admission.recharge(charged[0], (long) size * size);
+				if(weight < 0) {
+					throw new OverloadedException();
+				}
+				charged[0] = weight;
+			});
+			byte[] id = humanService.createDnaId(dna);
+			Optional<Boolean> cached = humanService.findCachedVerdict(id);
+			boolean mutant;
+			if(cached.isPresent()) {
+				mutant = cached.get();
+			} else {
+				mutant = humanService.isMutant(dna);
 				Human human = new Human();
-				human.setId(humanService.createDnaId());
-				human.setMutant(true);
+				human.setId(id);
+				human.setMutant(mutant);
+				human.setDna(dna);
 				humanService.save(human);
+				humanService.cacheVerdict(id, mutant);
+			}
+			verdict = mutant ? Verdict.MUTANT : Verdict.HUMAN;
+			if(mutant) {
 				return new ResponseEntity<>(HttpStatus.OK);
 			} else {
-				Human human = new Human();
-				human.setId(humanService.createDnaId());
-				human.setMutant(false);
-				humanService.save(human);
 				return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
 			}
 		} catch (InvalidDnaException | InvalidNitrogenousBasesException e) {
 			return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage());
+		} catch (JsonProcessingException e) {
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getOriginalMessage());
+		} catch (OverloadedException e) {
+			verdict = null;
+			return overloaded();
+		} finally {
+			if(verdict != null) {
+				humanService.recordVerdict(verdict, System.nanoTime() - start);
+			}
+		}
+    }
+    
+    /**
+     * Thrown when the N² of a JSON DNA, known from its first row, does not
+     * fit in what is left of the admission budget.
+     */
+    private static final class OverloadedException extends RuntimeException {
+		
+		private static final long serialVersionUID = 1L;
+		
+		OverloadedException() {
+			super(null, null, false, false);
 		}
     }
     
     @RequestMapping(value = "/stats", method = RequestMethod.GET, produces="application/json; charset=UTF-8")
     public ResponseEntity<?> stats() {
-		List<Human> list = humanService.findAll();
+		StatsSnapshot snapshot = humanService.getStatsSnapshot();
+		if(snapshot.getStats().getHumanCount() > 0) {
+			// a request with the same If-None-Match gets a 304 without body
+			return ResponseEntity.status(HttpStatus.OK)
+					.eTag(snapshot.getEtag())
+					.cacheControl(CacheControl.maxAge(humanService.getStatsInterval(), TimeUnit.MILLISECONDS))
+					.contentType(MediaType.APPLICATION_JSON)
+					.body(snapshot.getJson());
+		}
+		return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+    
+    /**
+     * This method gets the verdicts and the latencies of /mutant per second
+     * or per minute, the oldest first:
+     * 
+     * <pre>
+     * {"resolution":"minute","buckets":[{"start":1539475200000,"mutant":3,"human":5,"invalid":1,
+     *     "latency_ms":{"p50":0.639,"p90":1.279,"p99":2.559}}]}
+     * </pre>
+     * 
+     * The latencies are -1 in the buckets with no measure.
+     * 
+     * @param resolution <code>second</code> or <code>minute</code>.
+     * @param limit the number of buckets, up to the buckets kept.
+     * @return the buckets, or a bad request when the parameters are not
+     *     valid.
+     */
+    @RequestMapping(value = "/stats/timeseries", method = RequestMethod.GET, produces="application/json; charset=UTF-8")
+    public ResponseEntity<?> timeSeries(@RequestParam(defaultValue = "minute") String resolution, @RequestParam(defaultValue = "60") int limit) {
+		VerdictTimeSeries.Resolution bucketLength;
+		try {
+			bucketLength = VerdictTimeSeries.Resolution.valueOf(resolution.toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Resolution must be second or minute.");
+		}
+		if(limit < 1 || limit > bucketLength.getBuckets()) {
+			return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Limit must be between 1 and " + bucketLength.getBuckets() + ".");
+		}
 		
-		int countMutantDna = 0;
-		for(Human h : list) {
-			if(h.isMutant()) {
-				countMutantDna++;
-			}
+		ObjectNode response = MAPPER.createObjectNode();
+		response.put("resolution", bucketLength.name().toLowerCase(Locale.ROOT));
+		ArrayNode buckets = response.putArray("buckets");
+		for(VerdictTimeSeries.Bucket bucket : humanService.getTimeSeries(bucketLength, limit)) {
+			ObjectNode node = buckets.addObject();
+			node.put("start", bucket.getStart());
+			node.put("mutant", bucket.getCount(Verdict.MUTANT));
+			node.put("human", bucket.getCount(Verdict.HUMAN));
+			node.put("invalid", bucket.getCount(Verdict.INVALID));
+			ObjectNode latency = node.putObject("latency_ms");
+			latency.put("p50", bucket.getLatency(0.5));
+			latency.put("p90", bucket.getLatency(0.9));
+			latency.put("p99", bucket.getLatency(0.99));
+		}
+		return ResponseEntity.status(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON).body(response);
+    }
+    
+    /**
+     * This method streams the verdict of every DNA registered, one line per
+     * DNA, in NDJSON or CSV (see <code>VerdictWriter</code>). The rows are
+     * read from the store with a streaming cursor and written to the
+     * response as they arrive, so the heap used does not depend on the
+     * number of DNAs. The response is compressed with gzip when the client
+     * accepts it.
+     * 
+     * @param format <code>ndjson</code> or <code>csv</code>.
+     * @param acceptEncoding the encodings accepted by the client.
+     * @param response the response the lines are written to.
+     * @throws IOException when the response can not be written.
+     */
+    @RequestMapping(value = "/stats/export", method = RequestMethod.GET)
+    public void export(@RequestParam(defaultValue = "ndjson") String format,
+    		@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+    		HttpServletResponse response) throws IOException {
+		VerdictWriter.Format lineFormat;
+		try {
+			lineFormat = VerdictWriter.Format.valueOf(format.toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			response.sendError(HttpStatus.BAD_REQUEST.value(), "Format must be ndjson or csv.");
+			return;
 		}
-		float ratio = (float) (countMutantDna != 0 ? ((float)list.size()/countMutantDna) : 0);
 		
-		ObjectMapper mapper = new ObjectMapper();
-		ObjectNode response = mapper.createObjectNode();
-		response.put("count_mutant_dna", countMutantDna);
-		response.put("count_human_dna", list.size());
-		response.put("ratio", ratio);
-        
-		if(!list.isEmpty()) {
-			return ResponseEntity.status(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON).body(response);
+		response.setContentType(lineFormat.getContentType() + "; charset=UTF-8");
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"verdicts." + lineFormat.getExtension() + "\"");
+		response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+		OutputStream output = response.getOutputStream();
+		if(gzip) {
+			response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+			output = new GZIPOutputStream(output, 1 << 16);
+		}
+		
+		VerdictWriter writer = new VerdictWriter(output, lineFormat);
+		try {
+			humanService.forEachVerdict(writer);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		writer.flush();
+		if(gzip) {
+			((GZIPOutputStream) output).finish();
 		}
-		return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
-
+    
     /**
-     * This method parses the DNA received from post request and return it
-     * as a <code>String</code> array for further processing.
+     * This method starts verifying again every DNA kept with the current
+     * detection policy, resuming the checkpoint of an unfinished
+     * reprocessing with the same policy.
      * 
-     * @param json the JSON with DNA data to be parsed.
-     * @return a <code>String</code> array with DNA parsed data.
+     * @return the progress of the job started, or a conflict with the
+     *     progress of the job already running.
      */
-    public String[] paseDnaFromJson(String json) {
-    	JacksonJsonParser parser = new JacksonJsonParser();
-    	Map<String, Object> parsed = parser.parseMap(json.toUpperCase());
-
-        if (!parsed.containsKey(DNA)) {
-            throw new JsonParseException();
-        }
-
-        List<String> dnaSequence = (List<String>) parsed.get(DNA);
-        return dnaSequence.toArray(new String[]{});
+    @RequestMapping(value = "/reprocess", method = RequestMethod.POST, produces="application/json; charset=UTF-8")
+    public ResponseEntity<?> startReprocessing() {
+		Optional<ReprocessingJob> started = humanService.startReprocessing();
+		if(started.isPresent()) {
+			return ResponseEntity.status(HttpStatus.ACCEPTED).contentType(MediaType.APPLICATION_JSON).body(progress(started.get()));
+		}
+		Optional<ReprocessingJob> running = humanService.getReprocessing();
+		return ResponseEntity.status(HttpStatus.CONFLICT).contentType(MediaType.APPLICATION_JSON)
+				.body(running.isPresent() ? progress(running.get()) : MAPPER.createObjectNode());
+    }
+    
+    /**
+     * This method gets the progress of the last reprocessing started:
+     * 
+     * <pre>
+     * {"status":"RUNNING","resumed":false,"required_sequences":2,"sequence_length":4,
+     *     "processed":12000,"changed":310,"total":50000,"elapsed_ms":2100,"rate":5714.3}
+     * </pre>
+     * 
+     * The <code>rate</code> is the DNAs verified per second by this job,
+     * and the <code>error</code> is sent when the job failed.
+     * 
+     * @return the progress, or no content when no reprocessing was started.
+     */
+    @RequestMapping(value = "/reprocess", method = RequestMethod.GET, produces="application/json; charset=UTF-8")
+    public ResponseEntity<?> reprocessing() {
+		Optional<ReprocessingJob> job = humanService.getReprocessing();
+		if(!job.isPresent()) {
+			return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+		}
+		return ResponseEntity.status(HttpStatus.OK).contentType(MediaType.APPLICATION_JSON).body(progress(job.get()));
+    }
+    
+    private static ObjectNode progress(ReprocessingJob job) {
+		ObjectNode progress = MAPPER.createObjectNode();
+		progress.put("status", job.getStatus().name());
+		progress.put("resumed", job.isResumed());
+		progress.put("required_sequences", job.getPolicy().getRequiredSequences());
+		progress.put("sequence_length", job.getPolicy().getSequenceLength());
+		progress.put("processed", job.getProcessed());
+		progress.put("changed", job.getChanged());
+		progress.put("total", job.getTotal());
+		long elapsed = job.getElapsed();
+		progress.put("elapsed_ms", elapsed);
+		progress.put("rate", elapsed == 0 ? 0 : Math.round(job.getVerified() * 10000.0 / elapsed) / 10.0);
+		if(job.getError() != null) {
+			progress.put("error", job.getError());
+		}
+		return progress;
     }
 }
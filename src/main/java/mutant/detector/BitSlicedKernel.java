@@ -0,0 +1,207 @@
+package mutant.detector;
+
+import mutant.domain.PackedDna;
+
+/**
+ * This class verifies up to 64 DNAs of the same size at once.
+ *
+ * The DNAs are transposed into a bit-sliced layout: each cell of the matrix
+ * has two <code>long</code> planes holding the low and the high bit of the
+ * base code, and bit k of every plane belongs to the DNA k of the batch. The
+ * packed rows of the 64 DNAs are turned into planes with a 64 x 64 bit
+ * matrix transpose. The equality between two cells is then computed for the
+ * 64 DNAs with three operations, and the run lengths and sequence counters
+ * are kept as bit planes as well, so every step of the scan advances all the
+ * lanes.
+ *
+ * The counting follows {@link DnaScanner}: a sequence is counted every time
+ * a run reaches a multiple of four. All the methods are stateless.
+ */
+public final class BitSlicedKernel {
+
+	/**
+	 * The number of DNAs verified by a single pass.
+	 */
+	public static final int LANES = 64;
+
+	/**
+	 * The biggest DNA size worth verifying in batch. Bigger DNAs find their
+	 * sequences early and are better served by {@link BitboardKernel}.
+	 */
+	public static final int MAX_SIZE = 16;
+
+	private BitSlicedKernel() {
+	}
+
+	/**
+	 * This method verifies a batch of DNAs of the same size.
+	 *
+	 * @param batch the DNAs to be verified, at most {@link #LANES}, all of
+	 *     them with the same size.
+	 * @param required the number of sequences that makes a DNA mutant.
+	 * @return a mask where bit k is set when the DNA k is a mutant.
+	 */
+	public static long evaluate(PackedDna[] batch, int required) {
+		if(batch.length == 0) {
+			return 0;
+		}
+		if(batch.length > LANES) {
+			throw new IllegalArgumentException("A batch can not have more than " + LANES + " DNAs.");
+		}
+
+		int size = batch[0].getSize();
+		if(size > MAX_SIZE) {
+			throw new IllegalArgumentException("A batch can not have DNAs bigger than " + MAX_SIZE + ".");
+		}
+		for(PackedDna dna : batch) {
+			if(dna.getSize() != size) {
+				throw new IllegalArgumentException("All the DNAs of a batch must have the same size.");
+			}
+		}
+
+		// every row fits in one packed word: after transposing the words of the
+		// 64 lanes, word 2j holds the low bits and word 2j + 1 the high bits of
+		// column j for all of them
+		long[] low = new long[size * size];
+		long[] high = new long[size * size];
+		long[] block = new long[LANES];
+		for(int i = 0; i < size; i++) {
+			for(int k = 0; k < batch.length; k++) {
+				block[k] = batch[k].getWords()[i];
+			}
+			for(int k = batch.length; k < LANES; k++) {
+				block[k] = 0;
+			}
+			transpose(block);
+			for(int j = 0; j < size; j++) {
+				low[i * size + j] = block[2 * j];
+				high[i * size + j] = block[2 * j + 1];
+			}
+		}
+
+		long active = batch.length == LANES ? -1L : (1L << batch.length) - 1;
+		return new Lanes(low, high, size, required, active).evaluate();
+	}
+
+	/**
+	 * This method transposes a 64 x 64 bit matrix in place, where the bit c
+	 * of <code>matrix[r]</code> is the element (r, c), by swapping blocks of
+	 * half the size at each step.
+	 *
+	 * @param matrix the bit matrix.
+	 */
+	static void transpose(long[] matrix) {
+		long mask = 0x00000000FFFFFFFFL;
+		for(int width = 32; width != 0; width >>>= 1, mask ^= mask << width) {
+			for(int k = 0; k < LANES; k = ((k | width) + 1) & ~width) {
+				long swap = ((matrix[k] >>> width) ^ matrix[k | width]) & mask;
+				matrix[k] ^= swap << width;
+				matrix[k | width] ^= swap;
+			}
+		}
+	}
+
+	/**
+	 * The state of a single batch verification.
+	 */
+	private static final class Lanes {
+
+		private final long[] low;
+
+		private final long[] high;
+
+		private final int size;
+
+		private final int required;
+
+		private final long active;
+
+		/**
+		 * Bit planes of the number of sequences found by each lane.
+		 */
+		private final long[] counters;
+
+		/**
+		 * The lanes that already reached the required number of sequences.
+		 */
+		private long done;
+
+		Lanes(long[] low, long[] high, int size, int required, long active) {
+			this.low = low;
+			this.high = high;
+			this.size = size;
+			this.required = required;
+			this.active = active;
+			this.counters = new long[32 - Integer.numberOfLeadingZeros(required)];
+		}
+
+		long evaluate() {
+			if(size < DnaScanner.SEQUENCE_LENGTH || required <= 0) {
+				return required <= 0 ? active : 0;
+			}
+
+			for(int i = 0; i < size && done != active; i++) {
+				scanLine(i, 0, 0, 1);
+				scanLine(0, i, 1, 0);
+			}
+			for(int start = 0; start <= size - DnaScanner.SEQUENCE_LENGTH && done != active; start++) {
+				scanLine(0, start, 1, 1);
+				scanLine(0, size - 1 - start, 1, -1);
+				if(start > 0) {
+					scanLine(start, 0, 1, 1);
+					scanLine(start, size - 1, 1, -1);
+				}
+			}
+			return done;
+		}
+
+		/**
+		 * Walks a line of the matrix keeping, for every lane, the current run
+		 * length minus one modulo four in two bit planes.
+		 */
+		private void scanLine(int row, int column, int rowStep, int columnStep) {
+			int previous = row * size + column;
+			long run0 = 0;
+			long run1 = 0;
+			row += rowStep;
+			column += columnStep;
+
+			while(row < size && column >= 0 && column < size) {
+				int cell = row * size + column;
+				long equal = ~((low[cell] ^ low[previous]) | (high[cell] ^ high[previous]));
+
+				// the run reaches a multiple of four when it was at 3 (state 2)
+				long sequence = equal & run1 & ~run0 & ~done;
+				run1 = equal & (run1 ^ run0);
+				run0 = equal & ~run0;
+
+				if(sequence != 0) {
+					increment(sequence);
+				}
+
+				previous = cell;
+				row += rowStep;
+				column += columnStep;
+			}
+		}
+
+		/**
+		 * Adds one to the counters of the given lanes and marks the ones that
+		 * reached the required number of sequences.
+		 */
+		private void increment(long lanes) {
+			long carry = lanes;
+			for(int p = 0; p < counters.length && carry != 0; p++) {
+				long next = counters[p] & carry;
+				counters[p] ^= carry;
+				carry = next;
+			}
+
+			long reached = active;
+			for(int p = 0; p < counters.length; p++) {
+				reached &= (required >>> p & 1) == 1 ? counters[p] : ~counters[p];
+			}
+			done |= reached;
+		}
+	}
+}
@@ -0,0 +1,380 @@
+package mutant.detector;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mutant.codec.DnaCodec;
+import mutant.domain.PackedDna;
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+
+/**
+ * This class counts the mutant sequences of a DNA using one occupancy bitboard
+ * per nitrogenous base, as done by Connect Four engines.
+ *
+ * A DNA with up to 8 bases per row fits in a single <code>long</code> per
+ * base, each row using 8 bits. The starts of every run of four equal bases in
+ * a direction are found with three shifts and ANDs: 1 bit for horizontal,
+ * 8 for vertical, 9 for the diagonal and 7 for the anti-diagonal. This path
+ * does not allocate anything.
+ *
+ * Bigger DNAs keep each row in <code>long</code> words of 64 columns, taken
+ * from the <code>PackedDna</code> five rows at a time. The runs are found with
+ * the same shift and AND operations between rows, and only the runs that
+ * start a line are walked to get their length.
+ *
+ * In both cases a run of length L counts as L / 4 sequences, the same as
+ * {@link DnaScanner}. Other sequence lengths given by a
+ * <code>DetectionPolicy</code> use as many shifts as bases in a sequence and
+ * keep one more row than that. All the methods are stateless.
+ */
+public final class BitboardKernel {
+
+	/**
+	 * The biggest DNA size that fits in a single <code>long</code> board.
+	 */
+	public static final int BOARD_SIZE = 8;
+
+	/**
+	 * A board with the first column of every row set.
+	 */
+	private static final long FIRST_COLUMN = 0x0101010101010101L;
+
+	private BitboardKernel() {
+	}
+
+	/**
+	 * This method validates and counts the mutant sequences of a DNA.
+	 *
+	 * @param dnaSequence the DNA sequence to be verified.
+	 * @param required the number of sequences after which the counting stops.
+	 * @return the number of sequences found, up to <code>required</code>.
+	 *
+	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when the
+	 *     DNA sequence is null, empty or in a wrong format.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when the
+	 *     nitrogenous bases does not have the same length or when they are
+	 *     composed of characters different from A, T, C or G.
+	 */
+	public static int countSequences(String[] dnaSequence, int required) throws InvalidDnaException, InvalidNitrogenousBasesException {
+		return countSequences(DnaCodec.encode(dnaSequence), required);
+	}
+
+	/**
+	 * This method counts the mutant sequences of a packed DNA.
+	 *
+	 * @param dna the packed DNA.
+	 * @param required the number of sequences after which the counting stops.
+	 * @return the number of sequences found, up to <code>required</code>.
+	 */
+	public static int countSequences(PackedDna dna, int required) {
+		return countSequences(dna, DetectionPolicy.requiring(required));
+	}
+
+	/**
+	 * This method counts the mutant sequences of a packed DNA with the given
+	 * policy.
+	 *
+	 * @param dna the packed DNA.
+	 * @param policy the sequence length and the number of sequences after
+	 *     which the counting stops.
+	 * @return the number of sequences found, up to the required amount.
+	 */
+	public static int countSequences(PackedDna dna, DetectionPolicy policy) {
+		if(dna.getSize() < policy.getSequenceLength()) {
+			return 0;
+		}
+		if(dna.getSize() <= BOARD_SIZE) {
+			return countSmall(dna, policy);
+		}
+		return new RowScan(dna, policy.getSequenceLength()).count(0, dna.getSize(), policy.getRequiredSequences(), null);
+	}
+
+	/**
+	 * This method counts the sequences whose runs start between two rows of a
+	 * DNA bigger than a single board. The rows read go from
+	 * <code>from - 1</code> to <code>to + length - 2</code>, plus the ones
+	 * needed to measure longer runs.
+	 *
+	 * @param dna the packed DNA.
+	 * @param from the first row, inclusive.
+	 * @param to the last row, exclusive.
+	 * @param policy the sequence length and the number of sequences after
+	 *     which the counting stops.
+	 * @param found the counter shared by all the scans of the DNA, updated
+	 *     after every row and used to stop the scan.
+	 * @return the number of sequences found by this scan.
+	 */
+	static int countRows(PackedDna dna, int from, int to, DetectionPolicy policy, AtomicInteger found) {
+		return new RowScan(dna, policy.getSequenceLength()).count(from, to, policy.getRequiredSequences(), found);
+	}
+
+	/**
+	 * This method counts the sequences of a DNA that fits in one board per
+	 * base.
+	 */
+	private static int countSmall(PackedDna dna, DetectionPolicy policy) {
+		int required = policy.getRequiredSequences();
+		int sequences = 0;
+		for(int base = 0; base < 4 && sequences < required; base++) {
+			long board = 0;
+			for(int i = 0; i < dna.getSize(); i++) {
+				board |= dna.occupancy(base, i, 0) << (i * BOARD_SIZE);
+			}
+			sequences += countBoard(board, required - sequences, policy.getSequenceLength());
+		}
+		return sequences;
+	}
+
+	/**
+	 * This method counts the sequences of four bases of a single base board
+	 * in all the four directions.
+	 *
+	 * @param board the occupancy board of one base.
+	 * @param required the number of sequences after which the counting stops.
+	 * @return the number of sequences found, up to <code>required</code>.
+	 */
+	public static int countBoard(long board, int required) {
+		return countBoard(board, required, DnaScanner.SEQUENCE_LENGTH);
+	}
+
+	/**
+	 * This method counts the sequences of a single base board in all the four
+	 * directions.
+	 *
+	 * @param board the occupancy board of one base.
+	 * @param required the number of sequences after which the counting stops.
+	 * @param length the number of equal bases of a sequence, at most
+	 *     {@link #BOARD_SIZE}.
+	 * @return the number of sequences found, up to <code>required</code>.
+	 */
+	public static int countBoard(long board, int required, int length) {
+		long horizontal = board;
+		long vertical = board;
+		long diagonal = board;
+		long antiDiagonal = board;
+		for(int k = 1; k < length; k++) {
+			horizontal &= board >>> k;
+			vertical &= board >>> (BOARD_SIZE * k);
+			diagonal &= board >>> ((BOARD_SIZE + 1) * k);
+			antiDiagonal &= board >>> ((BOARD_SIZE - 1) * k);
+		}
+
+		// a run going to the right starts at most at column 8 - length, and a
+		// run going to the left at least at column length - 1
+		long leftColumns = FIRST_COLUMN * ((1 << (BOARD_SIZE - length + 1)) - 1);
+		long rightColumns = FIRST_COLUMN * (0xFF & -(1 << (length - 1)));
+		horizontal &= leftColumns;
+		diagonal &= leftColumns;
+		antiDiagonal &= rightColumns;
+
+		if((horizontal | vertical | diagonal | antiDiagonal) == 0) {
+			return 0;
+		}
+
+		int sequences = countStarts(horizontal, 1, length, required);
+		sequences += countStarts(vertical, BOARD_SIZE, length, required - sequences);
+		sequences += countStarts(diagonal, BOARD_SIZE + 1, length, required - sequences);
+		sequences += countStarts(antiDiagonal, BOARD_SIZE - 1, length, required - sequences);
+		return sequences;
+	}
+
+	/**
+	 * This method counts the sequences from the starts of the runs found in
+	 * one direction.
+	 *
+	 * The lowest start is taken first and the positions that follow it in the
+	 * same line up to the length of a sequence are discarded, since they
+	 * overlap with it. Repeating it counts L / length sequences for a run of
+	 * length L.
+	 */
+	private static int countStarts(long starts, int shift, int length, int required) {
+		int sequences = 0;
+		while(starts != 0 && sequences < required) {
+			long lowest = starts & -starts;
+			long overlap = lowest;
+			for(int k = 1; k < length; k++) {
+				overlap |= lowest << (k * shift);
+			}
+			starts &= ~overlap;
+			sequences++;
+		}
+		return sequences;
+	}
+
+	/**
+	 * The state of the verification of a DNA bigger than a single board.
+	 *
+	 * It keeps the occupancy of each base for the rows i - 1 to
+	 * i + length - 1, which are all the rows needed to find the runs that
+	 * start at row i.
+	 */
+	private static final class RowScan {
+
+		private final PackedDna dna;
+
+		private final int size;
+
+		private final int words;
+
+		/**
+		 * The number of equal bases of a sequence.
+		 */
+		private final int length;
+
+		/**
+		 * The number of rows kept in the window.
+		 */
+		private final int rows;
+
+		/**
+		 * The occupancy words, grouped by base and by row modulo the window.
+		 */
+		private final long[] window;
+
+		RowScan(PackedDna dna, int length) {
+			this.dna = dna;
+			this.size = dna.getSize();
+			this.words = (size + 63) >>> 6;
+			this.length = length;
+			this.rows = length + 1;
+			this.window = new long[4 * rows * words];
+		}
+
+		/**
+		 * Counts the sequences whose runs start between the given rows.
+		 *
+		 * When a shared counter is given, the sequences of each row are added
+		 * to it and the scan stops as soon as it reaches the required amount,
+		 * no matter which scan found them.
+		 */
+		int count(int from, int to, int required, AtomicInteger found) {
+			for(int row = Math.max(0, from - 1); row <= Math.min(size - 1, from + length - 1); row++) {
+				load(row);
+			}
+
+			int sequences = 0;
+			for(int i = from; i < to; i++) {
+				int remaining = required - (found == null ? sequences : found.get());
+				if(remaining <= 0) {
+					break;
+				}
+				if(i > from && i + length - 1 < size) {
+					load(i + length - 1);
+				}
+
+				int rowSequences = 0;
+				for(int base = 0; base < 4 && rowSequences < remaining; base++) {
+					for(int w = 0; w < words && rowSequences < remaining; w++) {
+						rowSequences += countStarts(base, i, w, remaining - rowSequences);
+					}
+				}
+
+				sequences += rowSequences;
+				if(found != null && rowSequences > 0) {
+					found.addAndGet(rowSequences);
+				}
+			}
+			return Math.min(sequences, required);
+		}
+
+		private void load(int row) {
+			for(int base = 0; base < 4; base++) {
+				int offset = (base * rows + row % rows) * words;
+				for(int w = 0; w < words; w++) {
+					window[offset + w] = dna.occupancy(base, row, w);
+				}
+			}
+		}
+
+		/**
+		 * Counts the sequences of the runs of a base that start at the given
+		 * row and group of columns, in the four directions.
+		 */
+		private int countStarts(int base, int i, int w, int required) {
+			long row = word(base, i, w);
+			if(row == 0) {
+				return 0;
+			}
+
+			// horizontal: the next bases are equal and the previous one is not
+			long starts = row & ~left(base, i, w, 1);
+			for(int k = 1; k < length && starts != 0; k++) {
+				starts &= right(base, i, w, k);
+			}
+			int sequences = walk(base, starts, i, w, 0, 1, required);
+
+			if(i + length - 1 >= size) {
+				return sequences;
+			}
+
+			starts = row & ~word(base, i - 1, w);
+			for(int k = 1; k < length && starts != 0; k++) {
+				starts &= word(base, i + k, w);
+			}
+			sequences += walk(base, starts, i, w, 1, 0, required - sequences);
+
+			starts = row & ~left(base, i - 1, w, 1);
+			for(int k = 1; k < length && starts != 0; k++) {
+				starts &= right(base, i + k, w, k);
+			}
+			sequences += walk(base, starts, i, w, 1, 1, required - sequences);
+
+			starts = row & ~right(base, i - 1, w, 1);
+			for(int k = 1; k < length && starts != 0; k++) {
+				starts &= left(base, i + k, w, k);
+			}
+			sequences += walk(base, starts, i, w, 1, -1, required - sequences);
+			return sequences;
+		}
+
+		/**
+		 * Walks every run that starts at the given bits and counts
+		 * L / length sequences for each one.
+		 */
+		private int walk(int base, long starts, int row, int word, int rowStep, int columnStep, int required) {
+			int sequences = 0;
+			while(starts != 0 && sequences < required) {
+				int column = (word << 6) + Long.numberOfTrailingZeros(starts);
+				starts &= starts - 1;
+
+				int run = length;
+				while(isSet(base, row + run * rowStep, column + run * columnStep)) {
+					run++;
+				}
+				sequences += run / length;
+			}
+			return sequences;
+		}
+
+		private boolean isSet(int base, int row, int column) {
+			return row < size && column >= 0 && column < size && dna.getBase(row, column) == base;
+		}
+
+		private long word(int base, int row, int w) {
+			return row < 0 || row >= size ? 0 : window[(base * rows + row % rows) * words + w];
+		}
+
+		/**
+		 * Gets the word whose bit j holds the base at column j + shift.
+		 */
+		private long right(int base, int row, int w, int shift) {
+			long value = word(base, row, w) >>> shift;
+			if(w + 1 < words) {
+				value |= word(base, row, w + 1) << (64 - shift);
+			}
+			return value;
+		}
+
+		/**
+		 * Gets the word whose bit j holds the base at column j - shift.
+		 */
+		private long left(int base, int row, int w, int shift) {
+			long value = word(base, row, w) << shift;
+			if(w > 0) {
+				value |= word(base, row, w - 1) >>> (64 - shift);
+			}
+			return value;
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package mutant.detector;
+
+/**
+ * This class describes when a DNA is considered from a mutant: the number of
+ * equal nitrogenous bases in a row that composes a sequence, and the number
+ * of sequences that must be found.
+ *
+ * Every line of the matrix (row, column, diagonal and anti-diagonal) is
+ * split into maximal runs of equal bases, and a run of length L counts as
+ * L / <code>sequenceLength</code> sequences. Overlapping windows of a long
+ * run are not counted twice, so the count does not depend on the order in
+ * which the directions are scanned. The detectors stop as soon as the
+ * required sequences are found.
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+public final class DetectionPolicy {
+
+	/**
+	 * The default number of sequences that makes a DNA mutant.
+	 */
+	public static final int DEFAULT_REQUIRED_SEQUENCES = 1;
+
+	/**
+	 * The biggest sequence length supported by the detectors.
+	 */
+	public static final int MAX_SEQUENCE_LENGTH = 64;
+
+	/**
+	 * One sequence of four equal bases.
+	 */
+	public static final DetectionPolicy DEFAULT = new DetectionPolicy(DEFAULT_REQUIRED_SEQUENCES, DnaScanner.SEQUENCE_LENGTH);
+
+	/**
+	 * The number of sequences that makes a DNA mutant.
+	 */
+	private final int requiredSequences;
+
+	/**
+	 * The number of equal nitrogenous bases that composes a sequence.
+	 */
+	private final int sequenceLength;
+
+	/**
+	 * Creates a detection policy.
+	 *
+	 * @param requiredSequences the number of sequences that makes a DNA
+	 *     mutant, at least 1.
+	 * @param sequenceLength the number of equal nitrogenous bases that
+	 *     composes a sequence, between 2 and {@link #MAX_SEQUENCE_LENGTH}.
+	 */
+	public DetectionPolicy(int requiredSequences, int sequenceLength) {
+		if(requiredSequences < 1) {
+			throw new IllegalArgumentException("The required sequences must be at least 1.");
+		}
+		if(sequenceLength < 2 || sequenceLength > MAX_SEQUENCE_LENGTH) {
+			throw new IllegalArgumentException("The sequence length must be between 2 and " + MAX_SEQUENCE_LENGTH + ".");
+		}
+		this.requiredSequences = requiredSequences;
+		this.sequenceLength = sequenceLength;
+	}
+
+	/**
+	 * This method creates a policy for sequences of the default length.
+	 *
+	 * @param requiredSequences the number of sequences that makes a DNA
+	 *     mutant.
+	 * @return the detection policy.
+	 */
+	public static DetectionPolicy requiring(int requiredSequences) {
+		return new DetectionPolicy(requiredSequences, DnaScanner.SEQUENCE_LENGTH);
+	}
+
+	/**
+	 * This method gets the number of sequences that makes a DNA mutant.
+	 *
+	 * @return the required sequences.
+	 */
+	public int getRequiredSequences() {
+		return requiredSequences;
+	}
+
+	/**
+	 * This method gets the number of equal nitrogenous bases that composes
+	 * a sequence.
+	 *
+	 * @return the sequence length.
+	 */
+	public int getSequenceLength() {
+		return sequenceLength;
+	}
+
+	/**
+	 * This method verifies if the given number of sequences makes a DNA
+	 * mutant.
+	 *
+	 * @param sequences the number of sequences found.
+	 * @return <code>true</code> if the DNA is from a mutant, otherwise
+	 *     <code>false</code>.
+	 */
+	public boolean isMutant(int sequences) {
+		return sequences >= requiredSequences;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if(this == other) {
+			return true;
+		}
+		if(!(other instanceof DetectionPolicy)) {
+			return false;
+		}
+		DetectionPolicy policy = (DetectionPolicy) other;
+		return requiredSequences == policy.requiredSequences && sequenceLength == policy.sequenceLength;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * requiredSequences + sequenceLength;
+	}
+
+	@Override
+	public String toString() {
+		return "DetectionPolicy[requiredSequences=" + requiredSequences + ", sequenceLength=" + sequenceLength + "]";
+	}
+}
@@ -0,0 +1,302 @@
+package mutant.detector;
+
+import mutant.codec.NitrogenousBases;
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+
+/**
+ * This class validates the nitrogenous bases and counts the mutant sequences
+ * of a DNA in a single pass, reading it row by row.
+ *
+ * Instead of building the columns and the diagonals of the matrix, it keeps
+ * the length of the current run of equal bases of every column, diagonal and
+ * anti-diagonal, plus the bases of the previous row. A sequence is counted
+ * every time a run reaches a multiple of the sequence length, by default
+ * {@link #SEQUENCE_LENGTH}, so a run of eight equal bases counts as two
+ * sequences.
+ *
+ * An instance holds the state of a single verification and must not be
+ * shared between threads. The static {@link #countSequences(String[], int)}
+ * creates one per call, so it can be used concurrently.
+ */
+public class DnaScanner {
+
+	/**
+	 * The number of equal nitrogenous bases that composes a mutant sequence.
+	 */
+	public static final int SEQUENCE_LENGTH = 4;
+
+	/**
+	 * The number of nitrogenous bases of each row.
+	 */
+	private final int size;
+
+	/**
+	 * The number of sequences after which the counting stops.
+	 */
+	private final int required;
+
+	/**
+	 * The number of equal nitrogenous bases that composes a sequence.
+	 */
+	private final int sequenceLength;
+
+	/**
+	 * The run length of each column, ending at the previous row.
+	 */
+	private final int[] vertical;
+
+	/**
+	 * The run length of each diagonal (top left to bottom right), ending at
+	 * the previous row.
+	 */
+	private final int[] diagonal;
+
+	/**
+	 * The run length of each anti-diagonal (top right to bottom left), ending
+	 * at the previous row.
+	 */
+	private final int[] antiDiagonal;
+
+	/**
+	 * The base codes of the previous row.
+	 */
+	private byte[] previousRow;
+
+	/**
+	 * The base codes of the row being scanned.
+	 */
+	private byte[] currentRow;
+
+	/**
+	 * The number of rows scanned so far.
+	 */
+	private int rows;
+
+	/**
+	 * The number of sequences found so far.
+	 */
+	private int sequences;
+
+	/**
+	 * Creates a scanner for a DNA with the given number of bases per row.
+	 *
+	 * @param size the number of nitrogenous bases of each row.
+	 * @param required the number of sequences after which the scanner stops
+	 *     counting and only validates the remaining bases.
+	 */
+	public DnaScanner(int size, int required) {
+		this(size, required, SEQUENCE_LENGTH);
+	}
+
+	/**
+	 * Creates a scanner for a DNA with the given number of bases per row and
+	 * sequence length.
+	 *
+	 * @param size the number of nitrogenous bases of each row.
+	 * @param required the number of sequences after which the scanner stops
+	 *     counting and only validates the remaining bases.
+	 * @param sequenceLength the number of equal nitrogenous bases that
+	 *     composes a sequence.
+	 */
+	public DnaScanner(int size, int required, int sequenceLength) {
+		this.size = size;
+		this.required = required;
+		this.sequenceLength = sequenceLength;
+		this.vertical = new int[size];
+		this.diagonal = new int[size];
+		this.antiDiagonal = new int[size];
+		this.previousRow = new byte[size];
+		this.currentRow = new byte[size];
+	}
+
+	/**
+	 * This method validates and counts the mutant sequences of a whole DNA.
+	 *
+	 * The length of all the rows is checked before their content, so the
+	 * validation errors are reported in the same order as before.
+	 *
+	 * @param dnaSequence the DNA sequence to be verified.
+	 * @param required the number of sequences after which the counting stops.
+	 * @return the number of sequences found, up to <code>required</code>.
+	 *
+	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when the
+	 *     DNA sequence is null, empty or in a wrong format.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when the
+	 *     nitrogenous bases does not have the same length or when they are
+	 *     composed of characters different from A, T, C or G.
+	 */
+	public static int countSequences(String[] dnaSequence, int required) throws InvalidDnaException, InvalidNitrogenousBasesException {
+		NitrogenousBases.validateDna(dnaSequence);
+		NitrogenousBases.validateLength(dnaSequence);
+
+		DnaScanner scanner = new DnaScanner(dnaSequence.length, required);
+		for(String row : dnaSequence) {
+			scanner.scanRow(row);
+		}
+		return scanner.getSequences();
+	}
+
+	/**
+	 * This method validates the next row of the DNA and updates the run
+	 * lengths of every direction with its bases.
+	 *
+	 * @param row the nitrogenous bases of the row.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when the row
+	 *     does not have the expected length or when it contains characters
+	 *     different from A, T, C or G.
+	 */
+	public void scanRow(CharSequence row) throws InvalidNitrogenousBasesException {
+		if(row.length() != size) {
+			throw new InvalidNitrogenousBasesException(NitrogenousBases.RC_NB_LENGTH);
+		}
+
+		for(int j = 0; j < size; j++) {
+			byte code = NitrogenousBases.code(row.charAt(j));
+			if(code == NitrogenousBases.INVALID) {
+				throw new InvalidNitrogenousBasesException(NitrogenousBases.RC_NB_INVALID);
+			}
+			currentRow[j] = code;
+		}
+		nextRow();
+	}
+
+	/**
+	 * This method validates the next row of the DNA, given as ASCII bytes,
+	 * and updates the run lengths of every direction with its bases.
+	 *
+	 * @param bases the bytes holding the row.
+	 * @param offset the position of the first base of the row.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when the row
+	 *     contains characters different from A, T, C or G.
+	 */
+	public void scanRow(byte[] bases, int offset) throws InvalidNitrogenousBasesException {
+		for(int j = 0; j < size; j++) {
+			byte code = NitrogenousBases.code(bases[offset + j] & 0xFF);
+			if(code == NitrogenousBases.INVALID) {
+				throw new InvalidNitrogenousBasesException(NitrogenousBases.RC_NB_INVALID);
+			}
+			currentRow[j] = code;
+		}
+		nextRow();
+	}
+
+	/**
+	 * This method updates the run lengths of every direction with the next
+	 * row of the DNA, given as packed words of 32 bases.
+	 *
+	 * @param words the words holding the row.
+	 * @param offset the position of the first word of the row.
+	 */
+	public void scanPackedRow(long[] words, int offset) {
+		for(int j = 0; j < size; j++) {
+			currentRow[j] = (byte) ((words[offset + (j >>> 5)] >>> ((j & 31) << 1)) & 3);
+		}
+		nextRow();
+	}
+
+	/**
+	 * This method counts the current row, unless no more counting is needed,
+	 * and makes it the previous row.
+	 */
+	private void nextRow() {
+		if(!isComplete()) {
+			countRow();
+		}
+
+		byte[] swap = previousRow;
+		previousRow = currentRow;
+		currentRow = swap;
+		rows++;
+	}
+
+	/**
+	 * This method updates the run lengths with the bases of the current row
+	 * and counts the sequences completed by it.
+	 */
+	private void countRow() {
+		byte[] current = currentRow;
+		byte[] previous = previousRow;
+		boolean first = rows == 0;
+		int horizontal = 0;
+		// diagonal run of the previous row at column j - 1, before being overwritten
+		int diagonalLeft = 0;
+
+		for(int j = 0; j < size; j++) {
+			byte code = current[j];
+
+			horizontal = j > 0 && current[j - 1] == code ? horizontal + 1 : 1;
+			count(horizontal);
+
+			if(first) {
+				vertical[j] = 1;
+				diagonal[j] = 1;
+				antiDiagonal[j] = 1;
+				continue;
+			}
+
+			vertical[j] = previous[j] == code ? vertical[j] + 1 : 1;
+			count(vertical[j]);
+
+			int run = j > 0 && previous[j - 1] == code ? diagonalLeft + 1 : 1;
+			diagonalLeft = diagonal[j];
+			diagonal[j] = run;
+			count(run);
+
+			antiDiagonal[j] = j + 1 < size && previous[j + 1] == code ? antiDiagonal[j + 1] + 1 : 1;
+			count(antiDiagonal[j]);
+		}
+	}
+
+	/**
+	 * This method counts a sequence when the given run length is a multiple
+	 * of the sequence length.
+	 *
+	 * @param run the current run length.
+	 */
+	private void count(int run) {
+		if(run % sequenceLength == 0) {
+			sequences++;
+		}
+	}
+
+	/**
+	 * This method gets the number of nitrogenous bases of each row.
+	 *
+	 * @return the DNA size.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * This method gets the number of rows scanned so far.
+	 *
+	 * @return the number of rows.
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * This method gets the number of sequences found so far.
+	 *
+	 * @return the number of sequences found, up to the required amount.
+	 */
+	public int getSequences() {
+		return Math.min(sequences, required);
+	}
+
+	/**
+	 * This method verifies if the required number of sequences was found.
+	 *
+	 * @return <code>true</code> if no more counting is needed, otherwise
+	 *     <code>false</code>.
+	 */
+	public boolean isComplete() {
+		return sequences >= required;
+	}
+}
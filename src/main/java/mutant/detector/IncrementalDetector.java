@@ -0,0 +1,192 @@
+package mutant.detector;
+
+import mutant.codec.NitrogenousBases;
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+
+/**
+ * This class verifies a DNA fed one row at a time, for inputs that should
+ * not be held as a whole matrix, such as chunked uploads or files.
+ *
+ * The size of the DNA is taken from the first row. Only the run counters of
+ * a <code>DnaScanner</code> are kept, one per column, diagonal and
+ * anti-diagonal, plus the current and the previous rows, so the memory used
+ * is proportional to the row length.
+ *
+ * The rows are validated with the same rules, return codes and precedence
+ * of <code>NitrogenousBases.validateDna</code> and
+ * <code>NitrogenousBases.validateNitrogenousBases</code>. Having more rows
+ * than bases in the first row is refused as soon as the extra row is added;
+ * since a wrong number of rows is reported before any other problem, the
+ * rows of wrong length or with invalid bases are only remembered and
+ * reported by {@link #finish()}, once the number of rows is known.
+ *
+ * {@link #isMutant()} is answered as soon as the required sequences are
+ * found; the rows added afterwards are only validated, and
+ * {@link #finish()} confirms the verdict once the whole DNA is known to be
+ * valid.
+ *
+ * An instance holds the state of a single verification and must not be
+ * shared between threads.
+ */
+public class IncrementalDetector {
+
+	/**
+	 * The sequence length and the number of sequences that makes a DNA
+	 * mutant.
+	 */
+	private final DetectionPolicy policy;
+
+	/**
+	 * The scanner of the rows, created with the first one.
+	 */
+	private DnaScanner scanner;
+
+	/**
+	 * The number of rows added so far, valid or not.
+	 */
+	private int rows;
+
+	/**
+	 * The return code of the first problem found in the rows, if any.
+	 */
+	private String error;
+
+	/**
+	 * Creates a detector for a DNA of unknown size.
+	 *
+	 * @param required the number of sequences that makes a DNA mutant.
+	 */
+	public IncrementalDetector(int required) {
+		this(DetectionPolicy.requiring(required));
+	}
+
+	/**
+	 * Creates a detector for a DNA of unknown size with the given policy.
+	 *
+	 * @param policy the sequence length and the number of sequences that
+	 *     makes a DNA mutant.
+	 */
+	public IncrementalDetector(DetectionPolicy policy) {
+		this.policy = policy;
+	}
+
+	/**
+	 * This method validates the next row of the DNA and counts its
+	 * sequences.
+	 *
+	 * @param row the nitrogenous bases of the row.
+	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when the
+	 *     DNA has more rows than nitrogenous bases in the first row.
+	 */
+	public void addRow(CharSequence row) throws InvalidDnaException {
+		start(row == null ? -1 : row.length());
+		if(row == null || row.length() != scanner.getSize()) {
+			error = NitrogenousBases.RC_NB_LENGTH;
+		} else if(error == null) {
+			try {
+				scanner.scanRow(row);
+			} catch (InvalidNitrogenousBasesException e) {
+				error = e.getMessage();
+			}
+		}
+	}
+
+	/**
+	 * This method validates the next row of the DNA, given as ASCII bytes,
+	 * and counts its sequences. The bytes are not read when the length is
+	 * not the one of the first row.
+	 *
+	 * @param bases the bytes holding the row.
+	 * @param offset the position of the first base of the row.
+	 * @param length the number of bases of the row.
+	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when the
+	 *     DNA has more rows than nitrogenous bases in the first row.
+	 */
+	public void addRow(byte[] bases, int offset, int length) throws InvalidDnaException {
+		start(length);
+		if(length != scanner.getSize()) {
+			error = NitrogenousBases.RC_NB_LENGTH;
+		} else if(error == null) {
+			try {
+				scanner.scanRow(bases, offset);
+			} catch (InvalidNitrogenousBasesException e) {
+				error = e.getMessage();
+			}
+		}
+	}
+
+	/**
+	 * Counts a new row, creating the scanner from the length of the first
+	 * one, which must be the number of rows as well.
+	 */
+	private void start(int length) throws InvalidDnaException {
+		if(scanner == null) {
+			if(length <= 0) {
+				throw new InvalidDnaException(NitrogenousBases.RC_DNA_FORMAT);
+			}
+			scanner = new DnaScanner(length, policy.getRequiredSequences(), policy.getSequenceLength());
+		}
+		if(rows == scanner.getSize()) {
+			throw new InvalidDnaException(NitrogenousBases.RC_DNA_FORMAT);
+		}
+		rows++;
+	}
+
+	/**
+	 * This method verifies if the rows added so far already make the DNA a
+	 * mutant. The verdict only holds if the remaining rows are valid.
+	 *
+	 * @return <code>true</code> if the required sequences were found,
+	 *     otherwise <code>false</code>.
+	 */
+	public boolean isMutant() {
+		return error == null && scanner != null && scanner.isComplete();
+	}
+
+	/**
+	 * This method gets the number of rows added so far.
+	 *
+	 * @return the number of rows.
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * This method gets the number of sequences found so far.
+	 *
+	 * @return the number of sequences found, up to the required amount.
+	 */
+	public int getSequences() {
+		return scanner == null ? 0 : scanner.getSequences();
+	}
+
+	/**
+	 * This method verifies that all the rows were added and gets the
+	 * verdict of the DNA.
+	 *
+	 * @return <code>true</code> if the DNA is from a mutant, otherwise
+	 *     <code>false</code>.
+	 *
+	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when no
+	 *     row was added or when there are less rows than nitrogenous bases in
+	 *     the first row.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when a row
+	 *     does not have the same length of the first one or when it contains
+	 *     characters different from A, T, C or G.
+	 */
+	public boolean finish() throws InvalidDnaException, InvalidNitrogenousBasesException {
+		if(scanner == null) {
+			throw new InvalidDnaException(NitrogenousBases.RC_DNA_EMPTY);
+		}
+		if(rows != scanner.getSize()) {
+			throw new InvalidDnaException(NitrogenousBases.RC_DNA_FORMAT);
+		}
+		if(error != null) {
+			throw new InvalidNitrogenousBasesException(error);
+		}
+		return isMutant();
+	}
+}
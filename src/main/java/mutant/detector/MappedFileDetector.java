@@ -0,0 +1,198 @@
+package mutant.detector;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import mutant.codec.DnaCodec;
+import mutant.codec.NitrogenousBases;
+import mutant.domain.PackedDna;
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+
+/**
+ * This class counts the mutant sequences of a DNA stored in a file, for
+ * matrices too big to be sent as JSON.
+ *
+ * Two formats are accepted:
+ * <ul>
+ * <li>text: one row per line with the A, T, C and G bases, in any case;</li>
+ * <li>packed: the format written by <code>DnaCodec.writePacked</code>.</li>
+ * </ul>
+ *
+ * The file is memory-mapped in regions of {@link #REGION_SIZE} bytes and its
+ * rows are given one by one to an <code>IncrementalDetector</code>, or to a
+ * <code>DnaScanner</code> when they are packed, so the heap only holds a
+ * few arrays as long as a row no matter the size of the file. Text
+ * files are validated with the same rules and return codes of
+ * <code>NitrogenousBases</code>.
+ */
+public final class MappedFileDetector {
+
+	/**
+	 * The number of bytes mapped at a time.
+	 */
+	static final int REGION_SIZE = 1 << 28;
+
+	private MappedFileDetector() {
+	}
+
+	/**
+	 * This method validates and counts the mutant sequences of a DNA file.
+	 *
+	 * @param file the DNA file.
+	 * @param required the number of sequences after which the counting stops.
+	 * @return the number of sequences found, up to <code>required</code>.
+	 *
+	 * @throws IOException when the file can not be read.
+	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when the
+	 *     DNA is empty or in a wrong format.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when the
+	 *     nitrogenous bases does not have the same length or when they are
+	 *     composed of characters different from A, T, C or G.
+	 */
+	public static int countSequences(Path file, int required) throws IOException, InvalidDnaException, InvalidNitrogenousBasesException {
+		return countSequences(file, DetectionPolicy.requiring(required));
+	}
+
+	/**
+	 * This method validates and counts the mutant sequences of a DNA file
+	 * with the given policy.
+	 *
+	 * @param file the DNA file.
+	 * @param policy the sequence length and the number of sequences after
+	 *     which the counting stops.
+	 * @return the number of sequences found, up to the required amount.
+	 *
+	 * @throws IOException when the file can not be read.
+	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when the
+	 *     DNA is empty or in a wrong format.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when the
+	 *     nitrogenous bases does not have the same length or when they are
+	 *     composed of characters different from A, T, C or G.
+	 */
+	public static int countSequences(Path file, DetectionPolicy policy) throws IOException, InvalidDnaException, InvalidNitrogenousBasesException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			Region region = new Region(channel);
+			if(region.length == 0) {
+				throw new InvalidDnaException(NitrogenousBases.RC_DNA_EMPTY);
+			}
+			if(region.length >= DnaCodec.PACKED_HEADER && region.map(0, 4).getInt() == DnaCodec.PACKED_MAGIC) {
+				return countPacked(region, policy);
+			}
+			return countText(region, policy);
+		}
+	}
+
+	/**
+	 * This method counts the sequences of a text file, validating every row
+	 * even after the required sequences are found.
+	 */
+	private static int countText(Region region, DetectionPolicy policy) throws IOException, InvalidDnaException, InvalidNitrogenousBasesException {
+		IncrementalDetector detector = new IncrementalDetector(policy);
+		byte[] row = null;
+		long position = 0;
+		while(position < region.length) {
+			long end = lineEnd(region, position);
+			long next = end + 1;
+			if(end > position && region.map(end - 1, 1).get() == '\r') {
+				end--;
+			}
+			long length = end - position;
+			if(row == null) {
+				row = new byte[(int) Math.min(length, Integer.MAX_VALUE)];
+			}
+			if(length == row.length) {
+				region.map(position, row.length).get(row);
+			}
+			detector.addRow(row, 0, (int) Math.min(length, Integer.MAX_VALUE));
+
+			position = next;
+		}
+
+		detector.finish();
+		return detector.getSequences();
+	}
+
+	/**
+	 * This method finds the line feed that ends the line starting at the
+	 * given position, or the end of the file.
+	 */
+	private static long lineEnd(Region region, long position) throws IOException {
+		while(position < region.length) {
+			MappedByteBuffer buffer = region.map(position, 1);
+			int available = buffer.remaining();
+			for(int i = 0; i < available; i++) {
+				if(buffer.get() == '\n') {
+					return position + i;
+				}
+			}
+			position += available;
+		}
+		return region.length;
+	}
+
+	/**
+	 * This method counts the sequences of a packed file. Its bases are valid
+	 * by construction, so the scan stops as soon as the required sequences
+	 * are found.
+	 */
+	private static int countPacked(Region region, DetectionPolicy policy) throws IOException, InvalidDnaException {
+		int size = region.map(4, 4).getInt();
+		if(size <= 0) {
+			throw new InvalidDnaException(NitrogenousBases.RC_DNA_EMPTY);
+		}
+		int rowWords = PackedDna.rowWords(size);
+		if(region.length != DnaCodec.PACKED_HEADER + (long) size * rowWords * Long.BYTES) {
+			throw new InvalidDnaException(NitrogenousBases.RC_DNA_FORMAT);
+		}
+
+		DnaScanner scanner = new DnaScanner(size, policy.getRequiredSequences(), policy.getSequenceLength());
+		long[] words = new long[rowWords];
+		long position = DnaCodec.PACKED_HEADER;
+		for(int i = 0; i < size && !scanner.isComplete(); i++) {
+			region.map(position, rowWords * Long.BYTES).asLongBuffer().get(words);
+			position += rowWords * Long.BYTES;
+			scanner.scanPackedRow(words, 0);
+		}
+		return scanner.getSequences();
+	}
+
+	/**
+	 * The mapped region of a file, moved forward as the file is read.
+	 */
+	private static final class Region {
+
+		private final FileChannel channel;
+
+		private final long length;
+
+		private MappedByteBuffer buffer;
+
+		private long start;
+
+		Region(FileChannel channel) throws IOException {
+			this.channel = channel;
+			this.length = channel.size();
+		}
+
+		/**
+		 * Gets a buffer positioned at the given file position with at least
+		 * <code>count</code> bytes remaining, mapping a new region when the
+		 * current one does not hold them.
+		 */
+		MappedByteBuffer map(long position, int count) throws IOException {
+			if(buffer == null || position < start || position + count > start + buffer.capacity()) {
+				start = position;
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(Math.max(REGION_SIZE, count), length - position));
+			}
+			buffer.limit(buffer.capacity());
+			buffer.position((int) (position - start));
+			return buffer;
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package mutant.detector;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mutant.domain.PackedDna;
+
+/**
+ * This class counts the mutant sequences of big DNAs using all the threads of
+ * a <code>ForkJoinPool</code>.
+ *
+ * The matrix is split in tiles of whole rows. A tile owns the runs that start
+ * in its rows and reads the rows a sequence can reach beyond them (plus the
+ * row before), so the
+ * runs crossing tile borders are found once by the tile where they start.
+ * All the tiles add their sequences to a shared counter, and the remaining
+ * tiles are skipped or stop at the next row as soon as the required amount
+ * is reached.
+ */
+public final class ParallelDetector {
+
+	/**
+	 * The number of rows of the smallest tile.
+	 */
+	public static final int TILE_ROWS = 64;
+
+	private ParallelDetector() {
+	}
+
+	/**
+	 * This method counts the mutant sequences of a packed DNA in parallel.
+	 *
+	 * @param dna the packed DNA.
+	 * @param required the number of sequences after which the counting stops.
+	 * @param pool the pool that runs the tiles.
+	 * @return the number of sequences found, up to <code>required</code>.
+	 */
+	public static int countSequences(PackedDna dna, int required, ForkJoinPool pool) {
+		return countSequences(dna, DetectionPolicy.requiring(required), pool, TILE_ROWS);
+	}
+
+	/**
+	 * This method counts the mutant sequences of a packed DNA in parallel,
+	 * with the given policy.
+	 *
+	 * @param dna the packed DNA.
+	 * @param policy the sequence length and the number of sequences after
+	 *     which the counting stops.
+	 * @param pool the pool that runs the tiles.
+	 * @return the number of sequences found, up to the required amount.
+	 */
+	public static int countSequences(PackedDna dna, DetectionPolicy policy, ForkJoinPool pool) {
+		return countSequences(dna, policy, pool, TILE_ROWS);
+	}
+
+	/**
+	 * This method counts the mutant sequences of a packed DNA in parallel,
+	 * with the given tile size.
+	 *
+	 * @param dna the packed DNA.
+	 * @param policy the sequence length and the number of sequences after
+	 *     which the counting stops.
+	 * @param pool the pool that runs the tiles.
+	 * @param tileRows the number of rows of the smallest tile.
+	 * @return the number of sequences found, up to the required amount.
+	 */
+	public static int countSequences(PackedDna dna, DetectionPolicy policy, ForkJoinPool pool, int tileRows) {
+		if(dna.getSize() <= BitboardKernel.BOARD_SIZE) {
+			return BitboardKernel.countSequences(dna, policy);
+		}
+
+		AtomicInteger found = new AtomicInteger();
+		pool.invoke(new Tile(dna, 0, dna.getSize(), policy, tileRows, found));
+		return Math.min(found.get(), policy.getRequiredSequences());
+	}
+
+	/**
+	 * A range of rows scanned by a single task, split in two while it is
+	 * bigger than the tile size.
+	 */
+	private static final class Tile extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient PackedDna dna;
+
+		private final int from;
+
+		private final int to;
+
+		private final DetectionPolicy policy;
+
+		private final int tileRows;
+
+		private final AtomicInteger found;
+
+		Tile(PackedDna dna, int from, int to, DetectionPolicy policy, int tileRows, AtomicInteger found) {
+			this.dna = dna;
+			this.from = from;
+			this.to = to;
+			this.policy = policy;
+			this.tileRows = tileRows;
+			this.found = found;
+		}
+
+		@Override
+		protected void compute() {
+			if(found.get() >= policy.getRequiredSequences()) {
+				return;
+			}
+			if(to - from <= tileRows) {
+				BitboardKernel.countRows(dna, from, to, policy, found);
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+			invokeAll(new Tile(dna, from, middle, policy, tileRows, found),
+					new Tile(dna, middle, to, policy, tileRows, found));
+		}
+	}
+}
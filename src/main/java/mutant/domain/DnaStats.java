@@ -0,0 +1,77 @@
+package mutant.domain;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * This class holds the number of DNAs registered, kept in a single row that
+ * is updated in the same transaction as the DNAs are inserted.
+ */
+@Entity
+@Table(name = "dna_stats")
+public class DnaStats {
+
+	/**
+	 * The id of the only row of the table.
+	 */
+	public static final int ROW_ID = 1;
+
+	@Id
+	@Column(name = "id")
+	private int id = ROW_ID;
+
+	/**
+	 * The number of DNAs registered, mutant or not.
+	 */
+	@Column(name = "human_count")
+	private long humanCount;
+
+	/**
+	 * The number of mutant DNAs registered.
+	 */
+	@Column(name = "mutant_count")
+	private long mutantCount;
+
+	public DnaStats() {
+	}
+
+	/**
+	 * Creates the stats with the given counts.
+	 *
+	 * @param humanCount the number of DNAs registered.
+	 * @param mutantCount the number of mutant DNAs registered.
+	 */
+	public DnaStats(long humanCount, long mutantCount) {
+		this.humanCount = humanCount;
+		this.mutantCount = mutantCount;
+	}
+
+	/**
+	 * Gets the number of DNAs registered, mutant or not.
+	 *
+	 * @return the number of DNAs.
+	 */
+	public long getHumanCount() {
+		return humanCount;
+	}
+
+	/**
+	 * Gets the number of mutant DNAs registered.
+	 *
+	 * @return the number of mutant DNAs.
+	 */
+	public long getMutantCount() {
+		return mutantCount;
+	}
+
+	/**
+	 * Gets the ratio of mutant DNAs to registered DNAs.
+	 *
+	 * @return the ratio, 0 when no DNA is registered.
+	 */
+	public double getRatio() {
+		return humanCount == 0 ? 0 : (double) mutantCount / humanCount;
+	}
+}
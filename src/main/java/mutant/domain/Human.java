@@ -1,8 +1,11 @@
 package mutant.domain;
 
+import java.time.Instant;
+
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
 import javax.persistence.Transient;
 
@@ -12,15 +15,15 @@ import javax.persistence.Transient;
  * @author Hélio De Rosa Junior
  */
 @Entity
-@Table(name="human")
+@Table(name="human", indexes = @Index(name = "human_created_at", columnList = "created_at"))
 public class Human {
 
 	/**
-	 * The DNA identifier.
+	 * The DNA identifier, the 16 bytes digest of its nitrogenous bases.
 	 */
 	@Id
-    @Column(name = "id")
-	private long id;
+    @Column(name = "id", columnDefinition = "BINARY(16)")
+	private byte[] id;
 	
 	/**
 	 * The human DNA sequence.
@@ -28,6 +31,13 @@ public class Human {
 	@Transient
 	public String[] dnaSequence;
 	
+	/**
+	 * The packed DNA, written to the <code>human_dna</code> table with the
+	 * human and never read with it.
+	 */
+	@Transient
+	private PackedDna dna;
+	
 	/**
 	 * Flag indicating if human is a mutant or not.
 	 */
@@ -35,11 +45,17 @@ public class Human {
 	public boolean isMutant;
 	
 	/**
-	 * Gets the human DNA sequence.
+	 * The moment the human was registered.
+	 */
+	@Column(name = "created_at")
+	private Instant createdAt;
+	
+	/**
+	 * Gets the human DNA id.
 	 * 
-	 * @return the human DNA sequence.
+	 * @return the human DNA id.
 	 */
-	public long getId() {
+	public byte[] getId() {
 		return id;
 	}
 	
@@ -52,6 +68,15 @@ public class Human {
 		return dnaSequence;
 	}
 	
+	/**
+	 * Gets the packed DNA of a human to be written.
+	 * 
+	 * @return the packed DNA, <code>null</code> when it is not kept.
+	 */
+	public PackedDna getDna() {
+		return dna;
+	}
+	
 	/**
 	 * Get the human's mutant status.
 	 * 
@@ -62,12 +87,22 @@ public class Human {
 		return isMutant;
 	}
 	
+	/**
+	 * Gets the moment the human was registered.
+	 * 
+	 * @return the registration moment, <code>null</code> before the human
+	 *     is queued to be written.
+	 */
+	public Instant getCreatedAt() {
+		return createdAt;
+	}
+	
 	/**
 	 * Sets the human DNA id.
 	 * 
-	 * @return the human DNA id.
+	 * @param id the human DNA id.
 	 */
-	public void setId(Long id) {
+	public void setId(byte[] id) {
 		this.id = id;
 	}
 	
@@ -80,6 +115,24 @@ public class Human {
 		this.dnaSequence = dnaSequence;
 	}
 	
+	/**
+	 * Sets the packed DNA to be written with the human.
+	 * 
+	 * @param dna the packed DNA.
+	 */
+	public void setDna(PackedDna dna) {
+		this.dna = dna;
+	}
+	
+	/**
+	 * Sets the moment the human was registered.
+	 * 
+	 * @param createdAt the registration moment.
+	 */
+	public void setCreatedAt(Instant createdAt) {
+		this.createdAt = createdAt;
+	}
+	
 	/**
 	 * Sets the human's mutant status.
 	 * 
@@ -0,0 +1,99 @@
+package mutant.domain;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+import mutant.codec.DnaCodec;
+import mutant.exception.InvalidDnaException;
+
+/**
+ * This class holds the nitrogenous bases of a human, so its DNA can be
+ * verified again under new rules.
+ *
+ * The bases are packed 4 per byte by <code>DnaCodec.packBases</code>, a
+ * quarter of their text, and kept with the size of the DNA. They are in
+ * their own table, sharing the id of the <code>human</code> row, so the
+ * queries on the humans and the stats never read them: they are loaded only
+ * when asked for by id.
+ */
+@Entity
+@Table(name = "human_dna")
+public class HumanDna {
+
+	/**
+	 * The DNA identifier, the same of the human.
+	 */
+	@Id
+	@Column(name = "id", columnDefinition = "BINARY(16)")
+	private byte[] id;
+
+	/**
+	 * The number of nitrogenous bases of each row, which is also the number
+	 * of rows.
+	 */
+	@Column(name = "dna_size")
+	private int size;
+
+	/**
+	 * The packed nitrogenous bases.
+	 */
+	@Lob
+	@Column(name = "bases", columnDefinition = "LONGBLOB")
+	private byte[] bases;
+
+	public HumanDna() {
+	}
+
+	/**
+	 * Creates the bases of a human from its packed DNA.
+	 *
+	 * @param id the DNA identifier.
+	 * @param dna the packed DNA.
+	 */
+	public HumanDna(byte[] id, PackedDna dna) {
+		this.id = id;
+		this.size = dna.getSize();
+		this.bases = DnaCodec.packBases(dna);
+	}
+
+	/**
+	 * Gets the DNA identifier.
+	 *
+	 * @return the DNA identifier.
+	 */
+	public byte[] getId() {
+		return id;
+	}
+
+	/**
+	 * Gets the number of nitrogenous bases of each row.
+	 *
+	 * @return the size of the DNA.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Gets the packed nitrogenous bases.
+	 *
+	 * @return the bases, 4 per byte.
+	 */
+	public byte[] getBases() {
+		return bases;
+	}
+
+	/**
+	 * This method unpacks the bases into a <code>PackedDna</code>.
+	 *
+	 * @return the packed DNA.
+	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when the
+	 *     bases do not match the size.
+	 */
+	public PackedDna toPackedDna() throws InvalidDnaException {
+		return DnaCodec.unpackBases(size, bases);
+	}
+}
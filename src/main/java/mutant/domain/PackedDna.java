@@ -0,0 +1,175 @@
+package mutant.domain;
+
+import java.util.Arrays;
+
+/**
+ * This class holds a DNA with its nitrogenous bases packed in 2 bits each:
+ * A = 0, C = 1, G = 2 and T = 3.
+ *
+ * The matrix is stored row by row in <code>long</code> words of 32 bases,
+ * and every row starts in a new word, so a 10000 x 10000 DNA takes about
+ * 25 MB. The column j of a row is kept in the bits 2j and 2j + 1 of its
+ * word.
+ *
+ * The words are not copied when the object is created or read, so callers
+ * must not change them after a <code>PackedDna</code> is built.
+ */
+public final class PackedDna {
+
+	/**
+	 * The number of bases packed in a single <code>long</code> word.
+	 */
+	public static final int BASES_PER_WORD = 32;
+
+	/**
+	 * The nitrogenous base letters, indexed by their code.
+	 */
+	public static final char[] BASES = {'A', 'C', 'G', 'T'};
+
+	/**
+	 * A word with the low bit of every base set.
+	 */
+	private static final long LOW_BITS = 0x5555555555555555L;
+
+	/**
+	 * A word filled with each base code, indexed by the code.
+	 */
+	private static final long[] REPEATED = {0L, LOW_BITS, LOW_BITS << 1, -1L};
+
+	/**
+	 * The number of nitrogenous bases of each row, which is also the number
+	 * of rows.
+	 */
+	private final int size;
+
+	/**
+	 * The number of words used by each row.
+	 */
+	private final int rowWords;
+
+	/**
+	 * The packed bases.
+	 */
+	private final long[] words;
+
+	/**
+	 * Creates a packed DNA from its words.
+	 *
+	 * @param size the number of nitrogenous bases of each row.
+	 * @param words the packed bases, {@link #rowWords(int)} words per row.
+	 */
+	public PackedDna(int size, long[] words) {
+		if(words.length != (long) size * rowWords(size)) {
+			throw new IllegalArgumentException("A DNA of size " + size + " must have " + (long) size * rowWords(size) + " words.");
+		}
+		this.size = size;
+		this.rowWords = rowWords(size);
+		this.words = words;
+	}
+
+	/**
+	 * This method calculates the number of words used by each row.
+	 *
+	 * @param size the number of nitrogenous bases of each row.
+	 * @return the number of words of a row.
+	 */
+	public static int rowWords(int size) {
+		return (size + BASES_PER_WORD - 1) / BASES_PER_WORD;
+	}
+
+	/**
+	 * This method gets the number of nitrogenous bases of each row.
+	 *
+	 * @return the DNA size.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * This method gets the number of words used by each row.
+	 *
+	 * @return the number of words of a row.
+	 */
+	public int getRowWords() {
+		return rowWords;
+	}
+
+	/**
+	 * This method gets the packed bases. The array is not copied.
+	 *
+	 * @return the packed bases.
+	 */
+	public long[] getWords() {
+		return words;
+	}
+
+	/**
+	 * This method gets the code of a single base.
+	 *
+	 * @param row the row of the base.
+	 * @param column the column of the base.
+	 * @return the base code, between 0 and 3.
+	 */
+	public int getBase(int row, int column) {
+		long word = words[row * rowWords + column / BASES_PER_WORD];
+		return (int) (word >>> ((column % BASES_PER_WORD) << 1)) & 3;
+	}
+
+	/**
+	 * This method gets which columns of a row hold the given base, 64
+	 * columns at a time.
+	 *
+	 * @param base the base code.
+	 * @param row the row.
+	 * @param word the index of the group of 64 columns.
+	 * @return a word where bit j is set when the column
+	 *     <code>64 * word + j</code> holds the base.
+	 */
+	public long occupancy(int base, int row, int word) {
+		int index = row * rowWords + 2 * word;
+		long occupancy = compress(match(words[index], base));
+		if(2 * word + 1 < rowWords) {
+			occupancy |= compress(match(words[index + 1], base)) << 32;
+		}
+
+		int columns = size - 64 * word;
+		return columns < 64 ? occupancy & ((1L << columns) - 1) : occupancy;
+	}
+
+	/**
+	 * Sets the low bit of every base of the word equal to the given one.
+	 */
+	private static long match(long word, int base) {
+		long difference = word ^ REPEATED[base];
+		return ~(difference | (difference >>> 1)) & LOW_BITS;
+	}
+
+	/**
+	 * Moves the even bits of the word to its lower 32 bits.
+	 */
+	private static long compress(long bits) {
+		bits = (bits | (bits >>> 1)) & 0x3333333333333333L;
+		bits = (bits | (bits >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+		bits = (bits | (bits >>> 4)) & 0x00FF00FF00FF00FFL;
+		bits = (bits | (bits >>> 8)) & 0x0000FFFF0000FFFFL;
+		return (bits | (bits >>> 16)) & 0x00000000FFFFFFFFL;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if(this == other) {
+			return true;
+		}
+		if(!(other instanceof PackedDna)) {
+			return false;
+		}
+		PackedDna dna = (PackedDna) other;
+		return size == dna.size && Arrays.equals(words, dna.words);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * size + Arrays.hashCode(words);
+	}
+}
@@ -0,0 +1,138 @@
+package mutant.domain;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * This class holds how far the reprocessing of the stored DNAs went, kept in
+ * a single row that is updated in the same transaction as the verdicts
+ * changed, so a reprocessing stopped is resumed after the last DNA whose
+ * verdict was written.
+ */
+@Entity
+@Table(name = "reprocess_checkpoint")
+public class ReprocessCheckpoint {
+
+	/**
+	 * The id of the only row of the table.
+	 */
+	public static final int ROW_ID = 1;
+
+	@Id
+	@Column(name = "id")
+	private int id = ROW_ID;
+
+	/**
+	 * The id of the last DNA reprocessed, in the order of the ids.
+	 */
+	@Column(name = "last_id", columnDefinition = "BINARY(16)")
+	private byte[] lastId;
+
+	/**
+	 * The number of sequences of the policy the DNAs are reprocessed with.
+	 */
+	@Column(name = "required_sequences")
+	private int requiredSequences;
+
+	/**
+	 * The sequence length of the policy the DNAs are reprocessed with.
+	 */
+	@Column(name = "sequence_length")
+	private int sequenceLength;
+
+	/**
+	 * The number of DNAs reprocessed.
+	 */
+	@Column(name = "processed")
+	private long processed;
+
+	/**
+	 * The number of verdicts changed.
+	 */
+	@Column(name = "changed")
+	private long changed;
+
+	/**
+	 * Whether every DNA was reprocessed.
+	 */
+	@Column(name = "finished")
+	private boolean finished;
+
+	public ReprocessCheckpoint() {
+	}
+
+	/**
+	 * Creates a checkpoint.
+	 *
+	 * @param lastId the id of the last DNA reprocessed.
+	 * @param requiredSequences the number of sequences of the policy.
+	 * @param sequenceLength the sequence length of the policy.
+	 * @param processed the number of DNAs reprocessed.
+	 * @param changed the number of verdicts changed.
+	 * @param finished whether every DNA was reprocessed.
+	 */
+	public ReprocessCheckpoint(byte[] lastId, int requiredSequences, int sequenceLength, long processed, long changed, boolean finished) {
+		this.lastId = lastId;
+		this.requiredSequences = requiredSequences;
+		this.sequenceLength = sequenceLength;
+		this.processed = processed;
+		this.changed = changed;
+		this.finished = finished;
+	}
+
+	/**
+	 * Gets the id of the last DNA reprocessed.
+	 *
+	 * @return the DNA id, <code>null</code> when none was reprocessed.
+	 */
+	public byte[] getLastId() {
+		return lastId;
+	}
+
+	/**
+	 * Gets the number of sequences of the policy.
+	 *
+	 * @return the required sequences.
+	 */
+	public int getRequiredSequences() {
+		return requiredSequences;
+	}
+
+	/**
+	 * Gets the sequence length of the policy.
+	 *
+	 * @return the sequence length.
+	 */
+	public int getSequenceLength() {
+		return sequenceLength;
+	}
+
+	/**
+	 * Gets the number of DNAs reprocessed.
+	 *
+	 * @return the number of DNAs.
+	 */
+	public long getProcessed() {
+		return processed;
+	}
+
+	/**
+	 * Gets the number of verdicts changed.
+	 *
+	 * @return the number of verdicts.
+	 */
+	public long getChanged() {
+		return changed;
+	}
+
+	/**
+	 * Gets whether every DNA was reprocessed.
+	 *
+	 * @return <code>true</code> when the reprocessing is over.
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+}
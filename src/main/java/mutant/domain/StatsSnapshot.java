@@ -0,0 +1,79 @@
+package mutant.domain;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * This class holds the stats of the DNAs registered at a given moment,
+ * already serialized as the JSON body of /stats, with the entity tag that
+ * identifies it.
+ *
+ * A snapshot is published at a fixed interval and served as is by every
+ * request until the next one, so polling /stats costs no serialization.
+ * The entity tag only depends on the counts, so a new snapshot with the
+ * same counts keeps the tag and conditional requests still get a 304.
+ * Instances are immutable.
+ */
+public final class StatsSnapshot {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	/**
+	 * The snapshot with no DNA registered.
+	 */
+	public static final StatsSnapshot EMPTY = new StatsSnapshot(new DnaStats());
+
+	private final DnaStats stats;
+
+	private final byte[] json;
+
+	private final String etag;
+
+	/**
+	 * Creates a snapshot of the given counts.
+	 *
+	 * @param stats the number of DNAs registered.
+	 */
+	public StatsSnapshot(DnaStats stats) {
+		ObjectNode body = MAPPER.createObjectNode();
+		body.put("count_mutant_dna", stats.getMutantCount());
+		body.put("count_human_dna", stats.getHumanCount());
+		body.put("ratio", (float) stats.getRatio());
+		try {
+			this.json = MAPPER.writeValueAsBytes(body);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException(e);
+		}
+		this.stats = stats;
+		this.etag = "\"" + Long.toHexString(stats.getHumanCount()) + "-" + Long.toHexString(stats.getMutantCount()) + "\"";
+	}
+
+	/**
+	 * Gets the counts of the snapshot.
+	 *
+	 * @return the number of DNAs registered.
+	 */
+	public DnaStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * Gets the JSON body of /stats. The array is not copied and must not be
+	 * changed.
+	 *
+	 * @return the UTF-8 bytes of the body.
+	 */
+	public byte[] getJson() {
+		return json;
+	}
+
+	/**
+	 * Gets the entity tag of the snapshot, quoted.
+	 *
+	 * @return the entity tag.
+	 */
+	public String getEtag() {
+		return etag;
+	}
+}
@@ -0,0 +1,660 @@
+package mutant.importer;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import mutant.codec.DnaBinaryReader;
+import mutant.codec.DnaCodec;
+import mutant.codec.DnaJsonReader;
+import mutant.domain.Human;
+import mutant.domain.PackedDna;
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+import mutant.service.HumanService;
+import mutant.stats.Verdict;
+
+/**
+ * This class imports a file of DNAs through four stages, each one with its
+ * own threads and a bounded queue of chunks to the next one. The records in
+ * flight are also bounded by their bytes, taken by the read stage and given
+ * back once their chunk is saved, so a slow stage makes the ones before it
+ * wait instead of filling the heap, whatever the size of the records:
+ *
+ * <ol>
+ * <li><b>read</b>: a single thread splits the input in records, the lines
+ * of NDJSON or the DNAs of the packed format, without decoding them;</li>
+ * <li><b>validate</b>: the records are decoded and validated into packed
+ * DNAs, with the rules of /mutant;</li>
+ * <li><b>detect</b>: the DNAs are verified in batches by the
+ * <code>HumanService</code> and get their ids;</li>
+ * <li><b>persist</b>: a single thread saves each chunk with one grouped
+ * write, which the database storage turns into batched inserts.</li>
+ * </ol>
+ *
+ * The input may be compressed with gzip, and its format is found from its
+ * first bytes: the <code>DnaCodec.PACKED_MAGIC</code> of a file written
+ * with <code>DnaCodec.writePacked</code>, one DNA after the other, or else
+ * one JSON object per line with the <code>dna</code> field of /mutant. The
+ * chunks are processed in any order.
+ *
+ * Every stage counts its records and the time it was busy, from which
+ * its rate is given. The verdict of every record, invalid ones included,
+ * is recorded by the <code>HumanService</code> without a latency, like the
+ * ones of /mutant/batch. An invalid record is counted and skipped; an input
+ * that can not be read any more ends the reading, and the records already
+ * read are still imported.
+ */
+public class ImportPipeline {
+
+	/**
+	 * The formats of an input.
+	 */
+	public enum Format {
+		NDJSON, PACKED
+	}
+
+	/**
+	 * The progress of a stage.
+	 */
+	public static final class Stage {
+
+		private final String name;
+
+		private final LongAdder records = new LongAdder();
+
+		private final LongAdder busy = new LongAdder();
+
+		private final AtomicLong first = new AtomicLong();
+
+		private volatile long last;
+
+		private Stage(String name) {
+			this.name = name;
+		}
+
+		private void record(long start, int count) {
+			long end = System.nanoTime();
+			first.compareAndSet(0, start);
+			last = end;
+			records.add(count);
+			busy.add(end - start);
+		}
+
+		/**
+		 * This method gets the name of the stage.
+		 *
+		 * @return the name.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * This method gets the number of records that went through the
+		 * stage.
+		 *
+		 * @return the number of records.
+		 */
+		public long getRecords() {
+			return records.sum();
+		}
+
+		/**
+		 * This method gets the milliseconds the threads of the stage spent
+		 * processing records, added up.
+		 *
+		 * @return the busy time.
+		 */
+		public long getBusyMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(busy.sum());
+		}
+
+		/**
+		 * This method gets the records processed per second, from the
+		 * first record of the stage to the last one.
+		 *
+		 * @return the rate, 0 when no record went through the stage.
+		 */
+		public double getRate() {
+			long start = first.get();
+			if(start == 0 || last <= start) {
+				return 0;
+			}
+			return records.sum() * 1e9 / (last - start);
+		}
+	}
+
+	/**
+	 * The default number of records of a chunk.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 256;
+
+	/**
+	 * The default number of chunks waiting between two stages.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+	/**
+	 * The default biggest number of bytes of a record.
+	 */
+	public static final int DEFAULT_MAX_RECORD_BYTES = 1 << 24;
+
+	/**
+	 * The default biggest number of bytes of the records in flight.
+	 */
+	public static final int DEFAULT_MAX_BYTES = 1 << 26;
+
+	/**
+	 * The chunk that ends a queue.
+	 */
+	private static final Chunk END = new Chunk(0);
+
+	private final HumanService humanService;
+
+	private final int threads;
+
+	private final int chunkSize;
+
+	private final int queueCapacity;
+
+	private final int maxSize;
+
+	private final int maxRecordBytes;
+
+	private final int maxBytes;
+
+	/**
+	 * The bytes left for the records in flight.
+	 */
+	private final Semaphore inFlight;
+
+	private final Stage read = new Stage("read");
+
+	private final Stage validate = new Stage("validate");
+
+	private final Stage detect = new Stage("detect");
+
+	private final Stage persist = new Stage("persist");
+
+	private final LongAdder invalid = new LongAdder();
+
+	private final LongAdder mutants = new LongAdder();
+
+	private final LongAdder failed = new LongAdder();
+
+	private volatile Format format;
+
+	private volatile String error;
+
+	private volatile long elapsed;
+
+	/**
+	 * The bytes read and not split yet, used by the read stage only.
+	 */
+	private final byte[] buffer = new byte[1 << 16];
+
+	private int position;
+
+	private int limit;
+
+	/**
+	 * The line being split, used by the read stage only.
+	 */
+	private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+
+	/**
+	 * Creates a pipeline.
+	 *
+	 * @param humanService the service that verifies and saves the DNAs.
+	 * @param threads the number of threads of the validate and detect
+	 *     stages, each.
+	 * @param chunkSize the number of records passed at a time between the
+	 *     stages.
+	 * @param queueCapacity the number of chunks waiting between two stages.
+	 * @param maxSize the biggest number of bases of a row.
+	 * @param maxRecordBytes the biggest number of bytes of a record, above
+	 *     which it is invalid.
+	 * @param maxBytes the biggest number of bytes of the records read and
+	 *     not saved yet; a bigger record goes through alone.
+	 */
+	public ImportPipeline(HumanService humanService, int threads, int chunkSize, int queueCapacity, int maxSize, int maxRecordBytes, int maxBytes) {
+		if(threads < 1 || chunkSize < 1 || queueCapacity < 1 || maxBytes < 1) {
+			throw new IllegalArgumentException("The threads, the chunk size, the queue capacity and the bytes must be at least 1.");
+		}
+		this.humanService = humanService;
+		this.threads = threads;
+		this.chunkSize = chunkSize;
+		this.queueCapacity = queueCapacity;
+		this.maxSize = maxSize;
+		this.maxRecordBytes = maxRecordBytes;
+		this.maxBytes = maxBytes;
+		this.inFlight = new Semaphore(maxBytes);
+	}
+
+	/**
+	 * This method imports the DNAs of an input, returning once they are all
+	 * saved. The input is read by the calling thread and is not closed.
+	 *
+	 * @param input the DNAs, compressed with gzip or not.
+	 * @throws InterruptedException when interrupted while waiting for the
+	 *     stages.
+	 */
+	public void run(InputStream input) throws InterruptedException {
+		long start = System.nanoTime();
+		BlockingQueue<Chunk> records = new ArrayBlockingQueue<>(queueCapacity);
+		BlockingQueue<Chunk> dnas = new ArrayBlockingQueue<>(queueCapacity);
+		BlockingQueue<Chunk> verdicts = new ArrayBlockingQueue<>(queueCapacity);
+		ExecutorService executor = Executors.newFixedThreadPool(2 * threads + 1, task -> {
+			Thread thread = new Thread(task, "import-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			start(executor, threads, validate, records, dnas, threads, this::validate);
+			start(executor, threads, detect, dnas, verdicts, 1, this::detect);
+			start(executor, 1, persist, verdicts, null, 0, this::persist);
+			try {
+				read(input, records);
+			} catch (IOException e) {
+				error = String.valueOf(e);
+			} finally {
+				for(int i = 0; i < threads; i++) {
+					records.put(END);
+				}
+			}
+			executor.shutdown();
+			while(!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+				// waits for the last chunks to be saved
+			}
+		} finally {
+			executor.shutdownNow();
+			elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Starts the threads of a stage, which take the chunks of the input
+	 * queue until each one takes an end, and put the chunks processed in the
+	 * output queue. The last thread to end puts one end for each thread of
+	 * the next stage. A chunk that fails is counted and dropped, and the
+	 * bytes of a chunk dropped or done with are given back.
+	 */
+	private void start(ExecutorService executor, int workers, Stage stage, BlockingQueue<Chunk> input, BlockingQueue<Chunk> output,
+			int consumers, ChunkTask task) {
+		AtomicInteger running = new AtomicInteger(workers);
+		for(int i = 0; i < workers; i++) {
+			executor.execute(() -> {
+				try {
+					for(Chunk chunk = input.take(); chunk != END; chunk = input.take()) {
+						long start = System.nanoTime();
+						int processed;
+						try {
+							processed = task.process(chunk);
+						} catch (RuntimeException e) {
+							error = String.valueOf(e);
+							failed.add(chunk.size);
+							inFlight.release(chunk.bytes);
+							continue;
+						}
+						stage.record(start, processed);
+						if(output != null) {
+							output.put(chunk);
+						} else {
+							inFlight.release(chunk.bytes);
+						}
+					}
+					if(running.decrementAndGet() == 0) {
+						for(int k = 0; k < consumers; k++) {
+							output.put(END);
+						}
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Splits the input in records, chunk by chunk, each record taking its
+	 * bytes before it is passed on. When they are not left the chunk being
+	 * filled is passed on first, since its bytes are only given back once
+	 * it is saved.
+	 */
+	private void read(InputStream input, BlockingQueue<Chunk> records) throws IOException, InterruptedException {
+		PushbackInputStream stream = new PushbackInputStream(new BufferedInputStream(input, 1 << 16), 4);
+		byte[] head = peek(stream, 2);
+		if(head.length == 2 && (head[0] & 0xFF) == 0x1F && (head[1] & 0xFF) == 0x8B) {
+			stream = new PushbackInputStream(new BufferedInputStream(new GZIPInputStream(stream, 1 << 16), 1 << 16), 4);
+		}
+		head = peek(stream, 4);
+		format = head.length == 4 && ByteBuffer.wrap(head).getInt() == DnaCodec.PACKED_MAGIC ? Format.PACKED : Format.NDJSON;
+
+		Chunk chunk = new Chunk(chunkSize);
+		long start = System.nanoTime();
+		byte[] record;
+		try {
+			while((record = format == Format.PACKED ? readPacked(stream) : readLine(stream)) != null) {
+				int bytes = Math.max(1, Math.min(record.length, maxBytes));
+				if(!inFlight.tryAcquire(bytes)) {
+					if(chunk.size > 0) {
+						read.record(start, chunk.size);
+						records.put(chunk);
+						chunk = new Chunk(chunkSize);
+					}
+					inFlight.acquire(bytes);
+					start = System.nanoTime();
+				}
+				chunk.bytes += bytes;
+				chunk.records[chunk.size++] = record;
+				if(chunk.size == chunkSize) {
+					read.record(start, chunk.size);
+					records.put(chunk);
+					chunk = new Chunk(chunkSize);
+					start = System.nanoTime();
+				}
+			}
+		} finally {
+			// the records read before an error are imported
+			if(chunk.size > 0) {
+				read.record(start, chunk.size);
+				records.put(chunk);
+			}
+		}
+	}
+
+	private static byte[] peek(PushbackInputStream stream, int length) throws IOException {
+		byte[] head = new byte[length];
+		int count = 0;
+		for(int read; count < length && (read = stream.read(head, count, length - count)) > 0; ) {
+			count += read;
+		}
+		stream.unread(head, 0, count);
+		return Arrays.copyOf(head, count);
+	}
+
+	/**
+	 * Reads the next non blank line, without its end. A line bigger than the
+	 * biggest record is skipped and counted as invalid.
+	 *
+	 * @return the line, <code>null</code> at the end of the input.
+	 */
+	private byte[] readLine(InputStream stream) throws IOException {
+		line.reset();
+		boolean skipped = false;
+		while(true) {
+			if(position == limit) {
+				position = 0;
+				limit = Math.max(0, stream.read(buffer));
+				if(limit == 0) {
+					return finishLine(skipped);
+				}
+			}
+			int end = position;
+			while(end < limit && buffer[end] != '\n') {
+				end++;
+			}
+			if(!skipped && line.size() + end - position > maxRecordBytes) {
+				skipped = true;
+				line.reset();
+			}
+			if(!skipped) {
+				line.write(buffer, position, end - position);
+			}
+			position = end < limit ? end + 1 : end;
+			if(end < limit) {
+				byte[] record = finishLine(skipped);
+				if(record != null) {
+					return record;
+				}
+				line.reset();
+				skipped = false;
+			}
+		}
+	}
+
+	/**
+	 * Ends the line being split.
+	 *
+	 * @return the line, <code>null</code> when it is blank or skipped.
+	 */
+	private byte[] finishLine(boolean skipped) {
+		if(skipped) {
+			invalid.increment();
+			humanService.recordVerdict(Verdict.INVALID, -1);
+			return null;
+		}
+		byte[] record = line.toByteArray();
+		for(byte value : record) {
+			if(value != ' ' && value != '\t' && value != '\r') {
+				return record;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Reads the next packed DNA, with its header.
+	 *
+	 * @return the DNA as written by <code>DnaCodec.writePacked</code>,
+	 *     <code>null</code> at the end of the input.
+	 * @throws IOException when the input does not hold a packed DNA.
+	 */
+	private byte[] readPacked(InputStream stream) throws IOException {
+		DataInputStream data = new DataInputStream(stream);
+		byte[] header = new byte[DnaCodec.PACKED_HEADER];
+		int count = 0;
+		for(int read; count < header.length && (read = data.read(header, count, header.length - count)) > 0; ) {
+			count += read;
+		}
+		if(count == 0) {
+			return null;
+		}
+		if(count < header.length) {
+			throw new EOFException("Packed DNA header truncated.");
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(header);
+		int size = buffer.getInt(4);
+		if(buffer.getInt(0) != DnaCodec.PACKED_MAGIC || size <= 0 || size > maxSize) {
+			throw new IOException("Invalid packed DNA header.");
+		}
+		long length = DnaCodec.PACKED_HEADER + (long) size * PackedDna.rowWords(size) * Long.BYTES;
+		if(length > maxRecordBytes) {
+			throw new IOException("Packed DNA bigger than " + maxRecordBytes + " bytes.");
+		}
+		byte[] record = Arrays.copyOf(header, (int) length);
+		data.readFully(record, DnaCodec.PACKED_HEADER, record.length - DnaCodec.PACKED_HEADER);
+		return record;
+	}
+
+	/**
+	 * Decodes and validates the records of a chunk into packed DNAs, the
+	 * invalid ones left <code>null</code>. A packed record with bits set
+	 * after the last base of a row is invalid, since it would give the same
+	 * DNA another id.
+	 */
+	private int validate(Chunk chunk) {
+		chunk.dnas = new PackedDna[chunk.size];
+		for(int i = 0; i < chunk.size; i++) {
+			try {
+				chunk.dnas[i] = format == Format.PACKED ? DnaBinaryReader.read(ByteBuffer.wrap(chunk.records[i]), maxSize) : DnaJsonReader.read(new ByteArrayInputStream(chunk.records[i]), maxSize);
+			} catch (JsonProcessingException | InvalidDnaException | InvalidNitrogenousBasesException e) {
+				invalid.increment();
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			chunk.records[i] = null;
+		}
+		return chunk.size;
+	}
+
+	/**
+	 * Verifies the DNAs of a chunk, creates their ids and records the
+	 * verdicts of all its records.
+	 */
+	private int detect(Chunk chunk) {
+		chunk.verdicts = humanService.isMutantBatch(chunk.dnas);
+		chunk.ids = new byte[chunk.size][];
+		int count = 0;
+		for(int i = 0; i < chunk.size; i++) {
+			if(chunk.dnas[i] != null) {
+				chunk.ids[i] = humanService.createDnaId(chunk.dnas[i]);
+				count++;
+				if(chunk.verdicts[i]) {
+					mutants.increment();
+				}
+				humanService.recordVerdict(chunk.verdicts[i] ? Verdict.MUTANT : Verdict.HUMAN, -1);
+			} else {
+				humanService.recordVerdict(Verdict.INVALID, -1);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Saves the valid DNAs of a chunk with one grouped write.
+	 */
+	private int persist(Chunk chunk) {
+		List<Human> humans = new ArrayList<>(chunk.size);
+		for(int i = 0; i < chunk.size; i++) {
+			if(chunk.dnas[i] != null) {
+				Human human = new Human();
+				human.setId(chunk.ids[i]);
+				human.setMutant(chunk.verdicts[i]);
+				human.setDna(chunk.dnas[i]);
+				humans.add(human);
+			}
+		}
+		if(!humans.isEmpty()) {
+			humanService.saveAll(humans);
+		}
+		return humans.size();
+	}
+
+	/**
+	 * This method gets the stages, in their order.
+	 *
+	 * @return the read, validate, detect and persist stages.
+	 */
+	public List<Stage> getStages() {
+		return Arrays.asList(read, validate, detect, persist);
+	}
+
+	/**
+	 * This method gets the format found in the input.
+	 *
+	 * @return the format, <code>null</code> before the input is read.
+	 */
+	public Format getFormat() {
+		return format;
+	}
+
+	/**
+	 * This method gets the number of records that are not a valid DNA.
+	 *
+	 * @return the number of invalid records.
+	 */
+	public long getInvalid() {
+		return invalid.sum();
+	}
+
+	/**
+	 * This method gets the number of valid DNAs from mutants.
+	 *
+	 * @return the number of mutants.
+	 */
+	public long getMutants() {
+		return mutants.sum();
+	}
+
+	/**
+	 * This method gets the number of records dropped because a stage failed
+	 * on their chunk.
+	 *
+	 * @return the number of records.
+	 */
+	public long getFailed() {
+		return failed.sum();
+	}
+
+	/**
+	 * This method gets the error that ended the reading or made a chunk
+	 * fail, the last one when there were many.
+	 *
+	 * @return the error, <code>null</code> when there was none.
+	 */
+	public String getError() {
+		return error;
+	}
+
+	/**
+	 * This method gets the milliseconds the import took.
+	 *
+	 * @return the elapsed time.
+	 */
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	/**
+	 * The work of a stage on a chunk.
+	 */
+	@FunctionalInterface
+	private interface ChunkTask {
+
+		/**
+		 * Processes a chunk.
+		 *
+		 * @return the number of records processed, the invalid ones
+		 *     excluded once they are known.
+		 */
+		int process(Chunk chunk);
+	}
+
+	/**
+	 * The records of a chunk, and what the stages made of them.
+	 */
+	private static final class Chunk {
+
+		private final byte[][] records;
+
+		private int size;
+
+		/**
+		 * The bytes taken by the records.
+		 */
+		private int bytes;
+
+		private PackedDna[] dnas;
+
+		private boolean[] verdicts;
+
+		private byte[][] ids;
+
+		Chunk(int capacity) {
+			records = new byte[capacity][];
+		}
+	}
+}
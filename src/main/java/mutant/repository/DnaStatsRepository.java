@@ -0,0 +1,11 @@
+package mutant.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import mutant.domain.DnaStats;
+
+@Repository
+public interface DnaStatsRepository extends JpaRepository<DnaStats, Integer> {
+	
+}
@@ -1,11 +1,43 @@
 package mutant.repository;
 
+import java.time.Instant;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import mutant.domain.Human;
 
 @Repository
-public interface HumanRepository extends JpaRepository<Human, Long> {
+public interface HumanRepository extends JpaRepository<Human, byte[]> {
+	
+	/**
+	 * This method streams the id, the verdict and the registration moment of
+	 * every human, with the MySQL streaming fetch size so the rows are read
+	 * one at a time. It must be called in a transaction and the stream must
+	 * be closed.
+	 * 
+	 * @return the id, the verdict and the registration moment of each human.
+	 */
+	@QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+	@Query("select h.id, h.isMutant, h.createdAt from Human h")
+	Stream<Object[]> streamVerdicts();
+	
+	/**
+	 * This method streams the id, the verdict and the registration moment of
+	 * the humans registered since the given moment, in the same way as
+	 * {@link #streamVerdicts()}.
+	 * 
+	 * @param since the first registration moment.
+	 * @return the id, the verdict and the registration moment of each human.
+	 */
+	@QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+	@Query("select h.id, h.isMutant, h.createdAt from Human h where h.createdAt >= :since")
+	Stream<Object[]> streamVerdictsSince(@Param("since") Instant since);
 	
-}
\ No newline at end of file
+}
@@ -0,0 +1,419 @@
+package mutant.repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import mutant.domain.DnaStats;
+import mutant.domain.Human;
+import mutant.domain.HumanDna;
+import mutant.storage.HumanStore;
+
+/**
+ * This class writes the humans into the database behind the requests.
+ *
+ * The humans are put in a bounded queue and a single thread writes them in
+ * batches, with one multi-row <code>INSERT IGNORE</code> for the mutants and
+ * another for the others, so there is no SELECT before the insert as in
+ * <code>JpaRepository.save</code> and a DNA sent twice before being written
+ * is not an error. The rows actually inserted by each statement are added
+ * to the <code>dna_stats</code> row in the same transaction, so the counts
+ * never include a DNA twice. The packed DNAs of the humans that have one
+ * are inserted into the <code>human_dna</code> table in the same
+ * transaction, with a batched <code>INSERT IGNORE</code>. A batch is
+ * written once it has
+ * <code>mutant.persistence.batch-size</code> humans or once
+ * <code>mutant.persistence.flush-interval</code> milliseconds have passed
+ * since its first human was queued.
+ *
+ * When the queue is full the callers wait for room, so a database slower
+ * than the requests slows the requests down instead of filling the heap.
+ * The queue is bounded both by its humans and by the bytes of their packed
+ * DNAs, which are only given back once their batch is written, so it holds
+ * at most <code>mutant.persistence.queue-bytes</code> of bases however big
+ * the DNAs kept are; a DNA bigger than that is queued alone. A
+ * batch that fails is retried until it is written; only at shutdown it is
+ * given up after a few attempts.
+ *
+ * It is only created when the humans are stored in the database.
+ */
+@Repository
+@ConditionalOnProperty(name = HumanStore.TYPE_PROPERTY, havingValue = JpaHumanStore.TYPE, matchIfMissing = true)
+@DependsOn("entityManagerFactory")
+public class HumanWriteBehind {
+
+	/**
+	 * The statement that inserts the humans of a batch with the same
+	 * verdict, followed by one row per human.
+	 */
+	private static final String INSERT = "INSERT IGNORE INTO human (id, mutant_flag, created_at) VALUES ";
+
+	private static final String ROW = "(?, ?, ?)";
+
+	/**
+	 * The statement that inserts the packed DNA of a human.
+	 */
+	private static final String INSERT_DNA = "INSERT IGNORE INTO human_dna (id, dna_size, bases) VALUES (?, ?, ?)";
+
+	/**
+	 * The statement that adds the humans inserted to the counts, creating
+	 * the row of the counts when it is missing.
+	 */
+	private static final String UPDATE_STATS = "INSERT INTO dna_stats (id, human_count, mutant_count) VALUES (" + DnaStats.ROW_ID + ", ?, ?)"
+			+ " ON DUPLICATE KEY UPDATE human_count = human_count + VALUES(human_count), mutant_count = mutant_count + VALUES(mutant_count)";
+
+	/**
+	 * The statement that counts the humans already registered, run only
+	 * when the row of the counts does not exist yet, since MySQL counts the
+	 * whole table even when the row is then ignored.
+	 */
+	private static final String CREATE_STATS = "INSERT IGNORE INTO dna_stats (id, human_count, mutant_count)"
+			+ " SELECT " + DnaStats.ROW_ID + ", COUNT(*), COALESCE(SUM(mutant_flag), 0) FROM human";
+
+	/**
+	 * The number of times a batch is tried at shutdown before being given
+	 * up.
+	 */
+	private static final int SHUTDOWN_ATTEMPTS = 3;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private DnaStatsRepository dnaStatsRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private TransactionTemplate transactionTemplate;
+
+	/**
+	 * The number of humans waiting to be written after which the callers
+	 * wait.
+	 */
+	@Value("${mutant.persistence.queue-capacity:10000}")
+	private int queueCapacity = 10000;
+
+	/**
+	 * The biggest number of humans written by a single statement.
+	 */
+	@Value("${mutant.persistence.batch-size:500}")
+	private int batchSize = 500;
+
+	/**
+	 * The milliseconds a human waits for its batch to be full.
+	 */
+	@Value("${mutant.persistence.flush-interval:100}")
+	private long flushInterval = 100;
+
+	/**
+	 * The biggest number of bytes of the packed DNAs queued or being written
+	 * after which the callers wait.
+	 */
+	@Value("${mutant.persistence.queue-bytes:33554432}")
+	private long queueBytes = 1L << 25;
+
+	/**
+	 * The biggest DNA size whose bases are kept; the bases of the bigger
+	 * ones are not written.
+	 */
+	@Value("${mutant.persistence.dna-max-size:1024}")
+	private int dnaMaxSize = 1024;
+
+	private final LongAdder written = new LongAdder();
+
+	private final LongAdder failures = new LongAdder();
+
+	private final LongAdder dropped = new LongAdder();
+
+	private final LongAdder insertedHumans = new LongAdder();
+
+	private final LongAdder insertedMutants = new LongAdder();
+
+	private BlockingQueue<Human> queue;
+
+	/**
+	 * The words of packed DNAs left for the humans queued.
+	 */
+	private Semaphore queuedWords;
+
+	private int maxQueuedWords;
+
+	private Thread writer;
+
+	private volatile boolean running;
+
+	/**
+	 * This method counts the humans already registered, when the counts do
+	 * not exist yet, and starts the writer.
+	 */
+	@PostConstruct
+	public void start() {
+		transactionTemplate = new TransactionTemplate(transactionManager);
+		if(!dnaStatsRepository.existsById(DnaStats.ROW_ID)) {
+			jdbcTemplate.update(CREATE_STATS);
+		}
+		queue = new ArrayBlockingQueue<>(queueCapacity);
+		maxQueuedWords = (int) Math.max(1, Math.min(Integer.MAX_VALUE, queueBytes / Long.BYTES));
+		queuedWords = new Semaphore(maxQueuedWords);
+		running = true;
+		writer = new Thread(this::run, "human-write-behind");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * This method writes the humans still queued and stops the writer.
+	 *
+	 * @throws InterruptedException when interrupted while waiting for the
+	 *     writer.
+	 */
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		running = false;
+		writer.join();
+	}
+
+	/**
+	 * This method queues a human to be written, waiting while the queue is
+	 * full of humans or of bytes. The human is registered at the moment it is queued, unless it
+	 * already has a registration moment, and its DNA is dropped when it is
+	 * bigger than <code>mutant.persistence.dna-max-size</code>.
+	 *
+	 * @param human the human to be written.
+	 */
+	public void write(Human human) {
+		if(human.getCreatedAt() == null) {
+			human.setCreatedAt(Instant.now());
+		}
+		if(human.getDna() != null && human.getDna().getSize() > dnaMaxSize) {
+			human.setDna(null);
+		}
+		int words = words(human);
+		try {
+			queuedWords.acquire(words);
+			try {
+				queue.put(human);
+			} catch (InterruptedException e) {
+				queuedWords.release(words);
+				throw e;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while queuing a human.", e);
+		}
+	}
+
+	/**
+	 * This method queues many humans to be written, waiting while the queue
+	 * is full.
+	 *
+	 * @param humans the humans to be written.
+	 */
+	public void writeAll(List<Human> humans) {
+		for(Human human : humans) {
+			write(human);
+		}
+	}
+
+	/**
+	 * This method gets the number of humans waiting to be written.
+	 *
+	 * @return the number of humans queued.
+	 */
+	public int getPending() {
+		return queue.size();
+	}
+
+	/**
+	 * This method gets the number of humans written.
+	 *
+	 * @return the number of humans written.
+	 */
+	public long getWritten() {
+		return written.sum();
+	}
+
+	/**
+	 * This method gets the number of batches that failed to be written, each
+	 * attempt counted.
+	 *
+	 * @return the number of failures.
+	 */
+	public long getFailures() {
+		return failures.sum();
+	}
+
+	/**
+	 * This method gets the number of humans inserted by this writer, the
+	 * ones already registered not included.
+	 *
+	 * @return the number of humans inserted.
+	 */
+	public long getInsertedHumans() {
+		return insertedHumans.sum();
+	}
+
+	/**
+	 * This method gets the number of mutants inserted by this writer, the
+	 * ones already registered not included.
+	 *
+	 * @return the number of mutants inserted.
+	 */
+	public long getInsertedMutants() {
+		return insertedMutants.sum();
+	}
+
+	/**
+	 * This method gets the number of humans given up at shutdown.
+	 *
+	 * @return the number of humans not written.
+	 */
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	/**
+	 * Takes the humans from the queue in batches until it is stopped and the
+	 * queue is empty.
+	 */
+	private void run() {
+		List<Human> batch = new ArrayList<>(batchSize);
+		while(running || !queue.isEmpty()) {
+			try {
+				Human first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+				if(first == null) {
+					continue;
+				}
+				batch.add(first);
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushInterval);
+				while(batch.size() < batchSize) {
+					if(queue.drainTo(batch, batchSize - batch.size()) > 0) {
+						continue;
+					}
+					long wait = deadline - System.nanoTime();
+					Human next = wait > 0 && running ? queue.poll(wait, TimeUnit.NANOSECONDS) : null;
+					if(next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+			} catch (InterruptedException e) {
+				running = false;
+			}
+			if(!batch.isEmpty()) {
+				flush(batch);
+				for(Human human : batch) {
+					queuedWords.release(words(human));
+				}
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Gets the words a human takes in the queue, up to all of them.
+	 */
+	private int words(Human human) {
+		return human.getDna() == null ? 0 : Math.min(human.getDna().getWords().length, maxQueuedWords);
+	}
+
+	/**
+	 * Writes a batch, retrying it while the writer runs.
+	 */
+	private void flush(List<Human> batch) {
+		for(int attempt = 1; ; attempt++) {
+			try {
+				insert(batch);
+				written.add(batch.size());
+				return;
+			} catch (DataAccessException e) {
+				failures.increment();
+				if(!running && attempt >= SHUTDOWN_ATTEMPTS) {
+					dropped.add(batch.size());
+					return;
+				}
+				try {
+					Thread.sleep(Math.min(1000, 50L << Math.min(attempt, 5)));
+				} catch (InterruptedException i) {
+					running = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes a batch with the DNAs of its humans and adds the humans inserted
+	 * to the counts, in a single transaction, and then to the counters of
+	 * this writer.
+	 */
+	private void insert(List<Human> batch) {
+		List<Human> mutants = new ArrayList<>(batch.size());
+		List<Human> humans = new ArrayList<>(batch.size());
+		List<Object[]> dnas = new ArrayList<>(batch.size());
+		for(Human human : batch) {
+			(human.isMutant() ? mutants : humans).add(human);
+			if(human.getDna() != null) {
+				HumanDna dna = new HumanDna(human.getId(), human.getDna());
+				dnas.add(new Object[] {dna.getId(), dna.getSize(), dna.getBases()});
+			}
+		}
+		int[] inserted = transactionTemplate.execute(status -> {
+			int mutantCount = insert(mutants, true);
+			int humanCount = mutantCount + insert(humans, false);
+			if(!dnas.isEmpty()) {
+				jdbcTemplate.batchUpdate(INSERT_DNA, dnas);
+			}
+			if(humanCount > 0) {
+				jdbcTemplate.update(UPDATE_STATS, humanCount, mutantCount);
+			}
+			return new int[] {humanCount, mutantCount};
+		});
+		insertedHumans.add(inserted[0]);
+		insertedMutants.add(inserted[1]);
+	}
+
+	/**
+	 * Inserts humans of the same verdict with a single statement.
+	 *
+	 * @return the number of humans inserted, without the ones already
+	 *     registered.
+	 */
+	private int insert(List<Human> humans, boolean mutant) {
+		if(humans.isEmpty()) {
+			return 0;
+		}
+		StringBuilder sql = new StringBuilder(INSERT.length() + humans.size() * (ROW.length() + 2));
+		Object[] arguments = new Object[humans.size() * 3];
+		sql.append(INSERT);
+		for(int i = 0; i < humans.size(); i++) {
+			if(i > 0) {
+				sql.append(", ");
+			}
+			sql.append(ROW);
+			arguments[3 * i] = humans.get(i).getId();
+			arguments[3 * i + 1] = mutant;
+			arguments[3 * i + 2] = Timestamp.from(humans.get(i).getCreatedAt());
+		}
+		return jdbcTemplate.update(sql.toString(), arguments);
+	}
+}
@@ -0,0 +1,212 @@
+package mutant.repository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import mutant.codec.DnaCodec;
+import mutant.domain.DnaStats;
+import mutant.domain.Human;
+import mutant.domain.HumanDna;
+import mutant.domain.PackedDna;
+import mutant.domain.ReprocessCheckpoint;
+import mutant.exception.InvalidDnaException;
+import mutant.storage.HumanStore;
+import mutant.storage.VerdictVisitor;
+
+/**
+ * This class stores the humans in the MySQL database, the default storage.
+ *
+ * The humans are written behind the requests by the
+ * <code>HumanWriteBehind</code>, the counts are read from the
+ * <code>dna_stats</code> row, the verdicts are streamed from the
+ * <code>human</code> table and the DNAs are read one at a time from the
+ * <code>human_dna</code> table, or in pages ordered by id to be
+ * reprocessed. The verdicts changed by a reprocessing are written with the
+ * counts and the checkpoint in a single transaction.
+ */
+@Repository
+@ConditionalOnProperty(name = HumanStore.TYPE_PROPERTY, havingValue = JpaHumanStore.TYPE, matchIfMissing = true)
+public class JpaHumanStore implements HumanStore {
+
+	/**
+	 * The value of <code>mutant.storage.type</code> that chooses this
+	 * storage.
+	 */
+	public static final String TYPE = "mysql";
+
+	/**
+	 * The statement that reads the first page of the DNAs.
+	 */
+	private static final String FIRST_DNAS = "SELECT d.id, d.dna_size, d.bases, h.mutant_flag FROM human_dna d JOIN human h ON h.id = d.id"
+			+ " ORDER BY d.id LIMIT ?";
+
+	/**
+	 * The statement that reads the page of the DNAs after a given id.
+	 */
+	private static final String NEXT_DNAS = "SELECT d.id, d.dna_size, d.bases, h.mutant_flag FROM human_dna d JOIN human h ON h.id = d.id"
+			+ " WHERE d.id > ? ORDER BY d.id LIMIT ?";
+
+	private static final String UPDATE_VERDICT = "UPDATE human SET mutant_flag = ? WHERE id = ?";
+
+	private static final String UPDATE_MUTANTS = "UPDATE dna_stats SET mutant_count = mutant_count + ? WHERE id = " + DnaStats.ROW_ID;
+
+	private static final String UPDATE_CHECKPOINT = "INSERT INTO reprocess_checkpoint"
+			+ " (id, last_id, required_sequences, sequence_length, processed, changed, finished) VALUES (" + ReprocessCheckpoint.ROW_ID + ", ?, ?, ?, ?, ?, ?)"
+			+ " ON DUPLICATE KEY UPDATE last_id = VALUES(last_id), required_sequences = VALUES(required_sequences),"
+			+ " sequence_length = VALUES(sequence_length), processed = VALUES(processed), changed = VALUES(changed), finished = VALUES(finished)";
+
+	@Autowired
+	private HumanRepository humanRepository;
+
+	@Autowired
+	private DnaStatsRepository dnaStatsRepository;
+
+	@Autowired
+	private HumanDnaRepository humanDnaRepository;
+
+	@Autowired
+	private ReprocessCheckpointRepository reprocessCheckpointRepository;
+
+	@Autowired
+	private HumanWriteBehind humanWriteBehind;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	/**
+	 * The verdicts changed to mutant minus the ones changed to human.
+	 */
+	private final LongAdder changedMutants = new LongAdder();
+
+	@Override
+	public void write(Human human) {
+		humanWriteBehind.write(human);
+	}
+
+	@Override
+	public void writeAll(List<Human> humans) {
+		humanWriteBehind.writeAll(humans);
+	}
+
+	@Override
+	public long getInsertedHumans() {
+		return humanWriteBehind.getInsertedHumans();
+	}
+
+	@Override
+	public long getInsertedMutants() {
+		return humanWriteBehind.getInsertedMutants() + changedMutants.sum();
+	}
+
+	/**
+	 * This method reads the counts from the single row of counts, without
+	 * reading the DNAs.
+	 */
+	@Override
+	public DnaStats readStats() {
+		return dnaStatsRepository.findById(DnaStats.ROW_ID).orElseGet(DnaStats::new);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public void forEachVerdict(VerdictVisitor visitor) {
+		try(Stream<Object[]> verdicts = humanRepository.streamVerdicts()) {
+			verdicts.forEach(verdict -> visit(verdict, visitor));
+		}
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public void forEachVerdictSince(Instant since, VerdictVisitor visitor) {
+		try(Stream<Object[]> verdicts = humanRepository.streamVerdictsSince(since)) {
+			verdicts.forEach(verdict -> visit(verdict, visitor));
+		}
+	}
+
+	/**
+	 * This method reads the DNA of a human. A row whose bases do not match
+	 * its size is not a DNA and is ignored.
+	 */
+	@Override
+	public Optional<PackedDna> findDna(byte[] id) {
+		Optional<HumanDna> dna = humanDnaRepository.findById(id);
+		try {
+			return dna.isPresent() ? Optional.of(dna.get().toPackedDna()) : Optional.empty();
+		} catch (InvalidDnaException e) {
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * This method reads a page of the DNAs with keyset pagination, so every
+	 * page costs the same no matter how far it is. A row whose bases do not
+	 * match its size is read without its DNA, so the next page still starts
+	 * after it.
+	 */
+	@Override
+	public List<Human> findDnas(byte[] after, int limit) {
+		List<Human> humans = new ArrayList<>(limit);
+		Object[] arguments = after == null ? new Object[] {limit} : new Object[] {after, limit};
+		jdbcTemplate.query(after == null ? FIRST_DNAS : NEXT_DNAS, arguments, row -> {
+			Human human = new Human();
+			human.setId(row.getBytes(1));
+			human.setMutant(row.getBoolean(4));
+			try {
+				human.setDna(DnaCodec.unpackBases(row.getInt(2), row.getBytes(3)));
+			} catch (InvalidDnaException e) {
+				human.setDna(null);
+			}
+			humans.add(human);
+		});
+		return humans;
+	}
+
+	@Override
+	public Optional<ReprocessCheckpoint> readCheckpoint() {
+		return reprocessCheckpointRepository.findById(ReprocessCheckpoint.ROW_ID);
+	}
+
+	/**
+	 * This method writes the new verdicts with a batch, adds the change of
+	 * mutants to the counts and moves the checkpoint, in a single
+	 * transaction.
+	 */
+	@Override
+	@Transactional
+	public void updateVerdicts(List<Human> humans, ReprocessCheckpoint checkpoint) {
+		long mutants = 0;
+		List<Object[]> verdicts = new ArrayList<>(humans.size());
+		for(Human human : humans) {
+			verdicts.add(new Object[] {human.isMutant(), human.getId()});
+			mutants += human.isMutant() ? 1 : -1;
+		}
+		if(!verdicts.isEmpty()) {
+			jdbcTemplate.batchUpdate(UPDATE_VERDICT, verdicts);
+		}
+		if(mutants != 0) {
+			jdbcTemplate.update(UPDATE_MUTANTS, mutants);
+		}
+		jdbcTemplate.update(UPDATE_CHECKPOINT, checkpoint.getLastId(), checkpoint.getRequiredSequences(), checkpoint.getSequenceLength(),
+				checkpoint.getProcessed(), checkpoint.getChanged(), checkpoint.isFinished());
+		changedMutants.add(mutants);
+	}
+
+	@Override
+	public List<Human> findAll() {
+		return humanRepository.findAll();
+	}
+
+	private static void visit(Object[] verdict, VerdictVisitor visitor) {
+		visitor.visit((byte[]) verdict[0], (Boolean) verdict[1], (Instant) verdict[2]);
+	}
+}
@@ -0,0 +1,11 @@
+package mutant.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import mutant.domain.ReprocessCheckpoint;
+
+@Repository
+public interface ReprocessCheckpointRepository extends JpaRepository<ReprocessCheckpoint, Integer> {
+	
+}
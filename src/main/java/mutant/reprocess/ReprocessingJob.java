@@ -0,0 +1,299 @@
+package mutant.reprocess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import mutant.detector.DetectionPolicy;
+import mutant.domain.Human;
+import mutant.domain.PackedDna;
+import mutant.domain.ReprocessCheckpoint;
+import mutant.storage.HumanStore;
+
+/**
+ * This class verifies again every DNA kept by a <code>HumanStore</code>,
+ * after the detection rules change, and writes the verdicts that changed.
+ *
+ * The DNAs are read in pages ordered by id, so only one page is in the heap
+ * at a time and reading a page never costs more than the first one. The
+ * DNAs of a page are split among the threads of a pool, and once they are
+ * all verified the changed verdicts are written in a single batch with the
+ * checkpoint: the id of the last DNA of the page, the counts so far and the
+ * policy. A job started with the same policy as an unfinished checkpoint
+ * resumes after it, so a job stopped or a crash only redoes the page that
+ * was being verified.
+ *
+ * The progress is read from any thread while the job runs.
+ */
+public class ReprocessingJob implements Runnable {
+
+	/**
+	 * The state of a job.
+	 */
+	public enum Status {
+		CREATED, RUNNING, FINISHED, STOPPED, FAILED
+	}
+
+	private final HumanStore humanStore;
+
+	private final Predicate<PackedDna> detector;
+
+	private final DetectionPolicy policy;
+
+	private final int threads;
+
+	private final int pageSize;
+
+	/**
+	 * Receives every human whose verdict changed, once it is written.
+	 */
+	private final Consumer<Human> listener;
+
+	private final AtomicLong processed = new AtomicLong();
+
+	private final AtomicLong changed = new AtomicLong();
+
+	private volatile Status status = Status.CREATED;
+
+	private volatile boolean resumed;
+
+	/**
+	 * The DNAs verified by this job, without the ones of a resumed
+	 * checkpoint.
+	 */
+	private final AtomicLong verified = new AtomicLong();
+
+	private volatile long total;
+
+	private volatile long startTime;
+
+	private volatile long endTime;
+
+	private volatile String error;
+
+	private volatile boolean stopping;
+
+	/**
+	 * Creates a job.
+	 *
+	 * @param humanStore the store of the DNAs.
+	 * @param detector the verification of a DNA with the new rules.
+	 * @param policy the new rules, recorded in the checkpoint.
+	 * @param threads the number of threads verifying the DNAs.
+	 * @param pageSize the number of DNAs read at a time.
+	 * @param listener receives every human whose verdict changed.
+	 */
+	public ReprocessingJob(HumanStore humanStore, Predicate<PackedDna> detector, DetectionPolicy policy, int threads, int pageSize, Consumer<Human> listener) {
+		if(threads < 1 || pageSize < 1) {
+			throw new IllegalArgumentException("The threads and the page size must be at least 1.");
+		}
+		this.humanStore = humanStore;
+		this.detector = detector;
+		this.policy = policy;
+		this.threads = threads;
+		this.pageSize = pageSize;
+		this.listener = listener;
+	}
+
+	/**
+	 * This method reprocesses the DNAs, from the checkpoint when it was left
+	 * by an unfinished job with the same policy.
+	 */
+	@Override
+	public void run() {
+		startTime = System.currentTimeMillis();
+		status = Status.RUNNING;
+		total = humanStore.readStats().getHumanCount();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, task -> {
+			Thread thread = new Thread(task, "reprocessing-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			byte[] after = null;
+			Optional<ReprocessCheckpoint> checkpoint = humanStore.readCheckpoint();
+			if(checkpoint.isPresent() && !checkpoint.get().isFinished() && checkpoint.get().getLastId() != null
+					&& checkpoint.get().getRequiredSequences() == policy.getRequiredSequences()
+					&& checkpoint.get().getSequenceLength() == policy.getSequenceLength()) {
+				after = checkpoint.get().getLastId();
+				processed.set(checkpoint.get().getProcessed());
+				changed.set(checkpoint.get().getChanged());
+				resumed = true;
+			}
+
+			List<Human> page;
+			while(!stopping && !(page = humanStore.findDnas(after, pageSize)).isEmpty()) {
+				List<Human> changes = verify(page, executor);
+				after = page.get(page.size() - 1).getId();
+				humanStore.updateVerdicts(changes, checkpoint(after, processed.get() + page.size(), changed.get() + changes.size(), false));
+				processed.addAndGet(page.size());
+				verified.addAndGet(page.size());
+				changed.addAndGet(changes.size());
+				changes.forEach(listener);
+			}
+			if(!stopping) {
+				humanStore.updateVerdicts(new ArrayList<>(), checkpoint(after, processed.get(), changed.get(), true));
+			}
+			status = stopping ? Status.STOPPED : Status.FINISHED;
+		} catch (RuntimeException | InterruptedException | ExecutionException e) {
+			error = String.valueOf(e instanceof ExecutionException ? e.getCause() : e);
+			status = Status.FAILED;
+		} finally {
+			executor.shutdownNow();
+			endTime = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Verifies the DNAs of a page, split among the threads. A human read
+	 * without its DNA keeps its verdict.
+	 *
+	 * @return the humans whose verdict changed, with their new verdict.
+	 */
+	private List<Human> verify(List<Human> page, ExecutorService executor) throws InterruptedException, ExecutionException {
+		int slice = (page.size() + threads - 1) / threads;
+		List<Future<List<Human>>> slices = new ArrayList<>(threads);
+		for(int start = 0; start < page.size(); start += slice) {
+			List<Human> humans = page.subList(start, Math.min(page.size(), start + slice));
+			slices.add(executor.submit(() -> {
+				List<Human> changes = new ArrayList<>();
+				for(Human human : humans) {
+					if(human.getDna() == null) {
+						continue;
+					}
+					boolean mutant = detector.test(human.getDna());
+					if(mutant != human.isMutant()) {
+						human.setMutant(mutant);
+						changes.add(human);
+					}
+				}
+				return changes;
+			}));
+		}
+		List<Human> changes = new ArrayList<>();
+		for(Future<List<Human>> result : slices) {
+			changes.addAll(result.get());
+		}
+		return changes;
+	}
+
+	private ReprocessCheckpoint checkpoint(byte[] lastId, long processed, long changed, boolean finished) {
+		return new ReprocessCheckpoint(lastId == null ? null : Arrays.copyOf(lastId, lastId.length), policy.getRequiredSequences(),
+				policy.getSequenceLength(), processed, changed, finished);
+	}
+
+	/**
+	 * This method asks the job to stop after the page being verified. The
+	 * checkpoint is kept, so a new job with the same policy resumes it.
+	 */
+	public void stop() {
+		stopping = true;
+	}
+
+	/**
+	 * This method gets the state of the job.
+	 *
+	 * @return the status.
+	 */
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * This method verifies if the job is verifying DNAs.
+	 *
+	 * @return <code>true</code> while the job is running.
+	 */
+	public boolean isRunning() {
+		Status current = status;
+		return current == Status.CREATED || current == Status.RUNNING;
+	}
+
+	/**
+	 * This method verifies if the job resumed the checkpoint of a previous
+	 * one.
+	 *
+	 * @return <code>true</code> when the job was resumed.
+	 */
+	public boolean isResumed() {
+		return resumed;
+	}
+
+	/**
+	 * This method gets the policy the DNAs are verified with.
+	 *
+	 * @return the detection policy.
+	 */
+	public DetectionPolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * This method gets the number of DNAs verified, the ones of a resumed
+	 * checkpoint included.
+	 *
+	 * @return the number of DNAs.
+	 */
+	public long getProcessed() {
+		return processed.get();
+	}
+
+	/**
+	 * This method gets the number of DNAs verified by this job, without the
+	 * ones of a resumed checkpoint, to measure its rate.
+	 *
+	 * @return the number of DNAs.
+	 */
+	public long getVerified() {
+		return verified.get();
+	}
+
+	/**
+	 * This method gets the number of verdicts changed.
+	 *
+	 * @return the number of verdicts.
+	 */
+	public long getChanged() {
+		return changed.get();
+	}
+
+	/**
+	 * This method gets the number of humans registered when the job
+	 * started, an upper bound of the DNAs to be verified since the DNAs of
+	 * some humans are not kept.
+	 *
+	 * @return the number of humans.
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * This method gets the milliseconds the job has been running.
+	 *
+	 * @return the elapsed time.
+	 */
+	public long getElapsed() {
+		if(startTime == 0) {
+			return 0;
+		}
+		return (endTime == 0 ? System.currentTimeMillis() : endTime) - startTime;
+	}
+
+	/**
+	 * This method gets the error that made the job fail.
+	 *
+	 * @return the error, <code>null</code> when the job did not fail.
+	 */
+	public String getError() {
+		return error;
+	}
+}
@@ -0,0 +1,100 @@
+package mutant.server;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class keeps direct buffers of a single size to be used again, since
+ * allocating a direct buffer costs much more than a heap one and its memory
+ * is only freed by the garbage collection of the buffer.
+ *
+ * A buffer is taken from the pool or allocated when the pool is empty, and
+ * is given back cleared. At most <code>maxPooled</code> buffers are kept;
+ * the ones given back beyond that are left to the garbage collector. The
+ * pool is safe for concurrent use.
+ */
+public class DirectBufferPool {
+
+	private final int bufferSize;
+
+	private final int maxPooled;
+
+	private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+	private final AtomicInteger pooled = new AtomicInteger();
+
+	private final AtomicInteger allocated = new AtomicInteger();
+
+	/**
+	 * Creates a pool.
+	 *
+	 * @param bufferSize the capacity of every buffer.
+	 * @param maxPooled the biggest number of buffers kept.
+	 */
+	public DirectBufferPool(int bufferSize, int maxPooled) {
+		this.bufferSize = bufferSize;
+		this.maxPooled = maxPooled;
+	}
+
+	/**
+	 * This method takes a buffer from the pool, or allocates one.
+	 *
+	 * @return a cleared direct buffer.
+	 */
+	public ByteBuffer acquire() {
+		ByteBuffer buffer = buffers.poll();
+		if(buffer == null) {
+			allocated.incrementAndGet();
+			return ByteBuffer.allocateDirect(bufferSize);
+		}
+		pooled.decrementAndGet();
+		return buffer;
+	}
+
+	/**
+	 * This method gives a buffer back to the pool.
+	 *
+	 * @param buffer a buffer taken from this pool, no longer used.
+	 */
+	public void release(ByteBuffer buffer) {
+		if(buffer.capacity() != bufferSize || !buffer.isDirect()) {
+			throw new IllegalArgumentException("The buffer was not taken from this pool.");
+		}
+		if(pooled.incrementAndGet() <= maxPooled) {
+			buffer.clear();
+			buffers.offer(buffer);
+		} else {
+			pooled.decrementAndGet();
+		}
+	}
+
+	/**
+	 * This method gets the capacity of the buffers.
+	 *
+	 * @return the buffer size.
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * This method gets the number of buffers waiting in the pool.
+	 *
+	 * @return the number of buffers.
+	 */
+	public int getPooled() {
+		return pooled.get();
+	}
+
+	/**
+	 * This method gets the number of buffers allocated since the pool was
+	 * created.
+	 *
+	 * @return the number of buffers.
+	 */
+	public int getAllocated() {
+		return allocated.get();
+	}
+}
@@ -0,0 +1,654 @@
+package mutant.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import mutant.admission.WeightedAdmission;
+import mutant.codec.DnaBinaryReader;
+import mutant.codec.DnaCodec;
+import mutant.codec.DnaJsonReader;
+import mutant.domain.Human;
+import mutant.domain.PackedDna;
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+import mutant.service.HumanService;
+import mutant.stats.Verdict;
+
+/**
+ * This class answers /mutant over plain TCP, for internal callers that
+ * send many DNAs and do not need HTTP. It is started only when
+ * <code>mutant.tcp.enabled</code> is <code>true</code>.
+ *
+ * Every request is a frame with its length as a big endian integer
+ * followed by a DNA in one of the formats of <code>DnaBinaryReader</code>.
+ * Every response is a frame with its length followed by a status byte,
+ * {@link #STATUS_MUTANT}, {@link #STATUS_HUMAN} or {@link #STATUS_INVALID},
+ * and for an invalid DNA the return code in UTF-8. A client may send many
+ * requests without waiting, and gets the responses in the same order.
+ *
+ * The connections are spread among <code>mutant.tcp.threads</code> event
+ * loops, each one with its own <code>Selector</code>, which only read the
+ * requests and write the responses of their connections. A connection
+ * reads into and writes from direct buffers taken from a
+ * <code>DirectBufferPool</code>. A request bigger than a buffer is copied
+ * to a heap buffer that grows as its bytes arrive, so a length alone does
+ * not reserve memory. The DNAs are verified, saved and counted by a pool of
+ * <code>mutant.tcp.workers</code> threads, through the
+ * <code>HumanService</code> the same way as /mutant does, so a big DNA or a
+ * full write-behind queue does not stop the other connections of a loop.
+ *
+ * A connection stops reading while {@link #MAX_PIPELINED} of its requests
+ * are being verified or while its responses can not be sent, so a client
+ * that does not read them can not fill the memory. Every request takes its
+ * length from a <code>WeightedAdmission</code> of
+ * <code>mutant.tcp.max-bytes</code> bytes shared by all the connections
+ * before it is copied, and gives it back once verified; a connection whose
+ * next request does not fit stops reading until it does. At most
+ * <code>mutant.tcp.max-connections</code> connections are served, the
+ * others are closed as soon as they are accepted.
+ */
+@Component
+@ConditionalOnProperty(name = "mutant.tcp.enabled", havingValue = "true")
+public class VerdictServer {
+
+	/**
+	 * The status of a DNA from a mutant.
+	 */
+	public static final byte STATUS_MUTANT = 1;
+
+	/**
+	 * The status of a DNA from a human.
+	 */
+	public static final byte STATUS_HUMAN = 0;
+
+	/**
+	 * The status of an invalid DNA, followed by its return code.
+	 */
+	public static final byte STATUS_INVALID = 2;
+
+	/**
+	 * The default port.
+	 */
+	public static final int DEFAULT_PORT = 5001;
+
+	/**
+	 * The default capacity of the buffers of a connection.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The biggest number of requests of a connection verified or waiting
+	 * to be sent at the same time.
+	 */
+	public static final int MAX_PIPELINED = 64;
+
+	/**
+	 * The default biggest number of bytes of the requests read and verified
+	 * at the same time.
+	 */
+	public static final long DEFAULT_MAX_BYTES = 1L << 26;
+
+	/**
+	 * The default biggest number of connections.
+	 */
+	public static final int DEFAULT_MAX_CONNECTIONS = 1024;
+
+	/**
+	 * The milliseconds an event loop waits before trying again the
+	 * connections whose next request did not fit in the budget.
+	 */
+	private static final long STARVED_WAIT = 10;
+
+	/**
+	 * The room a response may take in the output buffer.
+	 */
+	static final int MAX_RESPONSE = 256;
+
+	/**
+	 * The response of a request whose verification failed, which closes
+	 * the connection.
+	 */
+	private static final byte[] FAILED = new byte[0];
+
+	@Autowired
+	private HumanService humanService;
+
+	@Value("${mutant.tcp.port:" + DEFAULT_PORT + "}")
+	private int port = DEFAULT_PORT;
+
+	/**
+	 * The number of event loops, 0 for the number of processors.
+	 */
+	@Value("${mutant.tcp.threads:0}")
+	private int threads;
+
+	/**
+	 * The number of threads verifying the DNAs, 0 for the number of
+	 * processors.
+	 */
+	@Value("${mutant.tcp.workers:0}")
+	private int workers;
+
+	@Value("${mutant.tcp.buffer-size:" + DEFAULT_BUFFER_SIZE + "}")
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+	/**
+	 * The biggest request accepted, a bigger one closes the connection; 0
+	 * for the biggest DNA of <code>mutant.detection.max-size</code>.
+	 */
+	@Value("${mutant.tcp.max-frame-bytes:0}")
+	private int maxFrameBytes;
+
+	/**
+	 * The biggest number of bytes of the requests read and verified at the
+	 * same time; a bigger request is admitted when nothing else runs.
+	 */
+	@Value("${mutant.tcp.max-bytes:" + DEFAULT_MAX_BYTES + "}")
+	private long maxBytes = DEFAULT_MAX_BYTES;
+
+	@Value("${mutant.tcp.max-connections:" + DEFAULT_MAX_CONNECTIONS + "}")
+	private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+
+	/**
+	 * The biggest number of nitrogenous bases of a row.
+	 */
+	@Value("${mutant.detection.max-size:" + DnaJsonReader.DEFAULT_MAX_SIZE + "}")
+	private int maxSize = DnaJsonReader.DEFAULT_MAX_SIZE;
+
+	private ServerSocketChannel server;
+
+	private EventLoop[] loops;
+
+	private Thread acceptor;
+
+	private ExecutorService executor;
+
+	private DirectBufferPool pool;
+
+	private WeightedAdmission admission;
+
+	private final AtomicInteger connections = new AtomicInteger();
+
+	private volatile boolean running;
+
+	/**
+	 * This method gets the length of the biggest request holding a DNA of
+	 * the given size, in any of the formats of <code>DnaBinaryReader</code>.
+	 *
+	 * @param maxSize the biggest number of bases of a row.
+	 * @return the length of the frame, its length prefix not included.
+	 */
+	public static int maxFrameBytes(int maxSize) {
+		long packed = (long) maxSize * PackedDna.rowWords(maxSize) * Long.BYTES;
+		long bytes = (long) maxSize * maxSize;
+		return (int) Math.min(Integer.MAX_VALUE, DnaCodec.PACKED_HEADER + Math.max(packed, bytes));
+	}
+
+	/**
+	 * This method opens the server socket and starts the event loops, the
+	 * threads verifying the DNAs and the thread that accepts the
+	 * connections.
+	 *
+	 * @throws IOException when the port can not be bound.
+	 */
+	@PostConstruct
+	public void start() throws IOException {
+		if(maxFrameBytes <= 0) {
+			maxFrameBytes = maxFrameBytes(maxSize);
+		}
+		int count = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		pool = new DirectBufferPool(bufferSize, 64 * count);
+		admission = new WeightedAdmission(maxBytes);
+		int poolSize = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+		// room for every request the connections may have pending
+		executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(maxConnections * MAX_PIPELINED), task -> {
+			Thread thread = new Thread(task, "verdict-server-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress(port));
+		running = true;
+
+		loops = new EventLoop[count];
+		for(int i = 0; i < count; i++) {
+			loops[i] = new EventLoop(Selector.open());
+			Thread thread = new Thread(loops[i], "verdict-server-" + i);
+			thread.setDaemon(true);
+			loops[i].thread = thread;
+			thread.start();
+		}
+		acceptor = new Thread(this::accept, "verdict-server-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * This method closes the server socket and every connection. It does
+	 * nothing when the server is already stopped.
+	 *
+	 * @throws IOException when the server socket can not be closed.
+	 * @throws InterruptedException when interrupted while waiting for the
+	 *     event loops.
+	 */
+	@PreDestroy
+	public void stop() throws IOException, InterruptedException {
+		if(!running) {
+			return;
+		}
+		running = false;
+		server.close();
+		acceptor.join();
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+		for(EventLoop loop : loops) {
+			loop.selector.wakeup();
+			loop.thread.join();
+		}
+	}
+
+	/**
+	 * This method gets the port the server listens to, which is chosen by
+	 * the system when <code>mutant.tcp.port</code> is 0.
+	 *
+	 * @return the local port.
+	 */
+	public int getPort() {
+		return server.socket().getLocalPort();
+	}
+
+	/**
+	 * This method gets the pool of the buffers of the connections.
+	 *
+	 * @return the buffer pool.
+	 */
+	public DirectBufferPool getBufferPool() {
+		return pool;
+	}
+
+	/**
+	 * This method gets the admission of the requests.
+	 *
+	 * @return the weighted admission, in bytes.
+	 */
+	public WeightedAdmission getAdmission() {
+		return admission;
+	}
+
+	/**
+	 * Accepts the connections, giving them to the event loops in turn.
+	 */
+	private void accept() {
+		int next = 0;
+		while(running) {
+			try {
+				SocketChannel channel = server.accept();
+				if(connections.incrementAndGet() > maxConnections) {
+					connections.decrementAndGet();
+					close(channel);
+					continue;
+				}
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true);
+				loops[next++ % loops.length].add(channel);
+			} catch (ClosedChannelException e) {
+				return;
+			} catch (IOException e) {
+				// the connection is lost before it is registered
+			}
+		}
+	}
+
+	/**
+	 * A thread serving its connections.
+	 */
+	private final class EventLoop implements Runnable {
+
+		private final Selector selector;
+
+		private final Queue<SocketChannel> added = new ConcurrentLinkedQueue<>();
+
+		/**
+		 * The connections with a response verified since the last select.
+		 */
+		private final Queue<Connection> answered = new ConcurrentLinkedQueue<>();
+
+		/**
+		 * The connections whose next request did not fit in the budget.
+		 */
+		private Set<Connection> starved = new LinkedHashSet<>();
+
+		private Thread thread;
+
+		EventLoop(Selector selector) {
+			this.selector = selector;
+		}
+
+		void add(SocketChannel channel) {
+			added.add(channel);
+			selector.wakeup();
+		}
+
+		void answered(Connection connection) {
+			answered.add(connection);
+			selector.wakeup();
+		}
+
+		@Override
+		public void run() {
+			try {
+				while(running) {
+					if(starved.isEmpty()) {
+						selector.select();
+					} else {
+						selector.select(STARVED_WAIT);
+					}
+					for(SocketChannel channel; (channel = added.poll()) != null; ) {
+						SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+						key.attach(new Connection(this, channel, key));
+					}
+					for(SelectionKey key : selector.selectedKeys()) {
+						Connection connection = (Connection) key.attachment();
+						try {
+							if(key.isReadable()) {
+								connection.read();
+							} else if(key.isWritable()) {
+								connection.handle();
+							}
+						} catch (IOException | RuntimeException e) {
+							connection.close();
+						}
+					}
+					selector.selectedKeys().clear();
+					for(Connection connection; (connection = answered.poll()) != null; ) {
+						handle(connection);
+					}
+					if(!starved.isEmpty()) {
+						Set<Connection> waiting = starved;
+						starved = new LinkedHashSet<>();
+						for(Connection connection : waiting) {
+							handle(connection);
+						}
+					}
+				}
+			} catch (IOException e) {
+				// the selector is broken, its connections are closed below
+			} finally {
+				for(SelectionKey key : selector.keys()) {
+					((Connection) key.attachment()).close();
+				}
+				for(SocketChannel channel; (channel = added.poll()) != null; ) {
+					connections.decrementAndGet();
+					close(channel);
+				}
+				try {
+					selector.close();
+				} catch (IOException e) {
+					// nothing else to release
+				}
+			}
+		}
+
+		/**
+		 * Handles a connection out of the selected ones, unless it is closed.
+		 */
+		private void handle(Connection connection) {
+			if(connection.key.isValid()) {
+				try {
+					connection.handle();
+				} catch (IOException | RuntimeException e) {
+					connection.close();
+				}
+			}
+		}
+	}
+
+	private static void close(SocketChannel channel) {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// the connection is gone anyway
+		}
+	}
+
+	/**
+	 * A request being verified, whose response is set by a worker.
+	 */
+	private static final class Pending {
+
+		private volatile byte[] response;
+	}
+
+	/**
+	 * The state of a connection, used by its event loop only. Both buffers
+	 * are kept ready to be written to.
+	 */
+	private final class Connection {
+
+		private final EventLoop loop;
+
+		private final SocketChannel channel;
+
+		private final SelectionKey key;
+
+		private ByteBuffer input = pool.acquire();
+
+		private ByteBuffer output = pool.acquire();
+
+		/**
+		 * The requests being verified, in the order they were read.
+		 */
+		private final Queue<Pending> pending = new ArrayDeque<>();
+
+		/**
+		 * A request bigger than the input buffer, being read.
+		 */
+		private ByteBuffer frame;
+
+		private int frameLength;
+
+		private long frameWeight;
+
+		/**
+		 * Whether the next request waits for room in the budget.
+		 */
+		private boolean starved;
+
+		/**
+		 * Whether no more requests are read, after the end of the input or a
+		 * request too big, so the connection is closed once the responses
+		 * before are sent.
+		 */
+		private boolean closing;
+
+		Connection(EventLoop loop, SocketChannel channel, SelectionKey key) {
+			this.loop = loop;
+			this.channel = channel;
+			this.key = key;
+		}
+
+		/**
+		 * Reads what the client sent and handles the requests complete.
+		 */
+		void read() throws IOException {
+			if(frame != null && !frame.hasRemaining()) {
+				// doubled as the bytes arrive, up to the length of the request
+				ByteBuffer grown = ByteBuffer.allocate((int) Math.min(frameLength, frame.capacity() * 2L));
+				frame.flip();
+				frame = grown.put(frame);
+			}
+			if(channel.read(frame != null ? frame : input) < 0) {
+				closing = true;
+			} else if(frame != null && frame.position() == frameLength) {
+				submit(frame.array(), frameWeight);
+				frame = null;
+			}
+			handle();
+		}
+
+		/**
+		 * Writes the responses verified, in order, to the output buffer,
+		 * hands the requests complete in the input buffer to the workers,
+		 * then sends the responses. Reading stops while too many requests
+		 * are pending, the next one does not fit in the budget or the output
+		 * buffer is nearly full, and for good once the connection is closing.
+		 */
+		void handle() throws IOException {
+			for(Pending next; (next = pending.peek()) != null && next.response != null && output.remaining() >= next.response.length; ) {
+				if(next.response == FAILED) {
+					throw new IOException("Request not verified.");
+				}
+				output.put(next.response);
+				pending.remove();
+			}
+
+			input.flip();
+			starved = false;
+			while(!closing && frame == null && pending.size() < MAX_PIPELINED && input.remaining() >= Integer.BYTES) {
+				int length = input.getInt(input.position());
+				if(length < 0 || length > maxFrameBytes) {
+					closing = true;
+					break;
+				}
+				boolean complete = input.remaining() - Integer.BYTES >= length;
+				if(!complete && length <= input.capacity() - Integer.BYTES) {
+					break;
+				}
+				// taken before the request is copied, given back once verified
+				long weight = admission.weigh(length);
+				if(!admission.tryAcquire(weight)) {
+					starved = true;
+					loop.starved.add(this);
+					break;
+				}
+				input.position(input.position() + Integer.BYTES);
+				if(complete) {
+					byte[] request = new byte[length];
+					input.get(request);
+					submit(request, weight);
+				} else {
+					frameLength = length;
+					frameWeight = weight;
+					frame = ByteBuffer.allocate(Math.min(length, 2 * input.capacity()));
+					frame.put(input);
+				}
+			}
+			input.compact();
+
+			output.flip();
+			channel.write(output);
+			output.compact();
+			boolean unsent = output.position() > 0;
+			if(closing && !unsent && pending.isEmpty()) {
+				close();
+				return;
+			}
+			int operations = unsent ? SelectionKey.OP_WRITE : 0;
+			if(!closing && !starved && (frame != null || pending.size() < MAX_PIPELINED) && output.remaining() >= MAX_RESPONSE) {
+				operations |= SelectionKey.OP_READ;
+			}
+			key.interestOps(operations);
+		}
+
+		/**
+		 * Hands a request to the workers, its response to be written once
+		 * the ones before it are.
+		 */
+		private void submit(byte[] request, long weight) {
+			Pending next = new Pending();
+			pending.add(next);
+			try {
+				executor.execute(() -> {
+					try {
+						next.response = respond(request);
+					} catch (RuntimeException e) {
+						next.response = FAILED;
+					} finally {
+						admission.release(weight);
+					}
+					loop.answered(this);
+				});
+			} catch (RejectedExecutionException e) {
+				admission.release(weight);
+				throw e;
+			}
+		}
+
+		void close() {
+			key.cancel();
+			VerdictServer.close(channel);
+			if(input != null) {
+				pool.release(input);
+				pool.release(output);
+				input = null;
+				output = null;
+				if(frame != null) {
+					admission.release(frameWeight);
+					frame = null;
+				}
+				connections.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Verifies a DNA and creates its response.
+	 */
+	private byte[] respond(byte[] request) {
+		long start = System.nanoTime();
+		Verdict verdict = Verdict.INVALID;
+		byte[] message;
+		try {
+			PackedDna dna = DnaBinaryReader.read(ByteBuffer.wrap(request), maxSize);
+			byte[] id = humanService.createDnaId(dna);
+			Optional<Boolean> cached = humanService.findCachedVerdict(id);
+			boolean mutant;
+			if(cached.isPresent()) {
+				mutant = cached.get();
+			} else {
+				mutant = humanService.isMutant(dna);
+				Human human = new Human();
+				human.setId(id);
+				human.setMutant(mutant);
+				human.setDna(dna);
+				humanService.save(human);
+				humanService.cacheVerdict(id, mutant);
+			}
+			verdict = mutant ? Verdict.MUTANT : Verdict.HUMAN;
+			return ByteBuffer.allocate(Integer.BYTES + 1).putInt(1).put(mutant ? STATUS_MUTANT : STATUS_HUMAN).array();
+		} catch (InvalidDnaException | InvalidNitrogenousBasesException e) {
+			message = e.getMessage().getBytes(StandardCharsets.UTF_8);
+		} finally {
+			humanService.recordVerdict(verdict, System.nanoTime() - start);
+		}
+		int length = Math.min(message.length, MAX_RESPONSE - Integer.BYTES - 1);
+		return ByteBuffer.allocate(Integer.BYTES + 1 + length).putInt(1 + length).put(STATUS_INVALID).put(message, 0, length).array();
+	}
+}
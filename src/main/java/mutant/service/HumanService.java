@@ -1,28 +1,88 @@
 package mutant.service;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
 
+import mutant.cache.VerdictCache;
+import mutant.cache.VerdictIndex;
+import mutant.domain.DnaStats;
 import mutant.domain.Human;
+import mutant.detector.DetectionPolicy;
+import mutant.detector.IncrementalDetector;
+import mutant.domain.PackedDna;
+import mutant.domain.StatsSnapshot;
 import mutant.exception.InvalidDnaException;
 import mutant.exception.InvalidNitrogenousBasesException;
+import mutant.reprocess.ReprocessingJob;
+import mutant.stats.Verdict;
+import mutant.stats.VerdictTimeSeries;
+import mutant.storage.VerdictVisitor;
 
 /**
  * Human service interface with base methods that must be implemented.
  * 
+ * The methods receive all the data they need as parameters, so a single
+ * instance can serve concurrent requests.
+ * 
  * @author Hélio De Rosa Junior
  */
 public interface HumanService {
 
+	public DetectionPolicy getDetectionPolicy();
+	
 	public boolean isMutant(String[] dnaSequence) throws InvalidDnaException, InvalidNitrogenousBasesException;
 	
-	public void validateDna() throws InvalidDnaException;
+	public boolean isMutant(PackedDna dna);
+	
+	public boolean isMutant(Path dnaFile) throws IOException, InvalidDnaException, InvalidNitrogenousBasesException;
+	
+	public IncrementalDetector createDetector();
+	
+	public boolean[] isMutantBatch(String[][] dnaSequences) throws InvalidDnaException, InvalidNitrogenousBasesException;
+	
+	public boolean[] isMutantBatch(PackedDna[] dnas);
+	
+	public void validateDna(String[] dnaSequence) throws InvalidDnaException;
+	
+	public void validateNitrogenousBases(String[] dnaSequence) throws InvalidNitrogenousBasesException;
+	
+	public byte[] createDnaId(PackedDna dna);
+	
+	public byte[] save(Human human);
+	
+	public Optional<Boolean> findCachedVerdict(byte[] id);
+	
+	public void cacheVerdict(byte[] id, boolean mutant);
 	
-	public void validateNitrogenousBases() throws InvalidNitrogenousBasesException;
+	public VerdictCache getVerdictCache();
 	
-	public long createDnaId();
+	public void loadVerdictIndex();
 	
-	public long save(Human human);
+	public VerdictIndex getVerdictIndex();
+	
+	public void saveAll(List<Human> humans);
+	
+	public Optional<PackedDna> findDna(byte[] id);
+	
+	public void forEachVerdict(VerdictVisitor visitor);
+	
+	public DnaStats getStats();
+	
+	public StatsSnapshot getStatsSnapshot();
+	
+	public long getStatsInterval();
+	
+	public void recordVerdict(Verdict verdict, long latency);
+	
+	public List<VerdictTimeSeries.Bucket> getTimeSeries(VerdictTimeSeries.Resolution resolution, int count);
+	
+	public void rebuildTimeSeries();
+	
+	public Optional<ReprocessingJob> startReprocessing();
+	
+	public Optional<ReprocessingJob> getReprocessing();
 	
 	public List<Human> findAll();
 }
-
@@ -1,109 +1,533 @@
 package mutant.service.impl;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
-import mutant.domain.DNA;
+import mutant.cache.VerdictCache;
+import mutant.cache.VerdictIndex;
+import mutant.codec.DnaCodec;
+import mutant.codec.DnaDigest;
+import mutant.codec.NitrogenousBases;
+import mutant.detector.BitSlicedKernel;
+import mutant.detector.BitboardKernel;
+import mutant.detector.DetectionPolicy;
+import mutant.detector.DnaScanner;
+import mutant.detector.IncrementalDetector;
+import mutant.detector.MappedFileDetector;
+import mutant.detector.ParallelDetector;
+import mutant.domain.DnaStats;
 import mutant.domain.Human;
+import mutant.domain.PackedDna;
+import mutant.domain.StatsSnapshot;
 import mutant.exception.InvalidDnaException;
 import mutant.exception.InvalidNitrogenousBasesException;
-import mutant.repository.HumanRepository;
+import mutant.reprocess.ReprocessingJob;
 import mutant.service.HumanService;
+import mutant.stats.Verdict;
+import mutant.stats.VerdictTimeSeries;
+import mutant.storage.HumanStore;
+import mutant.storage.VerdictVisitor;
 
 /**
  * Human service implementation with the required methods to validate a DNA
  * sequence and determine if the human is a mutant or not.
  * 
+ * This service is stateless: every verification keeps its data in a packed
+ * DNA and bitboards created for the call, so concurrent requests never see
+ * each other's DNA.
+ * 
  * @author Hélio De Rosa Junior
  */
 @Service
 public class HumanServiceImpl implements HumanService {
 
 	/**
-	 * DNA domain class autowired to store and give access to the DNA data
-	 * properly.
+	 * The number of sequences that must be found to consider the DNA as
+	 * mutant.
+	 */
+	@Value("${mutant.detection.required-sequences:" + DetectionPolicy.DEFAULT_REQUIRED_SEQUENCES + "}")
+	private int requiredSequences = DetectionPolicy.DEFAULT_REQUIRED_SEQUENCES;
+	
+	/**
+	 * The number of equal nitrogenous bases that composes a sequence.
+	 */
+	@Value("${mutant.detection.sequence-length:" + DnaScanner.SEQUENCE_LENGTH + "}")
+	private int sequenceLength = DnaScanner.SEQUENCE_LENGTH;
+	
+	/**
+	 * The policy built from the properties above.
+	 */
+	private DetectionPolicy policy = DetectionPolicy.DEFAULT;
+	
+	/**
+	 * The default DNA size from which the verification runs in parallel.
+	 */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 1024;
+	
+	/**
+	 * The DNA size from which the verification is split in tiles verified by
+	 * all the threads of the common <code>ForkJoinPool</code>.
+	 */
+	@Value("${mutant.detection.parallel-threshold:" + DEFAULT_PARALLEL_THRESHOLD + "}")
+	private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+	
+	/**
+	 * The default number of verdicts kept in memory.
 	 */
-	private DNA dna;
+	public static final int DEFAULT_CACHE_CAPACITY = 100000;
 	
 	/**
-	 * The regular expression used to identify if the DNA sequence contains
-	 * characters different of A, T, C and G.
+	 * The number of verdicts kept in memory, 0 to disable the cache.
 	 */
-	private static final String DNA_PATTERN = "[^A|a|T|t|C|c|G|g]";
+	@Value("${mutant.cache.capacity:" + DEFAULT_CACHE_CAPACITY + "}")
+	private int cacheCapacity = DEFAULT_CACHE_CAPACITY;
 	
 	/**
-	 * The regular expression used to identify a mutant DNA.
+	 * The verdicts of the DNAs verified recently, built from the property
+	 * above.
 	 */
-	private static final String MUTANT_DNA = "/|AAAA|CCCC|TTTT|GGGG|/";
+	private VerdictCache verdictCache = new VerdictCache(DEFAULT_CACHE_CAPACITY);
+	
+	/**
+	 * The default number of verdicts the index is sized for at startup.
+	 */
+	public static final long DEFAULT_INDEX_EXPECTED_SIZE = 1 << 20;
+	
+	/**
+	 * The number of verdicts the index is sized for at startup, so it is not
+	 * resized while the database is loaded.
+	 */
+	@Value("${mutant.index.expected-size:" + DEFAULT_INDEX_EXPECTED_SIZE + "}")
+	private long indexExpectedSize = DEFAULT_INDEX_EXPECTED_SIZE;
+	
+	/**
+	 * The verdicts of every DNA recorded in the database, off the heap.
+	 */
+	private VerdictIndex verdictIndex = new VerdictIndex(0);
+	
+	/**
+	 * Whether the verdict index is the one of the store, which fills it and
+	 * skips the DNAs already recorded on its own.
+	 */
+	private boolean storeIndex;
+	
+	/**
+	 * The default milliseconds between two stats snapshots.
+	 */
+	public static final long DEFAULT_STATS_INTERVAL = 1000;
+	
+	/**
+	 * The milliseconds between two stats snapshots.
+	 */
+	@Value("${mutant.stats.publish-interval:" + DEFAULT_STATS_INTERVAL + "}")
+	private long statsInterval = DEFAULT_STATS_INTERVAL;
+	
+	/**
+	 * The last stats published, replaced as a whole.
+	 */
+	private volatile StatsSnapshot statsSnapshot = StatsSnapshot.EMPTY;
+	
+	/**
+	 * The counts of the database when the application started, to which
+	 * the humans inserted since then are added.
+	 */
+	private DnaStats statsBase = new DnaStats();
+	
+	private ScheduledExecutorService statsPublisher;
+	
+	/**
+	 * The verdicts and latencies per second and per minute.
+	 */
+	private final VerdictTimeSeries timeSeries = new VerdictTimeSeries();
+	
+	/**
+	 * The default number of DNAs read at a time by a reprocessing.
+	 */
+	public static final int DEFAULT_REPROCESS_PAGE_SIZE = 200;
+	
+	/**
+	 * The number of threads verifying the DNAs of a reprocessing, 0 for the
+	 * number of processors.
+	 */
+	@Value("${mutant.reprocess.threads:0}")
+	private int reprocessThreads;
+	
+	/**
+	 * The number of DNAs read at a time by a reprocessing.
+	 */
+	@Value("${mutant.reprocess.page-size:" + DEFAULT_REPROCESS_PAGE_SIZE + "}")
+	private int reprocessPageSize = DEFAULT_REPROCESS_PAGE_SIZE;
+	
+	/**
+	 * The last reprocessing started, <code>null</code> when none was.
+	 */
+	private volatile ReprocessingJob reprocessing;
 	
 	/**
 	 * Return code used when DNA sequence is null.
 	 */
-	public static final String RC_DNA_NULL = "DNA sequence can not be null";
+	public static final String RC_DNA_NULL = NitrogenousBases.RC_DNA_NULL;
 	
 	/**
 	 * Return code used when DNA sequence is empty.
 	 */
-	public static final String RC_DNA_EMPTY = "DNA sequence can not be empty";
+	public static final String RC_DNA_EMPTY = NitrogenousBases.RC_DNA_EMPTY;
 	
 	/**
 	 * Return code used when DNA sequence does not have the same length as
 	 * the nitrogenous bases.
 	 */
-	public static final String RC_DNA_FORMAT = "DNA chain must have the same lenght of nitrogenous bases.";
+	public static final String RC_DNA_FORMAT = NitrogenousBases.RC_DNA_FORMAT;
 	
 	/**
 	 * Return code used when the nitrogenous bases are not in the same length.
 	 */
-	public static final String RC_NB_LENGTH = "DNA must contain nitrogenous bases with same length.";
+	public static final String RC_NB_LENGTH = NitrogenousBases.RC_NB_LENGTH;
 	
 	/**
 	 * Return code used when the nitrogenous bases contains invalid characters.
 	 */
-	public static final String RC_NB_INVALID =  "Nitrogenous bases should be composed by A, T, C, G bases only.";
+	public static final String RC_NB_INVALID = NitrogenousBases.RC_NB_INVALID;
+	
+	@Autowired
+	private HumanStore humanStore;
+	
+	/**
+	 * This method builds the detection policy, the verdict cache and the
+	 * verdict index once the properties are set, and starts publishing the
+	 * stats.
+	 */
+	@PostConstruct
+	public void init() {
+		policy = new DetectionPolicy(requiredSequences, sequenceLength);
+		verdictCache = new VerdictCache(cacheCapacity);
+		Optional<VerdictIndex> index = humanStore.getVerdictIndex();
+		storeIndex = index.isPresent();
+		verdictIndex = index.orElseGet(() -> new VerdictIndex(indexExpectedSize));
+		
+		statsBase = getStats();
+		publishStats();
+		statsPublisher = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "stats-publisher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		statsPublisher.scheduleAtFixedRate(this::publishStats, statsInterval, statsInterval, TimeUnit.MILLISECONDS);
+	}
+	
+	@PreDestroy
+	public void destroy() {
+		if(statsPublisher != null) {
+			statsPublisher.shutdown();
+		}
+		if(reprocessing != null) {
+			reprocessing.stop();
+		}
+	}
+	
+	/**
+	 * This method gets the policy that decides when a DNA is from a mutant.
+	 * 
+	 * @return the detection policy.
+	 */
+	public DetectionPolicy getDetectionPolicy() {
+		return policy;
+	}
 	
 	/**
-	 * This method injects the <code>DNA</code> into the service.
+	 * This method sets the policy that decides when a DNA is from a mutant.
 	 * 
-	 * @param dna the <code>DNA</code> to be injected.
+	 * @param policy the detection policy.
 	 */
-	@Autowired
-	public void setDNA(DNA dna) {
-        this.dna = dna;
-    }
+	public void setDetectionPolicy(DetectionPolicy policy) {
+		this.policy = policy;
+	}
 	
-	@Autowired
-    private HumanRepository humanRepository;
+	/**
+	 * This method sets the DNA size from which the verification runs in
+	 * parallel.
+	 * 
+	 * @param parallelThreshold the DNA size.
+	 */
+	public void setParallelThreshold(int parallelThreshold) {
+		this.parallelThreshold = parallelThreshold;
+	}
+	
+	/**
+	 * This method registers the DNA into the <code>HumanStore</code>, unless
+	 * the verdict index knows it is already there. With the database, the
+	 * DNA is queued to be written behind the request by the
+	 * <code>HumanWriteBehind</code>, and is in the index right away. A store
+	 * with its own index is given every DNA, since it puts them in the index
+	 * itself.
+	 */
+	public byte[] save(Human human) {
+		if(storeIndex || verdictIndex.put(human.getId(), human.isMutant())) {
+			humanStore.write(human);
+		}
+		return human.getId();
+	}
+	
+	/**
+	 * This method registers many DNAs into the store with grouped writes,
+	 * skipping the ones the verdict index knows are already there.
+	 * 
+	 * @param humans the humans to be registered.
+	 */
+	public void saveAll(List<Human> humans) {
+		if(storeIndex) {
+			humanStore.writeAll(humans);
+			return;
+		}
+		List<Human> recorded = new ArrayList<>(humans.size());
+		for(Human human : humans) {
+			if(verdictIndex.put(human.getId(), human.isMutant())) {
+				recorded.add(human);
+			}
+		}
+		humanStore.writeAll(recorded);
+	}
+	
+	/**
+	 * This method gets the verdict of a DNA already verified and saved, from
+	 * the cache or else from the verdict index.
+	 * 
+	 * @param id the DNA identifier.
+	 * @return the verdict, empty when the DNA is not known.
+	 */
+	public Optional<Boolean> findCachedVerdict(byte[] id) {
+		Boolean verdict = verdictCache.get(id);
+		if(verdict == null && id != null) {
+			verdict = verdictIndex.get(id);
+			if(verdict != null) {
+				verdictCache.put(id, verdict);
+			}
+		}
+		return Optional.ofNullable(verdict);
+	}
+	
+	/**
+	 * This method reads the DNA of a human saved, which is only read from the
+	 * store when asked for.
+	 * 
+	 * @param id the DNA identifier.
+	 * @return the packed DNA, empty when it is not kept.
+	 */
+	public Optional<PackedDna> findDna(byte[] id) {
+		return humanStore.findDna(id);
+	}
+	
+	/**
+	 * This method visits the verdict of every DNA of the store, streamed so
+	 * they are never all in the heap.
+	 * 
+	 * @param visitor the visitor of the verdicts.
+	 */
+	public void forEachVerdict(VerdictVisitor visitor) {
+		humanStore.forEachVerdict(visitor);
+	}
+	
+	/**
+	 * This method loads the verdict of every DNA of the store into the
+	 * verdict index, streaming them so they are never all in the heap. It
+	 * runs once the application is ready, and the DNAs saved meanwhile are
+	 * added by the save methods. Nothing is loaded when the index is the one
+	 * of the store, already filled when the store was opened.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void loadVerdictIndex() {
+		if(storeIndex) {
+			return;
+		}
+		humanStore.forEachVerdict((id, mutant, createdAt) -> verdictIndex.put(id, mutant));
+	}
+	
+	/**
+	 * This method gets the off-heap index of the verdicts recorded in the
+	 * store.
+	 * 
+	 * @return the verdict index.
+	 */
+	public VerdictIndex getVerdictIndex() {
+		return verdictIndex;
+	}
+	
+	/**
+	 * This method keeps the verdict of a DNA saved, so it is not verified
+	 * nor saved again while it is cached.
+	 * 
+	 * @param id the DNA identifier.
+	 * @param mutant the verdict of the DNA.
+	 */
+	public void cacheVerdict(byte[] id, boolean mutant) {
+		verdictCache.put(id, mutant);
+	}
+	
+	/**
+	 * This method gets the verdict cache, with its hit, miss and eviction
+	 * counters.
+	 * 
+	 * @return the verdict cache.
+	 */
+	public VerdictCache getVerdictCache() {
+		return verdictCache;
+	}
+	
+	/**
+	 * This method gets the number of DNAs registered, without reading the
+	 * DNAs.
+	 * 
+	 * @return the counts, zero when no DNA was registered yet.
+	 */
+	public DnaStats getStats() {
+		return humanStore.readStats();
+	}
+	
+	/**
+	 * This method publishes a new stats snapshot: the counts read from the
+	 * store at startup plus the humans inserted since then, taken from the
+	 * counters of the <code>HumanStore</code>.
+	 */
+	public void publishStats() {
+		DnaStats stats = new DnaStats(statsBase.getHumanCount() + humanStore.getInsertedHumans(),
+				statsBase.getMutantCount() + humanStore.getInsertedMutants());
+		StatsSnapshot current = statsSnapshot;
+		if(stats.getHumanCount() != current.getStats().getHumanCount() || stats.getMutantCount() != current.getStats().getMutantCount()) {
+			statsSnapshot = new StatsSnapshot(stats);
+		}
+	}
+	
+	/**
+	 * This method gets the last stats published, serialized.
+	 * 
+	 * @return the stats snapshot.
+	 */
+	public StatsSnapshot getStatsSnapshot() {
+		return statsSnapshot;
+	}
+	
+	/**
+	 * This method gets the milliseconds between two stats snapshots.
+	 * 
+	 * @return the publish interval.
+	 */
+	public long getStatsInterval() {
+		return statsInterval;
+	}
+	
+	/**
+	 * This method counts the verdict of a verification in the time series.
+	 * 
+	 * @param verdict the verdict.
+	 * @param latency the nanoseconds the verification took, or a negative
+	 *     value when it is not known.
+	 */
+	public void recordVerdict(Verdict verdict, long latency) {
+		timeSeries.record(System.currentTimeMillis(), verdict, latency);
+	}
+	
+	/**
+	 * This method gets the last buckets of the time series, the oldest
+	 * first.
+	 * 
+	 * @param resolution the length of the buckets.
+	 * @param count the number of buckets.
+	 * @return the buckets ending with the current one.
+	 */
+	public List<VerdictTimeSeries.Bucket> getTimeSeries(VerdictTimeSeries.Resolution resolution, int count) {
+		return timeSeries.getBuckets(resolution, System.currentTimeMillis(), count);
+	}
 	
 	/**
-	 * This method registers the DNA into database.
+	 * This method counts again the humans registered during the periods
+	 * kept by the time series, from their <code>created_at</code>, so the
+	 * rates survive a restart. Only the verdicts of the DNAs registered are
+	 * known: the ones sent again, the invalid ones and the latencies are
+	 * not rebuilt.
 	 */
-	public long save(Human human) {
-		long a = humanRepository.save(human).getId();
-		return a;
+	@EventListener(ApplicationReadyEvent.class)
+	public void rebuildTimeSeries() {
+		VerdictTimeSeries.Resolution longest = VerdictTimeSeries.Resolution.MINUTE;
+		Instant since = Instant.now().minusMillis(longest.getMillis() * longest.getBuckets());
+		humanStore.forEachVerdictSince(since, (id, mutant, createdAt) -> timeSeries.record(createdAt.toEpochMilli(),
+				mutant ? Verdict.MUTANT : Verdict.HUMAN, -1));
+	}
+	
+	/**
+	 * This method starts verifying again every DNA kept by the store with
+	 * the current policy, on a thread of its own. The verdicts changed are
+	 * written to the store, the verdict index and the cache.
+	 * 
+	 * @return the job started, empty when a reprocessing is already
+	 *     running.
+	 */
+	public synchronized Optional<ReprocessingJob> startReprocessing() {
+		if(reprocessing != null && reprocessing.isRunning()) {
+			return Optional.empty();
+		}
+		int threads = reprocessThreads > 0 ? reprocessThreads : Runtime.getRuntime().availableProcessors();
+		ReprocessingJob job = new ReprocessingJob(humanStore, this::isMutant, policy, threads, reprocessPageSize, human -> {
+			verdictIndex.put(human.getId(), human.isMutant());
+			verdictCache.replace(human.getId(), human.isMutant());
+		});
+		Thread thread = new Thread(job, "reprocessing");
+		thread.setDaemon(true);
+		reprocessing = job;
+		thread.start();
+		return Optional.of(job);
+	}
+	
+	/**
+	 * This method gets the last reprocessing started, to follow its
+	 * progress.
+	 * 
+	 * @return the job, empty when none was started.
+	 */
+	public Optional<ReprocessingJob> getReprocessing() {
+		return Optional.ofNullable(reprocessing);
 	}
 	
 	public List<Human> findAll() {
-		return humanRepository.findAll();
+		return humanStore.findAll();
 	}
 	
 	/**
-	 * This method replace the nitrogenous bases with numbers in order
-	 * to create a code, which will be the DNA identifier.
+	 * This method creates the DNA identifier from its nitrogenous bases.
+	 * 
+	 * The identifier is the 128-bit <code>DnaDigest</code> of the packed
+	 * bases and the size of the DNA, so different DNAs do not share a record.
+	 * 
+	 * @param dna the packed DNA.
+	 * @return the DNA identifier.
 	 */
-	public long createDnaId() {
-		return dna.getDnaSequenceString().hashCode();
+	public byte[] createDnaId(PackedDna dna) {
+		return DnaDigest.digest(dna);
 	}
 	
 	/**
 	 * This method verifies if the DNA is from a mutant or not.
 	 * 
-	 * Initially it validates the input and then check if the DNA sequence
-	 * belongs to a mutant or not.
+	 * The DNA is validated while it is packed in 2 bits per base, then the
+	 * packed DNA is verified.
 	 * 
 	 * @param dnaSequence the DNA sequence to be validated.
 	 * @return <code>true</code> if user is a mutant, otherwise
@@ -117,257 +541,171 @@ public class HumanServiceImpl implements HumanService {
 	 *     composed of characters different from A, T, C or G.
 	 */
 	public boolean isMutant(String[] dnaSequence) throws InvalidDnaException, InvalidNitrogenousBasesException {
-		dna.setDnaSequence(dnaSequence);
-		validateDna();
-		validateNitrogenousBases();
-		
-		// if DNA sequence is smaller than 4, is not a mutant.
-		if(dnaSequence[0].length() < 4) {
-			return false;
-		}
-		
-		createDnaMatrix();
-		
-		return isMutantDna();
+		return isMutant(DnaCodec.encode(dnaSequence));
 	}
 	
 	/**
-	 * This method verifies if the DNA sequence is valid.
+	 * This method verifies if a packed DNA is from a mutant or not.
 	 * 
-	 * Initially it validate if the DNA is not null, empty and in correct
-	 * format. If one of the rules are not match, an
-	 * <code>InvalidDnaException</code> is thrown.
+	 * Rows, columns and both diagonals are checked with shift and AND
+	 * operations over one bitboard per base. DNAs bigger than the parallel
+	 * threshold are split in tiles verified by all the threads of the common
+	 * <code>ForkJoinPool</code>.
 	 * 
-	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when the
-	 *     DNA sequence is null.
+	 * @param dna the packed DNA.
+	 * @return <code>true</code> if user is a mutant, otherwise
+	 *     <code>false</code>.
 	 */
-	public void validateDna() throws InvalidDnaException {
-		if(null == dna.getDnaSequence()) {
-			throw new InvalidDnaException(RC_DNA_NULL);
-		}
-		
-		if(dna.getDnaSequence().length == 0) {
-			throw new InvalidDnaException(RC_DNA_EMPTY);
-		}
-		
-		if(dna.getDnaSequence().length != dna.getDnaSequence()[0].length()) {
-			throw new InvalidDnaException(RC_DNA_FORMAT);
+	public boolean isMutant(PackedDna dna) {
+		if(dna.getSize() >= parallelThreshold) {
+			return policy.isMutant(ParallelDetector.countSequences(dna, policy, ForkJoinPool.commonPool()));
 		}
+		return policy.isMutant(BitboardKernel.countSequences(dna, policy));
 	}
 	
 	/**
-	 * This method verifies if the given nitrogenous bases are valid.
+	 * This method verifies if a DNA stored in a file is from a mutant or not.
 	 * 
-	 * Initially it validate if all the nitrogenous bases contains the same
-	 * length. If any entry contains a length different from the others, an
-	 * <code>InvalidNitrogenousBasesException</code> is thrown.
+	 * The file is memory-mapped and read row by row, so DNAs bigger than the
+	 * heap can be verified. See <code>MappedFileDetector</code> for the
+	 * accepted formats.
 	 * 
-	 * Next, another validation is performed to check if the nitrogenous bases
-	 * are composed of valid identifiers. If any base contains a character
-	 * different of A, T, C or G, an
-	 * <code>InvalidNitrogenousBasesException</code> is thrown.
+	 * @param dnaFile the DNA file, as text or packed.
+	 * @return <code>true</code> if user is a mutant, otherwise
+	 *     <code>false</code>.
 	 * 
+	 * @throws IOException when the file can not be read.
+	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when the
+	 *     DNA is empty or in a wrong format.
 	 * @throws InvalidNitrogenousBasesException an
 	 *     <code>InvalidNitrogenousBasesException</code> is thrown when the
 	 *     nitrogenous bases does not have the same length or when they are
-	 *     composed of characters different from A, T, C or G. 
+	 *     composed of characters different from A, T, C or G.
 	 */
-	public void validateNitrogenousBases() throws InvalidNitrogenousBasesException {
-		dna.setNitrogenousBasesSize(dna.getDnaSequence()[0].length());
-		StringBuilder dnaBases = new StringBuilder();
-		
-		// iterate over DNA sequence to verify length and append to string for further use
-		for(int i = 0; i < dna.getDnaSequence().length; i++) {
-			if(dna.getDnaSequence()[i].length() != dna.getNitrogenousBasesSize()) {
-				throw new InvalidNitrogenousBasesException(RC_NB_LENGTH);
-			}
-			dnaBases.append(dna.getDnaSequence()[i]);
-		}
-		
-		dna.setDnaSequenceString(dnaBases.toString());
-		
-		// if regular expression find any occurrence, it means the DNA contains invalid characters and is not valid. 
-		Pattern pattern = Pattern.compile(DNA_PATTERN);
-		Matcher matcher = pattern.matcher(dnaBases.toString());
-		if(matcher.find()) {
-			throw new InvalidNitrogenousBasesException(RC_NB_INVALID);
-		}
+	public boolean isMutant(Path dnaFile) throws IOException, InvalidDnaException, InvalidNitrogenousBasesException {
+		return policy.isMutant(MappedFileDetector.countSequences(dnaFile, policy));
 	}
 	
 	/**
-	 * This method reads the given DNA sequence and store it into
-	 * <code>char</code> arrays.
+	 * This method creates a detector to verify a DNA fed one row at a time,
+	 * holding only the run counters of a row instead of the whole matrix.
+	 * 
+	 * @return a new detector, for a single DNA and a single thread.
 	 */
-	private void createDnaMatrix()
-	{
-		char[][] matrixLeftToRight = new char[dna.getDnaSequence().length][dna.getNitrogenousBasesSize()];
-		char[][] matrixRightToLeft = new char[dna.getDnaSequence().length][dna.getNitrogenousBasesSize()];
-		int k = dna.getNitrogenousBasesSize() - 1;
-		for(int i = 0; i < dna.getDnaSequence().length; i++) {
-			for(int j = 0; j < dna.getNitrogenousBasesSize(); j++) {
-				matrixLeftToRight[i][j] = dna.getDnaSequence()[i].charAt(j);
-				matrixRightToLeft[i][j] = dna.getDnaSequence()[i].charAt(k);
-				k--;
-			}
-			k = dna.getNitrogenousBasesSize() - 1;
-			
-		}
-		dna.setDnaMatrixLeftToRight(matrixLeftToRight);
-		dna.setDnaMatrixRightToLeft(matrixRightToLeft);
+	public IncrementalDetector createDetector() {
+		return new IncrementalDetector(policy);
 	}
 	
 	/**
-	 * This method check all possible directions to find if a mutant DNA
-	 * is present in the DNA sequence.
+	 * This method verifies if each DNA of a batch is from a mutant or not.
 	 * 
-	 * @return <code>true</code> if the DNA sequence contains at least four
-	 * sequential characters of A, T, C or G, otherwise <code>false</code>. 
+	 * All the DNAs are validated first. Small DNAs are grouped by size and
+	 * verified 64 at a time by the <code>BitSlicedKernel</code>, the others
+	 * are verified one by one.
+	 * 
+	 * @param dnaSequences the DNA sequences to be verified.
+	 * @return the result of each DNA, in the same order: <code>true</code> if
+	 *     it is from a mutant, otherwise <code>false</code>.
+	 *     
+	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when any
+	 *     DNA sequence is null, empty or in a wrong format.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when the
+	 *     nitrogenous bases of any DNA does not have the same length or when
+	 *     they are composed of characters different from A, T, C or G.
 	 */
-	private boolean isMutantDna() {
-		// check it first to avoid useless processing
-		if(dna.getDnaSequence()[0].length() < 4) {
-			return false;
-		}
-		
-		if(
-				isMutantDnaFoundHorizontally()
-				|| 
-				isMutantDnaFoundVertically() 
-				||
-				isMutantFoundDiagonally(dna.getDnaMatrixLeftToRight())
-				||
-				isMutantFoundDiagonally(dna.getDnaMatrixRightToLeft())
-				) {
-			return true;
+	public boolean[] isMutantBatch(String[][] dnaSequences) throws InvalidDnaException, InvalidNitrogenousBasesException {
+		PackedDna[] dnas = new PackedDna[dnaSequences.length];
+		for(int i = 0; i < dnaSequences.length; i++) {
+			dnas[i] = DnaCodec.encode(dnaSequences[i]);
 		}
-		
-		return false;
+		return isMutantBatch(dnas);
 	}
 	
 	/**
-	 * This method applies a regular expression to the DNA sequences to
-	 * identify if the DNA is from a mutant or not.
+	 * This method verifies if each packed DNA of a batch is from a mutant or
+	 * not.
 	 * 
-	 * A mutant DNA contains at least four sequential characters A, T, C or G.
+	 * Small DNAs are grouped by size and verified 64 at a time by the
+	 * <code>BitSlicedKernel</code>, which looks for sequences of four bases
+	 * only. The others, and all of them when the policy uses another
+	 * sequence length, are verified one by one.
 	 * 
-	 * @param dnaSequence the DNA sequence to be verified.
-	 * @return <code>true</code> if the DNA sequence contains at least four
-	 * sequential characters of A, T, C or G, otherwise <code>false</code>.
+	 * @param dnas the packed DNAs to be verified. <code>null</code> entries
+	 *     are skipped and get a <code>false</code> result.
+	 * @return the result of each DNA, in the same order: <code>true</code> if
+	 *     it is from a mutant, otherwise <code>false</code>.
 	 */
-	public boolean applyRegexToDna(String[] dnaSequence)
-	{
-		Pattern pattern = Pattern.compile(MUTANT_DNA, Pattern.CASE_INSENSITIVE);
+	public boolean[] isMutantBatch(PackedDna[] dnas) {
+		boolean[] verdicts = new boolean[dnas.length];
+		Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+		boolean bitSliced = policy.getSequenceLength() == DnaScanner.SEQUENCE_LENGTH;
 		
-		for(String dna : dnaSequence) {
-			Matcher matcher = pattern.matcher(dna);
-			if(matcher.find()) {
-				return true;
+		for(int i = 0; i < dnas.length; i++) {
+			if(dnas[i] == null) {
+				continue;
+			}
+			
+			int size = dnas[i].getSize();
+			if(bitSliced && size <= BitSlicedKernel.MAX_SIZE) {
+				groups.computeIfAbsent(size, key -> new ArrayList<>()).add(i);
+			} else {
+				verdicts[i] = isMutant(dnas[i]);
+			}
+		}
+		
+		for(List<Integer> group : groups.values()) {
+			for(int from = 0; from < group.size(); from += BitSlicedKernel.LANES) {
+				int to = Math.min(from + BitSlicedKernel.LANES, group.size());
+				PackedDna[] batch = new PackedDna[to - from];
+				for(int k = from; k < to; k++) {
+					batch[k - from] = dnas[group.get(k)];
+				}
+				
+				long mutants = BitSlicedKernel.evaluate(batch, policy.getRequiredSequences());
+				for(int k = from; k < to; k++) {
+					verdicts[group.get(k)] = (mutants >>> (k - from) & 1) != 0;
+				}
 			}
 		}
 		
-		return false;
+		return verdicts;
 	}
 	
 	/**
-	 * This method verifies if a mutant DNA can be found when looking
-	 * horizontally.
+	 * This method verifies if the DNA sequence is valid.
 	 * 
-	 * @return <code>true</code> if the DNA sequence contains at least four
-	 * sequential characters of A, T, C or G, otherwise <code>false</code>.
-	 */
-	private boolean isMutantDnaFoundHorizontally() {
-		return applyRegexToDna(dna.getDnaSequence());
-	}
-	
-	/**
-	 * This method verifies if a mutant DNA can be found when looking
-	 * vertically.
+	 * Initially it validate if the DNA is not null, empty and in correct
+	 * format. If one of the rules are not match, an
+	 * <code>InvalidDnaException</code> is thrown.
 	 * 
-	 * @return <code>true</code> if the DNA sequence contains at least four
-	 *     sequential characters of A, T, C or G, otherwise <code>false</code>.
+	 * @param dnaSequence the DNA sequence to be validated.
+	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when the
+	 *     DNA sequence is null.
 	 */
-	private boolean isMutantDnaFoundVertically() {
-		String[] matrix = new String[dna.getNitrogenousBasesSize()];
-		
-		for(int i = 0; i < dna.getDnaSequence().length; i++) {
-			StringBuilder base = new StringBuilder();
-			for(int j = 0; j < dna.getDnaSequence()[i].length(); j++) {
-				base.append(String.valueOf(dna.getDnaMatrixLeftToRight()[j][i]));
-			}
-			matrix[i] = base.toString();
-		}
-		
-		return applyRegexToDna(matrix);
+	public void validateDna(String[] dnaSequence) throws InvalidDnaException {
+		NitrogenousBases.validateDna(dnaSequence);
 	}
 	
 	/**
-	 * This method verifies if a mutant DNA can be found when looking
-	 * diagonally.
+	 * This method verifies if the given nitrogenous bases are valid.
 	 * 
-	 * First it calculate the number of diagonals that exists and have more
-	 * than four characters.
+	 * Initially it validate if all the nitrogenous bases contains the same
+	 * length. If any entry contains a length different from the others, an
+	 * <code>InvalidNitrogenousBasesException</code> is thrown.
 	 * 
-	 * Next it uses the DNA sequence to build the possible diagonals and
-	 * check if the DNA belongs to a mutant or not.
+	 * Next, another validation is performed to check if the nitrogenous bases
+	 * are composed of valid identifiers. If any base contains a character
+	 * different of A, T, C or G, an
+	 * <code>InvalidNitrogenousBasesException</code> is thrown.
 	 * 
-	 * @param dnaMatrix the DNA matrix used to search the DNA sequence.
-	 * @return <code>true</code> if the DNA sequence contains at least four
-	 *     sequential characters of A, T, C or G, otherwise <code>false</code>.
+	 * @param dnaSequence the DNA sequence to be validated.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when the
+	 *     nitrogenous bases does not have the same length or when they are
+	 *     composed of characters different from A, T, C or G. 
 	 */
-	private boolean isMutantFoundDiagonally(char[][] dnaMatrix) {
-		
-		/*
-		 * Number of diagonals is the number of lines + numbers of rows of
-		 * the matrix - 1. However, the first and last three diagonals does not
-		 * have at least four characters, that's the number of valid diagonals
-		 * is subtracted by 6.
-		 * 
-		 * diagonals = number of lines + number of rows -  1 - 6
-		 */
-		int diagonals = (dna.getDnaSequence().length + dna.getNitrogenousBasesSize()) - 7;
-		int index = 0;
-		int line = dna.getDnaSequence().length - 1;
-		int column = 0;
-		String[] matrix = new String[diagonals];
-		
-		for(int i = 3; i <= line; i++)  {
-			StringBuilder base = new StringBuilder();
-			line = i;
-			for(int j = 0; j < dna.getNitrogenousBasesSize(); j++) {
-				base.append(String.valueOf(dnaMatrix[line][column]));
-				line--;
-				column++;
-				
-				if(line == -1) {
-					column = 0;
-					line = dna.getDnaSequence().length - 1;
-					break;
-				}
-			}
-			matrix[index] = base.toString();
-			index++;
-		}
-		
-		line = dna.getDnaSequence().length -1;
-		int missingDiagonals = diagonals-index;
-		for(int j = 1; j <= missingDiagonals; j++) {
-			StringBuilder base = new StringBuilder();
-			column = j;
-			while( j <= dna.getNitrogenousBasesSize()) {
-				base.append(String.valueOf(dnaMatrix[line][column]));
-				line--;
-				column++;
-				
-				if(column == dna.getNitrogenousBasesSize()) {
-					line = dna.getDnaSequence().length - 1;
-					break;
-				}
-			}
-			matrix[index] = base.toString();
-			index++;
-		}
-		
-		return applyRegexToDna(matrix);
+	public void validateNitrogenousBases(String[] dnaSequence) throws InvalidNitrogenousBasesException {
+		NitrogenousBases.validateNitrogenousBases(dnaSequence);
 	}
-
 }
@@ -0,0 +1,22 @@
+package mutant.stats;
+
+/**
+ * The outcome of the verification of a DNA.
+ */
+public enum Verdict {
+
+	/**
+	 * The DNA is from a mutant.
+	 */
+	MUTANT,
+
+	/**
+	 * The DNA is valid and not from a mutant.
+	 */
+	HUMAN,
+
+	/**
+	 * The DNA could not be verified: it is not valid or could not be read.
+	 */
+	INVALID
+}
@@ -0,0 +1,275 @@
+package mutant.stats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class counts the verdicts and the latencies of the verifications
+ * per second and per minute, for the last {@link Resolution#SECOND} and
+ * {@link Resolution#MINUTE} periods.
+ *
+ * Each resolution is a ring of buckets indexed by the period of the time,
+ * so recording never allocates and old buckets are reused as the time goes
+ * by. A bucket found with an old period is claimed with a compare and set
+ * of its period and cleared by the thread that claimed it, while the
+ * others spin until it is ready; no lock is ever taken. A record that
+ * races with the clearing of its bucket may be lost, which is fine for
+ * rates.
+ *
+ * The latencies are kept in a histogram of four buckets per power of two
+ * of microseconds, so the percentiles are within 25% of the real ones.
+ */
+public class VerdictTimeSeries {
+
+	/**
+	 * The length and the number of buckets of each ring.
+	 */
+	public enum Resolution {
+
+		/**
+		 * Ten minutes of one second buckets.
+		 */
+		SECOND(TimeUnit.SECONDS.toMillis(1), 600),
+
+		/**
+		 * A day of one minute buckets.
+		 */
+		MINUTE(TimeUnit.MINUTES.toMillis(1), 1440);
+
+		private final long millis;
+
+		private final int buckets;
+
+		Resolution(long millis, int buckets) {
+			this.millis = millis;
+			this.buckets = buckets;
+		}
+
+		/**
+		 * Gets the milliseconds of a bucket.
+		 *
+		 * @return the length of a bucket.
+		 */
+		public long getMillis() {
+			return millis;
+		}
+
+		/**
+		 * Gets the number of buckets kept.
+		 *
+		 * @return the number of buckets.
+		 */
+		public int getBuckets() {
+			return buckets;
+		}
+	}
+
+	/**
+	 * The number of buckets of the latency histogram: four for each power of
+	 * two up to 2^31 microseconds.
+	 */
+	static final int LATENCY_BUCKETS = 4 + 4 * 30;
+
+	private static final int COUNTS = Verdict.values().length;
+
+	/**
+	 * The period of a bucket being cleared.
+	 */
+	private static final long CLEARING = -1;
+
+	private final Ring seconds = new Ring(Resolution.SECOND);
+
+	private final Ring minutes = new Ring(Resolution.MINUTE);
+
+	/**
+	 * This method counts a verdict.
+	 *
+	 * @param time the time of the verdict, in epoch milliseconds.
+	 * @param verdict the verdict.
+	 * @param latency the nanoseconds the verification took, or a negative
+	 *     value when it is not known.
+	 */
+	public void record(long time, Verdict verdict, long latency) {
+		int latencyBucket = latency < 0 ? -1 : latencyBucket(TimeUnit.NANOSECONDS.toMicros(latency));
+		seconds.record(time, verdict, latencyBucket);
+		minutes.record(time, verdict, latencyBucket);
+	}
+
+	/**
+	 * This method gets the last buckets of a resolution, the oldest first.
+	 * The periods with no verdict are returned as empty buckets.
+	 *
+	 * @param resolution the resolution.
+	 * @param now the current time, in epoch milliseconds.
+	 * @param count the number of buckets, up to the buckets kept.
+	 * @return the buckets ending with the one of <code>now</code>.
+	 */
+	public List<Bucket> getBuckets(Resolution resolution, long now, int count) {
+		return (resolution == Resolution.SECOND ? seconds : minutes).getBuckets(now, Math.min(count, resolution.buckets));
+	}
+
+	/**
+	 * Gets the histogram bucket of a latency: the value itself below 4, and
+	 * then the power of two and the next two bits.
+	 */
+	static int latencyBucket(long micros) {
+		if(micros < 4) {
+			return (int) micros;
+		}
+		int exponent = Math.min(63 - Long.numberOfLeadingZeros(micros), 31);
+		int fraction = micros >= 1L << 32 ? 3 : (int) (micros >>> (exponent - 2)) & 3;
+		return 4 * (exponent - 1) + fraction;
+	}
+
+	/**
+	 * Gets the biggest latency of a histogram bucket, in microseconds.
+	 */
+	static long latencyBound(int bucket) {
+		if(bucket < 4) {
+			return bucket;
+		}
+		int exponent = bucket / 4 + 1;
+		return ((5L + bucket % 4) << (exponent - 2)) - 1;
+	}
+
+	/**
+	 * The buckets of a resolution.
+	 */
+	private static final class Ring {
+
+		private final Resolution resolution;
+
+		private final AtomicLong[] periods;
+
+		private final AtomicLongArray[] values;
+
+		Ring(Resolution resolution) {
+			this.resolution = resolution;
+			this.periods = new AtomicLong[resolution.buckets];
+			this.values = new AtomicLongArray[resolution.buckets];
+			for(int i = 0; i < resolution.buckets; i++) {
+				periods[i] = new AtomicLong(Long.MIN_VALUE);
+				values[i] = new AtomicLongArray(COUNTS + LATENCY_BUCKETS);
+			}
+		}
+
+		void record(long time, Verdict verdict, int latencyBucket) {
+			long period = time / resolution.millis;
+			int index = (int) (period % resolution.buckets);
+			AtomicLong current = periods[index];
+			while(true) {
+				long found = current.get();
+				if(found == period) {
+					break;
+				}
+				if(found > period) {
+					// too old, its bucket already holds a later period
+					return;
+				}
+				if(found == CLEARING) {
+					Thread.yield();
+				} else if(current.compareAndSet(found, CLEARING)) {
+					AtomicLongArray bucket = values[index];
+					for(int i = 0; i < bucket.length(); i++) {
+						bucket.set(i, 0);
+					}
+					current.set(period);
+					break;
+				}
+			}
+
+			AtomicLongArray bucket = values[index];
+			bucket.incrementAndGet(verdict.ordinal());
+			if(latencyBucket >= 0) {
+				bucket.incrementAndGet(COUNTS + latencyBucket);
+			}
+		}
+
+		List<Bucket> getBuckets(long now, int count) {
+			long last = now / resolution.millis;
+			List<Bucket> buckets = new ArrayList<>(count);
+			long[] copy = new long[COUNTS + LATENCY_BUCKETS];
+			for(long period = last - count + 1; period <= last; period++) {
+				int index = (int) (period % resolution.buckets);
+				boolean filled = false;
+				if(periods[index].get() == period) {
+					for(int i = 0; i < copy.length; i++) {
+						copy[i] = values[index].get(i);
+					}
+					filled = periods[index].get() == period;
+				}
+				buckets.add(filled ? new Bucket(period * resolution.millis, copy) : new Bucket(period * resolution.millis, new long[copy.length]));
+			}
+			return buckets;
+		}
+	}
+
+	/**
+	 * The counts of a period, copied from its ring bucket.
+	 */
+	public static final class Bucket {
+
+		private final long start;
+
+		private final long[] counts = new long[COUNTS];
+
+		private final long[] latencies = new long[LATENCY_BUCKETS];
+
+		private final long measured;
+
+		Bucket(long start, long[] values) {
+			this.start = start;
+			System.arraycopy(values, 0, counts, 0, COUNTS);
+			System.arraycopy(values, COUNTS, latencies, 0, LATENCY_BUCKETS);
+			long measured = 0;
+			for(long latency : latencies) {
+				measured += latency;
+			}
+			this.measured = measured;
+		}
+
+		/**
+		 * Gets the start of the period.
+		 *
+		 * @return the start, in epoch milliseconds.
+		 */
+		public long getStart() {
+			return start;
+		}
+
+		/**
+		 * Gets the number of verdicts of a kind in the period.
+		 *
+		 * @param verdict the kind of verdict.
+		 * @return the number of verdicts.
+		 */
+		public long getCount(Verdict verdict) {
+			return counts[verdict.ordinal()];
+		}
+
+		/**
+		 * Gets a percentile of the latencies measured in the period.
+		 *
+		 * @param percentile the percentile, between 0 and 1.
+		 * @return the latency in milliseconds, or -1 when no latency was
+		 *     measured.
+		 */
+		public double getLatency(double percentile) {
+			if(measured == 0) {
+				return -1;
+			}
+			long rank = Math.max(1, (long) Math.ceil(percentile * measured));
+			long seen = 0;
+			for(int i = 0; i < latencies.length; i++) {
+				seen += latencies[i];
+				if(seen >= rank) {
+					return latencyBound(i) / 1000.0;
+				}
+			}
+			return latencyBound(latencies.length - 1) / 1000.0;
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package mutant.storage;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import mutant.cache.VerdictIndex;
+import mutant.domain.DnaStats;
+import mutant.domain.Human;
+import mutant.domain.PackedDna;
+import mutant.domain.ReprocessCheckpoint;
+
+/**
+ * This interface is the storage of the humans verified, chosen with the
+ * <code>mutant.storage.type</code> property:
+ * <ul>
+ * <li><code>mysql</code>, the default: the humans are written into the
+ * database behind the requests by the <code>HumanWriteBehind</code>;</li>
+ * <li><code>log</code>: the humans are appended to an embedded log of
+ * memory-mapped segments, for deployments without a database.</li>
+ * </ul>
+ *
+ * A DNA is recorded only once: writing a DNA already recorded keeps its
+ * first verdict and does not change the counts. Its verdict is only changed
+ * by {@link #updateVerdicts(List, ReprocessCheckpoint)}, when the stored
+ * DNAs are verified again.
+ */
+public interface HumanStore {
+
+	/**
+	 * The property that chooses the storage.
+	 */
+	public static final String TYPE_PROPERTY = "mutant.storage.type";
+
+	/**
+	 * This method records a human, now or behind the request. The human is
+	 * registered at the moment it is written, unless it already has a
+	 * registration moment.
+	 *
+	 * @param human the human to be recorded.
+	 */
+	public void write(Human human);
+
+	/**
+	 * This method records many humans.
+	 *
+	 * @param humans the humans to be recorded.
+	 */
+	public void writeAll(List<Human> humans);
+
+	/**
+	 * This method gets the number of humans recorded since the storage was
+	 * opened, the ones already recorded not included.
+	 *
+	 * @return the number of humans inserted.
+	 */
+	public long getInsertedHumans();
+
+	/**
+	 * This method gets the number of mutants recorded since the storage was
+	 * opened, the ones already recorded not included, plus the verdicts
+	 * changed to mutant minus the ones changed to human.
+	 *
+	 * @return the number of mutants inserted.
+	 */
+	public long getInsertedMutants();
+
+	/**
+	 * This method reads the number of humans and mutants recorded.
+	 *
+	 * @return the counts, zero when no DNA was recorded yet.
+	 */
+	public DnaStats readStats();
+
+	/**
+	 * This method visits the verdict of every human recorded, without
+	 * holding them all in the heap.
+	 *
+	 * @param visitor the visitor of the verdicts.
+	 */
+	public void forEachVerdict(VerdictVisitor visitor);
+
+	/**
+	 * This method visits the verdict of the humans registered since the
+	 * given moment.
+	 *
+	 * @param since the first registration moment.
+	 * @param visitor the visitor of the verdicts.
+	 */
+	public void forEachVerdictSince(Instant since, VerdictVisitor visitor);
+
+	/**
+	 * This method reads the DNA of a human, kept apart from its verdict so
+	 * it is only read when asked for.
+	 *
+	 * @param id the DNA identifier.
+	 * @return the packed DNA, empty when it is not kept.
+	 */
+	public Optional<PackedDna> findDna(byte[] id);
+
+	/**
+	 * This method reads a page of the humans whose DNA is kept, in the order
+	 * of their ids, so the pages can be read one after the other without an
+	 * offset.
+	 *
+	 * @param after the id of the last human of the previous page, or
+	 *     <code>null</code> for the first page.
+	 * @param limit the biggest number of humans of the page.
+	 * @return the humans, with their verdicts and DNAs, empty after the last
+	 *     page. The DNA of a human is <code>null</code> when it can not be
+	 *     read.
+	 */
+	public List<Human> findDnas(byte[] after, int limit);
+
+	/**
+	 * This method reads how far the last reprocessing went.
+	 *
+	 * @return the checkpoint, empty when no reprocessing was done.
+	 */
+	public Optional<ReprocessCheckpoint> readCheckpoint();
+
+	/**
+	 * This method changes the verdicts of humans and moves the checkpoint of
+	 * the reprocessing, together.
+	 *
+	 * @param humans the humans with their new verdicts.
+	 * @param checkpoint how far the reprocessing went.
+	 */
+	public void updateVerdicts(List<Human> humans, ReprocessCheckpoint checkpoint);
+
+	/**
+	 * This method reads every human recorded.
+	 *
+	 * @return the humans.
+	 */
+	public List<Human> findAll();
+
+	/**
+	 * This method gets the index of the verdicts kept by the storage itself,
+	 * when it has one. Such a storage skips the DNAs already recorded on its
+	 * own, and the service uses its index instead of loading another one.
+	 *
+	 * @return the verdict index, empty when the storage has none.
+	 */
+	public default Optional<VerdictIndex> getVerdictIndex() {
+		return Optional.empty();
+	}
+}
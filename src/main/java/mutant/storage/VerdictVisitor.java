@@ -0,0 +1,21 @@
+package mutant.storage;
+
+import java.time.Instant;
+
+/**
+ * This interface receives the verdicts read from a <code>HumanStore</code>,
+ * one at a time.
+ */
+@FunctionalInterface
+public interface VerdictVisitor {
+
+	/**
+	 * This method receives the verdict of a human.
+	 *
+	 * @param id the DNA identifier.
+	 * @param mutant the verdict of the DNA.
+	 * @param createdAt the registration moment, <code>null</code> for the
+	 *     humans registered before it was recorded.
+	 */
+	public void visit(byte[] id, boolean mutant, Instant createdAt);
+}
@@ -0,0 +1,337 @@
+package mutant.storage.log;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import mutant.cache.VerdictIndex;
+import mutant.domain.DnaStats;
+import mutant.domain.Human;
+import mutant.domain.PackedDna;
+import mutant.domain.ReprocessCheckpoint;
+import mutant.storage.HumanStore;
+import mutant.storage.VerdictVisitor;
+
+/**
+ * This class stores the humans in an embedded <code>SegmentLog</code>, for
+ * deployments without a database.
+ *
+ * When it is opened the log is replayed into a <code>VerdictIndex</code>,
+ * which keeps the first verdict of every DNA, and into the counts. A human
+ * is appended to the log during the request only if the index does not know
+ * its DNA yet, so a DNA is recorded once as in the database. A daemon
+ * thread forces the log to the disk every
+ * <code>mutant.storage.log.sync-interval</code> milliseconds, which bounds
+ * the records lost by a crash of the machine, and every
+ * <code>mutant.storage.log.compaction-interval</code> milliseconds compacts
+ * the sealed segments when they hold records of a DNA already recorded or
+ * when their records fit in fewer segments. A force or a compaction that
+ * fails is logged and tried again at its next time.
+ *
+ * The log only keeps the verdicts: the DNAs themselves are not stored, so
+ * they can not be reprocessed.
+ */
+@Repository
+@ConditionalOnProperty(name = HumanStore.TYPE_PROPERTY, havingValue = LogHumanStore.TYPE)
+public class LogHumanStore implements HumanStore {
+
+	/**
+	 * The value of <code>mutant.storage.type</code> that chooses this
+	 * storage.
+	 */
+	public static final String TYPE = "log";
+
+	/**
+	 * The default number of records of a segment, 64 MB.
+	 */
+	public static final int DEFAULT_SEGMENT_RECORDS = 1 << 21;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(LogHumanStore.class);
+
+	/**
+	 * The directory of the segments.
+	 */
+	@Value("${mutant.storage.log.directory:data}")
+	private String directory = "data";
+
+	/**
+	 * The number of records of a new segment.
+	 */
+	@Value("${mutant.storage.log.segment-records:" + DEFAULT_SEGMENT_RECORDS + "}")
+	private int segmentRecords = DEFAULT_SEGMENT_RECORDS;
+
+	/**
+	 * The milliseconds between two writes of the log to the disk.
+	 */
+	@Value("${mutant.storage.log.sync-interval:1000}")
+	private long syncInterval = 1000;
+
+	/**
+	 * The milliseconds between two compactions.
+	 */
+	@Value("${mutant.storage.log.compaction-interval:600000}")
+	private long compactionInterval = 600000;
+
+	/**
+	 * The number of verdicts the index is sized for when the log is
+	 * replayed.
+	 */
+	@Value("${mutant.index.expected-size:1048576}")
+	private long expectedSize = 1 << 20;
+
+	private SegmentLog log;
+
+	private VerdictIndex index;
+
+	/**
+	 * The counts of the log when it was opened.
+	 */
+	private DnaStats base = new DnaStats();
+
+	/**
+	 * The records of a DNA already recorded, which a compaction drops.
+	 */
+	private final LongAdder duplicates = new LongAdder();
+
+	private final LongAdder insertedHumans = new LongAdder();
+
+	private final LongAdder insertedMutants = new LongAdder();
+
+	private ScheduledExecutorService maintenance;
+
+	/**
+	 * This method opens the log, replays it into the index and the counts,
+	 * and starts the thread that forces and compacts it.
+	 *
+	 * @throws IOException when the log can not be opened.
+	 */
+	@PostConstruct
+	public void open() throws IOException {
+		log = new SegmentLog(Paths.get(directory), segmentRecords);
+		index = new VerdictIndex(Math.max(expectedSize, log.getRecords()));
+		long[] counts = new long[2];
+		log.forEach((digest, mutant, createdAt) -> {
+			if(index.put(digest, mutant)) {
+				counts[0]++;
+				counts[1] += mutant ? 1 : 0;
+			} else {
+				duplicates.increment();
+			}
+		});
+		base = new DnaStats(counts[0], counts[1]);
+
+		maintenance = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "segment-log-maintenance");
+			thread.setDaemon(true);
+			return thread;
+		});
+		maintenance.scheduleWithFixedDelay(logged("force", log::force), syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+		maintenance.scheduleWithFixedDelay(logged("compaction", this::compact), compactionInterval, compactionInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Wraps a maintenance task so its failure is logged instead of
+	 * cancelling its next runs.
+	 */
+	private static Runnable logged(String name, Runnable task) {
+		return () -> {
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				LOGGER.error("The " + name + " of the log failed, it is tried again at its next time.", e);
+			}
+		};
+	}
+
+	/**
+	 * This method stops the maintenance thread and forces the log to the
+	 * disk.
+	 *
+	 * @throws InterruptedException when interrupted while waiting for a
+	 *     compaction.
+	 */
+	@PreDestroy
+	public void close() throws InterruptedException {
+		maintenance.shutdown();
+		maintenance.awaitTermination(1, TimeUnit.MINUTES);
+		log.close();
+	}
+
+	/**
+	 * This method compacts the sealed segments when it would drop a record
+	 * or save a segment, keeping the first record of every DNA.
+	 *
+	 * @return the number of records dropped.
+	 */
+	public int compact() {
+		long segments = (log.getSealedRecords() + segmentRecords - 1) / segmentRecords;
+		if(duplicates.sum() == 0 && segments >= log.getSegments() - 1) {
+			return 0;
+		}
+		VerdictIndex kept = new VerdictIndex(0);
+		try {
+			int dropped = log.compact((digest, mutant, createdAt) -> kept.put(digest, mutant));
+			duplicates.add(-dropped);
+			return dropped;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * This method appends the human to the log, unless its DNA is already
+	 * recorded. The DNA is put in the index only once appended, so a DNA
+	 * whose append fails is appended again when sent again; one appended
+	 * twice by concurrent writes is counted once and compacted away.
+	 */
+	@Override
+	public void write(Human human) {
+		if(human.getCreatedAt() == null) {
+			human.setCreatedAt(Instant.now());
+		}
+		if(index.get(human.getId()) != null) {
+			return;
+		}
+		try {
+			log.append(human.getId(), human.isMutant(), human.getCreatedAt().toEpochMilli());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if(index.put(human.getId(), human.isMutant())) {
+			insertedHumans.increment();
+			if(human.isMutant()) {
+				insertedMutants.increment();
+			}
+		} else {
+			duplicates.increment();
+		}
+	}
+
+	@Override
+	public void writeAll(List<Human> humans) {
+		for(Human human : humans) {
+			write(human);
+		}
+	}
+
+	@Override
+	public long getInsertedHumans() {
+		return insertedHumans.sum();
+	}
+
+	@Override
+	public long getInsertedMutants() {
+		return insertedMutants.sum();
+	}
+
+	/**
+	 * This method gets the counts of the log when it was opened plus the
+	 * humans appended since then.
+	 */
+	@Override
+	public DnaStats readStats() {
+		return new DnaStats(base.getHumanCount() + insertedHumans.sum(), base.getMutantCount() + insertedMutants.sum());
+	}
+
+	@Override
+	public void forEachVerdict(VerdictVisitor visitor) {
+		log.forEach((digest, mutant, createdAt) -> visitor.visit(digest, mutant, Instant.ofEpochMilli(createdAt)));
+	}
+
+	/**
+	 * This method visits the records registered since the given moment. The
+	 * records are in the order of the appends and not of their registration
+	 * moments, so only the segments whose records are all older are
+	 * skipped.
+	 */
+	@Override
+	public void forEachVerdictSince(Instant since, VerdictVisitor visitor) {
+		log.forEachSince(since.toEpochMilli(), (digest, mutant, createdAt) -> visitor.visit(digest, mutant, Instant.ofEpochMilli(createdAt)));
+	}
+
+	/**
+	 * This method gets the index replayed from the log, which already
+	 * skips the DNAs recorded, so the service does not keep a second one.
+	 */
+	@Override
+	public Optional<VerdictIndex> getVerdictIndex() {
+		return Optional.of(index);
+	}
+
+	/**
+	 * This method finds no DNA, since the log does not keep them.
+	 */
+	@Override
+	public Optional<PackedDna> findDna(byte[] id) {
+		return Optional.empty();
+	}
+
+	/**
+	 * This method finds no DNA, since the log does not keep them.
+	 */
+	@Override
+	public List<Human> findDnas(byte[] after, int limit) {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * This method finds no checkpoint, since there is nothing to reprocess.
+	 */
+	@Override
+	public Optional<ReprocessCheckpoint> readCheckpoint() {
+		return Optional.empty();
+	}
+
+	/**
+	 * This method accepts no verdict, since the log does not keep the DNAs
+	 * they would come from.
+	 *
+	 * @throws UnsupportedOperationException when a verdict is given.
+	 */
+	@Override
+	public void updateVerdicts(List<Human> humans, ReprocessCheckpoint checkpoint) {
+		if(!humans.isEmpty()) {
+			throw new UnsupportedOperationException("The verdict log does not change verdicts.");
+		}
+	}
+
+	@Override
+	public List<Human> findAll() {
+		List<Human> humans = new ArrayList<>();
+		forEachVerdict((id, mutant, createdAt) -> {
+			Human human = new Human();
+			human.setId(id);
+			human.setMutant(mutant);
+			human.setCreatedAt(createdAt);
+			humans.add(human);
+		});
+		return humans;
+	}
+
+	/**
+	 * This method gets the log of this storage.
+	 *
+	 * @return the segment log.
+	 */
+	public SegmentLog getLog() {
+		return log;
+	}
+}
@@ -0,0 +1,540 @@
+package mutant.storage.log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import mutant.codec.DnaDigest;
+
+/**
+ * This class is an append-only log of verdicts, kept in memory-mapped
+ * segment files of fixed size records:
+ *
+ * <pre>
+ * offset  0  16 bytes  the DNA digest
+ * offset 16   8 bytes  the registration moment, in epoch milliseconds
+ * offset 24   1 byte   the flags: present (2) and mutant (1)
+ * offset 25   3 bytes  zeros
+ * offset 28   4 bytes  the CRC32 of the 28 bytes above
+ * </pre>
+ *
+ * The segments are files named <code>segment-&lt;id&gt;.log</code>, read in
+ * the order of their ids. Records are only appended to the last one, the
+ * active segment, which is created with room for a fixed number of records;
+ * once it is full it is forced to the disk and a new one is created. The
+ * other segments are sealed and never written again.
+ *
+ * A segment is read until its first record that is not present or whose
+ * checksum does not match, so a record torn by a crash ends the log: the
+ * rest of the active segment is zeroed when the log is opened and the torn
+ * record is overwritten by the next append. Records appended are in the page cache
+ * right away and on the disk once {@link #force()} is called or their
+ * segment is sealed.
+ *
+ * {@link #compact(RecordFilter)} rewrites the sealed segments with only the
+ * records kept by a filter, in fewer segments. The new segments are written
+ * aside in a <code>compaction</code> directory, then a <code>COMMIT</code>
+ * file lists the segments replaced before any of them is touched, so a
+ * compaction interrupted by a crash is either discarded or finished when
+ * the log is opened again.
+ *
+ * Appends are serialized; reads and compactions work on a snapshot of the
+ * segments and run concurrently with them.
+ */
+public class SegmentLog implements Closeable {
+
+	/**
+	 * The number of bytes of a record.
+	 */
+	public static final int RECORD_SIZE = 32;
+
+	/**
+	 * The directory where the compacted segments are written.
+	 */
+	static final String COMPACTION = "compaction";
+
+	/**
+	 * The file that makes a compaction definitive.
+	 */
+	static final String COMMIT = "COMMIT";
+
+	private static final String PREFIX = "segment-";
+
+	private static final String SUFFIX = ".log";
+
+	private static final int TIMESTAMP = DnaDigest.LENGTH;
+
+	private static final int FLAGS = TIMESTAMP + Long.BYTES;
+
+	private static final int CHECKSUM = RECORD_SIZE - Integer.BYTES;
+
+	private static final byte PRESENT = 2;
+
+	private static final byte MUTANT = 1;
+
+	/**
+	 * This interface receives the records read from the log.
+	 */
+	@FunctionalInterface
+	public interface RecordVisitor {
+
+		/**
+		 * This method receives a record.
+		 *
+		 * @param digest the DNA digest, owned by the visitor.
+		 * @param mutant the verdict of the DNA.
+		 * @param createdAt the registration moment, in epoch milliseconds.
+		 */
+		void visit(byte[] digest, boolean mutant, long createdAt);
+	}
+
+	/**
+	 * This interface chooses the records kept by a compaction.
+	 */
+	@FunctionalInterface
+	public interface RecordFilter {
+
+		/**
+		 * This method verifies if a record is kept.
+		 *
+		 * @param digest the DNA digest.
+		 * @param mutant the verdict of the DNA.
+		 * @param createdAt the registration moment, in epoch milliseconds.
+		 * @return <code>true</code> to keep the record.
+		 */
+		boolean keep(byte[] digest, boolean mutant, long createdAt);
+	}
+
+	private final Path directory;
+
+	private final int segmentRecords;
+
+	/**
+	 * The segments in the order of their ids, the active one last.
+	 */
+	private final List<Segment> segments = new ArrayList<>();
+
+	/**
+	 * The record being appended, checksummed before being copied to the
+	 * active segment.
+	 */
+	private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+
+	private final CRC32 crc = new CRC32();
+
+	/**
+	 * The lock held by the compactions, so they do not run concurrently.
+	 */
+	private final Object compaction = new Object();
+
+	/**
+	 * Opens a log, creating its directory when it does not exist. A
+	 * compaction interrupted is discarded or finished, and the records of
+	 * every segment are counted up to the first one that is not valid.
+	 *
+	 * @param directory the directory of the segments.
+	 * @param segmentRecords the number of records of a new segment.
+	 * @throws IOException when the segments can not be read.
+	 */
+	public SegmentLog(Path directory, int segmentRecords) throws IOException {
+		if(segmentRecords < 1) {
+			throw new IllegalArgumentException("A segment must hold at least one record.");
+		}
+		this.directory = directory;
+		this.segmentRecords = segmentRecords;
+
+		Files.createDirectories(directory);
+		recoverCompaction();
+		List<Long> ids = new ArrayList<>();
+		try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+			for(Path file : files) {
+				ids.add(id(file));
+			}
+		}
+		Collections.sort(ids);
+		for(long id : ids) {
+			segments.add(open(segment(directory, id), id, 0));
+		}
+		if(segments.isEmpty()) {
+			segments.add(open(segment(directory, 1), 1, segmentRecords));
+		}
+		clearTail(segments.get(segments.size() - 1));
+	}
+
+	/**
+	 * This method appends a record to the active segment, sealing it first
+	 * when it is full.
+	 *
+	 * @param digest the DNA digest.
+	 * @param mutant the verdict of the DNA.
+	 * @param createdAt the registration moment, in epoch milliseconds.
+	 * @throws IOException when a new segment can not be created.
+	 */
+	public synchronized void append(byte[] digest, boolean mutant, long createdAt) throws IOException {
+		Segment active = segments.get(segments.size() - 1);
+		if(active.count == active.capacity) {
+			active.buffer.force();
+			active = open(segment(directory, active.id + 1), active.id + 1, segmentRecords);
+			segments.add(active);
+		}
+
+		record.clear();
+		record.put(digest, 0, DnaDigest.LENGTH).putLong(createdAt).put((byte) (PRESENT | (mutant ? MUTANT : 0)));
+		crc.reset();
+		crc.update(record.array(), 0, CHECKSUM);
+		record.putInt(CHECKSUM, (int) crc.getValue());
+
+		ByteBuffer target = active.buffer.duplicate();
+		target.position(active.count * RECORD_SIZE);
+		target.put(record.array());
+		active.count++;
+		active.latest = Math.max(active.latest, createdAt);
+	}
+
+	/**
+	 * This method reads every record of the log, the oldest first. The
+	 * records appended meanwhile may not be read.
+	 *
+	 * @param visitor the visitor of the records.
+	 */
+	public void forEach(RecordVisitor visitor) {
+		forEachSince(Long.MIN_VALUE, visitor);
+	}
+
+	/**
+	 * This method reads the records registered since the given moment, the
+	 * oldest first. The segments whose records are all older are skipped
+	 * without being read, since every segment knows its latest registration
+	 * moment.
+	 *
+	 * @param since the first registration moment, in epoch milliseconds.
+	 * @param visitor the visitor of the records.
+	 */
+	public void forEachSince(long since, RecordVisitor visitor) {
+		for(Segment segment : snapshot(false)) {
+			if(segment.latest < since) {
+				continue;
+			}
+			ByteBuffer buffer = segment.buffer.duplicate();
+			for(int i = 0; i < segment.count; i++) {
+				int offset = i * RECORD_SIZE;
+				long createdAt = buffer.getLong(offset + TIMESTAMP);
+				if(createdAt < since) {
+					continue;
+				}
+				byte[] digest = new byte[DnaDigest.LENGTH];
+				buffer.position(offset);
+				buffer.get(digest);
+				visitor.visit(digest, (buffer.get(offset + FLAGS) & MUTANT) != 0, createdAt);
+			}
+		}
+	}
+
+	/**
+	 * This method forces the records appended to the active segment to the
+	 * disk.
+	 */
+	public void force() {
+		List<Segment> current = snapshot(false);
+		current.get(current.size() - 1).buffer.force();
+	}
+
+	/**
+	 * This method rewrites the sealed segments with only the records kept by
+	 * the filter, which sees the records in the order of the log. Nothing
+	 * is changed when no record is dropped and no segment is saved.
+	 *
+	 * @param filter the filter of the records.
+	 * @return the number of records dropped.
+	 * @throws IOException when the segments can not be written.
+	 */
+	public int compact(RecordFilter filter) throws IOException {
+		synchronized(compaction) {
+			return compactSealed(filter);
+		}
+	}
+
+	/**
+	 * Rewrites the sealed segments, one compaction at a time.
+	 */
+	private int compactSealed(RecordFilter filter) throws IOException {
+		List<Segment> sealed = snapshot(true);
+		if(sealed.isEmpty()) {
+			return 0;
+		}
+		Path work = directory.resolve(COMPACTION);
+		delete(work);
+		Files.createDirectories(work);
+
+		List<Segment> outputs = new ArrayList<>();
+		Segment output = null;
+		int dropped = 0;
+		byte[] digest = new byte[DnaDigest.LENGTH];
+		for(Segment segment : sealed) {
+			ByteBuffer buffer = segment.buffer.duplicate();
+			for(int i = 0; i < segment.count; i++) {
+				int offset = i * RECORD_SIZE;
+				buffer.position(offset);
+				buffer.get(digest);
+				long createdAt = buffer.getLong(offset + TIMESTAMP);
+				if(!filter.keep(digest, (buffer.get(offset + FLAGS) & MUTANT) != 0, createdAt)) {
+					dropped++;
+					continue;
+				}
+				if(output == null || output.count == output.capacity) {
+					long id = sealed.get(outputs.size()).id;
+					output = open(segment(work, id), id, segmentRecords);
+					outputs.add(output);
+				}
+				buffer.limit(offset + RECORD_SIZE).position(offset);
+				ByteBuffer target = output.buffer.duplicate();
+				target.position(output.count * RECORD_SIZE);
+				target.put(buffer);
+				buffer.limit(buffer.capacity());
+				output.count++;
+				output.latest = Math.max(output.latest, createdAt);
+			}
+		}
+		if(dropped == 0 && outputs.size() == sealed.size()) {
+			delete(work);
+			return 0;
+		}
+
+		for(Segment segment : outputs) {
+			segment.buffer.force();
+		}
+		StringBuilder commit = new StringBuilder().append(outputs.size()).append('\n');
+		for(Segment segment : sealed) {
+			commit.append(segment.id).append('\n');
+		}
+		try(FileChannel channel = FileChannel.open(work.resolve(COMMIT), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(commit.toString().getBytes(StandardCharsets.US_ASCII)));
+			channel.force(true);
+		}
+		sync(work);
+
+		synchronized(this) {
+			applyCompaction(work);
+			segments.subList(0, sealed.size()).clear();
+			segments.addAll(0, outputs);
+		}
+		delete(work);
+		return dropped;
+	}
+
+	/**
+	 * This method gets the number of records of the log.
+	 *
+	 * @return the number of records.
+	 */
+	public long getRecords() {
+		long records = 0;
+		for(Segment segment : snapshot(false)) {
+			records += segment.count;
+		}
+		return records;
+	}
+
+	/**
+	 * This method gets the number of segments of the log, the active one
+	 * included.
+	 *
+	 * @return the number of segments.
+	 */
+	public synchronized int getSegments() {
+		return segments.size();
+	}
+
+	/**
+	 * This method gets the number of records of the sealed segments, which
+	 * a compaction rewrites.
+	 *
+	 * @return the number of records.
+	 */
+	public long getSealedRecords() {
+		long records = 0;
+		for(Segment segment : snapshot(true)) {
+			records += segment.count;
+		}
+		return records;
+	}
+
+	/**
+	 * This method forces the active segment to the disk. The segments stay
+	 * mapped until their buffers are collected.
+	 */
+	@Override
+	public void close() {
+		force();
+	}
+
+	/**
+	 * Copies the segments, with their counts at this moment, optionally
+	 * without the active one.
+	 */
+	private synchronized List<Segment> snapshot(boolean sealed) {
+		List<Segment> copy = new ArrayList<>(segments.size());
+		for(int i = 0; i < segments.size() - (sealed ? 1 : 0); i++) {
+			Segment segment = segments.get(i);
+			Segment copied = new Segment(segment.id, segment.buffer, segment.capacity, segment.count);
+			copied.latest = segment.latest;
+			copy.add(copied);
+		}
+		return copy;
+	}
+
+	/**
+	 * Finishes a compaction that has a <code>COMMIT</code> file, and
+	 * discards the segments written by one that has not.
+	 */
+	private void recoverCompaction() throws IOException {
+		Path work = directory.resolve(COMPACTION);
+		if(Files.exists(work.resolve(COMMIT))) {
+			applyCompaction(work);
+		}
+		delete(work);
+	}
+
+	/**
+	 * Moves the compacted segments over the first segments replaced and
+	 * deletes the other ones. Both steps can be repeated, so an apply
+	 * interrupted is finished by the next one.
+	 */
+	private void applyCompaction(Path work) throws IOException {
+		List<String> lines = Files.readAllLines(work.resolve(COMMIT), StandardCharsets.US_ASCII);
+		int outputs = Integer.parseInt(lines.get(0));
+		for(int i = 1; i < lines.size(); i++) {
+			long id = Long.parseLong(lines.get(i));
+			Path compacted = segment(work, id);
+			if(i <= outputs) {
+				if(Files.exists(compacted)) {
+					Files.move(compacted, segment(directory, id), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				}
+			} else {
+				Files.deleteIfExists(segment(directory, id));
+			}
+		}
+		sync(directory);
+	}
+
+	/**
+	 * Maps a segment, creating it with room for the given number of records
+	 * when it does not exist, and counts its valid records.
+	 */
+	private Segment open(Path file, long id, int records) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			long size = Math.max(channel.size(), (long) records * RECORD_SIZE);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size - size % RECORD_SIZE);
+			int capacity = buffer.capacity() / RECORD_SIZE;
+			int count = 0;
+			long latest = Long.MIN_VALUE;
+			while(count < capacity && isValid(buffer, count * RECORD_SIZE)) {
+				latest = Math.max(latest, buffer.getLong(count * RECORD_SIZE + TIMESTAMP));
+				count++;
+			}
+			Segment segment = new Segment(id, buffer, capacity, count);
+			segment.latest = latest;
+			return segment;
+		}
+	}
+
+	/**
+	 * Zeros the records after the last valid one of the active segment, so
+	 * the records that followed a torn one are not read again once it is
+	 * overwritten.
+	 */
+	private static void clearTail(Segment active) {
+		ByteBuffer buffer = active.buffer.duplicate();
+		byte[] zeros = new byte[RECORD_SIZE];
+		for(int offset = active.count * RECORD_SIZE; offset < buffer.capacity(); offset += RECORD_SIZE) {
+			if((buffer.getLong(offset) | buffer.getLong(offset + 8) | buffer.getLong(offset + 16) | buffer.getLong(offset + 24)) != 0) {
+				buffer.position(offset);
+				buffer.put(zeros);
+			}
+		}
+		active.buffer.force();
+	}
+
+	private static boolean isValid(ByteBuffer buffer, int offset) {
+		if((buffer.get(offset + FLAGS) & PRESENT) == 0) {
+			return false;
+		}
+		ByteBuffer bytes = buffer.duplicate();
+		bytes.limit(offset + CHECKSUM).position(offset);
+		CRC32 checksum = new CRC32();
+		checksum.update(bytes);
+		return (int) checksum.getValue() == buffer.getInt(offset + CHECKSUM);
+	}
+
+	private static Path segment(Path directory, long id) {
+		return directory.resolve(String.format("%s%016d%s", PREFIX, id, SUFFIX));
+	}
+
+	private static long id(Path file) {
+		String name = file.getFileName().toString();
+		return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+	}
+
+	/**
+	 * Deletes a directory and its files, if it exists.
+	 */
+	private static void delete(Path directory) throws IOException {
+		if(!Files.isDirectory(directory)) {
+			return;
+		}
+		try(DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for(Path file : files) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(directory);
+	}
+
+	/**
+	 * Forces the entries of a directory to the disk, where the platform
+	 * allows a directory to be opened.
+	 */
+	private static void sync(Path directory) {
+		try(FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			// not supported by this platform
+		}
+	}
+
+	/**
+	 * A mapped segment, the number of valid records at its start and the
+	 * latest registration moment among them.
+	 */
+	private static final class Segment {
+
+		private final long id;
+
+		private final MappedByteBuffer buffer;
+
+		private final int capacity;
+
+		private int count;
+
+		private long latest = Long.MIN_VALUE;
+
+		Segment(long id, MappedByteBuffer buffer, int capacity, int count) {
+			this.id = id;
+			this.buffer = buffer;
+			this.capacity = capacity;
+			this.count = count;
+		}
+	}
+}
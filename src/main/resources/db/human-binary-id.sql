@@ -0,0 +1,19 @@
+-- Migrates the human table from the 32-bit hash code key to the 16 bytes
+-- DnaDigest key. It must run once, before the new version is deployed:
+-- spring.jpa.hibernate.ddl-auto=update does not change the type of an
+-- existing column.
+--
+-- The DNAs were never stored, so the old keys can not be turned into
+-- digests. They are kept, zero padded to 16 bytes, so /stats still counts
+-- every verified DNA; a DNA verified before the migration is registered
+-- once more, under its digest, the next time it is sent.
+
+ALTER TABLE human ADD COLUMN digest BINARY(16) NULL;
+
+UPDATE human SET digest = UNHEX(LPAD(HEX(id), 32, '0'));
+
+ALTER TABLE human
+	DROP PRIMARY KEY,
+	DROP COLUMN id,
+	CHANGE COLUMN digest id BINARY(16) NOT NULL,
+	ADD PRIMARY KEY (id);
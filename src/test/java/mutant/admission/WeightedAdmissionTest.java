@@ -0,0 +1,63 @@
+package mutant.admission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class WeightedAdmissionTest {
+
+	/**
+	 * This test ensures that the requests are admitted while their weights
+	 * fit in the budget, that a request bigger than the budget is admitted
+	 * only when nothing else runs, and that the weights are given back.
+	 */
+	@Test
+	public void testAdmission() {
+		WeightedAdmission admission = new WeightedAdmission(100);
+		long small = admission.weigh(36);
+		long huge = admission.weigh(16384L * 16384);
+		assertEquals(36, small);
+		assertEquals(100, huge);
+		assertEquals(1, admission.weigh(0));
+
+		assertTrue(admission.tryAcquire(small));
+		assertTrue(admission.tryAcquire(small));
+		assertFalse(admission.tryAcquire(small));
+		assertFalse(admission.tryAcquire(huge));
+		assertEquals(28, admission.getAvailable());
+
+		admission.release(small);
+		admission.release(small);
+		assertTrue(admission.tryAcquire(huge));
+		assertFalse(admission.tryAcquire(1));
+		admission.release(huge);
+
+		assertEquals(100, admission.getAvailable());
+		assertEquals(3, admission.getAdmitted());
+		assertEquals(3, admission.getRejected());
+	}
+
+	/**
+	 * This test ensures that a request is charged again with a bigger weight
+	 * only when the difference fits, and keeps its weight otherwise.
+	 */
+	@Test
+	public void testRecharge() {
+		WeightedAdmission admission = new WeightedAdmission(100);
+		assertTrue(admission.tryAcquire(10));
+		assertTrue(admission.tryAcquire(50));
+		assertEquals(4, admission.recharge(10, 4));
+		assertEquals(46, admission.getAvailable());
+		assertEquals(40, admission.recharge(4, 40));
+		assertEquals(-1, admission.recharge(40, 16384L * 16384));
+		assertEquals(10, admission.getAvailable());
+
+		admission.release(50);
+		assertEquals(100, admission.recharge(40, 16384L * 16384));
+		assertEquals(0, admission.getAvailable());
+		admission.release(100);
+		assertEquals(100, admission.getAvailable());
+	}
+}
@@ -0,0 +1,79 @@
+package mutant.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class VerdictCacheTest {
+	
+	/**
+	 * This test ensures that the verdicts kept are found and that hits and
+	 * misses are counted.
+	 */
+	@Test
+	public void testHitsAndMisses() {
+		VerdictCache cache = new VerdictCache(1000);
+		assertNull(cache.get(digest(1)));
+		cache.put(digest(1), true);
+		cache.put(digest(2), false);
+		assertEquals(Boolean.TRUE, cache.get(digest(1)));
+		assertEquals(Boolean.FALSE, cache.get(digest(2)));
+		assertNull(cache.get(digest(3)));
+		
+		assertEquals(2, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(2, cache.size());
+	}
+	
+	/**
+	 * This test ensures that the cache never holds more verdicts than its
+	 * capacity, and that the verdicts looked up often survive a scan of
+	 * verdicts looked up only once, which plain LRU would not keep.
+	 */
+	@Test
+	public void testFrequentVerdictsSurviveScan() {
+		VerdictCache cache = new VerdictCache(200);
+		for(int round = 0; round < 5; round++) {
+			for(int i = 0; i < 100; i++) {
+				if(cache.get(digest(i)) == null) {
+					cache.put(digest(i), i % 2 == 0);
+				}
+			}
+		}
+		for(int i = 1000; i < 2000; i++) {
+			if(cache.get(digest(i)) == null) {
+				cache.put(digest(i), false);
+			}
+		}
+		assertTrue(cache.size() <= cache.getCapacity());
+		assertTrue(cache.getEvictions() + cache.getRejections() > 0);
+		
+		int kept = 0;
+		for(int i = 0; i < 100; i++) {
+			if(cache.get(digest(i)) != null) {
+				kept++;
+			}
+		}
+		assertTrue("Kept " + kept, kept >= 90);
+	}
+	
+	/**
+	 * This test ensures that a cache of capacity 0 keeps nothing.
+	 */
+	@Test
+	public void testDisabled() {
+		VerdictCache cache = new VerdictCache(0);
+		cache.put(digest(1), true);
+		assertNull(cache.get(digest(1)));
+		assertEquals(0, cache.size());
+	}
+	
+	private static byte[] digest(long value) {
+		long mixed = value * 0x9e3779b97f4a7c15L;
+		return ByteBuffer.allocate(16).putLong(mixed).putLong(mixed ^ (mixed >>> 31)).array();
+	}
+}
@@ -0,0 +1,58 @@
+package mutant.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import mutant.codec.DnaDigest;
+
+public class VerdictIndexTest {
+	
+	/**
+	 * This test ensures that the verdicts are found after the table grows
+	 * over many buffers, and that a verdict recorded again is updated
+	 * instead of added.
+	 */
+	@Test
+	public void testPutAndGet() {
+		VerdictIndex index = new VerdictIndex(0, 6);
+		Random random = new Random(5);
+		byte[][] digests = new byte[5000][];
+		for(int i = 0; i < digests.length; i++) {
+			digests[i] = DnaDigest.toBytes(random.nextLong(), random.nextLong());
+			assertTrue(index.put(digests[i], i % 3 == 0));
+		}
+		assertEquals(digests.length, index.size());
+		assertTrue(index.getMemory() >= digests.length * VerdictIndex.SLOT_BYTES);
+		
+		for(int i = 0; i < digests.length; i++) {
+			assertEquals(i % 3 == 0, index.get(digests[i]));
+		}
+		assertNull(index.get(DnaDigest.toBytes(random.nextLong(), random.nextLong())));
+		
+		assertFalse(index.put(digests[1], true));
+		assertEquals(Boolean.TRUE, index.get(digests[1]));
+		assertEquals(digests.length, index.size());
+	}
+	
+	/**
+	 * This test ensures that digests with the same high half, which share
+	 * the first slot probed, are told apart.
+	 */
+	@Test
+	public void testCollisions() {
+		VerdictIndex index = new VerdictIndex(100);
+		for(long low = 0; low < 64; low++) {
+			index.put(DnaDigest.toBytes(7, low << 2), low % 2 == 0);
+		}
+		for(long low = 0; low < 64; low++) {
+			assertEquals(low % 2 == 0, index.get(DnaDigest.toBytes(7, low << 2)));
+		}
+		assertNull(index.get(DnaDigest.toBytes(7, 64 << 2)));
+	}
+}
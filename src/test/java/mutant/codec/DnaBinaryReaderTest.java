@@ -0,0 +1,109 @@
+package mutant.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import mutant.domain.PackedDna;
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+
+public class DnaBinaryReaderTest {
+
+	private static final String[] DNA = {"ATGCGA", "CAGTGC", "TTATGT", "AGAAGG", "CCCCTA", "TCACTG"};
+
+	/**
+	 * This test ensures that a DNA is read the same from the packed and from
+	 * the byte per base formats, in any case.
+	 *
+	 * @throws IOException
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testRead() throws IOException, InvalidDnaException, InvalidNitrogenousBasesException {
+		PackedDna expected = DnaCodec.encode(DNA);
+		ByteArrayOutputStream packed = new ByteArrayOutputStream();
+		DnaCodec.writePacked(expected, packed);
+		assertEquals(expected, DnaBinaryReader.read(new ByteArrayInputStream(packed.toByteArray()), 16));
+		assertEquals(expected, DnaBinaryReader.read(new ByteArrayInputStream(bytes(6, "ATGCGAcagtgcTTATGTAGAAGGCCCCTATCACTG")), 16));
+	}
+
+	/**
+	 * This test ensures that a DNA is read from a direct buffer holding it
+	 * among other bytes, and that a buffer with a byte too many is refused.
+	 *
+	 * @throws IOException
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testReadBuffer() throws IOException, InvalidDnaException, InvalidNitrogenousBasesException {
+		PackedDna expected = DnaCodec.encode(DNA);
+		ByteArrayOutputStream packed = new ByteArrayOutputStream();
+		DnaCodec.writePacked(expected, packed);
+		for(byte[] body : new byte[][] {packed.toByteArray(), bytes(6, String.join("", DNA))}) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(body.length + 10);
+			buffer.putInt(7).put(body).putInt(9).flip();
+			buffer.position(Integer.BYTES).limit(Integer.BYTES + body.length);
+			assertEquals(expected, DnaBinaryReader.read(buffer, 16));
+			assertEquals(Integer.BYTES + body.length, buffer.position());
+
+			buffer.position(Integer.BYTES).limit(Integer.BYTES * 2 + body.length);
+			try {
+				DnaBinaryReader.read(buffer, 16);
+				fail("The DNA should be refused with " + NitrogenousBases.RC_DNA_FORMAT);
+			} catch (InvalidDnaException e) {
+				assertEquals(NitrogenousBases.RC_DNA_FORMAT, e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * This test ensures that a wrong header, a body of the wrong length, bits
+	 * after the last base of a row and invalid bases are refused.
+	 *
+	 * @throws IOException
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testReturnCodes() throws IOException, InvalidDnaException, InvalidNitrogenousBasesException {
+		byte[] bases = bytes(6, String.join("", DNA));
+		assertInvalid(Arrays.copyOf(bases, 6), DnaBinaryReader.RC_BINARY_MAGIC);
+		assertInvalid("{\"dna\":[\"A\"]}".getBytes(StandardCharsets.UTF_8), DnaBinaryReader.RC_BINARY_MAGIC);
+		assertInvalid(bytes(0, ""), NitrogenousBases.RC_DNA_EMPTY);
+		assertInvalid(bytes(17, ""), NitrogenousBases.RC_DNA_SIZE);
+		assertInvalid(Arrays.copyOf(bases, bases.length - 1), NitrogenousBases.RC_DNA_FORMAT);
+		assertInvalid(Arrays.copyOf(bases, bases.length + 1), NitrogenousBases.RC_DNA_FORMAT);
+		assertInvalid(bytes(2, "ACGX"), NitrogenousBases.RC_NB_INVALID);
+
+		ByteArrayOutputStream packed = new ByteArrayOutputStream();
+		DnaCodec.writePacked(DnaCodec.encode(DNA), packed);
+		byte[] padded = packed.toByteArray();
+		padded[DnaCodec.PACKED_HEADER] |= 0x10;
+		assertInvalid(padded, NitrogenousBases.RC_DNA_FORMAT);
+	}
+
+	private static byte[] bytes(int size, String bases) {
+		byte[] body = bases.getBytes(StandardCharsets.US_ASCII);
+		return ByteBuffer.allocate(DnaCodec.PACKED_HEADER + body.length).putInt(DnaBinaryReader.BYTES_MAGIC).putInt(size).put(body).array();
+	}
+
+	private static void assertInvalid(byte[] body, String returnCode) throws IOException {
+		try {
+			DnaBinaryReader.read(new ByteArrayInputStream(body), 16);
+			fail("The DNA should be refused with " + returnCode);
+		} catch (InvalidDnaException | InvalidNitrogenousBasesException e) {
+			assertEquals(returnCode, e.getMessage());
+		}
+	}
+}
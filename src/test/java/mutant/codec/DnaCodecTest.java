@@ -0,0 +1,123 @@
+package mutant.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import mutant.domain.PackedDna;
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+
+public class DnaCodecTest {
+	
+	/**
+	 * This test ensures that a DNA is the same after being packed and
+	 * unpacked, and that lower case bases are packed as upper case ones.
+	 * 
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testRoundTrip() throws InvalidDnaException, InvalidNitrogenousBasesException {
+		String[] dna = new String[] {"ATGCGA", "CAGTGC", "TTATGT", "AGAAGG", "CCCCTA", "TCACTG"};
+		assertArrayEquals(dna, DnaCodec.decode(DnaCodec.encode(dna)));
+		assertEquals(DnaCodec.encode(dna), DnaCodec.encode(new String[] {"atgcga", "cagtgc", "ttatgt", "agaagg", "ccccta", "tcactg"}));
+	}
+	
+	/**
+	 * This test ensures that raw bytes are packed the same way as strings,
+	 * including rows that use more than one word.
+	 * 
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testRawBytes() throws InvalidDnaException, InvalidNitrogenousBasesException {
+		String[] dna = new String[70];
+		StringBuilder raw = new StringBuilder();
+		for(int i = 0; i < dna.length; i++) {
+			StringBuilder row = new StringBuilder();
+			for(int j = 0; j < dna.length; j++) {
+				row.append(PackedDna.BASES[(i * 7 + j * j) % 4]);
+			}
+			dna[i] = row.toString();
+			raw.append(dna[i]);
+		}
+		
+		PackedDna packed = DnaCodec.encode(raw.toString().getBytes(StandardCharsets.US_ASCII), 0, dna.length);
+		assertEquals(DnaCodec.encode(dna), packed);
+		assertArrayEquals(dna, DnaCodec.decode(packed));
+	}
+	
+	/**
+	 * This test ensures that the occupancy of a base has one bit per column
+	 * holding it and nothing beyond the last column.
+	 * 
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testOccupancy() throws InvalidDnaException, InvalidNitrogenousBasesException {
+		PackedDna dna = DnaCodec.encode(new String[] {"ACGTA", "AAAAA", "TTTTT", "CGCGC", "GGGGG"});
+		assertEquals(0b10001L, dna.occupancy(0, 0, 0));
+		assertEquals(0b11111L, dna.occupancy(0, 1, 0));
+		assertEquals(0b00000L, dna.occupancy(0, 2, 0));
+		assertEquals(0b10101L, dna.occupancy(1, 3, 0));
+	}
+	
+	/**
+	 * This test ensures that a 10000 x 10000 DNA takes about 25 MB.
+	 */
+	@Test
+	public void testPackedSize() {
+		assertEquals(25040000L, 10000L * PackedDna.rowWords(10000) * Long.BYTES);
+	}
+	
+	/**
+	 * This test ensures that the bases stored take a quarter of their text
+	 * and give back the same DNA, including rows that use more than one
+	 * word, and that bases not matching the size are refused.
+	 * 
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testPackBases() throws InvalidDnaException, InvalidNitrogenousBasesException {
+		for(int size : new int[] {1, 5, 6, 33, 70}) {
+			String[] dna = new String[size];
+			for(int i = 0; i < size; i++) {
+				StringBuilder row = new StringBuilder();
+				for(int j = 0; j < size; j++) {
+					row.append(PackedDna.BASES[(i * 5 + j * j + j) % 4]);
+				}
+				dna[i] = row.toString();
+			}
+			PackedDna packed = DnaCodec.encode(dna);
+			byte[] bases = DnaCodec.packBases(packed);
+			assertEquals((size * size + 3) / 4, bases.length);
+			assertEquals(packed, DnaCodec.unpackBases(size, bases));
+		}
+		
+		try {
+			DnaCodec.unpackBases(6, new byte[8]);
+			fail();
+		} catch (InvalidDnaException e) {
+			assertEquals(NitrogenousBases.RC_DNA_FORMAT, e.getMessage());
+		}
+	}
+	
+	/**
+	 * This test ensures that raw bytes with invalid bases are rejected.
+	 * 
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test(expected = InvalidNitrogenousBasesException.class)
+	public void testInvalidRawBytes() throws InvalidDnaException, InvalidNitrogenousBasesException {
+		DnaCodec.encode("ACGTAC|T".getBytes(StandardCharsets.US_ASCII), 0, 3);
+	}
+}
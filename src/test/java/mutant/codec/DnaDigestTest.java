@@ -0,0 +1,56 @@
+package mutant.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import mutant.domain.PackedDna;
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+
+public class DnaDigestTest {
+	
+	/**
+	 * This test ensures that the digest has 16 bytes and only depends on the
+	 * bases, not on their case.
+	 * 
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testSameDna() throws InvalidDnaException, InvalidNitrogenousBasesException {
+		byte[] digest = DnaDigest.digest(DnaCodec.encode(new String[] {"ATGCGA", "CAGTGC", "TTATGT", "AGAAGG", "CCCCTA", "TCACTG"}));
+		assertEquals(DnaDigest.LENGTH, digest.length);
+		assertArrayEquals(digest, DnaDigest.digest(DnaCodec.encode(new String[] {"atgcga", "cagtgc", "ttatgt", "agaagg", "ccccta", "tcactg"})));
+	}
+	
+	/**
+	 * This test ensures that every DNA of size 1 to 3, and DNAs of the same
+	 * words but different sizes, get different digests.
+	 */
+	@Test
+	public void testDifferentDnas() {
+		Set<BigInteger> digests = new HashSet<>();
+		int count = 0;
+		for(int size = 1; size <= 3; size++) {
+			int cells = size * size;
+			for(int bases = 0; bases < 1 << (2 * cells); bases++) {
+				long[] words = new long[size];
+				for(int k = 0; k < cells; k++) {
+					words[k / size] |= (long) ((bases >>> (2 * k)) & 3) << (2 * (k % size));
+				}
+				digests.add(new BigInteger(DnaDigest.digest(new PackedDna(size, words))));
+				count++;
+			}
+		}
+		assertEquals(count, digests.size());
+		
+		assertFalse(digests.contains(new BigInteger(DnaDigest.digest(new PackedDna(4, new long[4])))));
+	}
+}
@@ -0,0 +1,168 @@
+package mutant.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonParseException;
+
+import mutant.domain.PackedDna;
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+
+public class DnaJsonReaderTest {
+	
+	/**
+	 * This test ensures that the DNA field and the bases are read in any
+	 * case, skipping the other fields.
+	 * 
+	 * @throws IOException
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testRead() throws IOException, InvalidDnaException, InvalidNitrogenousBasesException {
+		PackedDna expected = DnaCodec.encode(new String[] {"ATGCGA", "CAGTGC", "TTATGT", "AGAAGG", "CCCCTA", "TCACTG"});
+		assertEquals(expected, read("{\"name\":{\"dna\":[1]},\"Dna\":[\"ATGCGA\", \"cagtgc\", \"TTATGT\", \"AGAAGG\", \"CCCCTA\", \"TCACTG\"],\"dna\":[]}"));
+	}
+	
+	/**
+	 * This test ensures that a DNA with more rows than packed at first is
+	 * read whole as its rows grow, and that a wrong row after the growth is
+	 * still reported.
+	 * 
+	 * @throws IOException
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testGrowingRows() throws IOException, InvalidDnaException, InvalidNitrogenousBasesException {
+		String[] rows = new String[40];
+		StringBuilder json = new StringBuilder("{\"dna\":[");
+		for(int i = 0; i < rows.length; i++) {
+			StringBuilder row = new StringBuilder();
+			for(int j = 0; j < rows.length; j++) {
+				row.append("ACGT".charAt((i * 3 + j * (i % 5 + 1)) % 4));
+			}
+			rows[i] = row.toString();
+			json.append(i == 0 ? "\"" : ",\"").append(rows[i]).append('"');
+		}
+		json.append("]}");
+		assertEquals(DnaCodec.encode(rows), read(json.toString()));
+		// the last row one base longer
+		assertInvalid(json.toString().replace(rows[38] + "\",\"", rows[38] + "\",\"X"), NitrogenousBases.RC_NB_LENGTH);
+	}
+	
+	/**
+	 * This test ensures that the return codes have the same precedence as the
+	 * validation of strings: rows, then lengths, then bases.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testReturnCodes() throws IOException {
+		assertInvalid("{\"dna\":null}", NitrogenousBases.RC_DNA_NULL);
+		assertInvalid("{\"dna\":[]}", NitrogenousBases.RC_DNA_EMPTY);
+		assertInvalid("{\"dna\":[null, \"AC\"]}", NitrogenousBases.RC_DNA_FORMAT);
+		assertInvalid("{\"dna\":[\"AX\", \"A\", \"AC\"]}", NitrogenousBases.RC_DNA_FORMAT);
+		assertInvalid("{\"dna\":[\"AXG\", \"ACGT\"]}", NitrogenousBases.RC_DNA_FORMAT);
+		assertInvalid("{\"dna\":[\"AXG\", \"ACGT\", \"ACGXX\"]}", NitrogenousBases.RC_NB_LENGTH);
+		assertInvalid("{\"dna\":[\"ACG\", null, \"ACG\"]}", NitrogenousBases.RC_NB_LENGTH);
+		assertInvalid("{\"dna\":[\"ACG\", \"ACG\", \"AC|\"]}", NitrogenousBases.RC_NB_INVALID);
+	}
+	
+	/**
+	 * This test ensures that DNAs that can not be valid are refused before
+	 * the rest of the body is read, even if it is not valid JSON.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testEarlyRejection() throws IOException {
+		StringBuilder row = new StringBuilder();
+		for(int i = 0; i <= DnaJsonReader.DEFAULT_MAX_SIZE; i++) {
+			row.append('A');
+		}
+		assertInvalid("{\"dna\":[\"" + row + "\", ", NitrogenousBases.RC_DNA_SIZE);
+		assertInvalid("{\"dna\":[\"AC\", \"AC\", \"AC\", ", NitrogenousBases.RC_DNA_FORMAT);
+	}
+	
+	/**
+	 * This test ensures that a row longer than a DNA of the maximum size,
+	 * first or not, is refused as too big after reading about one such row,
+	 * not the whole row.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testLimitedBody() throws IOException {
+		int maxSize = 100;
+		for(String head : new String[] {"{\"dna\":[\"", "{\"dna\":[\"ACGT\", \""}) {
+			CountingInputStream input = new CountingInputStream(head.getBytes(StandardCharsets.UTF_8));
+			try {
+				DnaJsonReader.read(input, maxSize);
+				throw new AssertionError("The DNA should be too big: " + head);
+			} catch(InvalidDnaException | InvalidNitrogenousBasesException e) {
+				assertEquals(NitrogenousBases.RC_DNA_SIZE, e.getMessage());
+			}
+			assertTrue("Read " + input.count + " bytes.", input.count < 1 << 20);
+		}
+	}
+	
+	/**
+	 * This test ensures that a body without a DNA array is refused as
+	 * malformed JSON.
+	 * 
+	 * @throws IOException
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test(expected = JsonParseException.class)
+	public void testMissingDna() throws IOException, InvalidDnaException, InvalidNitrogenousBasesException {
+		read("{\"sequence\":[\"AC\", \"TG\"]}");
+	}
+	
+	/**
+	 * A stream of the given head followed by bases up to 16 MB, which counts
+	 * the bytes read.
+	 */
+	private static final class CountingInputStream extends InputStream {
+		
+		private final byte[] head;
+		
+		private long count;
+		
+		CountingInputStream(byte[] head) {
+			this.head = head;
+		}
+		
+		@Override
+		public int read() {
+			if(count == 1 << 24) {
+				return -1;
+			}
+			int read = count < head.length ? head[(int) count] : 'A';
+			count++;
+			return read;
+		}
+	}
+	
+	private PackedDna read(String json) throws IOException, InvalidDnaException, InvalidNitrogenousBasesException {
+		return DnaJsonReader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), DnaJsonReader.DEFAULT_MAX_SIZE);
+	}
+	
+	private void assertInvalid(String json, String returnCode) throws IOException {
+		try {
+			read(json);
+			throw new AssertionError("The DNA should be invalid: " + json);
+		} catch(InvalidDnaException | InvalidNitrogenousBasesException e) {
+			assertEquals(returnCode, e.getMessage());
+		}
+	}
+}
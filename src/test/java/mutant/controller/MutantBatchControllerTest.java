@@ -0,0 +1,221 @@
+package mutant.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import mutant.codec.NitrogenousBases;
+import mutant.domain.PackedDna;
+import mutant.repository.HumanWriteBehind;
+import mutant.service.HumanService;
+import mutant.storage.HumanStore;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(value = MutantBatchController.class, secure = false)
+public class MutantBatchControllerTest {
+	
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	
+	@Autowired
+	private MockMvc mockMvc;
+	
+	@MockBean
+	private HumanService humanService;
+	
+	@MockBean
+	private HumanWriteBehind humanWriteBehind;
+	
+	@MockBean
+	private HumanStore humanStore;
+	
+	/**
+	 * Every valid DNA bigger than 4 is a mutant for these tests.
+	 */
+	@Before
+	public void setUp() {
+		Mockito.when(humanService.isMutantBatch(Mockito.any(PackedDna[].class))).thenAnswer(invocation -> {
+			PackedDna[] dnas = invocation.getArgument(0);
+			boolean[] verdicts = new boolean[dnas.length];
+			for(int i = 0; i < dnas.length; i++) {
+				verdicts[i] = dnas[i] != null && dnas[i].getSize() > 4;
+			}
+			return verdicts;
+		});
+	}
+	
+	/**
+	 * This test ensures that a JSON array gets one line per DNA, with the
+	 * errors of the invalid ones.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testJsonArray() throws Exception {
+		String body = "[{\"dna\":[\"ATGCGA\", \"CAGTGC\", \"TTATGT\", \"AGAAGG\", \"CCCCTA\", \"TCACTG\"]},"
+				+ "{\"Dna\":[\"AC\", \"TG\"]},"
+				+ "{\"dna\":[\"AX\", \"TG\"]},"
+				+ "{\"sequence\":[\"AC\", \"TG\"]},"
+				+ "{\"dna\":[\"AC\", \"TG\", \"CA\", [\"GT\"]], \"name\":\"x\"},"
+				+ "{\"dna\":[\"AAAAA\",\"CCCCC\",\"GGGGG\",\"TTTTT\",\"ACGTA\"]}]";
+		
+		JsonNode[] lines = post(body, MediaType.APPLICATION_JSON_VALUE, 6);
+		assertTrue(lines[0].get("mutant").asBoolean());
+		assertFalse(lines[1].get("mutant").asBoolean());
+		assertEquals(NitrogenousBases.RC_NB_INVALID, lines[2].get("error").asText());
+		assertEquals(NitrogenousBases.RC_DNA_NULL, lines[3].get("error").asText());
+		assertEquals(NitrogenousBases.RC_DNA_FORMAT, lines[4].get("error").asText());
+		assertTrue(lines[5].get("mutant").asBoolean());
+		
+		Mockito.verify(humanService).saveAll(Mockito.argThat(humans -> humans.size() == 3));
+	}
+	
+	/**
+	 * This test ensures that a NDJSON stream bigger than a chunk gets one
+	 * line per DNA, saved with grouped writes.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testNdjsonStream() throws Exception {
+		StringBuilder body = new StringBuilder();
+		for(int i = 0; i < 200; i++) {
+			body.append(i % 2 == 0 ? "{\"dna\":[\"AAAAA\",\"CCCCC\",\"GGGGG\",\"TTTTT\",\"ACGTA\"]}" : "{\"dna\":[\"A\"]}").append('\n');
+		}
+		
+		JsonNode[] lines = post(body.toString(), MutantBatchController.APPLICATION_NDJSON, 200);
+		for(int i = 0; i < 200; i++) {
+			assertEquals(i % 2 == 0, lines[i].get("mutant").asBoolean());
+		}
+		Mockito.verify(humanService, Mockito.times(4)).saveAll(Mockito.anyList());
+	}
+	
+	/**
+	 * This test ensures that the DNAs before a JSON syntax error are still
+	 * verified and that the error is the last line.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testInvalidJson() throws Exception {
+		JsonNode[] lines = post("[{\"dna\":[\"A\"]}, {\"dna\":", MediaType.APPLICATION_JSON_VALUE, 2);
+		assertFalse(lines[0].get("mutant").asBoolean());
+		assertEquals(MutantBatchController.RC_JSON_INVALID, lines[1].get("error").asText());
+	}
+	
+	/**
+	 * This test ensures that an import saves the valid DNAs and reports the
+	 * records of every stage.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testImport() throws Exception {
+		Mockito.when(humanService.createDnaId(Mockito.any())).thenReturn(new byte[16]);
+		String body = "{\"dna\":[\"ATGCGA\", \"CAGTGC\", \"TTATGT\", \"AGAAGG\", \"CCCCTA\", \"TCACTG\"]}\n"
+				+ "{\"dna\":[\"AX\", \"TG\"]}\n"
+				+ "{\"dna\":[\"AC\", \"TG\"]}\n";
+		MockHttpServletResponse response = mockMvc.perform(MockMvcRequestBuilders.post("/mutant/import").content(body)).andReturn().getResponse();
+		assertEquals(HttpStatus.OK.value(), response.getStatus());
+		
+		JsonNode report = MAPPER.readTree(response.getContentAsString());
+		assertEquals("NDJSON", report.get("format").asText());
+		assertEquals(3, report.get("records").asInt());
+		assertEquals(1, report.get("invalid").asInt());
+		assertEquals(1, report.get("mutants").asInt());
+		assertEquals(4, report.get("stages").size());
+		assertEquals("persist", report.get("stages").get(3).get("name").asText());
+		assertEquals(2, report.get("stages").get(3).get("records").asInt());
+		Mockito.verify(humanService).saveAll(Mockito.argThat(humans -> humans.size() == 2));
+	}
+	
+	/**
+	 * This test ensures that an import posted while another one runs is
+	 * refused at once with 503 and Retry-After, and that imports are taken
+	 * again once it ends.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testSingleImport() throws Exception {
+		Mockito.when(humanService.createDnaId(Mockito.any())).thenReturn(new byte[16]);
+		CountDownLatch saving = new CountDownLatch(1);
+		CountDownLatch saved = new CountDownLatch(1);
+		Mockito.doAnswer(invocation -> {
+			saving.countDown();
+			saved.await();
+			return null;
+		}).when(humanService).saveAll(Mockito.anyList());
+		RequestBuilder requestBuilder = MockMvcRequestBuilders.post("/mutant/import").content("{\"dna\":[\"AC\", \"TG\"]}\n");
+		
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<MockHttpServletResponse> first = executor.submit(() -> mockMvc.perform(requestBuilder).andReturn().getResponse());
+			assertTrue(saving.await(10, TimeUnit.SECONDS));
+			MockHttpServletResponse refused = mockMvc.perform(requestBuilder).andReturn().getResponse();
+			assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), refused.getStatus());
+			assertEquals("1", refused.getHeader(HttpHeaders.RETRY_AFTER));
+			
+			saved.countDown();
+			assertEquals(HttpStatus.OK.value(), first.get(10, TimeUnit.SECONDS).getStatus());
+			assertEquals(HttpStatus.OK.value(), mockMvc.perform(requestBuilder).andReturn().getResponse().getStatus());
+		} finally {
+			saved.countDown();
+			executor.shutdown();
+		}
+	}
+	
+	/**
+	 * Posts a batch and gets its lines ordered by index, checking that every
+	 * index is sent once.
+	 */
+	private JsonNode[] post(String body, String contentType, int count) throws Exception {
+		RequestBuilder requestBuilder = MockMvcRequestBuilders
+				.post("/mutant/batch")
+				.content(body)
+				.contentType(contentType);
+		
+		MockHttpServletResponse response = mockMvc.perform(requestBuilder).andReturn().getResponse();
+		assertEquals(HttpStatus.OK.value(), response.getStatus());
+		assertEquals(MutantBatchController.APPLICATION_NDJSON, response.getContentType());
+		
+		String[] content = response.getContentAsString().split("\n");
+		assertEquals(count, content.length);
+		
+		JsonNode[] lines = new JsonNode[count];
+		Set<Integer> indexes = new HashSet<>();
+		for(String line : content) {
+			JsonNode node = MAPPER.readTree(line);
+			int index = node.get("index").asInt();
+			assertTrue(indexes.add(index));
+			lines[index] = node;
+		}
+		return lines;
+	}
+}
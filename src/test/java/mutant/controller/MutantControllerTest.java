@@ -1,6 +1,16 @@
 package mutant.controller;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -8,16 +18,35 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.RequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import mutant.admission.WeightedAdmission;
+import mutant.detector.DetectionPolicy;
+import mutant.codec.DnaBinaryReader;
+import mutant.codec.DnaCodec;
+import mutant.codec.DnaDigest;
+import mutant.codec.DnaJsonReader;
+import mutant.codec.NitrogenousBases;
+import mutant.domain.DnaStats;
+import mutant.domain.PackedDna;
+import mutant.domain.StatsSnapshot;
+import mutant.repository.HumanWriteBehind;
+import mutant.reprocess.ReprocessingJob;
 import mutant.service.HumanService;
+import mutant.storage.HumanStore;
+import mutant.stats.Verdict;
+import mutant.stats.VerdictTimeSeries;
+import mutant.storage.VerdictVisitor;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(value = MutantController.class, secure = false)
@@ -29,6 +58,15 @@ public class MutantControllerTest {
 	@MockBean
 	private HumanService humanService;
 	
+	@MockBean
+	private HumanWriteBehind humanWriteBehind;
+	
+	@MockBean
+	private HumanStore humanStore;
+	
+	@Autowired
+	private MutantController mutantController;
+	
 	/**
 	 * This test ensures that a mutant DNA is recognized when a post request
 	 * is performed.
@@ -39,14 +77,14 @@ public class MutantControllerTest {
 	 */
 	@Test
 	public void testServiceWithMutantDna() throws Exception {
-		Mockito.when(humanService.isMutant(Mockito.anyObject())).thenReturn(true);
+		Mockito.when(humanService.isMutant(Mockito.any(PackedDna.class))).thenReturn(true);
 
 		RequestBuilder requestBuilder = MockMvcRequestBuilders
 				.post("/mutant")
 				.accept(MediaType.APPLICATION_JSON).content("{\"Dna\":[\"ATGCGA\", \"CAGTGC\", \"TTATGT\", \"AGAAGG\", \"CCCCTA\", \"TCACTG\"]}")
 				.contentType(MediaType.APPLICATION_JSON);
 
-		MvcResult result = mockMvc.perform(requestBuilder).andReturn();
+		MvcResult result = dispatch(requestBuilder);
 		MockHttpServletResponse response = result.getResponse();
 
 		assertEquals(HttpStatus.OK.value(), response.getStatus());
@@ -62,14 +100,14 @@ public class MutantControllerTest {
 	 */
 	@Test
 	public void testServiceWithHumanDna() throws Exception {
-		Mockito.when(humanService.isMutant(Mockito.anyObject())).thenReturn(false);
+		Mockito.when(humanService.isMutant(Mockito.any(PackedDna.class))).thenReturn(false);
 
 		RequestBuilder requestBuilder = MockMvcRequestBuilders
 				.post("/mutant")
 				.accept(MediaType.APPLICATION_JSON).content("{\"Dna\":[\"AC\", \"TG\"]}")
 				.contentType(MediaType.APPLICATION_JSON);
 
-		MvcResult result = mockMvc.perform(requestBuilder).andReturn();
+		MvcResult result = dispatch(requestBuilder);
 		MockHttpServletResponse response = result.getResponse();
 
 		assertEquals(HttpStatus.FORBIDDEN.value(), response.getStatus());
@@ -85,17 +123,339 @@ public class MutantControllerTest {
 	 */
 	@Test
 	public void testServiceWithInvalidDna() throws Exception {
-		Mockito.when(humanService.isMutant(Mockito.anyObject())).thenReturn(false);
+		Mockito.when(humanService.isMutant(Mockito.any(PackedDna.class))).thenReturn(false);
 
 		RequestBuilder requestBuilder = MockMvcRequestBuilders
 				.post("/mutant")
 				.accept(MediaType.APPLICATION_JSON).content("{\"Dna\":[\"A\", \"TG\"]}")
 				.contentType(MediaType.APPLICATION_JSON);
 
-		MvcResult result = mockMvc.perform(requestBuilder).andReturn();
+		MvcResult result = dispatch(requestBuilder);
 		MockHttpServletResponse response = result.getResponse();
 
 		assertEquals(HttpStatus.FORBIDDEN.value(), response.getStatus());
 	}
+	
+	/**
+	 * This test ensures that a body without a DNA array is refused as a bad
+	 * request.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testServiceWithMalformedJson() throws Exception {
+		RequestBuilder requestBuilder = MockMvcRequestBuilders
+				.post("/mutant")
+				.accept(MediaType.APPLICATION_JSON).content("{\"Dna\":[\"AC\", \"TG\"]")
+				.contentType(MediaType.APPLICATION_JSON);
+
+		MvcResult result = dispatch(requestBuilder);
+		MockHttpServletResponse response = result.getResponse();
+
+		assertEquals(HttpStatus.BAD_REQUEST.value(), response.getStatus());
+	}
+	
+	/**
+	 * This test ensures that a cached verdict is answered without verifying
+	 * or saving the DNA again.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testServiceWithCachedVerdict() throws Exception {
+		Mockito.when(humanService.findCachedVerdict(Mockito.any())).thenReturn(Optional.of(true));
+
+		RequestBuilder requestBuilder = MockMvcRequestBuilders
+				.post("/mutant")
+				.accept(MediaType.APPLICATION_JSON).content("{\"Dna\":[\"AC\", \"TG\"]}")
+				.contentType(MediaType.APPLICATION_JSON);
+
+		MvcResult result = dispatch(requestBuilder);
+		MockHttpServletResponse response = result.getResponse();
+
+		assertEquals(HttpStatus.OK.value(), response.getStatus());
+		Mockito.verify(humanService, Mockito.never()).isMutant(Mockito.any(PackedDna.class));
+		Mockito.verify(humanService, Mockito.never()).save(Mockito.any());
+	}
+	
+	/**
+	 * This test ensures that the stats are served from the snapshot, that
+	 * the ratio is the number of mutants over the number of humans and that
+	 * a request with the same entity tag gets a 304 without body.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testStats() throws Exception {
+		StatsSnapshot snapshot = new StatsSnapshot(new DnaStats(100, 40));
+		Mockito.when(humanService.getStatsSnapshot()).thenReturn(snapshot);
+		Mockito.when(humanService.getStatsInterval()).thenReturn(1000L);
+
+		MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/stats")).andReturn();
+		MockHttpServletResponse response = result.getResponse();
+
+		assertEquals(HttpStatus.OK.value(), response.getStatus());
+		assertEquals("{\"count_mutant_dna\":40,\"count_human_dna\":100,\"ratio\":0.4}", response.getContentAsString());
+		assertEquals(snapshot.getEtag(), response.getHeader("ETag"));
+		assertEquals("max-age=1", response.getHeader("Cache-Control"));
+		Mockito.verify(humanService, Mockito.never()).findAll();
+		
+		result = mockMvc.perform(MockMvcRequestBuilders.get("/stats").header("If-None-Match", snapshot.getEtag())).andReturn();
+		assertEquals(HttpStatus.NOT_MODIFIED.value(), result.getResponse().getStatus());
+		assertEquals(0, result.getResponse().getContentLength());
+	}
+	
+	/**
+	 * This test ensures that the time series is sent with one object per
+	 * bucket, and that an unknown resolution or a wrong limit are refused.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testTimeSeries() throws Exception {
+		VerdictTimeSeries series = new VerdictTimeSeries();
+		series.record(60000, Verdict.MUTANT, 2000000);
+		series.record(60000, Verdict.INVALID, -1);
+		Mockito.when(humanService.getTimeSeries(VerdictTimeSeries.Resolution.MINUTE, 2))
+				.thenReturn(series.getBuckets(VerdictTimeSeries.Resolution.MINUTE, 60000, 2));
+
+		MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/stats/timeseries").param("limit", "2")).andReturn();
+		assertEquals(HttpStatus.OK.value(), result.getResponse().getStatus());
+		assertEquals("{\"resolution\":\"minute\",\"buckets\":["
+				+ "{\"start\":0,\"mutant\":0,\"human\":0,\"invalid\":0,\"latency_ms\":{\"p50\":-1.0,\"p90\":-1.0,\"p99\":-1.0}},"
+				+ "{\"start\":60000,\"mutant\":1,\"human\":0,\"invalid\":1,\"latency_ms\":{\"p50\":2.047,\"p90\":2.047,\"p99\":2.047}}]}",
+				result.getResponse().getContentAsString());
+		
+		result = mockMvc.perform(MockMvcRequestBuilders.get("/stats/timeseries").param("resolution", "hour")).andReturn();
+		assertEquals(HttpStatus.BAD_REQUEST.value(), result.getResponse().getStatus());
+		result = mockMvc.perform(MockMvcRequestBuilders.get("/stats/timeseries").param("resolution", "second").param("limit", "601")).andReturn();
+		assertEquals(HttpStatus.BAD_REQUEST.value(), result.getResponse().getStatus());
+	}
+	
+	/**
+	 * This test ensures that a DNA sent as binary is verified and saved like
+	 * a JSON one, and that a body without a known header is refused.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testServiceWithBinaryDna() throws Exception {
+		String[] dna = {"ATGCGA", "CAGTGC", "TTATGT", "AGAAGG", "CCCCTA", "TCACTG"};
+		PackedDna packed = DnaCodec.encode(dna);
+		Mockito.when(humanService.findCachedVerdict(Mockito.any())).thenReturn(Optional.empty());
+		Mockito.when(humanService.isMutant(packed)).thenReturn(true);
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		DnaCodec.writePacked(packed, body);
+		
+		MvcResult result = dispatch(MockMvcRequestBuilders.post("/mutant")
+				.content(body.toByteArray()).contentType(MediaType.APPLICATION_OCTET_STREAM));
+		assertEquals(HttpStatus.OK.value(), result.getResponse().getStatus());
+		Mockito.verify(humanService).save(Mockito.any());
+		
+		result = dispatch(MockMvcRequestBuilders.post("/mutant")
+				.content(String.join("", dna)).contentType(MediaType.APPLICATION_OCTET_STREAM));
+		assertEquals(HttpStatus.FORBIDDEN.value(), result.getResponse().getStatus());
+		assertEquals(DnaBinaryReader.RC_BINARY_MAGIC, result.getResponse().getContentAsString());
+	}
+	
+	/**
+	 * This test ensures that a DNA is refused at once with 503 and
+	 * Retry-After when the bases it declares do not fit in what is left of
+	 * the admission budget, and that its weight is given back once it is
+	 * answered.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testAdmission() throws Exception {
+		Mockito.when(humanService.findCachedVerdict(Mockito.any())).thenReturn(Optional.of(true));
+		WeightedAdmission admission = mutantController.getAdmission();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		DnaCodec.writePacked(DnaCodec.encode(new String[] {"ATGCGA", "CAGTGC", "TTATGT", "AGAAGG", "CCCCTA", "TCACTG"}), body);
+		RequestBuilder requestBuilder = MockMvcRequestBuilders.post("/mutant")
+				.content(body.toByteArray()).contentType(MediaType.APPLICATION_OCTET_STREAM);
+		
+		long taken = admission.getBudget() - 35;
+		assertTrue(admission.tryAcquire(taken));
+		try {
+			MvcResult result = dispatch(requestBuilder);
+			assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), result.getResponse().getStatus());
+			assertEquals("1", result.getResponse().getHeader(HttpHeaders.RETRY_AFTER));
+			Mockito.verify(humanService, Mockito.never()).createDnaId(Mockito.any());
+		} finally {
+			admission.release(taken);
+		}
+		
+		taken = admission.getBudget() - 36;
+		assertTrue(admission.tryAcquire(taken));
+		try {
+			assertEquals(HttpStatus.OK.value(), dispatch(requestBuilder).getResponse().getStatus());
+		} finally {
+			admission.release(taken);
+		}
+		assertEquals(admission.getBudget(), admission.getAvailable());
+	}
+	
+	/**
+	 * This test ensures that a short JSON body declaring a big DNA in its
+	 * first row is charged again with N² and refused with 503 when that
+	 * does not fit, before its rows are packed.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testAdmissionOfJsonSize() throws Exception {
+		WeightedAdmission admission = mutantController.getAdmission();
+		char[] bases = new char[1 << 14];
+		Arrays.fill(bases, 'A');
+		String json = "{\"dna\":[\"" + new String(bases) + "\"]}";
+		
+		long taken = admission.getBudget() / 2;
+		assertTrue(admission.tryAcquire(taken));
+		try {
+			MvcResult result = dispatch(MockMvcRequestBuilders.post("/mutant").content(json).contentType(MediaType.APPLICATION_JSON));
+			assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), result.getResponse().getStatus());
+			assertEquals("1", result.getResponse().getHeader(HttpHeaders.RETRY_AFTER));
+			assertEquals(admission.getBudget() - taken, admission.getAvailable());
+		} finally {
+			admission.release(taken);
+		}
+		
+		MvcResult result = dispatch(MockMvcRequestBuilders.post("/mutant").content(json).contentType(MediaType.APPLICATION_JSON));
+		assertEquals(HttpStatus.FORBIDDEN.value(), result.getResponse().getStatus());
+		assertEquals(NitrogenousBases.RC_DNA_FORMAT, result.getResponse().getContentAsString());
+		assertEquals(admission.getBudget(), admission.getAvailable());
+		Mockito.verify(humanService).recordVerdict(Mockito.eq(Verdict.INVALID), Mockito.anyLong());
+	}
+	
+	/**
+	 * This test ensures that a JSON body without a length, sent in chunks,
+	 * is admitted with the weight of a row and charged with its N² once its
+	 * first row is read, so a small DNA does not take the whole budget.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testAdmissionOfChunkedJson() throws Exception {
+		Mockito.when(humanService.findCachedVerdict(Mockito.any())).thenReturn(Optional.of(true));
+		WeightedAdmission admission = mutantController.getAdmission();
+		byte[] json = "{\"dna\":[\"ATGCGA\",\"CAGTGC\",\"TTATGT\",\"AGAAGG\",\"CCCCTA\",\"TCACTG\"]}".getBytes(StandardCharsets.UTF_8);
+		RequestBuilder requestBuilder = servletContext -> {
+			MockHttpServletRequest request = new MockHttpServletRequest(servletContext, "POST", "/mutant") {
+				
+				@Override
+				public long getContentLengthLong() {
+					return -1;
+				}
+			};
+			request.setAsyncSupported(true);
+			request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+			request.setContent(json);
+			return request;
+		};
+		
+		// room for a row of the biggest DNA, far less than 16384²
+		long taken = admission.getBudget() - DnaJsonReader.DEFAULT_MAX_SIZE;
+		assertTrue(admission.tryAcquire(taken));
+		try {
+			assertEquals(HttpStatus.OK.value(), dispatch(requestBuilder).getResponse().getStatus());
+			assertEquals(admission.getBudget() - taken, admission.getAvailable());
+		} finally {
+			admission.release(taken);
+		}
+		assertEquals(admission.getBudget(), admission.getAvailable());
+	}
+	
+	/**
+	 * Performs a request handled asynchronously and dispatches its result.
+	 */
+	private MvcResult dispatch(RequestBuilder requestBuilder) throws Exception {
+		MvcResult result = mockMvc.perform(requestBuilder)
+				.andExpect(MockMvcResultMatchers.request().asyncStarted())
+				.andReturn();
+		return mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result)).andReturn();
+	}
+	
+	/**
+	 * This test ensures that the verdicts are exported in NDJSON or CSV,
+	 * compressed when the client accepts gzip, and that an unknown format is
+	 * refused.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testExport() throws Exception {
+		Mockito.doAnswer(invocation -> {
+			VerdictVisitor visitor = invocation.getArgument(0);
+			visitor.visit(DnaDigest.toBytes(0x0102030405060708L, 0xA0B0C0D0E0F00010L), true, Instant.ofEpochMilli(1539475200000L));
+			visitor.visit(DnaDigest.toBytes(0, 1), false, null);
+			return null;
+		}).when(humanService).forEachVerdict(Mockito.any());
+		
+		MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/stats/export")).andReturn();
+		assertEquals(HttpStatus.OK.value(), result.getResponse().getStatus());
+		assertEquals("application/x-ndjson; charset=UTF-8", result.getResponse().getContentType());
+		assertEquals("{\"id\":\"0102030405060708a0b0c0d0e0f00010\",\"mutant\":true,\"created_at\":\"2018-10-14T00:00:00Z\"}\n"
+				+ "{\"id\":\"00000000000000000000000000000001\",\"mutant\":false,\"created_at\":null}\n",
+				result.getResponse().getContentAsString());
+		
+		result = mockMvc.perform(MockMvcRequestBuilders.get("/stats/export").param("format", "csv").header("Accept-Encoding", "gzip, deflate")).andReturn();
+		assertEquals(HttpStatus.OK.value(), result.getResponse().getStatus());
+		assertEquals("gzip", result.getResponse().getHeader("Content-Encoding"));
+		ByteArrayOutputStream csv = new ByteArrayOutputStream();
+		try(InputStream input = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+			byte[] buffer = new byte[256];
+			for(int read; (read = input.read(buffer)) > 0; ) {
+				csv.write(buffer, 0, read);
+			}
+		}
+		assertEquals("id,mutant,created_at\n0102030405060708a0b0c0d0e0f00010,true,2018-10-14T00:00:00Z\n"
+				+ "00000000000000000000000000000001,false,\n", new String(csv.toByteArray(), StandardCharsets.UTF_8));
+		
+		result = mockMvc.perform(MockMvcRequestBuilders.get("/stats/export").param("format", "xml")).andReturn();
+		assertEquals(HttpStatus.BAD_REQUEST.value(), result.getResponse().getStatus());
+	}
+	
+	/**
+	 * This test ensures that a reprocessing is accepted with its progress,
+	 * that another one is refused while it runs, and that there is no
+	 * progress before one is started.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testReprocess() throws Exception {
+		Mockito.when(humanService.getReprocessing()).thenReturn(Optional.empty());
+		MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/reprocess")).andReturn();
+		assertEquals(HttpStatus.NO_CONTENT.value(), result.getResponse().getStatus());
+		
+		ReprocessingJob job = new ReprocessingJob(humanStore, dna -> true, new DetectionPolicy(2, 4), 1, 10, human -> {});
+		Mockito.when(humanService.startReprocessing()).thenReturn(Optional.of(job));
+		result = mockMvc.perform(MockMvcRequestBuilders.post("/reprocess")).andReturn();
+		assertEquals(HttpStatus.ACCEPTED.value(), result.getResponse().getStatus());
+		assertEquals("{\"status\":\"CREATED\",\"resumed\":false,\"required_sequences\":2,\"sequence_length\":4,"
+				+ "\"processed\":0,\"changed\":0,\"total\":0,\"elapsed_ms\":0,\"rate\":0.0}", result.getResponse().getContentAsString());
+		
+		Mockito.when(humanService.startReprocessing()).thenReturn(Optional.empty());
+		Mockito.when(humanService.getReprocessing()).thenReturn(Optional.of(job));
+		result = mockMvc.perform(MockMvcRequestBuilders.post("/reprocess")).andReturn();
+		assertEquals(HttpStatus.CONFLICT.value(), result.getResponse().getStatus());
+		result = mockMvc.perform(MockMvcRequestBuilders.get("/reprocess")).andReturn();
+		assertEquals(HttpStatus.OK.value(), result.getResponse().getStatus());
+	}
+	
+	/**
+	 * This test ensures that there is no content while no DNA is registered.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testStatsWithoutDna() throws Exception {
+		Mockito.when(humanService.getStatsSnapshot()).thenReturn(StatsSnapshot.EMPTY);
+
+		MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/stats")).andReturn();
+
+		assertEquals(HttpStatus.NO_CONTENT.value(), result.getResponse().getStatus());
+	}
 
 }
@@ -0,0 +1,58 @@
+package mutant.detector;
+
+import java.util.Random;
+
+import mutant.codec.DnaCodec;
+import mutant.domain.PackedDna;
+
+/**
+ * Throughput comparison between verifying small DNAs one by one with the
+ * <code>BitboardKernel</code> and 64 at a time with the
+ * <code>BitSlicedKernel</code>.
+ * 
+ * It is not a unit test; run it from the IDE or with
+ * <code>java -cp target/classes:target/test-classes
+ * mutant.detector.BitSlicedKernelBenchmark [size] [required]</code>.
+ */
+public class BitSlicedKernelBenchmark {
+
+	private static final int DNAS = 64 * 4096;
+	
+	private static final int ROUNDS = 10;
+
+	public static void main(String[] args) throws Exception {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+		int required = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+		
+		Random random = new Random(1);
+		PackedDna[] dnas = new PackedDna[DNAS];
+		for(int i = 0; i < DNAS; i++) {
+			dnas[i] = DnaCodec.encode(BitboardKernelTest.randomDna(random, size, "ATCG"));
+		}
+		
+		PackedDna[][] batches = new PackedDna[DNAS / BitSlicedKernel.LANES][BitSlicedKernel.LANES];
+		for(int i = 0; i < DNAS; i++) {
+			batches[i / BitSlicedKernel.LANES][i % BitSlicedKernel.LANES] = dnas[i];
+		}
+		
+		for(int round = 0; round < ROUNDS; round++) {
+			long mutants = 0;
+			long start = System.nanoTime();
+			for(PackedDna dna : dnas) {
+				if(BitboardKernel.countSequences(dna, required) >= required) {
+					mutants++;
+				}
+			}
+			long single = System.nanoTime() - start;
+			
+			start = System.nanoTime();
+			for(PackedDna[] batch : batches) {
+				mutants -= Long.bitCount(BitSlicedKernel.evaluate(batch, required));
+			}
+			long sliced = System.nanoTime() - start;
+			
+			System.out.printf("%dx%d required=%d: one by one %.2f M DNAs/s, bit-sliced %.2f M DNAs/s (check %d)%n",
+					size, size, required, DNAS * 1e3 / single, DNAS * 1e3 / sliced, mutants);
+		}
+	}
+}
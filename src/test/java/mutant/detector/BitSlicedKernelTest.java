@@ -0,0 +1,45 @@
+package mutant.detector;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import mutant.codec.DnaCodec;
+import mutant.domain.PackedDna;
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+
+public class BitSlicedKernelTest {
+	
+	/**
+	 * This test ensures that every lane of a batch gets the same result as
+	 * the bitboard kernel gives for its DNA alone, for several sizes, batch
+	 * lengths and required number of sequences.
+	 * 
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testSameResultAsBitboard() throws InvalidDnaException, InvalidNitrogenousBasesException {
+		Random random = new Random(7);
+		int[] sizes = {3, 4, 5, 6, 8, 11, 16};
+		int[] lengths = {1, 13, 64};
+		for(int size : sizes) {
+			for(int length : lengths) {
+				for(int required = 1; required <= 3; required++) {
+					PackedDna[] batch = new PackedDna[length];
+					long expected = 0;
+					for(int k = 0; k < length; k++) {
+						batch[k] = DnaCodec.encode(BitboardKernelTest.randomDna(random, size, k % 2 == 0 ? "ATCG" : "ATC"));
+						if(BitboardKernel.countSequences(batch[k], required) >= required) {
+							expected |= 1L << k;
+						}
+					}
+					assertEquals(expected, BitSlicedKernel.evaluate(batch, required));
+				}
+			}
+		}
+	}
+}
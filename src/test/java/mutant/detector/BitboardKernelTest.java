@@ -0,0 +1,104 @@
+package mutant.detector;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import mutant.codec.DnaCodec;
+import mutant.domain.PackedDna;
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+
+public class BitboardKernelTest {
+	
+	/**
+	 * This test ensures that every run of a DNA full of the same base is
+	 * counted, both in the single board and in the row words paths.
+	 * 
+	 * A 8x8 DNA has 2 sequences in each row and column, and 10 in each
+	 * diagonal direction.
+	 * 
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testSameBase() throws InvalidDnaException, InvalidNitrogenousBasesException {
+		String[] dna = new String[8];
+		Arrays.fill(dna, "AAAAAAAA");
+		assertEquals(52, BitboardKernel.countSequences(dna, Integer.MAX_VALUE));
+		assertEquals(52, DnaScanner.countSequences(dna, Integer.MAX_VALUE));
+		assertEquals(3, BitboardKernel.countSequences(dna, 3));
+	}
+	
+	/**
+	 * This test ensures that the bitboard kernel counts the same sequences as
+	 * the scanner for random DNAs of sizes that cover the single board, one
+	 * word per row and many words per row paths.
+	 * 
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testSameCountAsScanner() throws InvalidDnaException, InvalidNitrogenousBasesException {
+		Random random = new Random(42);
+		int[] sizes = {1, 3, 4, 5, 6, 7, 8, 9, 12, 31, 63, 64, 65, 100, 130};
+		for(int size : sizes) {
+			for(int sample = 0; sample < 20; sample++) {
+				String[] dna = randomDna(random, size, sample % 3 == 0 ? "AT" : "ATCG");
+				assertEquals(Arrays.toString(dna),
+						DnaScanner.countSequences(dna, Integer.MAX_VALUE),
+						BitboardKernel.countSequences(dna, Integer.MAX_VALUE));
+			}
+		}
+	}
+	
+	/**
+	 * This test ensures that the bitboard kernel, the parallel detector and
+	 * the scanner count the same sequences for every supported length on
+	 * random DNAs, covering the single board and many words per row paths.
+	 * 
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testSequenceLengths() throws InvalidDnaException, InvalidNitrogenousBasesException {
+		Random random = new Random(7);
+		int[] sizes = {2, 5, 8, 9, 40, 70};
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			for(int length = 2; length <= 9; length++) {
+				DetectionPolicy policy = new DetectionPolicy(Integer.MAX_VALUE, length);
+				for(int size : sizes) {
+					for(int sample = 0; sample < 10; sample++) {
+						String[] dna = randomDna(random, size, sample % 2 == 0 ? "AT" : "ATCG");
+						DnaScanner scanner = new DnaScanner(size, Integer.MAX_VALUE, length);
+						for(String row : dna) {
+							scanner.scanRow(row);
+						}
+						PackedDna packed = DnaCodec.encode(dna);
+						assertEquals(length + " " + Arrays.toString(dna), scanner.getSequences(), BitboardKernel.countSequences(packed, policy));
+						assertEquals(length + " " + Arrays.toString(dna), scanner.getSequences(), ParallelDetector.countSequences(packed, policy, pool, 3));
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	static String[] randomDna(Random random, int size, String bases) {
+		String[] dna = new String[size];
+		for(int i = 0; i < size; i++) {
+			StringBuilder row = new StringBuilder(size);
+			for(int j = 0; j < size; j++) {
+				row.append(bases.charAt(random.nextInt(bases.length())));
+			}
+			dna[i] = row.toString();
+		}
+		return dna;
+	}
+}
@@ -0,0 +1,95 @@
+package mutant.detector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+import mutant.codec.NitrogenousBases;
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+
+public class IncrementalDetectorTest {
+	
+	/**
+	 * This test ensures that feeding the rows one by one gives the same
+	 * verdict as the bitboard kernel, from strings or bytes.
+	 * 
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testSameVerdictAsBitboard() throws InvalidDnaException, InvalidNitrogenousBasesException {
+		Random random = new Random(11);
+		for(int size = 1; size <= 40; size++) {
+			String[] dnaSequence = BitboardKernelTest.randomDna(random, size, "ACGT");
+			boolean expected = BitboardKernel.countSequences(dnaSequence, 1) >= 1;
+			
+			IncrementalDetector strings = new IncrementalDetector(1);
+			IncrementalDetector bytes = new IncrementalDetector(1);
+			for(String row : dnaSequence) {
+				strings.addRow(row);
+				byte[] bases = row.getBytes(StandardCharsets.US_ASCII);
+				bytes.addRow(bases, 0, bases.length);
+			}
+			assertEquals(expected, strings.finish());
+			assertEquals(expected, bytes.finish());
+		}
+	}
+	
+	/**
+	 * This test ensures that the verdict is known as soon as the sequence is
+	 * complete, before the remaining rows are added.
+	 * 
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testEarlyVerdict() throws InvalidDnaException, InvalidNitrogenousBasesException {
+		IncrementalDetector detector = new IncrementalDetector(1);
+		String[] dnaSequence = {"ACGTAC", "ACTGCA", "ATGCAT", "AGCTAG", "CATGCA", "GTACGT"};
+		for(int i = 0; i < 3; i++) {
+			detector.addRow(dnaSequence[i]);
+			assertFalse(detector.isMutant());
+		}
+		detector.addRow(dnaSequence[3]);
+		assertTrue(detector.isMutant());
+		
+		detector.addRow(dnaSequence[4]);
+		detector.addRow(dnaSequence[5]);
+		assertTrue(detector.finish());
+	}
+	
+	/**
+	 * This test ensures that the return codes are the same of the validation
+	 * of the whole DNA.
+	 */
+	@Test
+	public void testReturnCodes() {
+		assertInvalid(new String[] {}, NitrogenousBases.RC_DNA_EMPTY);
+		assertInvalid(new String[] {null, "AC"}, NitrogenousBases.RC_DNA_FORMAT);
+		assertInvalid(new String[] {""}, NitrogenousBases.RC_DNA_FORMAT);
+		assertInvalid(new String[] {"AC", "TG", "CA"}, NitrogenousBases.RC_DNA_FORMAT);
+		assertInvalid(new String[] {"ACG", "TG"}, NitrogenousBases.RC_DNA_FORMAT);
+		assertInvalid(new String[] {"AC", "TGA"}, NitrogenousBases.RC_NB_LENGTH);
+		assertInvalid(new String[] {"AC", null}, NitrogenousBases.RC_NB_LENGTH);
+		assertInvalid(new String[] {"AC", "TX"}, NitrogenousBases.RC_NB_INVALID);
+	}
+	
+	private void assertInvalid(String[] dnaSequence, String returnCode) {
+		try {
+			IncrementalDetector detector = new IncrementalDetector(1);
+			for(String row : dnaSequence) {
+				detector.addRow(row);
+			}
+			detector.finish();
+			throw new AssertionError("The DNA should be invalid.");
+		} catch(InvalidDnaException | InvalidNitrogenousBasesException e) {
+			assertEquals(returnCode, e.getMessage());
+		}
+	}
+}
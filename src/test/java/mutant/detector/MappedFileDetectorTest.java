@@ -0,0 +1,103 @@
+package mutant.detector;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mutant.codec.DnaCodec;
+import mutant.codec.NitrogenousBases;
+import mutant.domain.PackedDna;
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+
+public class MappedFileDetectorTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	/**
+	 * This test ensures that text files, with any line break and case, count
+	 * the same sequences as the bitboard kernel.
+	 * 
+	 * @throws IOException
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testTextSameCountAsBitboard() throws IOException, InvalidDnaException, InvalidNitrogenousBasesException {
+		Random random = new Random(5);
+		for(int size : new int[] {1, 4, 9, 70}) {
+			String[] dnaSequence = BitboardKernelTest.randomDna(random, size, "ATat");
+			int expected = BitboardKernel.countSequences(dnaSequence, Integer.MAX_VALUE);
+			
+			assertEquals(expected, MappedFileDetector.countSequences(write(String.join("\n", dnaSequence)), Integer.MAX_VALUE));
+			assertEquals(expected, MappedFileDetector.countSequences(write(String.join("\r\n", dnaSequence) + "\r\n"), Integer.MAX_VALUE));
+		}
+	}
+	
+	/**
+	 * This test ensures that packed files count the same sequences as the
+	 * bitboard kernel.
+	 * 
+	 * @throws IOException
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testPackedSameCountAsBitboard() throws IOException, InvalidDnaException, InvalidNitrogenousBasesException {
+		Random random = new Random(7);
+		for(int size : new int[] {1, 4, 33, 130}) {
+			PackedDna dna = DnaCodec.encode(BitboardKernelTest.randomDna(random, size, "AT"));
+			Path file = folder.newFile().toPath();
+			try(OutputStream output = Files.newOutputStream(file)) {
+				DnaCodec.writePacked(dna, output);
+			}
+			
+			assertEquals(BitboardKernel.countSequences(dna, Integer.MAX_VALUE), MappedFileDetector.countSequences(file, Integer.MAX_VALUE));
+		}
+	}
+	
+	/**
+	 * This test ensures that invalid text files are refused with the same
+	 * return codes as the JSON requests.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testInvalidText() throws IOException {
+		assertInvalid("", NitrogenousBases.RC_DNA_EMPTY);
+		assertInvalid("\nATG", NitrogenousBases.RC_DNA_FORMAT);
+		assertInvalid("ATG\nCAX\nTTA", NitrogenousBases.RC_NB_INVALID);
+		assertInvalid("ATG\nCA\nTTA", NitrogenousBases.RC_NB_LENGTH);
+		assertInvalid("ATG\nCAGT\nTTA", NitrogenousBases.RC_NB_LENGTH);
+		assertInvalid("ATG\nCAG\nTT", NitrogenousBases.RC_NB_LENGTH);
+		assertInvalid("ATG\nCAG", NitrogenousBases.RC_DNA_FORMAT);
+		assertInvalid("ATG\nCA", NitrogenousBases.RC_DNA_FORMAT);
+		assertInvalid("ATG\nCAX\nTT", NitrogenousBases.RC_NB_LENGTH);
+		assertInvalid("ATG\nCAG\nTTA\nCCC", NitrogenousBases.RC_DNA_FORMAT);
+	}
+	
+	private Path write(String content) throws IOException {
+		Path file = folder.newFile().toPath();
+		Files.write(file, content.getBytes(StandardCharsets.US_ASCII));
+		return file;
+	}
+	
+	private void assertInvalid(String content, String returnCode) throws IOException {
+		try {
+			MappedFileDetector.countSequences(write(content), 1);
+			throw new AssertionError("The file should be invalid: " + content);
+		} catch(InvalidDnaException | InvalidNitrogenousBasesException e) {
+			assertEquals(returnCode, e.getMessage());
+		}
+	}
+}
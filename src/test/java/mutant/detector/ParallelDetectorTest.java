@@ -0,0 +1,54 @@
+package mutant.detector;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import mutant.codec.DnaCodec;
+import mutant.domain.PackedDna;
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+
+public class ParallelDetectorTest {
+	
+	/**
+	 * This test ensures that splitting the DNA in tiles counts the same
+	 * sequences as the serial scan, including the runs that cross the
+	 * borders of the tiles.
+	 * 
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testSameCountAsSerial() throws InvalidDnaException, InvalidNitrogenousBasesException {
+		Random random = new Random(3);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for(int size : new int[] {9, 37, 130, 257}) {
+				for(int tileRows : new int[] {1, 3, 16}) {
+					PackedDna dna = DnaCodec.encode(BitboardKernelTest.randomDna(random, size, "AT"));
+					assertEquals(BitboardKernel.countSequences(dna, Integer.MAX_VALUE),
+							ParallelDetector.countSequences(dna, DetectionPolicy.requiring(Integer.MAX_VALUE), pool, tileRows));
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * This test ensures that the parallel scan stops at the required number
+	 * of sequences.
+	 * 
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testRequired() throws InvalidDnaException, InvalidNitrogenousBasesException {
+		PackedDna dna = DnaCodec.encode(BitboardKernelTest.randomDna(new Random(5), 300, "A"));
+		assertEquals(2, ParallelDetector.countSequences(dna, DetectionPolicy.requiring(2), ForkJoinPool.commonPool(), 8));
+	}
+}
@@ -0,0 +1,171 @@
+package mutant.importer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import mutant.codec.DnaCodec;
+import mutant.codec.DnaDigest;
+import mutant.domain.Human;
+import mutant.domain.PackedDna;
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+import mutant.service.HumanService;
+import mutant.stats.Verdict;
+
+public class ImportPipelineTest {
+
+	/**
+	 * This test ensures that every line of a gzip NDJSON input goes through
+	 * the stages, that the invalid and the blank lines are not saved, and
+	 * that every stage counts its records.
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testNdjson() throws IOException, InterruptedException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try(OutputStream output = new GZIPOutputStream(bytes)) {
+			for(int i = 0; i < 1000; i++) {
+				String dna = i % 2 == 0 ? "[\"AAAA\",\"CGTC\",\"TTAT\",\"AGAC\"]" : "[\"TCGT\",\"CGTA\",\"GTAC\",\"TACG\"]";
+				if(i % 100 == 99) {
+					dna = "[\"AXGT\",\"CGTA\",\"GTAC\",\"TACG\"]";
+				}
+				output.write(("{\"dna\":" + dna + ",\"index\":" + i + "}\r\n").getBytes(StandardCharsets.UTF_8));
+				if(i % 250 == 0) {
+					output.write(" \n\n".getBytes(StandardCharsets.UTF_8));
+				}
+			}
+			output.write("{\"dna\":".getBytes(StandardCharsets.UTF_8));
+		}
+
+		ConcurrentMap<String, Boolean> saved = new ConcurrentHashMap<>();
+		HumanService humanService = service(saved);
+		ImportPipeline pipeline = new ImportPipeline(humanService, 3, 64, 2, 100, 1 << 10, 1 << 20);
+		pipeline.run(new ByteArrayInputStream(bytes.toByteArray()));
+
+		assertNull(pipeline.getError());
+		assertEquals(ImportPipeline.Format.NDJSON, pipeline.getFormat());
+		assertEquals(11, pipeline.getInvalid());
+		assertEquals(500, pipeline.getMutants());
+		for(ImportPipeline.Stage stage : pipeline.getStages()) {
+			assertEquals(stage.getName(), stage.getName().equals("read") || stage.getName().equals("validate") ? 1001 : 990, stage.getRecords());
+			assertTrue(stage.getRate() > 0);
+		}
+		// the same two DNAs are sent again and again
+		assertEquals(2, saved.size());
+		Mockito.verify(humanService, Mockito.times(500)).recordVerdict(Verdict.MUTANT, -1);
+		Mockito.verify(humanService, Mockito.times(490)).recordVerdict(Verdict.HUMAN, -1);
+		Mockito.verify(humanService, Mockito.times(11)).recordVerdict(Verdict.INVALID, -1);
+	}
+
+	/**
+	 * This test ensures that the packed DNAs are imported, that a DNA with
+	 * bits set after the last base of a row is invalid, and that a packed
+	 * input cut in the middle of a DNA ends the reading with an error after
+	 * the DNAs before it are saved.
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testPacked() throws IOException, InterruptedException, InvalidDnaException, InvalidNitrogenousBasesException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		String[] bases = {"A", "C", "G", "T"};
+		for(int i = 0; i < 300; i++) {
+			String[] dna = new String[6];
+			for(int row = 0; row < dna.length; row++) {
+				StringBuilder sequence = new StringBuilder();
+				for(int column = 0; column < dna.length; column++) {
+					sequence.append(bases[(i + row * 7 + column * (row % 2 == 0 ? 1 : 3) + (i * column * row) % 5) % 4]);
+				}
+				dna[row] = sequence.toString();
+			}
+			DnaCodec.writePacked(DnaCodec.encode(dna), bytes);
+		}
+		byte[] input = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 5);
+		input[10 * (DnaCodec.PACKED_HEADER + 6 * Long.BYTES) + DnaCodec.PACKED_HEADER] |= 0x10;
+
+		ConcurrentMap<String, Boolean> saved = new ConcurrentHashMap<>();
+		ImportPipeline pipeline = new ImportPipeline(service(saved), 2, 16, 4, 100, 1 << 10, 1 << 20);
+		pipeline.run(new ByteArrayInputStream(input));
+
+		assertEquals(ImportPipeline.Format.PACKED, pipeline.getFormat());
+		assertTrue(pipeline.getError().contains("EOFException"));
+		assertEquals(298, pipeline.getStages().get(3).getRecords());
+		assertEquals(1, pipeline.getInvalid());
+		long mutants = saved.values().stream().filter(mutant -> mutant).count();
+		assertEquals(pipeline.getMutants() > 0, mutants > 0);
+	}
+
+	/**
+	 * This test ensures that the records in flight are bounded by their
+	 * bytes, the chunks being passed on smaller than their size when the
+	 * bytes are taken, and that a record bigger than all the bytes still
+	 * goes through alone.
+	 *
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testMaxBytes() throws InterruptedException {
+		StringBuilder input = new StringBuilder();
+		for(int i = 0; i < 100; i++) {
+			// 38 bytes and a line end
+			input.append("{\"dna\":[\"AAAA\",\"CGTC\",\"TTAT\",\"AGAC\"]}\n");
+		}
+
+		for(int maxBytes : new int[] {100, 10}) {
+			ConcurrentMap<String, Boolean> saved = new ConcurrentHashMap<>();
+			HumanService humanService = service(saved);
+			ImportPipeline pipeline = new ImportPipeline(humanService, 2, 16, 4, 100, 1 << 10, maxBytes);
+			pipeline.run(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8)));
+
+			assertNull(pipeline.getError());
+			assertEquals(100, pipeline.getStages().get(3).getRecords());
+			int records = Math.max(1, maxBytes / 38);
+			Mockito.verify(humanService, Mockito.never()).saveAll(Mockito.argThat(humans -> humans.size() > records));
+		}
+	}
+
+	/**
+	 * Creates a service for which the DNAs whose first base is an A are
+	 * mutants, and which keeps the verdicts saved by id.
+	 */
+	private static HumanService service(ConcurrentMap<String, Boolean> saved) {
+		HumanService humanService = Mockito.mock(HumanService.class);
+		Mockito.when(humanService.isMutantBatch(Mockito.any(PackedDna[].class))).thenAnswer(invocation -> {
+			PackedDna[] dnas = invocation.getArgument(0);
+			boolean[] verdicts = new boolean[dnas.length];
+			for(int i = 0; i < dnas.length; i++) {
+				verdicts[i] = dnas[i] != null && dnas[i].getBase(0, 0) == 0;
+			}
+			return verdicts;
+		});
+		Mockito.when(humanService.createDnaId(Mockito.any())).thenAnswer(invocation -> DnaDigest.digest(invocation.getArgument(0)));
+		Mockito.doAnswer(invocation -> {
+			List<Human> humans = invocation.getArgument(0);
+			for(Human human : humans) {
+				saved.put(Arrays.toString(human.getId()), human.isMutant());
+			}
+			return null;
+		}).when(humanService).saveAll(Mockito.any());
+		return humanService;
+	}
+}
@@ -0,0 +1,196 @@
+package mutant.repository;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import mutant.codec.DnaCodec;
+import mutant.codec.DnaDigest;
+import mutant.domain.DnaStats;
+import mutant.domain.Human;
+import mutant.domain.PackedDna;
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+
+public class HumanWriteBehindTest {
+	
+	/**
+	 * This test ensures that every queued human is written with multi-row
+	 * statements no bigger than the batch size, that the counts get the
+	 * humans inserted, and that a failed batch is written again.
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testWriteBatches() throws InterruptedException {
+		JdbcTemplate jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+		AtomicInteger failures = new AtomicInteger();
+		AtomicInteger humans = new AtomicInteger();
+		AtomicInteger mutants = new AtomicInteger();
+		AtomicInteger countedHumans = new AtomicInteger();
+		AtomicInteger countedMutants = new AtomicInteger();
+		Mockito.when(jdbcTemplate.update(Mockito.anyString(), Mockito.<Object[]>any())).thenAnswer(invocation -> {
+			String sql = invocation.getArgument(0);
+			Object[] arguments = invocation.getArguments();
+			if(sql.startsWith("INSERT INTO dna_stats")) {
+				countedHumans.addAndGet((Integer) arguments[1]);
+				countedMutants.addAndGet((Integer) arguments[2]);
+				return 2;
+			}
+			assertTrue(sql.startsWith("INSERT IGNORE INTO human (id, mutant_flag, created_at) VALUES (?, ?, ?)"));
+			if(failures.getAndIncrement() == 0) {
+				throw new TransientDataAccessResourceException("Database is down.");
+			}
+			int count = (arguments.length - 1) / 3;
+			assertTrue(arguments[3] instanceof Timestamp);
+			assertTrue(count <= 40);
+			humans.addAndGet(count);
+			if((Boolean) arguments[2]) {
+				mutants.addAndGet(count);
+			}
+			return count;
+		});
+		
+		HumanWriteBehind writeBehind = new HumanWriteBehind();
+		ReflectionTestUtils.setField(writeBehind, "jdbcTemplate", jdbcTemplate);
+		ReflectionTestUtils.setField(writeBehind, "transactionManager", Mockito.mock(PlatformTransactionManager.class));
+		DnaStatsRepository dnaStatsRepository = Mockito.mock(DnaStatsRepository.class);
+		Mockito.when(dnaStatsRepository.existsById(DnaStats.ROW_ID)).thenReturn(true);
+		ReflectionTestUtils.setField(writeBehind, "dnaStatsRepository", dnaStatsRepository);
+		ReflectionTestUtils.setField(writeBehind, "queueCapacity", 100);
+		ReflectionTestUtils.setField(writeBehind, "batchSize", 40);
+		ReflectionTestUtils.setField(writeBehind, "flushInterval", 20L);
+		writeBehind.start();
+		
+		List<Human> batch = new ArrayList<>();
+		for(int i = 0; i < 1000; i++) {
+			Human human = new Human();
+			human.setId(DnaDigest.toBytes(0, i));
+			human.setMutant(i % 4 == 0);
+			batch.add(human);
+		}
+		writeBehind.writeAll(batch);
+		writeBehind.stop();
+		
+		assertEquals(1000, humans.get());
+		assertEquals(250, mutants.get());
+		assertEquals(1000, countedHumans.get());
+		assertEquals(250, countedMutants.get());
+		assertEquals(1000, writeBehind.getWritten());
+		assertEquals(1, writeBehind.getFailures());
+		assertEquals(0, writeBehind.getPending());
+		// the counts already exist, so the table is not counted again
+		Mockito.verify(jdbcTemplate, Mockito.never()).update(Mockito.anyString());
+	}
+	
+	/**
+	 * This test ensures that the callers wait while the packed DNAs queued
+	 * or being written take all the bytes, even with room for more humans.
+	 * 
+	 * @throws InterruptedException
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testQueueBytes() throws InterruptedException, InvalidDnaException, InvalidNitrogenousBasesException {
+		CountDownLatch database = new CountDownLatch(1);
+		JdbcTemplate jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+		Mockito.when(jdbcTemplate.update(Mockito.anyString(), Mockito.<Object[]>any())).thenAnswer(invocation -> {
+			database.await();
+			return (invocation.getArguments().length - 1) / 3;
+		});
+		
+		HumanWriteBehind writeBehind = new HumanWriteBehind();
+		ReflectionTestUtils.setField(writeBehind, "jdbcTemplate", jdbcTemplate);
+		ReflectionTestUtils.setField(writeBehind, "transactionManager", Mockito.mock(PlatformTransactionManager.class));
+		ReflectionTestUtils.setField(writeBehind, "dnaStatsRepository", Mockito.mock(DnaStatsRepository.class));
+		// two DNAs of 6 words
+		ReflectionTestUtils.setField(writeBehind, "queueBytes", 2L * 6 * Long.BYTES);
+		ReflectionTestUtils.setField(writeBehind, "flushInterval", 1L);
+		writeBehind.start();
+		
+		PackedDna dna = DnaCodec.encode(new String[] {"ATGCGA", "CAGTGC", "TTATGT", "AGAAGG", "CCCCTA", "TCACTG"});
+		AtomicInteger queued = new AtomicInteger();
+		Thread caller = new Thread(() -> {
+			for(int i = 0; i < 10; i++) {
+				Human human = new Human();
+				human.setId(DnaDigest.toBytes(0, i));
+				human.setDna(dna);
+				writeBehind.write(human);
+				queued.incrementAndGet();
+			}
+		});
+		caller.start();
+		caller.join(200);
+		assertTrue(caller.isAlive());
+		assertEquals(2, queued.get());
+		
+		database.countDown();
+		caller.join();
+		writeBehind.stop();
+		assertEquals(10, writeBehind.getWritten());
+	}
+	
+	/**
+	 * This test ensures that the packed DNAs of the humans are written with
+	 * a batch in the transaction of their humans, and that the DNAs bigger
+	 * than the limit are not kept.
+	 * 
+	 * @throws InterruptedException
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testWriteDnas() throws InterruptedException, InvalidDnaException, InvalidNitrogenousBasesException {
+		JdbcTemplate jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+		Mockito.when(jdbcTemplate.update(Mockito.anyString(), Mockito.<Object[]>any())).thenAnswer(invocation -> (invocation.getArguments().length - 1) / 3);
+		List<Object[]> dnas = new ArrayList<>();
+		Mockito.when(jdbcTemplate.batchUpdate(Mockito.anyString(), Mockito.<List<Object[]>>any())).thenAnswer(invocation -> {
+			assertTrue(((String) invocation.getArgument(0)).startsWith("INSERT IGNORE INTO human_dna (id, dna_size, bases)"));
+			dnas.addAll(invocation.getArgument(1));
+			return new int[0];
+		});
+		
+		HumanWriteBehind writeBehind = new HumanWriteBehind();
+		ReflectionTestUtils.setField(writeBehind, "jdbcTemplate", jdbcTemplate);
+		ReflectionTestUtils.setField(writeBehind, "transactionManager", Mockito.mock(PlatformTransactionManager.class));
+		ReflectionTestUtils.setField(writeBehind, "dnaStatsRepository", Mockito.mock(DnaStatsRepository.class));
+		ReflectionTestUtils.setField(writeBehind, "dnaMaxSize", 8);
+		writeBehind.start();
+		Mockito.verify(jdbcTemplate).update(Mockito.startsWith("INSERT IGNORE INTO dna_stats"));
+		
+		PackedDna small = DnaCodec.encode(new String[] {"ATGCGA", "CAGTGC", "TTATGT", "AGAAGG", "CCCCTA", "TCACTG"});
+		String[] row = new String[10];
+		Arrays.fill(row, "ACGTACGTAC");
+		PackedDna big = DnaCodec.encode(row);
+		for(int i = 0; i < 5; i++) {
+			Human human = new Human();
+			human.setId(DnaDigest.toBytes(0, i));
+			human.setDna(i < 3 ? small : i == 3 ? big : null);
+			writeBehind.write(human);
+		}
+		writeBehind.stop();
+		
+		assertEquals(5, writeBehind.getWritten());
+		assertEquals(3, dnas.size());
+		for(int i = 0; i < 3; i++) {
+			assertArrayEquals(DnaDigest.toBytes(0, i), (byte[]) dnas.get(i)[0]);
+			assertEquals(6, dnas.get(i)[1]);
+			assertEquals(small, DnaCodec.unpackBases(6, (byte[]) dnas.get(i)[2]));
+		}
+	}
+}
@@ -0,0 +1,189 @@
+package mutant.reprocess;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import mutant.codec.DnaCodec;
+import mutant.codec.DnaDigest;
+import mutant.detector.DetectionPolicy;
+import mutant.domain.DnaStats;
+import mutant.domain.Human;
+import mutant.domain.PackedDna;
+import mutant.domain.ReprocessCheckpoint;
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+import mutant.storage.HumanStore;
+
+public class ReprocessingJobTest {
+
+	private static final DetectionPolicy POLICY = new DetectionPolicy(2, 4);
+
+	/**
+	 * This test ensures that every DNA is verified by the threads of the
+	 * job, that only the verdicts changed are written, each page with its
+	 * checkpoint, and that the last checkpoint is finished.
+	 *
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testReprocess() throws InvalidDnaException, InvalidNitrogenousBasesException {
+		List<Human> humans = humans(1000);
+		List<ReprocessCheckpoint> checkpoints = new ArrayList<>();
+		List<Human> written = new ArrayList<>();
+		HumanStore store = store(humans, null, checkpoints, written);
+
+		Set<Thread> threads = ConcurrentHashMap.newKeySet();
+		List<Human> notified = new ArrayList<>();
+		ReprocessingJob job = new ReprocessingJob(store, dna -> {
+			threads.add(Thread.currentThread());
+			return dna.getSize() == 2;
+		}, POLICY, 4, 64, notified::add);
+		job.run();
+
+		assertEquals(ReprocessingJob.Status.FINISHED, job.getStatus());
+		assertFalse(job.isRunning());
+		assertFalse(job.isResumed());
+		assertEquals(1000, job.getProcessed());
+		assertEquals(1000, job.getVerified());
+		// the DNAs of size 2 are now mutants, and the mutants of size 1 humans
+		assertEquals(300 + 66, job.getChanged());
+		assertEquals(job.getChanged(), written.size());
+		assertEquals(written, notified);
+		for(Human human : written) {
+			assertEquals(human.getDna().getSize() == 2, human.isMutant());
+		}
+		assertTrue(threads.size() > 1);
+
+		assertEquals(17, checkpoints.size());
+		assertArrayEquals(humans.get(63).getId(), checkpoints.get(0).getLastId());
+		assertEquals(64, checkpoints.get(0).getProcessed());
+		ReprocessCheckpoint last = checkpoints.get(checkpoints.size() - 1);
+		assertTrue(last.isFinished());
+		assertArrayEquals(humans.get(999).getId(), last.getLastId());
+		assertEquals(1000, last.getProcessed());
+		assertEquals(366, last.getChanged());
+		assertEquals(2, last.getRequiredSequences());
+	}
+
+	/**
+	 * This test ensures that a job resumes after the checkpoint of an
+	 * unfinished job with the same policy, and starts again from the first
+	 * DNA when the policy changed.
+	 *
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testResume() throws InvalidDnaException, InvalidNitrogenousBasesException {
+		List<Human> humans = humans(1000);
+		ReprocessCheckpoint checkpoint = new ReprocessCheckpoint(humans.get(499).getId(), 2, 4, 500, 7, false);
+		ReprocessingJob job = new ReprocessingJob(store(humans, checkpoint, new ArrayList<>(), new ArrayList<>()),
+				dna -> false, POLICY, 2, 100, human -> {});
+		job.run();
+		assertTrue(job.isResumed());
+		assertEquals(1000, job.getProcessed());
+		assertEquals(500, job.getVerified());
+		// only the mutants after the checkpoint changed
+		assertEquals(7 + 50, job.getChanged());
+
+		checkpoint = new ReprocessCheckpoint(humans.get(499).getId(), 1, 4, 500, 7, false);
+		job = new ReprocessingJob(store(humans(1000), checkpoint, new ArrayList<>(), new ArrayList<>()),
+				dna -> false, POLICY, 2, 100, human -> {});
+		job.run();
+		assertFalse(job.isResumed());
+		assertEquals(1000, job.getVerified());
+		assertEquals(100, job.getChanged());
+	}
+
+	/**
+	 * This test ensures that a failed write ends the job with its error,
+	 * keeping the checkpoint of the last page written.
+	 *
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testFailure() throws InvalidDnaException, InvalidNitrogenousBasesException {
+		List<ReprocessCheckpoint> checkpoints = new ArrayList<>();
+		HumanStore store = store(humans(300), null, checkpoints, new ArrayList<>());
+		Mockito.doAnswer(invocation -> {
+			ReprocessCheckpoint checkpoint = invocation.getArgument(1);
+			if(checkpoint.getProcessed() > 100) {
+				throw new IllegalStateException("Database is down.");
+			}
+			checkpoints.add(checkpoint);
+			return null;
+		}).when(store).updateVerdicts(Mockito.any(), Mockito.any());
+
+		ReprocessingJob job = new ReprocessingJob(store, dna -> true, POLICY, 2, 100, human -> {});
+		job.run();
+		assertEquals(ReprocessingJob.Status.FAILED, job.getStatus());
+		assertTrue(job.getError().contains("Database is down."));
+		assertEquals(100, job.getProcessed());
+		assertEquals(1, checkpoints.size());
+	}
+
+	/**
+	 * Creates the humans ordered by id, the ones of index multiple of 3 with
+	 * a DNA of size 2 and the others of size 1. The humans of index multiple
+	 * of 10 are mutants.
+	 */
+	private static List<Human> humans(int count) throws InvalidDnaException, InvalidNitrogenousBasesException {
+		PackedDna small = DnaCodec.encode(new String[] {"A"});
+		PackedDna big = DnaCodec.encode(new String[] {"AT", "CG"});
+		List<Human> humans = new ArrayList<>();
+		for(int i = 0; i < count; i++) {
+			Human human = new Human();
+			human.setId(DnaDigest.toBytes(0, i));
+			human.setMutant(i % 10 == 0);
+			human.setDna(i % 3 == 0 ? big : small);
+			humans.add(human);
+		}
+		return humans;
+	}
+
+	/**
+	 * Creates a store that pages the humans after the id given, and keeps
+	 * the checkpoints and the humans written.
+	 */
+	private static HumanStore store(List<Human> humans, ReprocessCheckpoint checkpoint, List<ReprocessCheckpoint> checkpoints, List<Human> written) {
+		HumanStore store = Mockito.mock(HumanStore.class);
+		Mockito.when(store.readStats()).thenReturn(new DnaStats(humans.size(), 0));
+		Mockito.when(store.readCheckpoint()).thenReturn(Optional.ofNullable(checkpoint));
+		Mockito.when(store.findDnas(Mockito.any(), Mockito.anyInt())).thenAnswer(invocation -> {
+			byte[] after = invocation.getArgument(0);
+			int limit = invocation.getArgument(1);
+			int start = 0;
+			if(after != null) {
+				while(!Arrays.equals(humans.get(start).getId(), after)) {
+					start++;
+				}
+				start++;
+			}
+			if(start >= humans.size()) {
+				return Collections.emptyList();
+			}
+			return new ArrayList<>(humans.subList(start, Math.min(humans.size(), start + limit)));
+		});
+		Mockito.doAnswer(invocation -> {
+			written.addAll(invocation.getArgument(0));
+			checkpoints.add(invocation.getArgument(1));
+			return null;
+		}).when(store).updateVerdicts(Mockito.any(), Mockito.any());
+		return store;
+	}
+}
@@ -0,0 +1,247 @@
+package mutant.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import mutant.admission.WeightedAdmission;
+import mutant.codec.DnaBinaryReader;
+import mutant.codec.DnaCodec;
+import mutant.codec.DnaDigest;
+import mutant.codec.NitrogenousBases;
+import mutant.domain.PackedDna;
+import mutant.exception.InvalidDnaException;
+import mutant.exception.InvalidNitrogenousBasesException;
+import mutant.service.HumanService;
+import mutant.stats.Verdict;
+
+public class VerdictServerTest {
+
+	private HumanService humanService;
+
+	private VerdictServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		humanService = Mockito.mock(HumanService.class);
+		Mockito.when(humanService.createDnaId(Mockito.any())).thenAnswer(invocation -> DnaDigest.digest(invocation.getArgument(0)));
+		Mockito.when(humanService.isMutant(Mockito.any(PackedDna.class))).thenAnswer(invocation -> ((PackedDna) invocation.getArgument(0)).getBase(0, 0) == 0);
+
+		server = new VerdictServer();
+		ReflectionTestUtils.setField(server, "humanService", humanService);
+		ReflectionTestUtils.setField(server, "port", 0);
+		ReflectionTestUtils.setField(server, "threads", 2);
+		ReflectionTestUtils.setField(server, "workers", 4);
+		ReflectionTestUtils.setField(server, "bufferSize", 1 << 10);
+		ReflectionTestUtils.setField(server, "maxSize", 100);
+		server.start();
+	}
+
+	@After
+	public void tearDown() throws IOException, InterruptedException {
+		server.stop();
+	}
+
+	/**
+	 * This test ensures that many requests sent without waiting, some of
+	 * them invalid and some as big as the limit and many times bigger than
+	 * the buffers, are answered in order, and that the buffers are given
+	 * back to the pool.
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testPipelined() throws IOException, InterruptedException, InvalidDnaException, InvalidNitrogenousBasesException {
+		byte[] mutant = packed("ATGCGA", "CAGTGC", "TTATGT", "AGAAGG", "CCCCTA", "TCACTG");
+		byte[] human = packed("TTGCGA", "CAGTGC", "TTATTT", "AGACGG", "GCGTCA", "TCACTG");
+		byte[] invalid = "{\"dna\":[\"A\"]}".getBytes(StandardCharsets.UTF_8);
+		char[] bases = new char[100 * 100];
+		Arrays.fill(bases, 'C');
+		byte[] big = ByteBuffer.allocate(8 + bases.length).putInt(DnaBinaryReader.BYTES_MAGIC).putInt(100)
+				.put(new String(bases).getBytes(StandardCharsets.US_ASCII)).array();
+		byte[][] requests = {mutant, human, invalid, big};
+		assertEquals(VerdictServer.maxFrameBytes(100), big.length);
+
+		int count = 2000;
+		ByteArrayOutputStream frames = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(frames);
+		for(int i = 0; i < count; i++) {
+			byte[] request = requests[i % requests.length];
+			data.writeInt(request.length);
+			data.write(request);
+		}
+
+		try(Socket socket = new Socket("localhost", server.getPort())) {
+			// the requests are sent while the responses are read
+			Thread writer = new Thread(() -> {
+				try {
+					OutputStream output = socket.getOutputStream();
+					output.write(frames.toByteArray());
+					output.flush();
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+			});
+			writer.start();
+
+			DataInputStream input = new DataInputStream(socket.getInputStream());
+			for(int i = 0; i < count; i++) {
+				byte[] response = new byte[input.readInt()];
+				input.readFully(response);
+				switch(i % requests.length) {
+				case 0:
+					assertEquals(1, response.length);
+					assertEquals(VerdictServer.STATUS_MUTANT, response[0]);
+					break;
+				case 2:
+					assertEquals(VerdictServer.STATUS_INVALID, response[0]);
+					assertEquals(DnaBinaryReader.RC_BINARY_MAGIC, new String(response, 1, response.length - 1, StandardCharsets.UTF_8));
+					break;
+				default:
+					assertEquals(1, response.length);
+					assertEquals(VerdictServer.STATUS_HUMAN, response[0]);
+				}
+			}
+			writer.join();
+		}
+
+		Mockito.verify(humanService, Mockito.times(count / 4)).recordVerdict(Mockito.eq(Verdict.MUTANT), Mockito.anyLong());
+		Mockito.verify(humanService, Mockito.times(count / 2)).recordVerdict(Mockito.eq(Verdict.HUMAN), Mockito.anyLong());
+		Mockito.verify(humanService, Mockito.times(count / 4)).recordVerdict(Mockito.eq(Verdict.INVALID), Mockito.anyLong());
+		Mockito.verify(humanService, Mockito.times(count * 3 / 4)).save(Mockito.any());
+
+		server.stop();
+		DirectBufferPool pool = server.getBufferPool();
+		assertEquals(pool.getAllocated(), pool.getPooled());
+		assertEquals(server.getAdmission().getBudget(), server.getAdmission().getAvailable());
+	}
+
+	/**
+	 * This test ensures that a request is not read while its length does
+	 * not fit in what is left of the budget, and is answered once it does.
+	 *
+	 * @throws IOException
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testBudget() throws IOException, InvalidDnaException, InvalidNitrogenousBasesException {
+		byte[] request = packed("ATGCGA", "CAGTGC", "TTATGT", "AGAAGG", "CCCCTA", "TCACTG");
+		WeightedAdmission admission = server.getAdmission();
+		long taken = admission.getBudget() - request.length + 1;
+		assertTrue(admission.tryAcquire(taken));
+		try(Socket socket = new Socket("localhost", server.getPort())) {
+			DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+			output.writeInt(request.length);
+			output.write(request);
+			output.flush();
+
+			DataInputStream input = new DataInputStream(socket.getInputStream());
+			socket.setSoTimeout(200);
+			try {
+				input.readInt();
+				fail("A request over the budget was answered.");
+			} catch (SocketTimeoutException e) {
+				Mockito.verify(humanService, Mockito.never()).createDnaId(Mockito.any());
+			}
+
+			admission.release(taken);
+			socket.setSoTimeout(0);
+			byte[] response = new byte[input.readInt()];
+			input.readFully(response);
+			assertEquals(VerdictServer.STATUS_MUTANT, response[0]);
+		}
+	}
+
+	/**
+	 * This test ensures that a connection over the limit is closed at once.
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testMaxConnections() throws IOException, InterruptedException {
+		server.stop();
+		server = new VerdictServer();
+		ReflectionTestUtils.setField(server, "humanService", humanService);
+		ReflectionTestUtils.setField(server, "port", 0);
+		ReflectionTestUtils.setField(server, "threads", 1);
+		ReflectionTestUtils.setField(server, "maxConnections", 1);
+		server.start();
+
+		try(Socket first = new Socket("localhost", server.getPort()); Socket second = new Socket("localhost", server.getPort())) {
+			assertEquals(-1, second.getInputStream().read());
+			first.setSoTimeout(200);
+			try {
+				first.getInputStream().read();
+				fail("The first connection was closed.");
+			} catch (SocketTimeoutException e) {
+				// still open
+			}
+		}
+	}
+
+	/**
+	 * This test ensures that a request one byte bigger than the limit closes
+	 * the connection, after answering the requests before it.
+	 *
+	 * @throws IOException
+	 * @throws InvalidDnaException
+	 * @throws InvalidNitrogenousBasesException
+	 */
+	@Test
+	public void testTooBig() throws IOException, InvalidDnaException, InvalidNitrogenousBasesException {
+		byte[] request = Arrays.copyOf(packed("AAAA", "CCCC", "GGGG", "TTTT"), 41);
+		try(Socket socket = new Socket("localhost", server.getPort())) {
+			DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+			output.writeInt(request.length);
+			output.write(request);
+			output.writeInt(VerdictServer.maxFrameBytes(100) + 1);
+			output.flush();
+
+			DataInputStream input = new DataInputStream(socket.getInputStream());
+			byte[] response = new byte[input.readInt()];
+			input.readFully(response);
+			assertEquals(VerdictServer.STATUS_INVALID, response[0]);
+			assertEquals(NitrogenousBases.RC_DNA_FORMAT, new String(response, 1, response.length - 1, StandardCharsets.UTF_8));
+			assertEquals(-1, input.read());
+		}
+	}
+
+	/**
+	 * This test ensures that the default limit fits the biggest DNA of
+	 * both binary formats.
+	 */
+	@Test
+	public void testMaxFrameBytes() {
+		assertEquals(DnaCodec.PACKED_HEADER + 100 * 100, VerdictServer.maxFrameBytes(100));
+		assertEquals(DnaCodec.PACKED_HEADER + 16384 * 16384, VerdictServer.maxFrameBytes(16384));
+		assertTrue(VerdictServer.maxFrameBytes(16384) >= DnaCodec.PACKED_HEADER + 16384 * PackedDna.rowWords(16384) * Long.BYTES);
+	}
+
+	private static byte[] packed(String... dna) throws IOException, InvalidDnaException, InvalidNitrogenousBasesException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DnaCodec.writePacked(DnaCodec.encode(dna), bytes);
+		return bytes.toByteArray();
+	}
+}
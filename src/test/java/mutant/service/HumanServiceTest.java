@@ -1,15 +1,22 @@
 package mutant.service;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.MockitoAnnotations;
 
-import mutant.domain.DNA;
+import mutant.detector.DetectionPolicy;
 import mutant.exception.InvalidDnaException;
 import mutant.exception.InvalidNitrogenousBasesException;
 import mutant.service.impl.HumanServiceImpl;
@@ -25,7 +32,6 @@ public class HumanServiceTest {
     public void setUp() {
 		MockitoAnnotations.initMocks(this);
 		humanService = new HumanServiceImpl();
-		humanService.setDNA(new DNA());
     }
 	
 	/**
@@ -42,7 +48,7 @@ public class HumanServiceTest {
 	@Test
 	public void testNullDna() throws InvalidDnaException, InvalidNitrogenousBasesException {
 		prepareException(InvalidDnaException.class, HumanServiceImpl.RC_DNA_NULL);
-		humanService.isMutant(null);
+		humanService.isMutant((String[]) null);
 	}
 	
 	/**
@@ -1008,6 +1014,107 @@ public class HumanServiceTest {
 		assertTrue(humanService.isMutant(dna));
 	}
 	
+	/**
+	 * This test ensures that concurrent verifications do not interfere with
+	 * each other, since the service is shared by all the requests.
+	 * 
+	 * Mutant and human DNAs are verified at the same time by several threads
+	 * and each one must get its own result.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testMutant_Concurrent() throws Exception {
+		final String[] mutant = new String[] {"ATGCGA", "CAGTGC", "TTATGT", "AGAAGG", "CCCCTA", "TCACTG"};
+		final String[] human = new String[] {"ATGCGA", "CAGTGC", "TTATTT", "AGACGG", "GCGTCA", "TCACTG"};
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for(int i = 0; i < 1000; i++) {
+				final boolean expected = i % 2 == 0;
+				results.add(executor.submit(() -> humanService.isMutant(expected ? mutant : human) == expected));
+			}
+			for(Future<Boolean> result : results) {
+				assertTrue(result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	/**
+	 * This test ensures that a batch with DNAs of different sizes gets the
+	 * same results as verifying each DNA alone.
+	 * 
+	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when the
+	 *     DNA sequence is null.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when the
+	 *     nitrogenous bases does not have the same length or when they are
+	 *     composed of characters different from A, T, C or G.
+	 */
+	@Test
+	public void testMutantBatch() throws InvalidDnaException, InvalidNitrogenousBasesException {
+		String[][] dnaSequences = new String[][] {
+			{"ATGCGA", "CAGTGC", "TTATGT", "AGAAGG", "CCCCTA", "TCACTG"},
+			{"ACTA", "TGAC", "GACT", "CTGA"},
+			{"ACTAATAGCA", "TGACCCCGTT", "GATACTCGGC", "TTGGAAGTCA", "ATAGATCAGC",
+				"TGCCTGCATT", "TTACGGACCA", "ACATCGAGCA", "TGACATCATG", "ACTACCTAGC"},
+			{"ATGCGA", "CAGTGC", "TTATTT", "AGACGG", "GCGTCA", "TCACTG"},
+			{"AC", "TG"},
+			{"GCTA", "TGAC", "GAGT", "TTGG"}
+		};
+		
+		boolean[] verdicts = humanService.isMutantBatch(dnaSequences);
+		for(int i = 0; i < dnaSequences.length; i++) {
+			assertEquals(humanService.isMutant(dnaSequences[i]), verdicts[i]);
+		}
+	}
+	
+	/**
+	 * This test ensures that an invalid DNA fails the whole batch.
+	 * 
+	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when the
+	 *     DNA sequence is null.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when the
+	 *     nitrogenous bases does not have the same length or when they are
+	 *     composed of characters different from A, T, C or G.
+	 */
+	@Test
+	public void testMutantBatch_Invalid() throws InvalidDnaException, InvalidNitrogenousBasesException {
+		prepareException(InvalidNitrogenousBasesException.class, HumanServiceImpl.RC_NB_INVALID);
+		humanService.isMutantBatch(new String[][] {{"ACTA", "TGAC", "GACT", "CTGA"}, {"ACTA", "TGAC", "GA@T", "CTGA"}});
+	}
+	
+	/**
+	 * This test ensures that the detection policy changes the number and the
+	 * length of the sequences that make a DNA mutant.
+	 * 
+	 * @throws InvalidDnaException an <code>InvalidDnaException</code> when the
+	 *     DNA sequence is null.
+	 * @throws InvalidNitrogenousBasesException an
+	 *     <code>InvalidNitrogenousBasesException</code> is thrown when the
+	 *     nitrogenous bases does not have the same length or when they are
+	 *     composed of characters different from A, T, C or G.
+	 */
+	@Test
+	public void testDetectionPolicy() throws InvalidDnaException, InvalidNitrogenousBasesException {
+		String[] oneSequence = {"AAAA", "CGTC", "TCGA", "GATC"};
+		String[] twoSequences = {"ATGCGA", "CAGTGC", "TTATGT", "AGAAGG", "CCCCTA", "TCACTG"};
+		assertTrue(humanService.isMutant(oneSequence));
+
+		humanService.setDetectionPolicy(new DetectionPolicy(2, 4));
+		assertFalse(humanService.isMutant(oneSequence));
+		assertTrue(humanService.isMutant(twoSequences));
+		assertFalse(humanService.isMutantBatch(new String[][] {oneSequence, twoSequences})[0]);
+
+		humanService.setDetectionPolicy(new DetectionPolicy(1, 3));
+		assertTrue(humanService.isMutant(new String[] {"ACT", "TAG", "AAA"}));
+		assertFalse(humanService.isMutant(new String[] {"ACT", "TAG", "AAC"}));
+		assertTrue(humanService.isMutantBatch(new String[][] {{"ACT", "TAG", "AAA"}})[0]);
+	}
+	
 	/**
      * This method set the expected exception of the test.
      *
@@ -0,0 +1,115 @@
+package mutant.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import mutant.stats.VerdictTimeSeries.Bucket;
+import mutant.stats.VerdictTimeSeries.Resolution;
+
+public class VerdictTimeSeriesTest {
+	
+	private static final long NOW = 1539475200000L;
+	
+	/**
+	 * This test ensures that the verdicts are counted in the buckets of
+	 * their second and minute, and that the periods with no verdict are
+	 * empty buckets.
+	 */
+	@Test
+	public void testBuckets() {
+		VerdictTimeSeries series = new VerdictTimeSeries();
+		series.record(NOW, Verdict.MUTANT, -1);
+		series.record(NOW + 500, Verdict.HUMAN, -1);
+		series.record(NOW + 2000, Verdict.INVALID, -1);
+		series.record(NOW + 61000, Verdict.MUTANT, -1);
+		
+		List<Bucket> seconds = series.getBuckets(Resolution.SECOND, NOW + 2999, 3);
+		assertEquals(3, seconds.size());
+		assertEquals(NOW, seconds.get(0).getStart());
+		assertEquals(1, seconds.get(0).getCount(Verdict.MUTANT));
+		assertEquals(1, seconds.get(0).getCount(Verdict.HUMAN));
+		assertEquals(0, seconds.get(1).getCount(Verdict.MUTANT) + seconds.get(1).getCount(Verdict.INVALID));
+		assertEquals(1, seconds.get(2).getCount(Verdict.INVALID));
+		
+		List<Bucket> minutes = series.getBuckets(Resolution.MINUTE, NOW + 61000, 2);
+		assertEquals(NOW, minutes.get(0).getStart());
+		assertEquals(1, minutes.get(0).getCount(Verdict.MUTANT));
+		assertEquals(1, minutes.get(0).getCount(Verdict.INVALID));
+		assertEquals(1, minutes.get(1).getCount(Verdict.MUTANT));
+	}
+	
+	/**
+	 * This test ensures that a bucket is reused once the ring wraps around,
+	 * and that verdicts older than the period kept are dropped.
+	 */
+	@Test
+	public void testRollOver() {
+		VerdictTimeSeries series = new VerdictTimeSeries();
+		long wrapped = NOW + Resolution.SECOND.getBuckets() * Resolution.SECOND.getMillis();
+		series.record(NOW, Verdict.MUTANT, -1);
+		series.record(wrapped, Verdict.HUMAN, -1);
+		series.record(NOW, Verdict.MUTANT, -1);
+		
+		Bucket bucket = series.getBuckets(Resolution.SECOND, wrapped, 1).get(0);
+		assertEquals(wrapped, bucket.getStart());
+		assertEquals(0, bucket.getCount(Verdict.MUTANT));
+		assertEquals(1, bucket.getCount(Verdict.HUMAN));
+		assertEquals(0, series.getBuckets(Resolution.SECOND, NOW, 1).get(0).getCount(Verdict.MUTANT));
+	}
+	
+	/**
+	 * This test ensures that the latency percentiles are within the error of
+	 * the histogram.
+	 */
+	@Test
+	public void testLatencies() {
+		VerdictTimeSeries series = new VerdictTimeSeries();
+		for(int millis = 1; millis <= 100; millis++) {
+			series.record(NOW, Verdict.HUMAN, TimeUnit.MILLISECONDS.toNanos(millis));
+		}
+		Bucket bucket = series.getBuckets(Resolution.MINUTE, NOW, 1).get(0);
+		assertBetween(50, 62.5, bucket.getLatency(0.5));
+		assertBetween(99, 123.75, bucket.getLatency(0.99));
+		assertEquals(-1, series.getBuckets(Resolution.MINUTE, NOW + 60000, 1).get(0).getLatency(0.5), 0);
+		
+		for(long micros = 0; micros < 1 << 20; micros += 1 + micros / 7) {
+			int index = VerdictTimeSeries.latencyBucket(micros);
+			assertTrue(micros <= VerdictTimeSeries.latencyBound(index));
+			assertTrue(index == 0 || micros > VerdictTimeSeries.latencyBound(index - 1));
+		}
+		assertEquals(VerdictTimeSeries.LATENCY_BUCKETS - 1, VerdictTimeSeries.latencyBucket(Long.MAX_VALUE));
+	}
+	
+	/**
+	 * This test ensures that no verdict is lost when many threads record in
+	 * the same buckets.
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testConcurrentRecords() throws InterruptedException {
+		VerdictTimeSeries series = new VerdictTimeSeries();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		for(int thread = 0; thread < 4; thread++) {
+			executor.execute(() -> {
+				for(int i = 0; i < 10000; i++) {
+					series.record(NOW + i % 1000, Verdict.MUTANT, 1000);
+				}
+			});
+		}
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+		assertEquals(40000, series.getBuckets(Resolution.SECOND, NOW, 1).get(0).getCount(Verdict.MUTANT));
+	}
+	
+	private static void assertBetween(double low, double high, double value) {
+		assertTrue(value + " not in [" + low + ", " + high + "]", value >= low && value <= high);
+	}
+}
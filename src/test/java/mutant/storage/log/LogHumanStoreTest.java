@@ -0,0 +1,174 @@
+package mutant.storage.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import mutant.codec.DnaDigest;
+import mutant.domain.DnaStats;
+import mutant.domain.Human;
+
+public class LogHumanStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * This test ensures that a DNA is recorded once, and that the counts and
+	 * the verdicts are replayed from the log when the store is opened again.
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testWriteAndReplay() throws IOException, InterruptedException {
+		LogHumanStore store = open();
+		List<Human> humans = new ArrayList<>();
+		for(int i = 0; i < 100; i++) {
+			humans.add(human(i % 40, i % 4 == 0, Instant.ofEpochMilli(1000 * i)));
+		}
+		store.writeAll(humans);
+		assertEquals(40, store.getInsertedHumans());
+		assertEquals(10, store.getInsertedMutants());
+		store.close();
+
+		LogHumanStore reopened = open();
+		DnaStats stats = reopened.readStats();
+		assertEquals(40, stats.getHumanCount());
+		assertEquals(10, stats.getMutantCount());
+		assertEquals(0, reopened.getInsertedHumans());
+		assertEquals(40, reopened.findAll().size());
+
+		AtomicInteger recent = new AtomicInteger();
+		reopened.forEachVerdictSince(Instant.ofEpochMilli(30000), (id, mutant, createdAt) -> recent.incrementAndGet());
+		assertEquals(10, recent.get());
+
+		// the index replayed is the one the service reuses
+		assertEquals(Boolean.TRUE, reopened.getVerdictIndex().get().get(human(0, false, null).getId()));
+		assertEquals(40, reopened.getVerdictIndex().get().size());
+
+		reopened.write(human(5, true, null));
+		reopened.write(human(40, true, null));
+		assertEquals(41, reopened.readStats().getHumanCount());
+		assertEquals(11, reopened.readStats().getMutantCount());
+		reopened.close();
+	}
+
+	/**
+	 * This test ensures that the sealed segments are merged once their
+	 * records fit in fewer segments, without losing a record.
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testCompaction() throws IOException, InterruptedException {
+		LogHumanStore store = open();
+		for(int i = 0; i < 20; i++) {
+			store.write(human(i, false, null));
+		}
+		assertEquals(0, store.compact());
+		store.close();
+
+		// the segments of the reopened store are bigger than the old ones
+		LogHumanStore reopened = open(16);
+		assertEquals(3, reopened.getLog().getSegments());
+		reopened.compact();
+		assertEquals(2, reopened.getLog().getSegments());
+		assertEquals(20, reopened.getLog().getRecords());
+		assertEquals(20, reopened.readStats().getHumanCount());
+		reopened.close();
+	}
+
+	/**
+	 * This test ensures that a compaction that fails does not cancel the
+	 * next ones.
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testFailedCompaction() throws IOException, InterruptedException {
+		LogHumanStore store = new LogHumanStore();
+		ReflectionTestUtils.setField(store, "directory", folder.getRoot().getPath());
+		ReflectionTestUtils.setField(store, "expectedSize", 64L);
+		ReflectionTestUtils.setField(store, "compactionInterval", 10L);
+		store.open();
+
+		SegmentLog log = store.getLog();
+		SegmentLog failing = Mockito.mock(SegmentLog.class);
+		Mockito.when(failing.getSegments()).thenReturn(3);
+		Mockito.when(failing.compact(Mockito.any())).thenThrow(new IOException("Disk full."));
+		ReflectionTestUtils.setField(store, "log", failing);
+		try {
+			Mockito.verify(failing, Mockito.timeout(5000).atLeast(3)).compact(Mockito.any());
+		} finally {
+			ReflectionTestUtils.setField(store, "log", log);
+			store.close();
+		}
+	}
+
+	/**
+	 * This test ensures that a DNA whose append fails is not taken as
+	 * recorded, so it is appended when sent again.
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testFailedAppend() throws IOException, InterruptedException {
+		LogHumanStore store = open();
+		SegmentLog log = store.getLog();
+		SegmentLog failing = Mockito.mock(SegmentLog.class);
+		Mockito.doThrow(new IOException("Disk full.")).when(failing).append(Mockito.any(), Mockito.anyBoolean(), Mockito.anyLong());
+		ReflectionTestUtils.setField(store, "log", failing);
+		try {
+			store.write(human(1, true, null));
+			fail("The append did not fail.");
+		} catch (UncheckedIOException e) {
+			assertNull(store.getVerdictIndex().get().get(human(1, true, null).getId()));
+			assertEquals(0, store.getInsertedHumans());
+		} finally {
+			ReflectionTestUtils.setField(store, "log", log);
+		}
+
+		store.write(human(1, true, null));
+		assertEquals(1, store.getInsertedHumans());
+		assertEquals(1, log.getRecords());
+		store.close();
+	}
+
+	private LogHumanStore open() throws IOException {
+		return open(8);
+	}
+
+	private LogHumanStore open(int segmentRecords) throws IOException {
+		LogHumanStore store = new LogHumanStore();
+		ReflectionTestUtils.setField(store, "directory", folder.getRoot().getPath());
+		ReflectionTestUtils.setField(store, "segmentRecords", segmentRecords);
+		ReflectionTestUtils.setField(store, "expectedSize", 64L);
+		store.open();
+		return store;
+	}
+
+	private static Human human(int dna, boolean mutant, Instant createdAt) {
+		Human human = new Human();
+		human.setId(DnaDigest.toBytes(dna, dna));
+		human.setMutant(mutant);
+		human.setCreatedAt(createdAt);
+		return human;
+	}
+}
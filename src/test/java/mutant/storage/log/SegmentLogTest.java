@@ -0,0 +1,191 @@
+package mutant.storage.log;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import mutant.codec.DnaDigest;
+
+public class SegmentLogTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * This test ensures that the records appended are read back in order,
+	 * across segments and after the log is opened again.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testAppendAndReopen() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		SegmentLog log = new SegmentLog(directory, 4);
+		for(int i = 0; i < 10; i++) {
+			log.append(DnaDigest.toBytes(i, i), i % 3 == 0, 1000 + i);
+		}
+		assertEquals(3, log.getSegments());
+		assertEquals(10, log.getRecords());
+		log.close();
+
+		SegmentLog reopened = new SegmentLog(directory, 4);
+		assertEquals(3, reopened.getSegments());
+		List<long[]> records = read(reopened);
+		assertEquals(10, records.size());
+		for(int i = 0; i < 10; i++) {
+			assertArrayEquals(new long[] {i, i % 3 == 0 ? 1 : 0, 1000 + i}, records.get(i));
+		}
+
+		reopened.append(DnaDigest.toBytes(10, 10), false, 1010);
+		assertEquals(11, reopened.getRecords());
+	}
+
+	/**
+	 * This test ensures that only the records registered since a moment are
+	 * read, including an old record appended after newer ones.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testForEachSince() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		SegmentLog log = new SegmentLog(directory, 4);
+		for(int i = 0; i < 10; i++) {
+			log.append(DnaDigest.toBytes(i, i), false, 1000 + i);
+		}
+		log.append(DnaDigest.toBytes(10, 10), true, 1);
+		log.close();
+
+		SegmentLog reopened = new SegmentLog(directory, 4);
+		List<Long> since = new ArrayList<>();
+		reopened.forEachSince(1005, (digest, mutant, createdAt) -> since.add(createdAt));
+		assertEquals(Arrays.asList(1005L, 1006L, 1007L, 1008L, 1009L), since);
+		since.clear();
+		reopened.forEachSince(0, (digest, mutant, createdAt) -> since.add(createdAt));
+		assertEquals(11, since.size());
+		assertEquals(Long.valueOf(1), since.get(10));
+	}
+
+	/**
+	 * This test ensures that a torn record ends the log when it is opened
+	 * again, and that it is overwritten by the next append.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testTornRecord() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		SegmentLog log = new SegmentLog(directory, 16);
+		for(int i = 0; i < 5; i++) {
+			log.append(DnaDigest.toBytes(i, i), true, i);
+		}
+		log.close();
+
+		Path segment = Files.list(directory).findFirst().get();
+		try(FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] {(byte) 0xFF}), 3 * SegmentLog.RECORD_SIZE + 5);
+		}
+
+		SegmentLog recovered = new SegmentLog(directory, 16);
+		assertEquals(3, recovered.getRecords());
+		recovered.append(DnaDigest.toBytes(7, 7), false, 7);
+		recovered.close();
+
+		List<long[]> records = read(new SegmentLog(directory, 16));
+		assertEquals(4, records.size());
+		assertArrayEquals(new long[] {7, 0, 7}, records.get(3));
+	}
+
+	/**
+	 * This test ensures that a compaction drops the records refused by the
+	 * filter, merges the sealed segments and keeps the order of the log,
+	 * also after it is opened again.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testCompaction() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		SegmentLog log = new SegmentLog(directory, 4);
+		for(int i = 0; i < 14; i++) {
+			log.append(DnaDigest.toBytes(i % 5, i % 5), false, i);
+		}
+		assertEquals(4, log.getSegments());
+
+		Set<Long> seen = new HashSet<>();
+		int dropped = log.compact((digest, mutant, createdAt) -> seen.add(DnaDigest.low(digest)));
+		// the sealed records 0 to 11 hold the 5 digests twice, plus 2 more
+		assertEquals(7, dropped);
+		assertEquals(3, log.getSegments());
+		assertEquals(7, log.getRecords());
+		assertFalse(Files.exists(directory.resolve(SegmentLog.COMPACTION)));
+
+		log.append(DnaDigest.toBytes(9, 9), true, 14);
+		List<long[]> records = read(log);
+		log.close();
+		assertEquals(records.size(), read(new SegmentLog(directory, 4)).size());
+
+		long[] created = new long[records.size()];
+		for(int i = 0; i < created.length; i++) {
+			created[i] = records.get(i)[2];
+		}
+		assertArrayEquals(new long[] {0, 1, 2, 3, 4, 12, 13, 14}, created);
+		assertEquals(0, log.compact((digest, mutant, createdAt) -> true));
+	}
+
+	/**
+	 * This test ensures that the segments of a compaction interrupted
+	 * before its commit are discarded, and that a compaction interrupted
+	 * after its commit is finished, when the log is opened.
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testCompactionRecovery() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		SegmentLog log = new SegmentLog(directory, 2);
+		for(int i = 0; i < 6; i++) {
+			log.append(DnaDigest.toBytes(i, i), false, i);
+		}
+		log.close();
+
+		Path work = Files.createDirectory(directory.resolve(SegmentLog.COMPACTION));
+		Files.copy(directory.resolve("segment-0000000000000003.log"), work.resolve("segment-0000000000000001.log"));
+		assertEquals(6, new SegmentLog(directory, 2).getRecords());
+		assertFalse(Files.exists(work));
+
+		Files.createDirectory(work);
+		Files.copy(directory.resolve("segment-0000000000000002.log"), work.resolve("segment-0000000000000001.log"));
+		Files.write(work.resolve(SegmentLog.COMMIT), "1\n1\n2\n".getBytes());
+		List<long[]> records = read(new SegmentLog(directory, 2));
+		assertEquals(4, records.size());
+		assertArrayEquals(new long[] {2, 0, 2}, records.get(0));
+		assertFalse(Files.exists(work));
+	}
+
+	/**
+	 * Reads the low half of the digest, the verdict and the registration
+	 * moment of every record.
+	 */
+	private static List<long[]> read(SegmentLog log) {
+		List<long[]> records = new ArrayList<>();
+		log.forEach((digest, mutant, createdAt) -> records.add(new long[] {DnaDigest.low(digest), mutant ? 1 : 0, createdAt}));
+		return records;
+	}
+}